@@ -3,11 +3,15 @@ package it.gdorsi;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+import org.springframework.scheduling.annotation.EnableScheduling;
  // eventuell besser als bean overriding (?)
 // Wegen vectorStore-Bean selbst konfigurierbar machen (mit 1024 Dimensionen, Cosine etc.), sollten wir Spring sagen,
 // dass es die automatische (Standard-)Konfiguration ignorieren soll.
 //@SpringBootApplication(exclude = { PgVectorStoreAutoConfiguration.class })
 @SpringBootApplication
+@ConfigurationPropertiesScan("it.gdorsi.config")
+@EnableScheduling
 public class Application {
 
 	public static void main(String[] args) {
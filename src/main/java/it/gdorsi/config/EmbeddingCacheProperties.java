@@ -0,0 +1,22 @@
+package it.gdorsi.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Einstellungen für den Embedding-Cache (app.embedding.cache.*).
+ *
+ * @param enabled    Cache komplett an/aus
+ * @param maxEntries Anzahl Vektoren im In-Memory LRU (1024 floats ~ 4 KB pro Eintrag)
+ * @param persistent zweite Stufe in der Tabelle embedding_cache nutzen
+ * @param modelName  Modellname als Teil des Cache-Keys (falls der Request keinen mitbringt)
+ * @param dimensions Dimension als Teil des Cache-Keys - anderes Modell, anderer Vektor!
+ */
+@ConfigurationProperties("app.embedding.cache")
+public record EmbeddingCacheProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("10000") int maxEntries,
+        @DefaultValue("true") boolean persistent,
+        @DefaultValue("mxbai-embed-large") String modelName,
+        @DefaultValue("1024") int dimensions
+) {}
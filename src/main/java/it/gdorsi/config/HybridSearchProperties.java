@@ -0,0 +1,25 @@
+package it.gdorsi.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Hybride Suche im vector_store: Volltext (content_tsv) + KNN, zusammengeführt per Reciprocal Rank Fusion (app.hybrid-search.*).
+ *
+ * @param enabled             aus = reine Vektorsuche wie bisher
+ * @param rrfK                Dämpfung der RRF-Formel 1 / (k + rang); 60 ist der übliche Wert aus der Literatur
+ * @param candidateMultiplier pro Stufe werden topK * candidateMultiplier Kandidaten geholt
+ * @param minCandidates       mindestens so viele Kandidaten pro Stufe, damit kleine topK (2-3) noch fusionieren können
+ */
+@ConfigurationProperties("app.hybrid-search")
+public record HybridSearchProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("60") int rrfK,
+        @DefaultValue("4") int candidateMultiplier,
+        @DefaultValue("20") int minCandidates
+) {
+
+    public int candidates(int topK) {
+        return Math.max(minCandidates, topK * candidateMultiplier);
+    }
+}
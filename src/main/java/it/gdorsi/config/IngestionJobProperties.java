@@ -0,0 +1,27 @@
+package it.gdorsi.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Einstellungen für die Ingestion-Warteschlange (app.ingestion.jobs.*).
+ *
+ * @param concurrency  wie viele PDFs gleichzeitig verarbeitet werden (je ein virtueller Thread)
+ * @param maxAttempts  Versuche pro Job, danach FAILED
+ * @param retryBackoff Wartezeit vor dem nächsten Versuch, wächst linear mit der Anzahl Versuche
+ * @param pollInterval wie oft die Worker in der Tabelle nach neuen Jobs schauen
+ * @param lease        so lange gehört ein laufender Job seiner Instanz, ohne dass sie ihn verlängert; danach gilt er
+ *                     als verwaist und geht zurück in die Queue
+ * @param leaseRenewal wie oft die Instanz die Leases ihrer laufenden Jobs verlängert (deutlich kürzer als lease)
+ */
+@ConfigurationProperties("app.ingestion.jobs")
+public record IngestionJobProperties(
+        @DefaultValue("2") int concurrency,
+        @DefaultValue("3") int maxAttempts,
+        @DefaultValue("30s") Duration retryBackoff,
+        @DefaultValue("2s") Duration pollInterval,
+        @DefaultValue("5m") Duration lease,
+        @DefaultValue("1m") Duration leaseRenewal
+) {}
@@ -0,0 +1,16 @@
+package it.gdorsi.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Einstellungen für die PDF-Ingestion (app.ingestion.*).
+ *
+ * @param embeddingBatchSize Chunks pro Embedding-Request an Ollama
+ * @param maxInFlightBatches wie viele Batches gleichzeitig embedded werden bzw. auf das Schreiben warten dürfen
+ */
+@ConfigurationProperties("app.ingestion")
+public record IngestionProperties(
+        @DefaultValue("32") int embeddingBatchSize,
+        @DefaultValue("4") int maxInFlightBatches
+) {}
@@ -0,0 +1,33 @@
+package it.gdorsi.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Admission Control vor Ollama (app.llm.bulkhead.*).
+ * Chat und Embeddings haben getrennte Permits, damit eine große PDF-Ingestion den Chat nicht blockiert.
+ *
+ * @param enabled   false = Modelle werden nicht eingewickelt
+ * @param chat      Limits für das ChatModel
+ * @param embedding Limits für das EmbeddingModel
+ */
+@ConfigurationProperties("app.llm.bulkhead")
+public record LlmBulkheadProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue Limits chat,
+        @DefaultValue Limits embedding
+) {
+
+    /**
+     * @param maxConcurrent gleichzeitige Aufrufe an Ollama
+     * @param maxQueue      wartende Aufrufe, darüber wird sofort abgelehnt
+     * @param maxWait       so lange wartet ein Aufruf höchstens auf ein Permit
+     */
+    public record Limits(
+            @DefaultValue("2") int maxConcurrent,
+            @DefaultValue("20") int maxQueue,
+            @DefaultValue("20s") Duration maxWait
+    ) {}
+}
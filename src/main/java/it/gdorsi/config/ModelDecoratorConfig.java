@@ -0,0 +1,108 @@
+package it.gdorsi.config;
+
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.ollama.OllamaChatModel;
+import org.springframework.ai.ollama.OllamaEmbeddingModel;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.pgvector.PgVectorStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import it.gdorsi.repository.EmbeddingCacheRepository;
+import it.gdorsi.repository.HybridSearchRepository;
+import it.gdorsi.service.embedding.CachingEmbeddingModel;
+import it.gdorsi.service.index.HybridVectorStore;
+import it.gdorsi.service.index.TunedVectorStore;
+import it.gdorsi.service.index.VectorSearchTuning;
+import it.gdorsi.service.llm.BulkheadChatModel;
+import it.gdorsi.service.llm.BulkheadEmbeddingModel;
+import it.gdorsi.service.llm.PriorityBulkhead;
+
+/**
+ * Legt Decorators (Cache, Bulkhead) um die Ollama-Modelle und den PgVectorStore, ohne die Auto-Konfiguration von Spring AI zu ersetzen.
+ * Über den BeanPostProcessor bekommen ALLE Nutzer (PgVectorStore, Tools, Controller) den Decorator,
+ * Mocks in den Tests bleiben unberührt (wir wickeln nur das echte OllamaEmbeddingModel ein).
+ */
+@Configuration
+public class ModelDecoratorConfig {
+
+    // static, damit der PostProcessor nicht die ganze Config zu früh initialisiert
+    @Bean
+    static BeanPostProcessor embeddingModelDecorator(ObjectProvider<EmbeddingCacheProperties> properties,
+                                                     ObjectProvider<LlmBulkheadProperties> bulkheadProperties,
+                                                     ObjectProvider<EmbeddingCacheRepository> cacheRepository,
+                                                     ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof OllamaEmbeddingModel ollama)) {
+                    return bean;
+                }
+                MeterRegistry registry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+                EmbeddingModel model = ollama;
+                // Reihenfolge: Cache -> Bulkhead -> Ollama, Cache-Treffer brauchen kein Permit
+                LlmBulkheadProperties bulkhead = bulkheadProperties.getObject();
+                if (bulkhead.enabled()) {
+                    model = new BulkheadEmbeddingModel(model, new PriorityBulkhead("embedding", bulkhead.embedding(), registry));
+                }
+                EmbeddingCacheProperties cache = properties.getObject();
+                if (cache.enabled()) {
+                    model = new CachingEmbeddingModel(model,
+                            cache.persistent() ? cacheRepository.getIfAvailable() : null,
+                            cache.modelName(), cache.dimensions(), cache.maxEntries(), registry);
+                }
+                return model;
+            }
+        };
+    }
+
+    // Admission Control: begrenzt gleichzeitige Chat-Aufrufe an Ollama, Tests mit gemocktem ChatModel bleiben unberührt
+    @Bean
+    static BeanPostProcessor chatModelDecorator(ObjectProvider<LlmBulkheadProperties> bulkheadProperties,
+                                                ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof OllamaChatModel ollama)) {
+                    return bean;
+                }
+                LlmBulkheadProperties bulkhead = bulkheadProperties.getObject();
+                if (!bulkhead.enabled()) {
+                    return bean;
+                }
+                return new BulkheadChatModel(ollama, new PriorityBulkhead("chat", bulkhead.chat(),
+                        meterRegistry.getIfAvailable(() -> Metrics.globalRegistry)));
+            }
+        };
+    }
+
+    // ef_search/probes pro Query und hybride Suche (Volltext + KNN) für alle Nutzer des PgVectorStore
+    // (QuestionAnswerAdvisor, Services, ...)
+    @Bean
+    static BeanPostProcessor vectorStoreDecorator(ObjectProvider<VectorSearchTuning> tuning,
+                                                  ObjectProvider<HybridSearchProperties> hybridProperties,
+                                                  ObjectProvider<HybridSearchRepository> hybridRepository,
+                                                  ObjectProvider<EmbeddingModel> embeddingModel,
+                                                  ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof PgVectorStore pgVectorStore)) {
+                    return bean;
+                }
+                VectorStore store = new TunedVectorStore(pgVectorStore, hybridRepository.getObject(),
+                        embeddingModel.getObject(), tuning.getObject());
+                HybridSearchProperties hybrid = hybridProperties.getObject();
+                if (hybrid.enabled()) {
+                    store = new HybridVectorStore(store, hybridRepository.getObject(), embeddingModel.getObject(),
+                            tuning.getObject(), hybrid, meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+                }
+                return store;
+            }
+        };
+    }
+}
@@ -0,0 +1,19 @@
+package it.gdorsi.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Token-Budget für den Kontext der RAG-Prompts (app.rag-context.*), siehe ContextAssembler.
+ *
+ * @param maxTokens        so viele Tokens (cl100k, wie der TokenTextSplitter) darf der eingefügte Kontext haben
+ * @param minTokens        kleinere Reste lohnen das Anschneiden eines Abschnitts nicht, er fällt dann ganz weg
+ * @param duplikatSchwelle Anteil der Wort-5-Gramme eines Abschnitts, die schon im Kontext stehen, ab dem er als
+ *                         Duplikat gilt (überlappende Chunks)
+ */
+@ConfigurationProperties("app.rag-context")
+public record RagContextProperties(
+        @DefaultValue("1500") int maxTokens,
+        @DefaultValue("40") int minTokens,
+        @DefaultValue("0.8") double duplikatSchwelle
+) {}
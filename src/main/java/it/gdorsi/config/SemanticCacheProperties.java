@@ -0,0 +1,20 @@
+package it.gdorsi.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Semantischer Antwort-Cache (app.semantic-cache.*).
+ *
+ * @param enabled             Cache an/aus, ohne Cache läuft jede Frage normal durch
+ * @param similarityThreshold Kosinus-Ähnlichkeit ab der eine gespeicherte Frage als "gleiche Frage" gilt
+ * @param ttl                 maximales Alter einer Antwort, unabhängig von der Invalidierung
+ */
+@ConfigurationProperties("app.semantic-cache")
+public record SemanticCacheProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("0.95") double similarityThreshold,
+        @DefaultValue("7d") Duration ttl
+) {}
@@ -0,0 +1,39 @@
+package it.gdorsi.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * ANN-Indizes für alle vector-Spalten (app.vector-index.*).
+ * <p>
+ * HNSW: besserer Recall/Latenz, Build teurer. m = Nachbarn pro Knoten, ef-construction = Suchbreite beim Bauen,
+ * ef-search = Suchbreite pro Query (wird per SET LOCAL gesetzt).
+ * IVFFLAT: schneller Build, braucht aber schon Daten (lists werden aus vorhandenen Zeilen gelernt).
+ * Faustregel lists = Zeilen / 1000, probes = sqrt(lists).
+ *
+ * @param manage Indizes beim Start anlegen/anpassen
+ * @param type   HNSW, IVFFLAT oder NONE (sequentieller Scan, exakt)
+ */
+@ConfigurationProperties("app.vector-index")
+public record VectorIndexProperties(
+        @DefaultValue("true") boolean manage,
+        @DefaultValue("HNSW") IndexType type,
+        @DefaultValue Hnsw hnsw,
+        @DefaultValue Ivfflat ivfflat
+) {
+
+    public enum IndexType {
+        HNSW, IVFFLAT, NONE
+    }
+
+    public record Hnsw(
+            @DefaultValue("16") int m,
+            @DefaultValue("64") int efConstruction,
+            @DefaultValue("40") int efSearch
+    ) {}
+
+    public record Ivfflat(
+            @DefaultValue("100") int lists,
+            @DefaultValue("10") int probes
+    ) {}
+}
@@ -0,0 +1,20 @@
+package it.gdorsi.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * XPath-Auswertung für extractXmlElements (app.xpath.*).
+ *
+ * @param expressionCacheSize   kompilierte Ausdrücke (pro Ausdruck und Namespace-Bindung), LRU
+ * @param documentCacheSize     geparste DOM-Bäume (pro Dokument und Inhalts-Hash), LRU
+ * @param maxCachedDocumentChars größere Dokumente werden geparst, aber nicht im Cache gehalten
+ * @param parallelism           Dokumente, die bei der Extraktion über alle XMLs eines Autors gleichzeitig geparst werden
+ */
+@ConfigurationProperties("app.xpath")
+public record XPathProperties(
+        @DefaultValue("256") int expressionCacheSize,
+        @DefaultValue("16") int documentCacheSize,
+        @DefaultValue("2000000") int maxCachedDocumentChars,
+        @DefaultValue("4") int parallelism
+) {}
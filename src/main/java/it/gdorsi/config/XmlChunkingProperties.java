@@ -0,0 +1,17 @@
+package it.gdorsi.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Zerlegung der XML-Dokumente für den Vector Store (app.xml-chunking.*).
+ *
+ * @param maxTokens Token-Budget pro Chunk (cl100k-Schätzung). mxbai-embed-large verarbeitet 512 Tokens,
+ *                  sein eigener Tokenizer zählt bei XML eher mehr - deshalb Luft nach oben lassen
+ * @param maxChunks Obergrenze pro Dokument, schützt Ollama vor riesigen Uploads
+ */
+@ConfigurationProperties("app.xml-chunking")
+public record XmlChunkingProperties(
+        @DefaultValue("350") int maxTokens,
+        @DefaultValue("2000") int maxChunks
+) {}
@@ -0,0 +1,16 @@
+package it.gdorsi.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Struktureller Vergleich für compareXml (app.xml-diff.*).
+ *
+ * @param cacheSize      Ergebnisse pro Paar von Dokumentversionen (kanonische Hashes), LRU
+ * @param maxAenderungen so viele Einträge des Edit-Scripts werden aufgeführt, der Rest nur gezählt
+ */
+@ConfigurationProperties("app.xml-diff")
+public record XmlDiffProperties(
+        @DefaultValue("128") int cacheSize,
+        @DefaultValue("40") int maxAenderungen
+) {}
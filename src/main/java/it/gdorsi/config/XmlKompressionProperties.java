@@ -0,0 +1,24 @@
+package it.gdorsi.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Komprimierte Ablage von xml_dokument.inhalt (app.xml-kompression.*).
+ *
+ * @param enabled            neue und geänderte Dokumente komprimiert speichern, Migration beim Start
+ * @param woerterbuchBytes   Größe eines Wörterbuchs (Deflate nutzt höchstens 32 KiB)
+ * @param minDokumente       ab so vielen Dokumenten eines Schemas wird ein Wörterbuch trainiert
+ * @param trainingsDokumente höchstens so viele Dokumente pro Training
+ * @param probeZeichen       pro Trainingsdokument wird nur der Anfang gelesen
+ * @param migrationBlock     Dokumente pro Transaktion in der Migration
+ */
+@ConfigurationProperties("app.xml-kompression")
+public record XmlKompressionProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("32768") int woerterbuchBytes,
+        @DefaultValue("5") int minDokumente,
+        @DefaultValue("50") int trainingsDokumente,
+        @DefaultValue("65536") int probeZeichen,
+        @DefaultValue("100") int migrationBlock
+) {}
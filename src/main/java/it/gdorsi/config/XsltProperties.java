@@ -0,0 +1,18 @@
+package it.gdorsi.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * XSLT-Transformationen für transformXml (app.xslt.*).
+ *
+ * @param templateCacheSize kompilierte Stylesheets im Speicher (LRU, Schlüssel = SHA-256 des Stylesheets)
+ * @param parallelism       Dokumente, die bei der Transformation aller XMLs eines Autors gleichzeitig laufen
+ * @param maxOutputChars    so viel vom Ergebnis geht in die Tool-Antwort, der Rest wird nur gezählt
+ */
+@ConfigurationProperties("app.xslt")
+public record XsltProperties(
+        @DefaultValue("64") int templateCacheSize,
+        @DefaultValue("4") int parallelism,
+        @DefaultValue("20000") int maxOutputChars
+) {}
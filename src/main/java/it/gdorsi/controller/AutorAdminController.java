@@ -16,6 +16,9 @@ import it.gdorsi.repository.AuthorRepository;
 @RequestMapping("/admin")
 public class AutorAdminController {
 
+    // Tabelle kürzt auf 60 Zeichen - ein Zeichen mehr, damit "..." angehängt wird
+    private static final int BIO_VORSCHAU = 61;
+
     private final EmbeddingModel embeddingModel;
     private final AuthorRepository repository;
 
@@ -27,7 +30,7 @@ public class AutorAdminController {
     // 1. Liefert die Liste der Autoren (wird von hx-get="/admin/autoren/list" aufgerufen)
     @GetMapping("/autoren/list")
     public String listAutoren(Model model) {
-        model.addAttribute("autoren", repository.findAll());
+        model.addAttribute("autoren", repository.findUebersicht(BIO_VORSCHAU));
         return "admin :: authorTable";
     }
 
@@ -51,7 +54,7 @@ public class AutorAdminController {
             repository.updateBiografieByName(name, request.biografie(), vector);
 
             // Nach dem Speichern die aktualisierte Liste zurückgeben
-            model.addAttribute("autoren", repository.findAll());
+            model.addAttribute("autoren", repository.findUebersicht(BIO_VORSCHAU));
             return "admin :: authorTable";
 
         } catch (Exception e) {
@@ -1,18 +1,31 @@
 package it.gdorsi.controller;
 
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.client.ChatClientResponse;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.client.advisor.vectorstore.QuestionAnswerAdvisor;
 import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.util.Map;
+
+import it.gdorsi.dao.CachedAnswer;
 import it.gdorsi.service.AutorOperations;
+import it.gdorsi.service.chat.BudgetedVectorStore;
+import it.gdorsi.service.chat.ChatStreamService;
+import it.gdorsi.service.chat.ContextAssembler;
+import it.gdorsi.service.chat.SemanticCacheAdvisor;
 import jakarta.servlet.http.HttpSession;
+import reactor.core.publisher.Flux;
 
 /**
  * Es gibt zwei Wege, wie du dein PDF-Wissen (Docs) an die KI übergibst:
@@ -53,10 +66,14 @@ import jakarta.servlet.http.HttpSession;
 @Controller
 public class ChatController {
 
+    private static final String SYSTEM_PROMPT = "Du bist ein Assistent. Nutze die Fakten aus der Datenbank.";
+
     private final ChatClient chatClient;
 
     private final AutorOperations autorOperations;
 
+    private final ChatStreamService chatStreamService;
+
     /**
      * Der ChatClient wird im Konstruktor (oder einer @Bean-Methode) über den
      * builder mit dem defaultAdvisor initialisierst, es wird jeder Aufruf
@@ -72,12 +89,17 @@ public class ChatController {
      * @param builder     chatClient Builder
      * @param vectorStore vectorStore Postgres
      */
-    public ChatController(ChatClient.Builder builder, VectorStore vectorStore, ChatMemory chatMemory, AutorOperations autorOperations) {
+    public ChatController(ChatClient.Builder builder, VectorStore vectorStore, ChatMemory chatMemory, AutorOperations autorOperations,
+                          ChatStreamService chatStreamService, SemanticCacheAdvisor semanticCacheAdvisor,
+                          ContextAssembler contextAssembler) {
         this.autorOperations = autorOperations;
+        this.chatStreamService = chatStreamService;
         // Immutability: Der Advisor ist nach dem .build() unveränderlich,
         // was ihn Thread-sicher für den ChatClient macht.
         // Wenn der RAG-Advisor (QuestionAnswerAdvisor) aktiv ist, schreibt er den Prompt massiv um, um die Dokumente aus der Vector-Datenbank einzufügen.
-        QuestionAnswerAdvisor advisor = QuestionAnswerAdvisor.builder(vectorStore)
+        // Der Advisor fügt die Treffer ungekürzt ein - das Token-Budget setzt der ContextAssembler davor durch
+        QuestionAnswerAdvisor advisor = QuestionAnswerAdvisor.builder(
+                        new BudgetedVectorStore(vectorStore, contextAssembler, "admin-chat"))
                 .searchRequest(SearchRequest.builder()
                         .topK(2) // 2 ähnlichsten Textpassagen zurück default 4
                         .similarityThreshold(0.4) // Treffer zulassen, aber keinen Müll
@@ -85,7 +107,8 @@ public class ChatController {
                 .build();
         MessageChatMemoryAdvisor chatMemoryAdvisor = MessageChatMemoryAdvisor.builder(chatMemory).build();
         this.chatClient = builder
-                .defaultAdvisors(advisor, chatMemoryAdvisor)
+                // Der Semantic-Cache sitzt zwischen Memory und RAG, aktiv nur mit Parameter (siehe chat())
+                .defaultAdvisors(advisor, chatMemoryAdvisor, semanticCacheAdvisor)
                 //.defaultTools(autorOperations)
                 .build();
     }
@@ -111,18 +134,20 @@ public class ChatController {
                        HttpSession session,
                        Model model) {
 
-        // Wir setzen die Sprache als absolut höchste Priorität
-        // Wir nutzen "Respond only in [Language]" als finales Kommando
-        String instruction = String.format(" [MANDATORY: Use ONLY the language '%s' for your response, even if the context is German.]", lang);
         try {
-            String answer = chatClient.prompt()
-                    .system("Du bist ein Assistent. Nutze die Fakten aus der Datenbank.")
-                    .advisors(advisor -> advisor.param(ChatMemory.CONVERSATION_ID, session.getId()))
-                    .user(question + instruction)
+            ChatClientResponse response = chatClient.prompt()
+                    .system(SYSTEM_PROMPT)
+                    .advisors(advisor -> advisor.param(ChatMemory.CONVERSATION_ID, session.getId())
+                            .params(semanticCacheParams(question, lang)))
+                    .user(question + languageInstruction(lang))
                     .call()
-                    .content();
+                    .chatClientResponse();
 
-            model.addAttribute("response", answer);
+            model.addAttribute("response", response.chatResponse().getResult().getOutput().getText());
+            if (response.context().get(SemanticCacheAdvisor.HIT) instanceof CachedAnswer hit) {
+                model.addAttribute("cacheHinweis", "Antwort aus dem Cache (ähnliche Frage: \"" + hit.question() + "\""
+                        + (hit.sources().isEmpty() ? "" : ", Quellen: " + String.join(", ", hit.sources())) + ")");
+            }
             return "admin :: chatResponse"; // Jetzt rendert Thymeleaf das Fragment
         } catch (Exception e) {
             model.addAttribute("errorMessage", "KI-Fehler: " + e.getMessage());
@@ -130,6 +155,47 @@ public class ChatController {
         }
     }
 
+    /**
+     * Streaming-Variante: liefert nur den Container, der sich per SSE mit GET /admin/chat/stream verbindet.
+     */
+    @PostMapping(value = "/admin/chat/stream", produces = MediaType.TEXT_HTML_VALUE)
+    @ResponseBody
+    public String chatStreamStart(@RequestParam("question") String question,
+                                  @RequestParam(value = "lang", defaultValue = "Deutsch") String lang) {
+        return ChatStreamService.containerHtml("/admin/chat/stream",
+                Map.of("question", question, "lang", lang), "text-gray-800");
+    }
+
+    // Die Tokens kommen sofort, statt nach der kompletten Generierung (.stream() statt .call())
+    @GetMapping(value = "/admin/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public SseEmitter chatStream(@RequestParam("question") String question,
+                                 @RequestParam(value = "lang", defaultValue = "Deutsch") String lang,
+                                 HttpSession session) {
+        String conversationId = session.getId();
+        // Responses statt content(): nur daran erkennt der Stream einen Treffer des SemanticCacheAdvisor
+        Flux<ChatClientResponse> responses = chatClient.prompt()
+                .system(SYSTEM_PROMPT)
+                .advisors(advisor -> advisor.param(ChatMemory.CONVERSATION_ID, conversationId)
+                        .params(semanticCacheParams(question, lang)))
+                .user(question + languageInstruction(lang))
+                .stream()
+                .chatClientResponse();
+        return chatStreamService.streamResponses("admin-chat", responses);
+    }
+
+    // Gecacht wird die reine Frage, die Sprache gehört zum Scope - eine deutsche Antwort passt nicht auf Englisch
+    private static Map<String, Object> semanticCacheParams(String question, String lang) {
+        return Map.of(SemanticCacheAdvisor.QUESTION, question,
+                SemanticCacheAdvisor.SCOPE, "admin-chat:" + lang);
+    }
+
+    // Wir setzen die Sprache als absolut höchste Priorität
+    // Wir nutzen "Respond only in [Language]" als finales Kommando
+    private static String languageInstruction(String lang) {
+        return String.format(" [MANDATORY: Use ONLY the language '%s' for your response, even if the context is German.]", lang);
+    }
+
     @PostMapping("/admin/autor/chat")
     public String chatAutor(@RequestParam("question") String question,
                             HttpSession session,
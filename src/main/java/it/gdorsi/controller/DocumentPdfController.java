@@ -1,9 +1,13 @@
 package it.gdorsi.controller;
 
+import java.util.List;
+import java.util.Map;
+
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
 import it.gdorsi.service.DocumentManagementService;
@@ -26,5 +30,12 @@ public class DocumentPdfController {
         // HTTP 200 zurückgeben, damit HTMX weiß: "Alles klar, Zeile entfernen"
         return ResponseEntity.ok().build();
     }
+
+    // Mehrere Dateien auf einmal: DELETE /admin/documents?fileName=a.pdf&fileName=b.pdf
+    @DeleteMapping("/admin/documents")
+    @ResponseBody
+    public ResponseEntity<Map<String, Integer>> deleteDocuments(@RequestParam("fileName") List<String> fileNames) {
+        return ResponseEntity.ok(documentService.deleteByFileNames(fileNames));
+    }
 }
 
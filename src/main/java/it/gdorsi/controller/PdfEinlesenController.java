@@ -1,19 +1,22 @@
 package it.gdorsi.controller;
 
-import org.springframework.core.io.Resource;
-import org.springframework.http.ResponseEntity;
+import java.io.IOException;
+
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.multipart.MultipartFile;
-import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
-import it.gdorsi.dao.PdfIngestResult;
+import it.gdorsi.dao.DocumentPage;
+import it.gdorsi.dao.IngestionJob;
 import it.gdorsi.service.DocumentManagementService;
-import it.gdorsi.service.PdfIngestionService;
+import it.gdorsi.service.ingest.IngestionJobService;
+import jakarta.servlet.http.HttpServletResponse;
 
 /**
  * {@code @RestController} erwartet, dass du Daten (JSON) zurückgibst,
@@ -22,72 +25,78 @@ import it.gdorsi.service.PdfIngestionService;
 @Controller
 public class PdfEinlesenController {
 
-    private final PdfIngestionService ingestionService;
+    private static final int PAGE_SIZE = 25;
+
+    private final IngestionJobService jobService;
 
     private final DocumentManagementService documentService;
 
 
-    public PdfEinlesenController(PdfIngestionService ingestionService, DocumentManagementService documentService) {
-        this.ingestionService = ingestionService;
+    public PdfEinlesenController(IngestionJobService jobService, DocumentManagementService documentService) {
+        this.jobService = jobService;
         this.documentService = documentService;
     }
 
     // Die Hauptseite
     @GetMapping("/admin")
     public String adminPage(Model model) {
-        model.addAttribute("docs", documentService.getAllDocuments());
+        addDocumentPage(model, 0);
         return "admin";
     }
 
-    // Nur das Tabellen-Fragment für HTMX-Updates
+    // Nur das Tabellen-Fragment für HTMX-Updates, seitenweise aus document_catalog
     @GetMapping("/admin/list")
-    public String getDocumentList(Model model) {
-        model.addAttribute("docs", documentService.getAllDocuments());
+    public String getDocumentList(@RequestParam(value = "page", defaultValue = "0") int page, Model model) {
+        addDocumentPage(model, page);
         return "admin :: docTable"; // Gibt nur das Fragment zurück
     }
 
+    private void addDocumentPage(Model model, int page) {
+        DocumentPage documentPage = documentService.getDocuments(page, PAGE_SIZE);
+        model.addAttribute("docs", documentPage.docs());
+        model.addAttribute("docPage", documentPage);
+    }
+
     @PostMapping("/admin/upload/trigger")
     @ResponseBody // Antwortet direkt für HTMX
-    public String handleFileUploadTrigger(@RequestParam("file") MultipartFile file) {
-        ingestionService.loadPdf(file.getResource());
-        // Triggert ein Event im Frontend, damit die Liste aktualisiert wird
+    public String handleFileUploadTrigger(@RequestParam("file") MultipartFile file) throws IOException {
+        jobService.submit(file);
         return "";
     }
 
-    @PostMapping(value = "/admin/upload", produces = org.springframework.http.MediaType.TEXT_HTML_VALUE)
-    @ResponseBody
-    public ResponseEntity<String> handleFileUpload(@RequestParam("file") MultipartFile file,
-                                                   RedirectAttributes redirectAttributes) {
+    /**
+     * Legt nur einen Job an und antwortet sofort - das Fragment pollt dann den Status.
+     */
+    @PostMapping(value = "/admin/upload", produces = MediaType.TEXT_HTML_VALUE)
+    public String handleFileUpload(@RequestParam("file") MultipartFile file, Model model, HttpServletResponse response) {
         if (file.isEmpty()) {
-            redirectAttributes.addFlashAttribute("message", "Bitte wähle eine Datei aus.");
-            return ResponseEntity.status(400)
-                    .body("<div class='text-red-600'>❌ Fehler: leeres File </div>");
+            response.setStatus(400);
+            model.addAttribute("error", "leeres File");
+            return "admin :: jobStatus";
         }
-
-        multipartInResource(file, redirectAttributes);
-
         try {
-
-            // Wir schicken ein kleines HTML-Fragment zurück, das HTMX anzeigen kann
-            return ResponseEntity.ok()
-                    .header("HX-Trigger", "updateList") // Triggert das Neuladen der Tabelle
-                    .body("<div class='text-green-600'>✅ Datei erfolgreich indiziert!</div>");
+            long jobId = jobService.submit(file);
+            jobService.getJob(jobId).ifPresent(job -> model.addAttribute("job", job));
         } catch (Exception e) {
-            return ResponseEntity.status(500)
-                    .body("<div class='text-red-600'>❌ Fehler: " + e.getMessage() + "</div>");
+            response.setStatus(500);
+            model.addAttribute("error", e.getMessage());
         }
+        return "admin :: jobStatus";
     }
 
-    private void multipartInResource(MultipartFile file, RedirectAttributes redirectAttributes) {
-        try {
-            // MultipartFile in Resource umwandeln für den Service
-            final Resource resource = file.getResource();
-            PdfIngestResult result = ingestionService.loadPdf(resource);
-
-            redirectAttributes.addFlashAttribute("message",
-                    "Erfolg! " + result.fileName() + " wurde mit " + result.totalChunks() + " Chunks eingelesen.");
-        } catch (Exception e) {
-            redirectAttributes.addFlashAttribute("message", "Fehler: " + e.getMessage());
+    // Wird vom Fragment alle 2 Sekunden gepollt, bis der Job DONE oder FAILED ist
+    @GetMapping(value = "/admin/upload/jobs/{jobId}", produces = MediaType.TEXT_HTML_VALUE)
+    public String jobStatus(@PathVariable long jobId, Model model, HttpServletResponse response) {
+        IngestionJob job = jobService.getJob(jobId).orElse(null);
+        if (job == null) {
+            response.setStatus(404);
+            model.addAttribute("error", "Job " + jobId + " nicht gefunden");
+        } else {
+            model.addAttribute("job", job);
+            if (job.status() == IngestionJob.Status.DONE) {
+                response.setHeader("HX-Trigger", "updateList"); // Triggert das Neuladen der Tabelle
+            }
         }
+        return "admin :: jobStatus";
     }
 }
@@ -21,10 +21,10 @@ import org.springframework.web.bind.annotation.RequestParam;
 
 import it.gdorsi.repository.VertragRepository;
 import it.gdorsi.repository.model.Vertrag;
+import it.gdorsi.service.chat.ContextAssembler;
 import jakarta.servlet.http.HttpServletResponse;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,15 +40,18 @@ public class VertragController {
     private final VectorStore vectorStore;       // Vektor-DB für RAG
     private final VertragRepository repository;
     private final List<ToolCallback> toolCallbacks; // Deine Interface-Tools
+    private final ContextAssembler contextAssembler;
 
     public VertragController(VertragRepository repository,
                              ChatModel chatModel,
                              VectorStore vectorStore,
-                             List<ToolCallback> toolCallbacks) {
+                             List<ToolCallback> toolCallbacks,
+                             ContextAssembler contextAssembler) {
         this.repository = repository;
         this.chatModel = chatModel;
         this.vectorStore = vectorStore;
         this.toolCallbacks = toolCallbacks;
+        this.contextAssembler = contextAssembler;
     }
 
     @GetMapping
@@ -68,9 +71,8 @@ public class VertragController {
                     .topK(3)
                     .build());
 
-            String context = docs.stream()
-                    .map(org.springframework.ai.document.Document::getText) // .getText() statt .getContent()
-                    .collect(Collectors.joining("\n---\n"));
+            // nach Score, ohne überlappende Chunks, im Token-Budget
+            String context = contextAssembler.baue("vertrag-chat", docs).text("\n---\n");
 
             // 2. System-Prompt
             String systemText = """
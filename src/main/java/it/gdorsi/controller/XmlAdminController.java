@@ -1,10 +1,14 @@
 package it.gdorsi.controller;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.document.Document;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -13,42 +17,74 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.util.HtmlUtils;
 
-import it.gdorsi.repository.model.Autor;
+import it.gdorsi.dao.AutorUebersicht;
+import it.gdorsi.dao.CachedAnswer;
+import it.gdorsi.dao.XmlDokumentSeite;
 import it.gdorsi.repository.model.XmlDokument;
 import it.gdorsi.service.XmlDokumentService;
+import it.gdorsi.service.chat.ChatStreamService;
+import it.gdorsi.service.chat.ContextAssembler;
+import it.gdorsi.service.chat.SemanticResponseCache;
 import it.gdorsi.service.response.XmlListResponse;
+import reactor.core.publisher.Flux;
 
 @Controller
 public class XmlAdminController {
 
     private final XmlDokumentService xmlDokumentService;
     private final ChatClient chatClient;
+    private final ChatStreamService chatStreamService;
+    private final SemanticResponseCache semanticCache;
+    private final ContextAssembler contextAssembler;
 
-    public XmlAdminController(XmlDokumentService xmlDokumentService, ChatClient chatClient) {
+    public XmlAdminController(XmlDokumentService xmlDokumentService, ChatClient chatClient,
+                              ChatStreamService chatStreamService, SemanticResponseCache semanticCache,
+                              ContextAssembler contextAssembler) {
         this.xmlDokumentService = xmlDokumentService;
         this.chatClient = chatClient;
+        this.chatStreamService = chatStreamService;
+        this.semanticCache = semanticCache;
+        this.contextAssembler = contextAssembler;
     }
 
+    // Tabelle kürzt auf 80 Zeichen - ein Zeichen mehr, damit "..." angehängt wird
+    private static final int LISTEN_VORSCHAU = 81;
+    private static final int PAGE_SIZE = 25;
+
     @GetMapping("/admin/xml")
-    public String xmlAdminPage(Model model) {
-        List<Autor> autoren = xmlDokumentService.findAllAutoren();
-        List<XmlDokument> xmlDokumente = xmlDokumentService.findAllXmlDokumente();
+    public String xmlAdminPage(@RequestParam(required = false) Long autorId, Model model) {
+        List<AutorUebersicht> autoren = xmlDokumentService.findAllAutoren();
         
         model.addAttribute("autoren", autoren);
-        model.addAttribute("xmlDokumente", xmlDokumente);
+        addXmlSeite(model, autorId, null);
         return "xml-admin";
     }
 
     @GetMapping("/admin/xml/list")
-    public String getXmlList(Model model) {
-        List<XmlDokument> xmlDokumente = xmlDokumentService.findAllXmlDokumente();
-        
-        model.addAttribute("xmlDokumente", xmlDokumente);
+    public String getXmlList(@RequestParam(required = false) Long autorId, Model model) {
+        addXmlSeite(model, autorId, null);
         return "xml-admin :: xmlTable";
     }
 
+    // "Weitere laden": nur die nächsten Zeilen, ersetzen die Button-Zeile
+    @GetMapping("/admin/xml/list/rows")
+    public String getXmlRows(@RequestParam(required = false) Long autorId, @RequestParam String nach, Model model) {
+        addXmlSeite(model, autorId, nach);
+        return "xml-admin :: xmlRows";
+    }
+
+    private void addXmlSeite(Model model, Long autorId, String cursor) {
+        XmlDokumentSeite seite = xmlDokumentService.findXmlDokumente(autorId, cursor, PAGE_SIZE, LISTEN_VORSCHAU);
+        model.addAttribute("xmlDokumente", seite.dokumente());
+        model.addAttribute("xmlSeite", seite);
+        model.addAttribute("autorId", autorId);
+    }
+
     @PostMapping("/admin/xml/upload")
     public ResponseEntity<String> handleXmlUpload(
             @RequestParam("autorId") Long autorId,
@@ -59,15 +95,17 @@ public class XmlAdminController {
                     .body("<div class='text-red-600'>❌ Fehler: keine Datei ausgewählt</div>");
         }
 
-        try {
-            String inhalt = new String(file.getBytes());
+        try (InputStream inhalt = file.getInputStream()) {
             String dateiname = file.getOriginalFilename();
             
-            xmlDokumentService.saveXml(autorId, dateiname, inhalt);
+            xmlDokumentService.saveXmlUpload(autorId, dateiname, inhalt);
 
             return ResponseEntity.ok()
                     .header("HX-Trigger", "updateXmlList")
                     .body("<div class='text-green-600'>✅ XML erfolgreich hochgeladen!</div>");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body("<div class='text-red-600'>❌ Fehler: " + HtmlUtils.htmlEscape(e.getMessage()) + "</div>");
         } catch (IOException e) {
             return ResponseEntity.status(500)
                     .body("<div class='text-red-600'>❌ Fehler: " + e.getMessage() + "</div>");
@@ -146,7 +184,7 @@ public class XmlAdminController {
                     "<span class='text-yellow-600'>🔍</span>" +
                     "<span class='font-bold text-yellow-700'>Keine ähnlichen XML-Dokumente gefunden</span>" +
                     "</div>" +
-                    "<div class='mt-2 text-gray-600'>Für die Suche: \"" + query + "\"</div>" +
+                    "<div class='mt-2 text-gray-600'>Für die Suche: \"" + HtmlUtils.htmlEscape(query) + "\"</div>" +
                     "</div>"
                 );
             }
@@ -155,7 +193,7 @@ public class XmlAdminController {
             html.append("<div class='bg-blue-50 p-4 rounded-lg border border-blue-200 mb-4'>");
             html.append("<div class='flex items-center gap-2 mb-2'>");
             html.append("<span class='text-blue-600'>🔍</span>");
-            html.append("<span class='font-bold text-blue-700'>Semantische Suche: ").append(query).append("</span>");
+            html.append("<span class='font-bold text-blue-700'>Semantische Suche: ").append(HtmlUtils.htmlEscape(query)).append("</span>");
             html.append("</div>");
             html.append("<div class='text-sm text-gray-600 mb-3'>").append(searchResults.dokumente().size()).append(" ähnliche Dokumente gefunden</div>");
             
@@ -164,8 +202,8 @@ public class XmlAdminController {
                 html.append("<div class='bg-white p-3 rounded border border-gray-200'>");
                 html.append("<div class='flex justify-between items-start'>");
                 html.append("<div>");
-                html.append("<div class='font-medium text-gray-900'>").append(doc.dateiname()).append("</div>");
-                html.append("<div class='text-sm text-gray-500'>Autor: ").append(doc.autorName()).append("</div>");
+                html.append("<div class='font-medium text-gray-900'>").append(HtmlUtils.htmlEscape(doc.dateiname())).append("</div>");
+                html.append("<div class='text-sm text-gray-500'>Autor: ").append(HtmlUtils.htmlEscape(doc.autorName())).append("</div>");
                 html.append("</div>");
                 if (doc.similarityScore() != null) {
                     html.append("<div class='text-sm font-medium text-blue-600'>");
@@ -195,71 +233,34 @@ public class XmlAdminController {
             @RequestParam(value = "limit", defaultValue = "3") int limit) {
         
         try {
+            // 0. Gleiche Frage schon beantwortet? Dann weder Suche noch LLM
+            String scope = ragCacheScope(limit);
+            Optional<CachedAnswer> cached = semanticCache.lookup(scope, query);
+            if (cached.isPresent()) {
+                return ResponseEntity.ok(cacheTrefferHtml(cached.get()) + antwortKopfHtml()
+                        + "<div class='text-gray-800'>" + cached.get().answer().replace("\n", "<br>") + "</div></div>");
+            }
+
             // 1. Ähnliche XML-Dokumente finden
             XmlListResponse searchResults = xmlDokumentService.searchSimilarXml(query, limit);
             
             if (searchResults.dokumente().isEmpty()) {
-                return ResponseEntity.ok(
-                    "<div class='bg-yellow-50 p-4 rounded-lg border border-yellow-200'>" +
-                    "<div class='flex items-center gap-2'>" +
-                    "<span class='text-yellow-600'>🤖</span>" +
-                    "<span class='font-bold text-yellow-700'>Keine relevanten XML-Dokumente gefunden</span>" +
-                    "</div>" +
-                    "<div class='mt-2 text-gray-600'>Für die Frage: \"" + query + "\"</div>" +
-                    "</div>"
-                );
+                return ResponseEntity.ok(keineTrefferHtml(query));
             }
 
-            // 2. Kontext aus relevanten Dokumenten erstellen
-            StringBuilder context = new StringBuilder();
-            context.append("Relevante XML-Dokumente für die Frage: ").append(query).append("\n\n");
-            
-            for (var doc : searchResults.dokumente()) {
-                context.append("=== Dokument: ").append(doc.dateiname()).append(" (Autor: ").append(doc.autorName()).append(") ===\n");
-                context.append(doc.inhalt()).append("\n\n");
-            }
-
-            // 3. KI-Antwort mit RAG-Kontext generieren
+            // 2. + 3. KI-Antwort mit RAG-Kontext generieren
             String response = chatClient.prompt()
-                .user("Du bist ein Experte für XML-Dokumente. Beantworte die Frage basierend auf den folgenden relevanten XML-Dokumenten.\n\n" +
-                      "Kontext aus relevanten XML-Dokumenten:\n" + context.toString() + 
-                      "\n\nFrage: " + query + 
-                      "\n\nAntworte auf Deutsch und sei präzise. Zitiere wenn möglich aus den Dokumenten.")
+                .user(ragPrompt(query, searchResults))
                 .call()
                 .content();
+            semanticCache.store(scope, query, response, ragSources(searchResults));
 
             // 4. HTML-Antwort mit Suchresultaten und KI-Antwort erstellen
             StringBuilder html = new StringBuilder();
-            
-            // Suchresultate anzeigen
-            html.append("<div class='bg-blue-50 p-4 rounded-lg border border-blue-200 mb-4'>");
-            html.append("<div class='flex items-center gap-2 mb-2'>");
-            html.append("<span class='text-blue-600'>🔍</span>");
-            html.append("<span class='font-bold text-blue-700'>Gefundene XML-Dokumente</span>");
-            html.append("</div>");
-            html.append("<div class='text-sm text-gray-600 mb-3'>").append(searchResults.dokumente().size()).append(" relevante Dokumente für: \"").append(query).append("\"</div>");
-            
-            html.append("<div class='space-y-2'>");
-            for (var doc : searchResults.dokumente()) {
-                html.append("<div class='bg-white p-2 rounded border border-gray-200 text-sm'>");
-                html.append("<div class='flex justify-between'>");
-                html.append("<div class='font-medium'>").append(doc.dateiname()).append("</div>");
-                if (doc.similarityScore() != null) {
-                    html.append("<div class='text-blue-600'>").append(String.format("%.1f%%", doc.similarityScore() * 100)).append("</div>");
-                }
-                html.append("</div>");
-                html.append("<div class='text-gray-500 text-xs'>Autor: ").append(doc.autorName()).append("</div>");
-                html.append("</div>");
-            }
-            html.append("</div>");
-            html.append("</div>");
+            html.append(quellenHtml(query, searchResults));
 
             // KI-Antwort anzeigen
-            html.append("<div class='bg-purple-50 p-4 rounded-lg border border-purple-200'>");
-            html.append("<div class='flex items-center gap-2 mb-2'>");
-            html.append("<span class='text-purple-600'>✨</span>");
-            html.append("<span class='font-bold text-purple-700'>KI-Antwort (RAG)</span>");
-            html.append("</div>");
+            html.append(antwortKopfHtml());
             html.append("<div class='text-gray-800'>").append(response.replace("\n", "<br>")).append("</div>");
             html.append("</div>");
 
@@ -270,4 +271,136 @@ public class XmlAdminController {
                     .body("<div class='text-red-600'>❌ Fehler bei der RAG-Chat: " + e.getMessage() + "</div>");
         }
     }
+
+    /**
+     * Streaming-Variante: liefert nur den Container, der sich per SSE mit GET /admin/xml/rag/chat/stream verbindet.
+     */
+    @PostMapping(value = "/admin/xml/rag/chat/stream", produces = MediaType.TEXT_HTML_VALUE)
+    @ResponseBody
+    public String chatWithXmlRagStreamStart(
+            @RequestParam("query") String query,
+            @RequestParam(value = "limit", defaultValue = "3") int limit) {
+        return ChatStreamService.containerHtml("/admin/xml/rag/chat/stream",
+                Map.of("query", query, "limit", String.valueOf(limit)), "text-gray-800");
+    }
+
+    // Suche zuerst, die Quellen gehen als "sources"-Event raus, danach laufen die Tokens nach
+    @GetMapping(value = "/admin/xml/rag/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public SseEmitter chatWithXmlRagStream(
+            @RequestParam("query") String query,
+            @RequestParam(value = "limit", defaultValue = "3") int limit) {
+
+        String scope = ragCacheScope(limit);
+        Optional<CachedAnswer> cached = semanticCache.lookup(scope, query);
+        if (cached.isPresent()) {
+            return chatStreamService.streamCached("xml-rag-chat",
+                    cacheTrefferHtml(cached.get()) + antwortKopfHtml() + "</div>", cached.get().answer());
+        }
+
+        XmlListResponse searchResults = xmlDokumentService.searchSimilarXml(query, limit);
+        if (searchResults.dokumente().isEmpty()) {
+            return chatStreamService.stream("xml-rag-chat", keineTrefferHtml(query), Flux.empty());
+        }
+
+        // Tokens mitschreiben, die komplette Antwort landet am Ende im Semantic-Cache
+        StringBuilder answer = new StringBuilder();
+        Flux<String> tokens = chatClient.prompt()
+            .user(ragPrompt(query, searchResults))
+            .stream()
+            .content()
+            .doOnNext(answer::append)
+            .doOnComplete(() -> semanticCache.store(scope, query, answer.toString(), ragSources(searchResults)));
+        // Der Antwort-Kopf kommt mit den Quellen, die Tokens landen im Container darunter
+        String sources = quellenHtml(query, searchResults) + antwortKopfHtml() + "</div>";
+        return chatStreamService.stream("xml-rag-chat", sources, tokens);
+    }
+
+    // die Anzahl Dokumente im Kontext verändert die Antwort, also Teil des Scopes
+    private static String ragCacheScope(int limit) {
+        return "xml-rag:" + limit;
+    }
+
+    private static List<String> ragSources(XmlListResponse searchResults) {
+        return searchResults.dokumente().stream()
+                .filter(doc -> doc.id() != null && doc.id() > 0)
+                .map(doc -> SemanticResponseCache.xmlSource(doc.id()))
+                .toList();
+    }
+
+    private static String cacheTrefferHtml(CachedAnswer hit) {
+        StringBuilder html = new StringBuilder();
+        html.append("<div class='bg-gray-50 p-3 rounded-lg border border-gray-200 mb-4 text-xs text-gray-500'>");
+        html.append("♻️ Antwort aus dem Cache (").append(String.format("%.1f%%", hit.similarity() * 100))
+                .append(" ähnlich zu: \"").append(HtmlUtils.htmlEscape(hit.question())).append("\")");
+        if (!hit.sources().isEmpty()) {
+            html.append(" - Quellen: ").append(HtmlUtils.htmlEscape(String.join(", ", hit.sources())));
+        }
+        html.append("</div>");
+        return html.toString();
+    }
+
+    private String ragPrompt(String query, XmlListResponse searchResults) {
+        // Kontext aus relevanten Dokumenten erstellen - nach Score, ohne Duplikate, im Token-Budget
+        List<Document> abschnitte = searchResults.dokumente().stream()
+                .map(doc -> Document.builder()
+                        .text("=== Dokument: " + doc.dateiname() + " (Autor: " + doc.autorName() + ") ===\n" + doc.inhalt())
+                        .score(doc.similarityScore())
+                        .build())
+                .toList();
+        StringBuilder context = new StringBuilder();
+        context.append("Relevante XML-Dokumente für die Frage: ").append(query).append("\n\n");
+        context.append(contextAssembler.baue("xml-rag-chat", abschnitte).text("\n\n")).append("\n\n");
+
+        return "Du bist ein Experte für XML-Dokumente. Beantworte die Frage basierend auf den folgenden relevanten XML-Dokumenten.\n\n" +
+               "Kontext aus relevanten XML-Dokumenten:\n" + context + 
+               "\n\nFrage: " + query + 
+               "\n\nAntworte auf Deutsch und sei präzise. Zitiere wenn möglich aus den Dokumenten.";
+    }
+
+    // Ohne Zeilenumbrüche: das HTML geht auch als einzelnes SSE-Event raus
+    private static String keineTrefferHtml(String query) {
+        return "<div class='bg-yellow-50 p-4 rounded-lg border border-yellow-200'>" +
+               "<div class='flex items-center gap-2'>" +
+               "<span class='text-yellow-600'>🤖</span>" +
+               "<span class='font-bold text-yellow-700'>Keine relevanten XML-Dokumente gefunden</span>" +
+               "</div>" +
+               "<div class='mt-2 text-gray-600'>Für die Frage: \"" + HtmlUtils.htmlEscape(query) + "\"</div>" +
+               "</div>";
+    }
+
+    private static String quellenHtml(String query, XmlListResponse searchResults) {
+        StringBuilder html = new StringBuilder();
+        html.append("<div class='bg-blue-50 p-4 rounded-lg border border-blue-200 mb-4'>");
+        html.append("<div class='flex items-center gap-2 mb-2'>");
+        html.append("<span class='text-blue-600'>🔍</span>");
+        html.append("<span class='font-bold text-blue-700'>Gefundene XML-Dokumente</span>");
+        html.append("</div>");
+        html.append("<div class='text-sm text-gray-600 mb-3'>").append(searchResults.dokumente().size()).append(" relevante Dokumente für: \"").append(HtmlUtils.htmlEscape(query)).append("\"</div>");
+        
+        html.append("<div class='space-y-2'>");
+        for (var doc : searchResults.dokumente()) {
+            html.append("<div class='bg-white p-2 rounded border border-gray-200 text-sm'>");
+            html.append("<div class='flex justify-between'>");
+            html.append("<div class='font-medium'>").append(HtmlUtils.htmlEscape(doc.dateiname())).append("</div>");
+            if (doc.similarityScore() != null) {
+                html.append("<div class='text-blue-600'>").append(String.format("%.1f%%", doc.similarityScore() * 100)).append("</div>");
+            }
+            html.append("</div>");
+            html.append("<div class='text-gray-500 text-xs'>Autor: ").append(HtmlUtils.htmlEscape(doc.autorName())).append("</div>");
+            html.append("</div>");
+        }
+        html.append("</div>");
+        html.append("</div>");
+        return html.toString();
+    }
+
+    // öffnet den Antwort-Block, der Aufrufer schließt ihn
+    private static String antwortKopfHtml() {
+        return "<div class='bg-purple-50 p-4 rounded-lg border border-purple-200'>" +
+               "<div class='flex items-center gap-2 mb-2'>" +
+               "<span class='text-purple-600'>✨</span>" +
+               "<span class='font-bold text-purple-700'>KI-Antwort (RAG)</span>" +
+               "</div>";
+    }
 }
@@ -1,7 +1,7 @@
 package it.gdorsi.controller;
 
 import java.io.IOException;
-import java.util.List;
+import java.io.InputStream;
 
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.http.HttpStatus;
@@ -17,14 +17,16 @@ import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.util.HtmlUtils;
 
+import it.gdorsi.dao.XmlDokumentSeite;
 import it.gdorsi.service.XmlDokumentService;
-import it.gdorsi.service.response.XmlListResponse;
 import it.gdorsi.service.response.XmlResponse;
 
 @RestController
 @RequestMapping("/api/autoren/{autorId}/xml")
 public class XmlAutorChatController {
 
+    private static final int VORSCHAU = 500;
+
     private final ChatClient chatClient;
     private final XmlDokumentService xmlDokumentService;
 
@@ -39,16 +41,26 @@ public class XmlAutorChatController {
             @PathVariable Long autorId,
             @RequestParam("file") MultipartFile file) throws IOException {
 
-        String inhalt = new String(file.getBytes());
         String dateiname = file.getOriginalFilename();
 
-        xmlDokumentService.saveXml(autorId, dateiname, inhalt);
+        try (InputStream inhalt = file.getInputStream()) {
+            xmlDokumentService.saveXmlUpload(autorId, dateiname, inhalt);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(HtmlUtils.htmlEscape(e.getMessage()));
+        }
 
         return ResponseEntity.status(HttpStatus.CREATED).body("XML gespeichert: " + HtmlUtils.htmlEscape(dateiname));
     }
 
+    /**
+     * XML-Dokumente des Autors, neueste zuerst, seitenweise per Cursor (nur Vorschau statt Inhalt).
+     * Folgeseite: {@code ?cursor=<naechsterCursor>}; naechsterCursor == null heißt letzte Seite.
+     */
     @GetMapping
-    public ResponseEntity<?> getAllXmlForAutor(@PathVariable Long autorId) {
+    public ResponseEntity<?> getAllXmlForAutor(
+            @PathVariable Long autorId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
         String autorName = getAutorNameById(autorId);
         if (autorName == null) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -56,16 +68,10 @@ public class XmlAutorChatController {
         }
 
         try {
-            XmlListResponse xmlListResponse = xmlDokumentService.getXmlByAutor(autorName);
-            
-            if (xmlListResponse.status().startsWith("FEHLER")) {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                        .body(HtmlUtils.htmlEscape(xmlListResponse.status()));
-            } else if (xmlListResponse.status().startsWith("KEINE_DOKUMENTE")) {
-                return ResponseEntity.ok(List.of());
-            }
-            
-            return ResponseEntity.ok(xmlListResponse.dokumente());
+            XmlDokumentSeite seite = xmlDokumentService.findXmlDokumente(autorId, cursor, size, VORSCHAU);
+            return ResponseEntity.ok(seite);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(HtmlUtils.htmlEscape(e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Fehler beim Abrufen der XML-Dokumente: " + HtmlUtils.htmlEscape(e.getMessage()));
@@ -110,18 +116,17 @@ public class XmlAutorChatController {
                     .body("Autor mit ID " + HtmlUtils.htmlEscape(String.valueOf(autorId)) + " nicht gefunden");
         }
 
-        String inhalt = new String(file.getBytes());
         String dateiname = file.getOriginalFilename();
 
-        try {
-            XmlResponse xmlResponse = xmlDokumentService.updateXml(autorName, xmlId, dateiname, inhalt);
-            
-            if (xmlResponse.status().startsWith("FEHLER")) {
+        try (InputStream inhalt = file.getInputStream()) {
+            if (xmlDokumentService.updateXmlUpload(autorId, xmlId, dateiname, inhalt).isEmpty()) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                        .body(HtmlUtils.htmlEscape(xmlResponse.status()));
+                        .body(HtmlUtils.htmlEscape(XmlResponse.notFound(autorName, xmlId).status()));
             }
             
             return ResponseEntity.ok("XML aktualisiert: " + HtmlUtils.htmlEscape(dateiname));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(HtmlUtils.htmlEscape(e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Fehler beim Aktualisieren des XML-Dokuments: " + HtmlUtils.htmlEscape(e.getMessage()));
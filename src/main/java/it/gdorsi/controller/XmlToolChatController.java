@@ -6,23 +6,35 @@ import org.springframework.ai.chat.client.advisor.vectorstore.QuestionAnswerAdvi
 import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Map;
 
 import it.gdorsi.service.XmlDokumentService;
+import it.gdorsi.service.chat.ChatStreamService;
 import jakarta.servlet.http.HttpSession;
+import reactor.core.publisher.Flux;
 
 @Controller
 public class XmlToolChatController {
 
     private final ChatClient chatClient;
 
+    private final ChatStreamService chatStreamService;
+
     public XmlToolChatController(ChatClient.Builder builder, 
                                 VectorStore vectorStore, 
                                 ChatMemory chatMemory,
-                                XmlDokumentService xmlService) {
+                                XmlDokumentService xmlService,
+                                ChatStreamService chatStreamService) {
+        this.chatStreamService = chatStreamService;
 
         QuestionAnswerAdvisor ragAdvisor = QuestionAnswerAdvisor.builder(vectorStore)
             .searchRequest(SearchRequest.builder()
@@ -68,6 +80,32 @@ public class XmlToolChatController {
         return formatToolResponse(response, contextType);
     }
 
+    @PostMapping(value = "/admin/xml/tool-chat/stream", produces = MediaType.TEXT_HTML_VALUE)
+    public ResponseEntity<String> xmlToolChatStreamStart(
+            @RequestParam("question") String question,
+            @RequestParam(value = "contextType", defaultValue = "GENERAL") String contextType) {
+        String container = ChatStreamService.containerHtml("/admin/xml/tool-chat/stream",
+                Map.of("question", question, "contextType", contextType), "text-gray-800");
+        // gleiche Optik wie die blockierende Variante, nur dass die Antwort nachläuft
+        return formatToolResponse(container, contextType);
+    }
+
+    @GetMapping(value = "/admin/xml/tool-chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public SseEmitter xmlToolChatStream(
+            @RequestParam("question") String question,
+            @RequestParam(value = "contextType", defaultValue = "GENERAL") String contextType,
+            HttpSession session) {
+        String conversationId = session.getId();
+        Flux<String> tokens = chatClient.prompt()
+            .system(getSystemPromptForContext(contextType))
+            .advisors(advisor -> advisor.param(ChatMemory.CONVERSATION_ID, conversationId))
+            .user(question)
+            .stream()
+            .content();
+        return chatStreamService.stream("xml-tool-chat", tokens);
+    }
+
     String getSystemPromptForContext(String contextType) {
         String basePrompt = """
             Du bist ein XML-Experte mit Zugriff auf XML-Tools.
@@ -0,0 +1,8 @@
+package it.gdorsi.dao;
+
+/**
+ * Listen-Zeile für einen Autor - ohne Embedding.
+ *
+ * @param bioVorschau die ersten Zeichen der Biografie (Länge bestimmt die Query)
+ */
+public record AutorUebersicht(Long id, String name, String bioVorschau) {}
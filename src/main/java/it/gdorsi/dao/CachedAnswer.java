@@ -0,0 +1,20 @@
+package it.gdorsi.dao;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Treffer aus dem semantischen Antwort-Cache.
+ *
+ * @param question   die ursprünglich gestellte Frage
+ * @param sources    Provenienz der Antwort (file:&lt;file_name&gt; / xml:&lt;xml_id&gt;)
+ * @param similarity Kosinus-Ähnlichkeit zur aktuellen Frage
+ */
+public record CachedAnswer(
+        Long id,
+        String question,
+        String answer,
+        List<String> sources,
+        double similarity,
+        LocalDateTime createdAt
+) {}
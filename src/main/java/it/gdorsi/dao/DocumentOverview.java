@@ -1,9 +1,17 @@
 package it.gdorsi.dao;
 
-import java.time.LocalDate;
+import java.time.LocalDateTime;
 
+/**
+ * Eine Zeile aus document_catalog.
+ *
+ * @param byteSize           Größe der PDF-Datei (bei Altbestand: Textgröße der Chunks)
+ * @param contentFingerprint SHA-256 der PDF-Datei, null bei Altbestand
+ */
 public record DocumentOverview(
         String fileName,
         long chunkCount,
-        LocalDate lastUpdated
+        Long byteSize,
+        String contentFingerprint,
+        LocalDateTime lastUpdated
 ) {}
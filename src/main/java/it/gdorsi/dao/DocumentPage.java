@@ -0,0 +1,18 @@
+package it.gdorsi.dao;
+
+import java.util.List;
+
+/**
+ * Eine Seite der Dokumentenliste im Admin-Bereich.
+ */
+public record DocumentPage(
+        List<DocumentOverview> docs,
+        int page,
+        int size,
+        boolean hasNext
+) {
+
+    public boolean hasPrevious() {
+        return page > 0;
+    }
+}
@@ -0,0 +1,36 @@
+package it.gdorsi.dao;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ein Eintrag der Ingestion-Warteschlange (Tabelle ingestion_job) - ohne den PDF-Inhalt.
+ * Die Zeiten der einzelnen Stufen kommen 1:1 aus dem {@link PdfIngestResult}.
+ */
+public record IngestionJob(
+        long id,
+        String fileName,
+        Status status,
+        int attempts,
+        int maxAttempts,
+        String lastError,
+        Integer totalChunks,
+        Integer newChunks,
+        Integer skippedChunks,
+        Integer removedChunks,
+        Long durationMillis,
+        Long parseMillis,
+        Long embedMillis,
+        Long writeMillis,
+        LocalDateTime createdAt,
+        LocalDateTime startedAt,
+        LocalDateTime finishedAt
+) {
+
+    public enum Status {
+        QUEUED, RUNNING, DONE, FAILED
+    }
+
+    public boolean isFinished() {
+        return status == Status.DONE || status == Status.FAILED;
+    }
+}
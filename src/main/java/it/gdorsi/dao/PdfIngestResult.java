@@ -1,31 +1,34 @@
 package it.gdorsi.dao;
 
 /**
- * ein PDF wird in Chunks unterteilt, sollte ein Chung schon in der DB sein, dann wird daraus ein
- * updatet Chunk erzeugt.
- * Sonst wird ein neuer Chunk erzeugt. - das PDF hat sich dann wohl vergrößert...
+ * Ergebnis einer (Re-)Ingestion.
  * <p>
- * Hier ist das Szenario bei einem PDF, das von 10 auf 7 Chunks gekürzt wurde:
- * Chunks 0 bis 6: Werden per Upsert aktualisiert (updateCount steigt).
- * Chunks 7 bis 9: Diese IDs werden im neuen Durchlauf gar nicht mehr generiert. Sie bleiben mit dem alten Stand in der Datenbank liegen.
- * Das Problem: Die KI findet bei einer Suche dann sowohl die neuen Infos (0–6) als auch die veralteten „Leichen“ (7–9), was zu falschen Antworten führt.
- *  um die update funlktion zu erhalten
- * <p>
- *     Zwei-Phasen-Logik anwenden:
- *  Generiere alle neuen Chunks und deren IDs (ohne zu speichern).
- * Frage die DB: „Welche IDs von fileName existieren aktuell in der DB, die nicht in meiner neuen Liste sind?“ -> Lösche diese.
- * Führe den accept() für die neuen Chunks aus.
+ * Jeder Chunk bekommt eine ID aus SHA-256(Dateiname + Text), der Fingerprint steht zusätzlich in
+ * vector_store.content_fingerprint. Beim erneuten Einlesen gilt:
+ * - ID existiert schon: Chunk unverändert, wird weder embedded noch geschrieben (skippedChunks)
+ * - ID neu: Chunk neu oder geändert, geht an Ollama (newChunks)
+ * - IDs der Datei, die nicht mehr vorkommen: alte Stände ("Leichen") werden gelöscht (removedChunks)
  * <p>
+ * Ein geänderter Absatz zählt also als 1x new + 1x removed.
+ *
  * @param fileName
- * @param totalChunks
- * @param newChunks
- * @param updatedChunks
- * @param durationMillis
+ * @param totalChunks    Chunks laut Splitter
+ * @param newChunks      neu oder geändert - nur diese wurden embedded
+ * @param skippedChunks  unverändert, übersprungen
+ * @param removedChunks  verwaiste Chunks gelöscht
+ * @param durationMillis Wandzeit gesamt
+ * @param parseMillis    Tika lesen + Splitten
+ * @param embedMillis    Summe der Embedding-Zeit aller Batches (parallel, kann größer als die Wandzeit sein)
+ * @param writeMillis    Summe der Insert-Zeit nach pgvector
  */
 public record PdfIngestResult(
         String fileName,
         int totalChunks,
         int newChunks,
-        int updatedChunks,
-        long durationMillis
+        int skippedChunks,
+        int removedChunks,
+        long durationMillis,
+        long parseMillis,
+        long embedMillis,
+        long writeMillis
 ) {}
@@ -0,0 +1,41 @@
+package it.gdorsi.dao;
+
+import java.util.Map;
+
+/**
+ * Ergebnis eines Durchlaufs von XmlAnalyzer. Die Maps sind auf eine feste Anzahl Einträge begrenzt
+ * (gekappt = true, wenn es mehr verschiedene Namen/Pfade gab) - Zähler und Tiefe sind immer vollständig.
+ *
+ * @param wohlgeformt   vollständig geparst ohne Fehler
+ * @param fehler        Parserfehler mit Zeile/Spalte, sonst null; Statistiken gelten dann bis zu dieser Stelle
+ * @param deklaration   beginnt mit &lt;?xml ...?&gt;
+ * @param rootElement   Name des Wurzelelements, null wenn keins gefunden wurde
+ * @param pfade         Elementpfade ohne Positionen (/katalog/buch) in Dokumentreihenfolge mit Anzahl
+ * @param kanonischerHash SHA-256 über die kanonische Form (Namespace-URIs statt Präfixe, Attribute sortiert,
+ *                      Whitespace im Text zusammengefasst, ohne Kommentare/Deklaration); null wenn nicht wohlgeformt
+ */
+public record XmlAnalyse(
+        boolean wohlgeformt,
+        String fehler,
+        boolean deklaration,
+        String encoding,
+        String rootElement,
+        long zeichen,
+        long zeilen,
+        long elemente,
+        int maxTiefe,
+        long attribute,
+        long textZeichen,
+        long kommentare,
+        Map<String, String> namespaces,
+        Map<String, Long> elementNamen,
+        Map<String, Long> attributNamen,
+        Map<String, Long> pfade,
+        boolean gekappt,
+        String kanonischerHash
+) {
+
+    public boolean hatRootElement() {
+        return rootElement != null;
+    }
+}
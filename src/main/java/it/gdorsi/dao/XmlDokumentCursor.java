@@ -0,0 +1,35 @@
+package it.gdorsi.dao;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Keyset-Cursor für die XML-Liste: Position hinter der letzten gelieferten Zeile (created_at, id).
+ * <p>
+ * Nach außen nur als undurchsichtiger String ({@link #encode()}), damit Clients ihn nicht zusammenbauen.
+ */
+public record XmlDokumentCursor(LocalDateTime createdAt, long id) {
+
+    public static XmlDokumentCursor after(XmlDokumentUebersicht letzte) {
+        return new XmlDokumentCursor(letzte.createdAt(), letzte.id());
+    }
+
+    public String encode() {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException bei manipuliertem oder abgeschnittenem Cursor
+     */
+    public static XmlDokumentCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int trenner = raw.lastIndexOf('|');
+            return new XmlDokumentCursor(LocalDateTime.parse(raw.substring(0, trenner)), Long.parseLong(raw.substring(trenner + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Ungültiger Cursor: " + cursor, e);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package it.gdorsi.dao;
+
+import java.util.List;
+
+/**
+ * Eine Seite der XML-Liste (neueste zuerst).
+ *
+ * @param naechsterCursor für die Folgeseite, null auf der letzten Seite
+ */
+public record XmlDokumentSeite(
+        List<XmlDokumentUebersicht> dokumente,
+        String naechsterCursor
+) {
+
+    public boolean hasNext() {
+        return naechsterCursor != null;
+    }
+}
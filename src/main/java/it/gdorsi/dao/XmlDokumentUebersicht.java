@@ -0,0 +1,17 @@
+package it.gdorsi.dao;
+
+import java.time.LocalDateTime;
+
+/**
+ * Listen-Zeile für ein XML-Dokument - ohne Embedding und ohne vollständigen Inhalt.
+ *
+ * @param vorschau die ersten Zeichen des Inhalts (Länge bestimmt die Query)
+ */
+public record XmlDokumentUebersicht(
+        Long id,
+        String dateiname,
+        Long autorId,
+        String autorName,
+        String vorschau,
+        LocalDateTime createdAt
+) {}
@@ -0,0 +1,16 @@
+package it.gdorsi.dao;
+
+import java.time.LocalDateTime;
+
+/**
+ * Eine Zeile aus xslt_stylesheet.
+ *
+ * @param fingerprint SHA-256 von inhalt - Schlüssel für die kompilierten Templates
+ */
+public record XsltStylesheet(
+        Long id,
+        String name,
+        String inhalt,
+        String fingerprint,
+        LocalDateTime geaendertAm
+) {}
@@ -1,10 +1,13 @@
 package it.gdorsi.repository;
 
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import it.gdorsi.dao.AutorUebersicht;
 import it.gdorsi.repository.model.Autor;
 import jakarta.transaction.Transactional;
 
@@ -25,4 +28,12 @@ public interface AuthorRepository extends JpaRepository<Autor, Long> {
     );
 
     Autor findByName(String name);
+
+    // Listen ohne Embedding, Biografie nur angeschnitten
+    @Query("""
+            SELECT new it.gdorsi.dao.AutorUebersicht(a.id, a.name, substring(a.biografie, 1, :vorschauLaenge))
+            FROM Autor a
+            ORDER BY a.name
+            """)
+    List<AutorUebersicht> findUebersicht(@Param("vorschauLaenge") int vorschauLaenge);
 }
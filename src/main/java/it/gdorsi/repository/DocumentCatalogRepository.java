@@ -0,0 +1,60 @@
+package it.gdorsi.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import it.gdorsi.dao.DocumentOverview;
+
+/**
+ * Tabelle document_catalog (siehe Liquibase 010): eine Zeile pro eingelesenem PDF.
+ * Gepflegt von PdfIngestionService (upsert) und DocumentManagementService (delete).
+ */
+@Repository
+public class DocumentCatalogRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public DocumentCatalogRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void upsert(String fileName, int chunkCount, Long byteSize, String contentFingerprint) {
+        jdbcTemplate.update("""
+                INSERT INTO document_catalog (file_name, chunk_count, byte_size, content_fingerprint, last_ingested_at)
+                VALUES (?, ?, ?, ?, CURRENT_TIMESTAMP)
+                ON CONFLICT (file_name) DO UPDATE
+                SET chunk_count = EXCLUDED.chunk_count, byte_size = EXCLUDED.byte_size,
+                    content_fingerprint = EXCLUDED.content_fingerprint, last_ingested_at = EXCLUDED.last_ingested_at
+                """, fileName, chunkCount, byteSize, contentFingerprint);
+    }
+
+    public int deleteByFileNames(Collection<String> fileNames) {
+        if (fileNames.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.update("DELETE FROM document_catalog WHERE file_name = ANY(?)",
+                (Object) fileNames.toArray(new String[0]));
+    }
+
+    /**
+     * Sortiert über den Index idx_document_catalog_last_ingested.
+     */
+    public List<DocumentOverview> findPage(int offset, int limit) {
+        return jdbcTemplate.query("""
+                SELECT file_name, chunk_count, byte_size, content_fingerprint, last_ingested_at
+                FROM document_catalog
+                ORDER BY last_ingested_at DESC, file_name
+                OFFSET ? LIMIT ?
+                """, (rs, rowNum) -> new DocumentOverview(
+                rs.getString("file_name"),
+                rs.getLong("chunk_count"),
+                rs.getObject("byte_size", Long.class),
+                rs.getString("content_fingerprint"),
+                rs.getObject("last_ingested_at", LocalDateTime.class)
+        ), offset, limit);
+    }
+}
@@ -0,0 +1,59 @@
+package it.gdorsi.repository;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.pgvector.PGvector;
+
+/**
+ * Persistente Stufe des Embedding-Caches (Tabelle embedding_cache, siehe Liquibase 005).
+ * Der Key ist ein SHA-256 über Modell, Dimension und Text - der Text selbst wird nicht gespeichert.
+ */
+@Repository
+public class EmbeddingCacheRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public EmbeddingCacheRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public Map<String, float[]> findByKeys(List<String> cacheKeys) {
+        Map<String, float[]> result = new HashMap<>();
+        if (cacheKeys.isEmpty()) {
+            return result;
+        }
+        String sql = "SELECT cache_key, embedding::text AS embedding FROM embedding_cache WHERE cache_key = ANY(?)";
+        jdbcTemplate.query(sql, rs -> {
+            result.put(rs.getString("cache_key"), toArray(rs.getString("embedding")));
+        }, (Object) cacheKeys.toArray(new String[0]));
+        return result;
+    }
+
+    public void saveAll(Map<String, float[]> embeddings, String modelName, int dimensions) {
+        if (embeddings.isEmpty()) {
+            return;
+        }
+        List<Object[]> batchArgs = embeddings.entrySet().stream()
+                .map(e -> new Object[]{e.getKey(), modelName, dimensions, new PGvector(e.getValue())})
+                .toList();
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO embedding_cache (cache_key, model_name, dimensions, embedding)
+                VALUES (?, ?, ?, ?)
+                ON CONFLICT (cache_key) DO NOTHING
+                """, batchArgs);
+    }
+
+    private static float[] toArray(String vector) {
+        try {
+            return new PGvector(vector).toArray();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Ungültiger Vektor im embedding_cache", e);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package it.gdorsi.repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.pgvector.PgVectorFilterExpressionConverter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pgvector.PGvector;
+
+/**
+ * Die beiden Kandidaten-Quellen der hybriden Suche auf vector_store: KNN über embedding (Cosinus, wie der
+ * PgVectorStore) und Volltext über content_tsv (GIN-Index idx_vector_store_content_tsv).
+ * <p>
+ * Beide liefern fertige Documents mit der Cosinus-Ähnlichkeit als Score - auch reine Volltext-Treffer,
+ * damit Anzeige und similarityThreshold der Aufrufer gleich bleiben (der Threshold gilt für beide Quellen).
+ */
+@Repository
+public class HybridSearchRepository {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    // Wort samt innerer Verbinder, ohne Satzzeichen am Rand ("V-4711?" -> V-4711)
+    private static final Pattern TOKEN = Pattern.compile("[\\p{L}\\p{N}]+(?:[_:-]+[\\p{L}\\p{N}]+)*");
+    private static final Pattern BEZEICHNER = Pattern.compile("\\p{N}|[_:-]|\\p{Ll}\\p{Lu}");
+    private static final Pattern GROSS = Pattern.compile("\\p{Lu}{2,}");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PgVectorFilterExpressionConverter filterConverter = new PgVectorFilterExpressionConverter();
+
+    public HybridSearchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Nächste Nachbarn nach Cosinus-Distanz, gleiche Query-Form wie PgVectorStore (ORDER BY distance nutzt den HNSW-Index).
+     */
+    public List<Document> nearest(float[] embedding, int limit, double minSimilarity, Filter.Expression filter) {
+        PGvector vector = new PGvector(embedding);
+        return jdbcTemplate.query("""
+                SELECT id, content, metadata, embedding <=> ? AS distance
+                FROM vector_store
+                WHERE embedding <=> ? < ?%s
+                ORDER BY distance
+                LIMIT ?
+                """.formatted(filterSql(filter)),
+                DOCUMENT_MAPPER, vector, vector, 1 - minSimilarity, limit);
+    }
+
+    /**
+     * Volltext-Treffer nach ts_rank_cd, nur für bezeichnerartige Suchbegriffe (siehe {@link #suchbegriffe}).
+     * content_tsv nutzt 'simple' ohne Stoppwörter - ganze Fragen ODER-verknüpft würden über "der", "ist", "im"
+     * fast jeden Chunk treffen und die Vektor-Treffer in der Fusion verdrängen. Die Begriffe selbst werden
+     * ODER-verknüpft, innerhalb eines Begriffs (V-4711 -> 'v-4711' & 'v' & '4711') gilt UND.
+     */
+    public List<Document> fulltext(String query, float[] embedding, int limit, double minSimilarity,
+                                   Filter.Expression filter) {
+        List<String> begriffe = suchbegriffe(query);
+        if (begriffe.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Document> hits = jdbcTemplate.query("""
+                WITH q AS (
+                    SELECT string_agg('(' || plainto_tsquery('simple', t)::text || ')', ' | ')::tsquery AS query
+                    FROM unnest(?::text[]) AS t
+                    WHERE numnode(plainto_tsquery('simple', t)) > 0
+                )
+                SELECT id, content, metadata, embedding <=> ? AS distance
+                FROM vector_store, q
+                WHERE content_tsv @@ q.query%s
+                ORDER BY ts_rank_cd(content_tsv, q.query) DESC
+                LIMIT ?
+                """.formatted(filterSql(filter)),
+                DOCUMENT_MAPPER, begriffe.toArray(new String[0]), new PGvector(embedding), limit);
+        // nicht im SQL: eine zweite Bedingung auf embedding würde den Planer vom GIN-Index weglocken
+        hits.removeIf(doc -> doc.getScore() < minSimilarity);
+        return hits;
+    }
+
+    /**
+     * Begriffe, bei denen die Vektorsuche schwächelt: mit Ziffer (V-4711, 2024), Unterstrich, Bindestrich oder
+     * Doppelpunkt (vertrags_nr, xs:element), camelCase (lieferAdresse) oder durchgehend groß (IBAN, AGB).
+     * Normale Wörter deckt die Vektorsuche ab - im Deutschen ist Großschreibung kein Hinweis auf Eigennamen.
+     */
+    static List<String> suchbegriffe(String query) {
+        Set<String> begriffe = new LinkedHashSet<>();
+        Matcher matcher = TOKEN.matcher(query);
+        while (matcher.find()) {
+            String token = matcher.group();
+            if (BEZEICHNER.matcher(token).find() || GROSS.matcher(token).matches()) {
+                begriffe.add(token);
+            }
+        }
+        return new ArrayList<>(begriffe);
+    }
+
+    private String filterSql(Filter.Expression filter) {
+        if (filter == null) {
+            return "";
+        }
+        // identisch zu PgVectorStore.doSimilaritySearch
+        return " AND metadata::jsonb @@ '" + filterConverter.convertExpression(filter) + "'::jsonpath";
+    }
+
+    private static final RowMapper<Document> DOCUMENT_MAPPER = (ResultSet rs, int rowNum) -> Document.builder()
+            .id(rs.getString("id"))
+            .text(rs.getString("content"))
+            .metadata(toMap(rs.getString("metadata")))
+            .score(1.0 - rs.getDouble("distance"))
+            .build();
+
+    private static Map<String, Object> toMap(String json) throws SQLException {
+        if (json == null || json.isBlank()) {
+            return new HashMap<>();
+        }
+        try {
+            return objectMapper.readValue(json, METADATA_TYPE);
+        } catch (JsonProcessingException e) {
+            throw new SQLException("Metadaten in vector_store nicht lesbar", e);
+        }
+    }
+}
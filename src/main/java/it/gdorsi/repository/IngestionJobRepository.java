@@ -0,0 +1,170 @@
+package it.gdorsi.repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import it.gdorsi.dao.IngestionJob;
+import it.gdorsi.dao.PdfIngestResult;
+
+/**
+ * Postgres als Queue: Jobs werden mit FOR UPDATE SKIP LOCKED geclaimt,
+ * damit mehrere Worker (auch mehrere Instanzen) sich nicht in die Quere kommen.
+ * <p>
+ * Laufende Jobs tragen eine Lease (locked_by, locked_until), die ihre Instanz verlängert. Nur Jobs mit abgelaufener
+ * Lease gelten als verwaist und werden neu eingereiht.
+ */
+@Repository
+public class IngestionJobRepository {
+
+    private static final String JOB_COLUMNS = """
+            id, file_name, status, attempts, max_attempts, last_error,
+            total_chunks, new_chunks, skipped_chunks, removed_chunks,
+            duration_millis, parse_millis, embed_millis, write_millis,
+            created_at, started_at, finished_at
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public IngestionJobRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public long enqueue(String fileName, byte[] content, int maxAttempts) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(con -> {
+            var ps = con.prepareStatement(
+                    "INSERT INTO ingestion_job (file_name, content, status, max_attempts) VALUES (?, ?, 'QUEUED', ?)",
+                    new String[]{"id"});
+            ps.setString(1, fileName);
+            ps.setBytes(2, content);
+            ps.setInt(3, maxAttempts);
+            return ps;
+        }, keyHolder);
+        return keyHolder.getKey().longValue();
+    }
+
+    /**
+     * Holt bis zu {@code limit} fällige Jobs und setzt sie atomar auf RUNNING, mit Lease für {@code owner}.
+     */
+    public List<IngestionJob> claim(int limit, String owner, Duration lease) {
+        return jdbcTemplate.query("""
+                UPDATE ingestion_job
+                SET status = 'RUNNING', attempts = attempts + 1, started_at = now(), last_error = NULL,
+                    locked_by = ?, locked_until = now() + ? * interval '1 millisecond'
+                WHERE id IN (
+                    SELECT id FROM ingestion_job
+                    WHERE status = 'QUEUED' AND next_attempt_at <= now()
+                    ORDER BY id
+                    LIMIT ?
+                    FOR UPDATE SKIP LOCKED)
+                RETURNING
+                """ + JOB_COLUMNS, this::mapJob, owner, lease.toMillis(), limit);
+    }
+
+    public byte[] findContent(long id) {
+        return jdbcTemplate.queryForObject("SELECT content FROM ingestion_job WHERE id = ?", byte[].class, id);
+    }
+
+    public Optional<IngestionJob> findById(long id) {
+        return jdbcTemplate.query("SELECT " + JOB_COLUMNS + " FROM ingestion_job WHERE id = ?", this::mapJob, id)
+                .stream().findFirst();
+    }
+
+    /**
+     * Schließt den Job nur ab, solange {@code owner} ihn noch hält - nach abgelaufener Lease gehört er womöglich
+     * schon einem anderen Worker.
+     *
+     * @return false, wenn die Lease verloren war und nichts geändert wurde
+     */
+    public boolean markDone(long id, String owner, PdfIngestResult result) {
+        return jdbcTemplate.update("""
+                UPDATE ingestion_job
+                SET status = 'DONE', content = NULL, finished_at = now(), locked_by = NULL, locked_until = NULL,
+                    total_chunks = ?, new_chunks = ?, skipped_chunks = ?, removed_chunks = ?,
+                    duration_millis = ?, parse_millis = ?, embed_millis = ?, write_millis = ?
+                WHERE id = ? AND locked_by = ? AND status = 'RUNNING'
+                """, result.totalChunks(), result.newChunks(), result.skippedChunks(), result.removedChunks(),
+                result.durationMillis(), result.parseMillis(), result.embedMillis(), result.writeMillis(),
+                id, owner) > 0;
+    }
+
+    /**
+     * Noch Versuche übrig: zurück in die Queue (mit Backoff), sonst FAILED. Wie {@link #markDone} nur mit Lease.
+     *
+     * @return false, wenn die Lease verloren war und nichts geändert wurde
+     */
+    public boolean markFailed(long id, String owner, String error, Duration backoff) {
+        return jdbcTemplate.update("""
+                UPDATE ingestion_job
+                SET last_error = ?, locked_by = NULL, locked_until = NULL,
+                    status = CASE WHEN attempts < max_attempts THEN 'QUEUED' ELSE 'FAILED' END,
+                    next_attempt_at = now() + (? * attempts) * interval '1 millisecond',
+                    finished_at = CASE WHEN attempts < max_attempts THEN NULL ELSE now() END
+                WHERE id = ? AND locked_by = ? AND status = 'RUNNING'
+                """, error, backoff.toMillis(), id, owner) > 0;
+    }
+
+    /**
+     * Verlängert die Leases aller Jobs, die {@code owner} gerade verarbeitet.
+     */
+    public int renewLeases(String owner, Duration lease) {
+        return jdbcTemplate.update("""
+                UPDATE ingestion_job SET locked_until = now() + ? * interval '1 millisecond'
+                WHERE status = 'RUNNING' AND locked_by = ?
+                """, lease.toMillis(), owner);
+    }
+
+    /**
+     * Nach einem Absturz hängen Jobs auf RUNNING, ihre Lease verlängert niemand mehr - wieder einreihen.
+     * Jobs ohne Lease stammen aus der Zeit vor Liquibase 016. Der Versuch ist verbraucht (claim hat attempts
+     * erhöht): ohne Versuche übrig wird der Job wie in {@link #markFailed} FAILED, sonst läuft er endlos weiter,
+     * wenn er den Worker jedes Mal abstürzen lässt.
+     */
+    public int requeueExpired() {
+        return jdbcTemplate.update("""
+                UPDATE ingestion_job
+                SET locked_by = NULL, locked_until = NULL,
+                    status = CASE WHEN attempts < max_attempts THEN 'QUEUED' ELSE 'FAILED' END,
+                    finished_at = CASE WHEN attempts < max_attempts THEN NULL ELSE now() END,
+                    last_error = CASE WHEN attempts < max_attempts THEN last_error
+                                      ELSE 'Lease abgelaufen, keine Versuche mehr übrig' END
+                WHERE status = 'RUNNING' AND (locked_until IS NULL OR locked_until < now())
+                """);
+    }
+
+    private IngestionJob mapJob(ResultSet rs, int rowNum) throws SQLException {
+        return new IngestionJob(
+                rs.getLong("id"),
+                rs.getString("file_name"),
+                IngestionJob.Status.valueOf(rs.getString("status")),
+                rs.getInt("attempts"),
+                rs.getInt("max_attempts"),
+                rs.getString("last_error"),
+                rs.getObject("total_chunks", Integer.class),
+                rs.getObject("new_chunks", Integer.class),
+                rs.getObject("skipped_chunks", Integer.class),
+                rs.getObject("removed_chunks", Integer.class),
+                rs.getObject("duration_millis", Long.class),
+                rs.getObject("parse_millis", Long.class),
+                rs.getObject("embed_millis", Long.class),
+                rs.getObject("write_millis", Long.class),
+                toLocalDateTime(rs.getTimestamp("created_at")),
+                toLocalDateTime(rs.getTimestamp("started_at")),
+                toLocalDateTime(rs.getTimestamp("finished_at"))
+        );
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+}
@@ -0,0 +1,79 @@
+package it.gdorsi.repository;
+
+import java.sql.Array;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.pgvector.PGvector;
+
+import it.gdorsi.dao.CachedAnswer;
+
+/**
+ * Tabelle semantic_response_cache (siehe Liquibase 008).
+ */
+@Repository
+public class SemanticCacheRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SemanticCacheRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Nächster Nachbar im gleichen Scope, die Schwelle prüft der Aufrufer.
+     */
+    public Optional<CachedAnswer> findNearest(String scope, float[] embedding, Duration ttl) {
+        PGvector vector = new PGvector(embedding);
+        List<CachedAnswer> result = jdbcTemplate.query("""
+                SELECT id, question, answer, sources, created_at, 1 - (embedding <=> ?) AS similarity
+                FROM semantic_response_cache
+                WHERE scope = ? AND created_at > ?
+                ORDER BY embedding <=> ?
+                LIMIT 1
+                """, (rs, rowNum) -> {
+            Array sources = rs.getArray("sources");
+            return new CachedAnswer(
+                    rs.getLong("id"),
+                    rs.getString("question"),
+                    rs.getString("answer"),
+                    sources != null ? List.of((String[]) sources.getArray()) : List.of(),
+                    rs.getDouble("similarity"),
+                    rs.getObject("created_at", LocalDateTime.class));
+        }, vector, scope, Timestamp.valueOf(LocalDateTime.now().minus(ttl)), vector);
+        return result.stream().findFirst();
+    }
+
+    public void save(String scope, String questionHash, String question, String answer, float[] embedding,
+                     Collection<String> sources) {
+        jdbcTemplate.update("""
+                INSERT INTO semantic_response_cache (scope, question_hash, question, answer, embedding, sources)
+                VALUES (?, ?, ?, ?, ?, ?)
+                ON CONFLICT (scope, question_hash) DO UPDATE
+                SET answer = EXCLUDED.answer, embedding = EXCLUDED.embedding, sources = EXCLUDED.sources,
+                    hit_count = 0, created_at = CURRENT_TIMESTAMP, last_hit_at = NULL
+                """, scope, questionHash, question, answer, new PGvector(embedding), sources.toArray(new String[0]));
+    }
+
+    public void recordHit(Long id) {
+        jdbcTemplate.update("UPDATE semantic_response_cache SET hit_count = hit_count + 1, last_hit_at = CURRENT_TIMESTAMP WHERE id = ?", id);
+    }
+
+    /**
+     * Löscht alle Antworten, die sich auf mindestens eine der Quellen stützen.
+     */
+    public int deleteBySources(Collection<String> sources) {
+        if (sources.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.update("DELETE FROM semantic_response_cache WHERE sources && ?::text[]",
+                (Object) sources.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,155 @@
+package it.gdorsi.repository;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.springframework.ai.document.Document;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pgvector.PGvector;
+
+import it.gdorsi.repository.model.type.PgVectorCodec;
+import it.gdorsi.service.util.ContentHash;
+
+/**
+ * Direkter Zugriff auf die Tabelle vector_store (gleiches Schema wie der PgVectorStore von Spring AI).
+ * Wird genutzt, wenn wir die Embeddings selbst berechnen (Pipeline) und der Store sie nicht nochmal
+ * erzeugen soll.
+ */
+@Repository
+public class VectorStoreChunkRepository {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public VectorStoreChunkRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Upsert wie PgVectorStore.doAdd - nur mit fertigen Vektoren.
+     */
+    public void upsert(List<Document> documents, List<float[]> embeddings) {
+        if (documents.size() != embeddings.size()) {
+            throw new IllegalArgumentException("Anzahl Dokumente und Embeddings passt nicht zusammen");
+        }
+        List<Object[]> batchArgs = new java.util.ArrayList<>(documents.size());
+        for (int i = 0; i < documents.size(); i++) {
+            Document doc = documents.get(i);
+            batchArgs.add(new Object[]{
+                    UUID.fromString(doc.getId()),
+                    doc.getText(),
+                    toJson(doc.getMetadata()),
+                    new PGvector(embeddings.get(i)),
+                    ContentHash.sha256Hex(doc.getText())
+            });
+        }
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO vector_store (id, content, metadata, embedding, content_fingerprint)
+                VALUES (?, ?, ?::jsonb, ?, ?)
+                ON CONFLICT (id) DO UPDATE
+                SET content = EXCLUDED.content, metadata = EXCLUDED.metadata, embedding = EXCLUDED.embedding,
+                    content_fingerprint = EXCLUDED.content_fingerprint
+                """, batchArgs);
+    }
+
+    /**
+     * IDs, deren Zeile schon einen Fingerprint hat - also mit genau diesem Inhalt geschrieben wurde.
+     * Zeilen von vor der Fingerprint-Spalte zählen nicht und werden neu geschrieben.
+     */
+    public Set<String> findFingerprintedIds(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return new HashSet<>();
+        }
+        return new HashSet<>(jdbcTemplate.query(
+                "SELECT id FROM vector_store WHERE id = ANY(?::uuid[]) AND content_fingerprint IS NOT NULL",
+                (rs, rowNum) -> rs.getString("id"),
+                (Object) ids.toArray(new String[0])));
+    }
+
+    /**
+     * Vorhandene Embeddings (mit Fingerprint, also zum gespeicherten Inhalt passend) - spart Ollama-Aufrufe
+     * für Chunks, die sich nicht geändert haben.
+     */
+    public Map<String, float[]> findEmbeddings(Collection<String> ids) {
+        Map<String, float[]> embeddings = new HashMap<>();
+        if (ids.isEmpty()) {
+            return embeddings;
+        }
+        jdbcTemplate.query("""
+                SELECT id, embedding::text AS embedding FROM vector_store
+                WHERE id = ANY(?::uuid[]) AND content_fingerprint IS NOT NULL
+                """, rs -> {
+            embeddings.put(rs.getString("id"), PgVectorCodec.parse(rs.getString("embedding")));
+        }, (Object) ids.toArray(new String[0]));
+        return embeddings;
+    }
+
+    /**
+     * Löscht alle Chunks einer Datei, die nicht mehr zum aktuellen Stand gehören ("Leichen").
+     */
+    public int deleteByFileNameExcept(String fileName, Collection<String> keepIds) {
+        return jdbcTemplate.update("""
+                DELETE FROM vector_store WHERE metadata->>'file_name' = ? AND NOT (id = ANY(?::uuid[]))
+                """, fileName, (Object) keepIds.toArray(new String[0]));
+    }
+
+    /**
+     * Löscht alle Chunks der angegebenen Dateien in einem Statement (Index idx_vector_store_file_name).
+     *
+     * @return gelöschte Chunks pro Datei, Dateien ohne Chunks fehlen in der Map
+     */
+    public Map<String, Integer> deleteByFileNames(Collection<String> fileNames) {
+        Map<String, Integer> deleted = new LinkedHashMap<>();
+        if (fileNames.isEmpty()) {
+            return deleted;
+        }
+        jdbcTemplate.query("""
+                WITH deleted AS (
+                    DELETE FROM vector_store WHERE metadata->>'file_name' = ANY(?)
+                    RETURNING metadata->>'file_name' AS file_name
+                )
+                SELECT file_name, count(*) AS chunks FROM deleted GROUP BY file_name
+                """, rs -> {
+            deleted.put(rs.getString("file_name"), rs.getInt("chunks"));
+        }, (Object) fileNames.toArray(new String[0]));
+        return deleted;
+    }
+
+    /**
+     * Löscht die Chunks eines XML-Dokuments, die nach einer Änderung nicht mehr vorkommen (Index idx_vector_store_xml_id).
+     */
+    public int deleteByXmlIdExcept(Long xmlId, String autorName, Collection<String> keepIds) {
+        return jdbcTemplate.update("""
+                DELETE FROM vector_store
+                WHERE metadata->>'xml_id' = ? AND metadata->>'autor_name' = ? AND NOT (id = ANY(?::uuid[]))
+                """, xmlId.toString(), autorName, (Object) keepIds.toArray(new String[0]));
+    }
+
+    /**
+     * Löscht die Chunks eines XML-Dokuments (Index idx_vector_store_xml_id).
+     */
+    public int deleteByXmlId(Long xmlId, String autorName) {
+        return jdbcTemplate.update(
+                "DELETE FROM vector_store WHERE metadata->>'xml_id' = ? AND metadata->>'autor_name' = ?",
+                xmlId.toString(), autorName);
+    }
+
+    private static String toJson(Map<String, Object> metadata) {
+        try {
+            return objectMapper.writeValueAsString(metadata);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Metadaten nicht serialisierbar", e);
+        }
+    }
+}
@@ -15,6 +15,8 @@ public interface VertragRepository extends JpaRepository<Vertrag, Long> {
 
     // KI-Suche: Findet die ähnlichsten Verträge basierend auf dem Vektor (pgvector)
     // <=> ist der Cosinus-Ähnlichkeits-Operator von pgvector
+    // Nutzt den HNSW/IVFFlat-Index idx_vertrag_vertrag_embedding_ann - nur über VectorSearchTuning.tuned(limit, ...)
+    // aufrufen (siehe VertragTool), damit ef_search/probes passen
     @Query(value = "SELECT * FROM vertrag ORDER BY vertrag_embedding <=> cast(:vector as vector) LIMIT :limit", nativeQuery = true)
     List<Vertrag> findSimilarContracts(@Param("vector") float[] vector, @Param("limit") int limit);
 
@@ -1,9 +1,17 @@
 package it.gdorsi.repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import it.gdorsi.dao.XmlDokumentUebersicht;
 import it.gdorsi.repository.model.Autor;
 import it.gdorsi.repository.model.XmlDokument;
 
@@ -14,8 +22,50 @@ public interface XmlDokumentRepository extends JpaRepository<XmlDokument, Long>
     List<XmlDokument> findByAutor(Autor autor);
 
     void deleteByAutorId(Long autorId);
+
+    boolean existsByIdAndAutorId(Long id, Long autorId);
+
+    // Listen: nur die ersten vorschauLaenge Zeichen von inhalt, kein Embedding - Größe hängt an der Zeilenzahl.
+    // Komprimierte Dokumente liefern ihren unkomprimierten Anfang (höchstens XmlDokument.ANFANG_ZEICHEN)
+    String UEBERSICHT = """
+            SELECT new it.gdorsi.dao.XmlDokumentUebersicht(x.id, x.dateiname, a.id, a.name,
+                   substring(coalesce(x.inhalt, x.inhaltAnfang), 1, :vorschauLaenge), x.createdAt)
+            FROM XmlDokument x JOIN x.autor a
+            """;
+
+    String NEUESTE_ZUERST = " ORDER BY x.createdAt DESC, x.id DESC";
+
+    /*
+     * Keyset-Pagination: eine Query pro Seite, Autor per JOIN statt pro Zeile, kein OFFSET.
+     * Pageable immer mit Seite 0 - die Position steckt im Cursor (createdAt, id); Slice holt eine Zeile mehr für hasNext.
+     */
+    @Query(UEBERSICHT + NEUESTE_ZUERST)
+    Slice<XmlDokumentUebersicht> findSeite(@Param("vorschauLaenge") int vorschauLaenge, Pageable pageable);
+
+    @Query(UEBERSICHT + " WHERE (x.createdAt, x.id) < (:createdAt, :id)" + NEUESTE_ZUERST)
+    Slice<XmlDokumentUebersicht> findSeiteNach(@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id,
+                                               @Param("vorschauLaenge") int vorschauLaenge, Pageable pageable);
+
+    @Query(UEBERSICHT + " WHERE a.id = :autorId" + NEUESTE_ZUERST)
+    Slice<XmlDokumentUebersicht> findSeiteVonAutor(@Param("autorId") Long autorId,
+                                                   @Param("vorschauLaenge") int vorschauLaenge, Pageable pageable);
+
+    @Query(UEBERSICHT + " WHERE a.id = :autorId AND (x.createdAt, x.id) < (:createdAt, :id)" + NEUESTE_ZUERST)
+    Slice<XmlDokumentUebersicht> findSeiteVonAutorNach(@Param("autorId") Long autorId,
+                                                       @Param("createdAt") LocalDateTime createdAt, @Param("id") Long id,
+                                                       @Param("vorschauLaenge") int vorschauLaenge, Pageable pageable);
+
+    // Treffer einer Suche in einem Roundtrip nachladen, Reihenfolge legt der Aufrufer fest
+    @Query(UEBERSICHT + " WHERE x.id IN :ids")
+    List<XmlDokumentUebersicht> findUebersichtByIds(@Param("ids") Collection<Long> ids,
+                                                    @Param("vorschauLaenge") int vorschauLaenge);
+
+    // nur der Text, ohne Entity und Embedding - für Auswertungen außerhalb der Session (eigene Threads).
+    // Leer auch bei komprimierten Dokumenten, die liest XmlKompression#ladeInhalt
+    @Query("SELECT x.inhalt FROM XmlDokument x WHERE x.id = :id")
+    Optional<String> findInhaltById(@Param("id") Long id);
     
-    default java.util.Optional<XmlDokument> findByAutorNameAndId(String autorName, Long xmlId) {
+    default Optional<XmlDokument> findByAutorNameAndId(String autorName, Long xmlId) {
         // Diese Methode muss in der Service-Implementierung überschrieben werden
         // oder wir müssen eine Query-Methode hinzufügen
         throw new UnsupportedOperationException("Methode nicht implementiert");
@@ -0,0 +1,150 @@
+package it.gdorsi.repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import it.gdorsi.dao.XmlAnalyse;
+
+/**
+ * Tabelle xml_struktur_profil (siehe Liquibase 013): die {@link XmlAnalyse} eines XML-Dokuments, berechnet beim
+ * Speichern. Analyse, Validierung und Vergleich lesen nur diese Zeile und lassen inhalt ungeladen.
+ * Beim Löschen eines Dokuments räumt der Fremdschlüssel (ON DELETE CASCADE) das Profil mit ab.
+ */
+@Repository
+public class XmlStrukturProfilRepository {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final TypeReference<LinkedHashMap<String, Long>> ZAEHLER = new TypeReference<>() {};
+    private static final TypeReference<LinkedHashMap<String, String>> NAMESPACES = new TypeReference<>() {};
+
+    private static final String SPALTEN = """
+            xml_id, wohlgeformt, fehler, deklaration, encoding, root_element, zeichen, zeilen, elemente, max_tiefe,
+            attribute, text_zeichen, kommentare, namespaces, element_namen, attribut_namen, pfade, gekappt,
+            kanonischer_hash
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public XmlStrukturProfilRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void upsert(Long xmlId, XmlAnalyse analyse) {
+        jdbcTemplate.update("INSERT INTO xml_struktur_profil (" + SPALTEN + """
+                ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?::json, ?::json, ?::json, ?::json, ?, ?)
+                ON CONFLICT (xml_id) DO UPDATE
+                SET wohlgeformt = EXCLUDED.wohlgeformt, fehler = EXCLUDED.fehler, deklaration = EXCLUDED.deklaration,
+                    encoding = EXCLUDED.encoding, root_element = EXCLUDED.root_element, zeichen = EXCLUDED.zeichen,
+                    zeilen = EXCLUDED.zeilen, elemente = EXCLUDED.elemente, max_tiefe = EXCLUDED.max_tiefe,
+                    attribute = EXCLUDED.attribute, text_zeichen = EXCLUDED.text_zeichen,
+                    kommentare = EXCLUDED.kommentare, namespaces = EXCLUDED.namespaces,
+                    element_namen = EXCLUDED.element_namen, attribut_namen = EXCLUDED.attribut_namen,
+                    pfade = EXCLUDED.pfade, gekappt = EXCLUDED.gekappt, kanonischer_hash = EXCLUDED.kanonischer_hash,
+                    analysiert_am = CURRENT_TIMESTAMP
+                """,
+                xmlId, analyse.wohlgeformt(), analyse.fehler(), analyse.deklaration(), analyse.encoding(),
+                analyse.rootElement(), analyse.zeichen(), analyse.zeilen(), analyse.elemente(), analyse.maxTiefe(),
+                analyse.attribute(), analyse.textZeichen(), analyse.kommentare(),
+                toJson(analyse.namespaces()), toJson(analyse.elementNamen()), toJson(analyse.attributNamen()),
+                toJson(analyse.pfade()), analyse.gekappt(), analyse.kanonischerHash());
+    }
+
+    public Optional<XmlAnalyse> findById(Long xmlId) {
+        return jdbcTemplate.query("SELECT " + SPALTEN + " FROM xml_struktur_profil WHERE xml_id = ?",
+                (rs, rowNum) -> map(rs), xmlId).stream().findFirst();
+    }
+
+    /**
+     * Profile mehrerer Dokumente in einer Query; Dokumente ohne Profil fehlen in der Map.
+     */
+    public Map<Long, XmlAnalyse> findByIds(Collection<Long> xmlIds) {
+        Map<Long, XmlAnalyse> profile = new HashMap<>();
+        if (xmlIds.isEmpty()) {
+            return profile;
+        }
+        jdbcTemplate.query("SELECT " + SPALTEN + " FROM xml_struktur_profil WHERE xml_id = ANY(?)", rs -> {
+            profile.put(rs.getLong("xml_id"), map(rs));
+        }, (Object) xmlIds.toArray(new Long[0]));
+        return profile;
+    }
+
+    /**
+     * Dokumente, die noch kein Profil haben (gespeichert vor Liquibase 013), aufsteigend nach ID.
+     */
+    public List<Long> findXmlIdsOhneProfil(Long nachId, int limit) {
+        return jdbcTemplate.queryForList("""
+                SELECT x.id FROM xml_dokument x
+                WHERE x.id > ? AND NOT EXISTS (SELECT 1 FROM xml_struktur_profil p WHERE p.xml_id = x.id)
+                ORDER BY x.id
+                LIMIT ?
+                """, Long.class, nachId, limit);
+    }
+
+    /**
+     * Profile wohlgeformter Dokumente mit diesem Root-Element (qualifizierter Name), neueste zuerst -
+     * Stichprobe fürs Training der Kompressions-Wörterbücher.
+     */
+    public Map<Long, XmlAnalyse> findByRootElement(String rootElement, int limit) {
+        Map<Long, XmlAnalyse> profile = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT " + SPALTEN + """
+                FROM xml_struktur_profil
+                WHERE root_element = ? AND wohlgeformt
+                ORDER BY xml_id DESC
+                LIMIT ?
+                """, rs -> {
+            profile.put(rs.getLong("xml_id"), map(rs));
+        }, rootElement, limit);
+        return profile;
+    }
+
+    private static XmlAnalyse map(ResultSet rs) throws SQLException {
+        return new XmlAnalyse(
+                rs.getBoolean("wohlgeformt"),
+                rs.getString("fehler"),
+                rs.getBoolean("deklaration"),
+                rs.getString("encoding"),
+                rs.getString("root_element"),
+                rs.getLong("zeichen"),
+                rs.getLong("zeilen"),
+                rs.getLong("elemente"),
+                rs.getInt("max_tiefe"),
+                rs.getLong("attribute"),
+                rs.getLong("text_zeichen"),
+                rs.getLong("kommentare"),
+                fromJson(rs.getString("namespaces"), NAMESPACES),
+                fromJson(rs.getString("element_namen"), ZAEHLER),
+                fromJson(rs.getString("attribut_namen"), ZAEHLER),
+                fromJson(rs.getString("pfade"), ZAEHLER),
+                rs.getBoolean("gekappt"),
+                rs.getString("kanonischer_hash"));
+    }
+
+    private static String toJson(Map<String, ?> map) {
+        try {
+            return objectMapper.writeValueAsString(map);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Strukturprofil nicht serialisierbar", e);
+        }
+    }
+
+    private static <T> T fromJson(String json, TypeReference<T> type) throws SQLException {
+        try {
+            return objectMapper.readValue(json, type);
+        } catch (JsonProcessingException e) {
+            throw new SQLException("Strukturprofil nicht lesbar: " + e.getOriginalMessage(), e);
+        }
+    }
+}
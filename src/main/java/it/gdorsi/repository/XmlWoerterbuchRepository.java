@@ -0,0 +1,13 @@
+package it.gdorsi.repository;
+
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import it.gdorsi.repository.model.XmlWoerterbuch;
+
+public interface XmlWoerterbuchRepository extends JpaRepository<XmlWoerterbuch, Long> {
+
+    // neueste Version gewinnt, ältere bleiben für die Dokumente, die damit gepackt sind
+    Optional<XmlWoerterbuch> findFirstBySchemaSchluesselOrderByIdDesc(String schemaSchluessel);
+}
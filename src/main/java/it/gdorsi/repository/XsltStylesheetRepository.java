@@ -0,0 +1,56 @@
+package it.gdorsi.repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import it.gdorsi.dao.XsltStylesheet;
+import it.gdorsi.service.util.ContentHash;
+
+/**
+ * Tabelle xslt_stylesheet (siehe Liquibase 014): benannte Stylesheets für transformXml.
+ */
+@Repository
+public class XsltStylesheetRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public XsltStylesheetRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public XsltStylesheet upsert(String name, String inhalt) {
+        return jdbcTemplate.queryForObject("""
+                INSERT INTO xslt_stylesheet (name, inhalt, fingerprint, geaendert_am)
+                VALUES (?, ?, ?, CURRENT_TIMESTAMP)
+                ON CONFLICT (name) DO UPDATE
+                SET inhalt = EXCLUDED.inhalt, fingerprint = EXCLUDED.fingerprint, geaendert_am = EXCLUDED.geaendert_am
+                RETURNING id, name, inhalt, fingerprint, geaendert_am
+                """, (rs, rowNum) -> map(rs), name, inhalt, ContentHash.sha256Hex(inhalt));
+    }
+
+    public Optional<XsltStylesheet> findByName(String name) {
+        return jdbcTemplate.query(
+                "SELECT id, name, inhalt, fingerprint, geaendert_am FROM xslt_stylesheet WHERE name = ?",
+                (rs, rowNum) -> map(rs), name).stream().findFirst();
+    }
+
+    /** Nur die Namen, für Hinweise im Tool - inhalt bleibt in der DB */
+    public List<String> findAllNames() {
+        return jdbcTemplate.queryForList("SELECT name FROM xslt_stylesheet ORDER BY name", String.class);
+    }
+
+    private static XsltStylesheet map(ResultSet rs) throws SQLException {
+        return new XsltStylesheet(
+                rs.getLong("id"),
+                rs.getString("name"),
+                rs.getString("inhalt"),
+                rs.getString("fingerprint"),
+                rs.getObject("geaendert_am", LocalDateTime.class));
+    }
+}
@@ -1,8 +1,10 @@
 package it.gdorsi.repository.model;
 
 
+import jakarta.persistence.Basic;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
@@ -25,6 +27,8 @@ public class Autor {
     private String biografie;
 
     // Das Feld für die semantische Repräsentation der Bio oder Expertise
+    // Lazy: wird erst beim ersten Zugriff geladen (Bytecode-Enhancement, siehe pom.xml)
+    @Basic(fetch = FetchType.LAZY)
     @Column(columnDefinition = "vector(1024)") // Dimension abhängig vom Modell - nicht ändern!
     @Type(NullSafeVectorType.class) // Custom Type für NULL-sichere Vector-Verarbeitung
     private float[] authorEmbedding = new float[0];
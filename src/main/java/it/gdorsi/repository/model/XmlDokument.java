@@ -1,7 +1,9 @@
 package it.gdorsi.repository.model;
 
+import jakarta.persistence.Basic;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
@@ -10,28 +12,58 @@ import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
 import jakarta.persistence.PrePersist;
 
+import org.hibernate.annotations.LazyGroup;
+
 import it.gdorsi.repository.model.type.NullSafeVectorType;
+import it.gdorsi.service.util.DeflateCodec;
 
+import java.io.Reader;
+import java.io.StringReader;
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "xml_dokument")
 public class XmlDokument {
 
+    /** So viel Text bleibt bei komprimierten Dokumenten unkomprimiert für Vorschauen (Listen, Suchtreffer) */
+    public static final int ANFANG_ZEICHEN = 1000;
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
     private String dateiname;
 
+    // inhalt und Embedding werden erst beim ersten Zugriff geladen (Bytecode-Enhancement, siehe pom.xml),
+    // jeweils in eigener Gruppe: wer den Text liest, lädt nicht auch noch 1024 Floats mit
+    @Basic(fetch = FetchType.LAZY)
+    @LazyGroup("inhalt")
     @Column(columnDefinition = "TEXT")
     private String inhalt;
 
+    // komprimiert (Liquibase 015): inhalt ist dann null, getInhalt() entpackt transparent
+    @Basic(fetch = FetchType.LAZY)
+    @LazyGroup("inhalt")
+    @Column(name = "inhalt_komprimiert")
+    private byte[] inhaltKomprimiert;
+
+    @Basic(fetch = FetchType.LAZY)
+    @LazyGroup("inhalt")
+    @Column(name = "inhalt_anfang", length = ANFANG_ZEICHEN)
+    private String inhaltAnfang;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "woerterbuch_id")
+    private XmlWoerterbuch woerterbuch;
+
+    @Basic(fetch = FetchType.LAZY)
+    @LazyGroup("embedding")
     @Column(name = "xml_embedding", columnDefinition = "vector(1024)")
     @org.hibernate.annotations.Type(NullSafeVectorType.class)
     private float[] xmlEmbedding = new float[0];
 
-    @ManyToOne
+    // Listen holen den Autor-Namen per JOIN in der Projektion, nicht pro Dokument
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "autor_id", nullable = false)
     private Autor autor;
 
@@ -65,11 +97,53 @@ public class XmlDokument {
     }
 
     public String getInhalt() {
+        if (inhalt == null && inhaltKomprimiert != null) {
+            return DeflateCodec.entpacke(inhaltKomprimiert, woerterbuchDaten());
+        }
         return inhalt;
     }
 
+    /**
+     * Inhalt zum Streamen: komprimierte Dokumente werden beim Lesen entpackt statt vorher als String.
+     */
+    public Reader oeffneInhalt() {
+        if (inhalt == null && inhaltKomprimiert != null) {
+            return DeflateCodec.oeffne(inhaltKomprimiert, woerterbuchDaten());
+        }
+        return new StringReader(inhalt == null ? "" : inhalt);
+    }
+
+    /** Neuer Text, unkomprimiert - eine evtl. vorhandene komprimierte Fassung entfällt */
     public void setInhalt(String inhalt) {
         this.inhalt = inhalt;
+        this.inhaltKomprimiert = null;
+        this.inhaltAnfang = null;
+        this.woerterbuch = null;
+    }
+
+    /**
+     * Ersetzt den Text durch seine komprimierte Fassung.
+     *
+     * @param woerterbuch mit dem gepackt wurde, null = ohne
+     * @param anfang      die ersten (höchstens {@link #ANFANG_ZEICHEN}) Zeichen des Texts
+     */
+    public void setInhaltKomprimiert(byte[] komprimiert, XmlWoerterbuch woerterbuch, String anfang) {
+        this.inhalt = null;
+        this.inhaltKomprimiert = komprimiert;
+        this.inhaltAnfang = anfang;
+        this.woerterbuch = woerterbuch;
+    }
+
+    public boolean isKomprimiert() {
+        return inhalt == null && inhaltKomprimiert != null;
+    }
+
+    public XmlWoerterbuch getWoerterbuch() {
+        return woerterbuch;
+    }
+
+    private byte[] woerterbuchDaten() {
+        return woerterbuch == null ? null : woerterbuch.getDaten();
     }
 
     public float[] getXmlEmbedding() {
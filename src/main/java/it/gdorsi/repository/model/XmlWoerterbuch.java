@@ -0,0 +1,75 @@
+package it.gdorsi.repository.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
+
+import org.hibernate.annotations.Immutable;
+
+/**
+ * Deflate-Wörterbuch für alle XML-Dokumente eines Schemas (siehe DeflateCodec, Liquibase 015).
+ * Wird nie geändert - neu trainiert heißt neue Zeile, ältere Dokumente behalten ihre Version.
+ */
+@Entity
+@Immutable
+@Table(name = "xml_woerterbuch")
+public class XmlWoerterbuch {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Root-Element mit Namespace, z.B. "{urn:katalog}katalog"
+    @Column(name = "schema_schluessel", nullable = false, length = 1000)
+    private String schemaSchluessel;
+
+    @Column(nullable = false)
+    private byte[] daten;
+
+    // aus wie vielen Dokumenten trainiert
+    @Column(nullable = false)
+    private int stichproben;
+
+    @Column(name = "erstellt_am", nullable = false)
+    private LocalDateTime erstelltAm;
+
+    public XmlWoerterbuch() {
+    }
+
+    public XmlWoerterbuch(String schemaSchluessel, byte[] daten, int stichproben) {
+        this.schemaSchluessel = schemaSchluessel;
+        this.daten = daten;
+        this.stichproben = stichproben;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getSchemaSchluessel() {
+        return schemaSchluessel;
+    }
+
+    public byte[] getDaten() {
+        return daten;
+    }
+
+    public int getStichproben() {
+        return stichproben;
+    }
+
+    public LocalDateTime getErstelltAm() {
+        return erstelltAm;
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        erstelltAm = LocalDateTime.now();
+    }
+}
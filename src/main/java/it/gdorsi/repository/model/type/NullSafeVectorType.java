@@ -5,6 +5,7 @@ import java.sql.Types;
 
 import org.hibernate.engine.spi.SharedSessionContractImplementor;
 import org.hibernate.usertype.UserType;
+import org.postgresql.util.PGobject;
 
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -19,6 +20,11 @@ import java.sql.SQLException;
  * 
  * LÖSUNG: Dieser Custom Type prüft explizit auf NULL-Werte bevor er versucht,
  * den String zu parsen. Bei NULL-Werten wird ein leeres float[] zurückgegeben.
+ * 
+ * FORMAT: Der vector-Typ wird pro Connection beim Treiber angemeldet ({@link PgVectorObject#register}),
+ * dann gehen Vektoren binär über die Leitung (kein Text-Parsing, ~4 KB statt ~10 KB bei 1024 Dimensionen).
+ * Ergebnisse kommen allerdings nur bei server-prepared Statements binär zurück (ab prepareThreshold,
+ * Standard: 5. Ausführung) - davor und ohne pgjdbc greift der schnelle Text-Parser aus {@link PgVectorCodec}.
  */
 public class NullSafeVectorType implements UserType<float[]> {
 
@@ -58,16 +64,23 @@ public class NullSafeVectorType implements UserType<float[]> {
     @Override
     public float[] nullSafeGet(ResultSet rs, int position, SharedSessionContractImplementor session, Object owner) 
             throws SQLException {
-        String vectorString = rs.getString(position);
-        
-        // WICHTIG: Prüfe auf NULL, bevor du versuchst, den String zu parsen
-        if (vectorString == null || vectorString.trim().isEmpty()) {
+        if (rs.getStatement() != null) {
+            PgVectorObject.register(rs.getStatement().getConnection());
+        }
+        Object value = rs.getObject(position);
+
+        // WICHTIG: Prüfe auf NULL, bevor du versuchst, den Wert zu parsen
+        if (value == null) {
             return new float[0]; // Leeres Array statt NULL
         }
-        
+
         try {
-            // Parse den Vector-String im Format "[1.0, 2.0, 3.0]"
-            return parseVectorString(vectorString);
+            if (value instanceof PgVectorObject vector) {
+                // Binär oder schon vom Treiber geparst
+                return vector.toArray() != null ? vector.toArray() : new float[0];
+            }
+            String vectorString = value instanceof PGobject pg ? pg.getValue() : value.toString();
+            return vectorString == null ? new float[0] : PgVectorCodec.parse(vectorString);
         } catch (Exception e) {
             // Fallback: Leeres Array bei Parse-Fehlern
             return new float[0];
@@ -80,9 +93,11 @@ public class NullSafeVectorType implements UserType<float[]> {
         if (value == null || value.length == 0) {
             // Setze NULL in der Datenbank für leere Arrays
             st.setNull(index, Types.OTHER);
+        } else if (PgVectorObject.register(st.getConnection())) {
+            // Typ ist angemeldet: Treiber schickt den Vektor binär
+            st.setObject(index, new PgVectorObject(value));
         } else {
-            // Konvertiere float[] zu PostgreSQL Vector-String
-            st.setObject(index, toVectorString(value), Types.OTHER);
+            st.setObject(index, PgVectorCodec.format(value), Types.OTHER);
         }
     }
 
@@ -113,39 +128,4 @@ public class NullSafeVectorType implements UserType<float[]> {
     public float[] replace(float[] original, float[] target, Object owner) {
         return deepCopy(original);
     }
-
-    /**
-     * Parst einen PostgreSQL Vector-String im Format "[1.0, 2.0, 3.0]"
-     */
-    private float[] parseVectorString(String vectorString) {
-        // Entferne eckige Klammern
-        String clean = vectorString.trim();
-        if (clean.startsWith("[") && clean.endsWith("]")) {
-            clean = clean.substring(1, clean.length() - 1);
-        }
-        
-        if (clean.isEmpty()) {
-            return new float[0];
-        }
-        
-        String[] parts = clean.split(",");
-        float[] result = new float[parts.length];
-        for (int i = 0; i < parts.length; i++) {
-            result[i] = Float.parseFloat(parts[i].trim());
-        }
-        return result;
-    }
-
-    /**
-     * Konvertiert float[] zu PostgreSQL Vector-String
-     */
-    private String toVectorString(float[] vector) {
-        StringBuilder sb = new StringBuilder("[");
-        for (int i = 0; i < vector.length; i++) {
-            if (i > 0) sb.append(", ");
-            sb.append(vector[i]);
-        }
-        sb.append("]");
-        return sb.toString();
-    }
-}
\ No newline at end of file
+}
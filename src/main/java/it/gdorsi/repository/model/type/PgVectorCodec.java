@@ -0,0 +1,210 @@
+package it.gdorsi.repository.model.type;
+
+/**
+ * Kodierung des pgvector-Typs ohne Umweg über String.split / Float.parseFloat pro Element.
+ * <p>
+ * Binärformat (vector_send / vector_recv): int16 Dimension, int16 unbenutzt (0), dann Dimension x float4,
+ * alles Big Endian - 4 + 4 * dim Bytes, bei 1024 Dimensionen also ~4 KB statt ~10 KB Text.
+ * <p>
+ * Textformat "[1,2.5,-3E-5]": eigener Parser in einem Durchlauf ohne Teil-Strings. Ziffern werden als long
+ * gesammelt und einmal mit einer exakten Zehnerpotenz verrechnet; nur exotische Eingaben (mehr als 15 Ziffern,
+ * große Exponenten) gehen den langsamen Weg über Float.parseFloat.
+ */
+public final class PgVectorCodec {
+
+    private static final int HEADER_BYTES = 4;
+    private static final int MAX_FAST_DIGITS = 15;
+
+    // 10^0 .. 10^22 sind als double exakt darstellbar
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1.0;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10.0;
+        }
+    }
+
+    private PgVectorCodec() {
+    }
+
+    public static int binaryLength(int dimensions) {
+        return HEADER_BYTES + 4 * dimensions;
+    }
+
+    public static float[] decode(byte[] bytes, int offset) {
+        int dimensions = ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+        float[] vector = new float[dimensions];
+        int pos = offset + HEADER_BYTES;
+        for (int i = 0; i < dimensions; i++, pos += 4) {
+            int bits = ((bytes[pos] & 0xFF) << 24)
+                    | ((bytes[pos + 1] & 0xFF) << 16)
+                    | ((bytes[pos + 2] & 0xFF) << 8)
+                    | (bytes[pos + 3] & 0xFF);
+            vector[i] = Float.intBitsToFloat(bits);
+        }
+        return vector;
+    }
+
+    public static void encode(float[] vector, byte[] bytes, int offset) {
+        bytes[offset] = (byte) (vector.length >>> 8);
+        bytes[offset + 1] = (byte) vector.length;
+        bytes[offset + 2] = 0;
+        bytes[offset + 3] = 0;
+        int pos = offset + HEADER_BYTES;
+        for (float value : vector) {
+            int bits = Float.floatToIntBits(value);
+            bytes[pos++] = (byte) (bits >>> 24);
+            bytes[pos++] = (byte) (bits >>> 16);
+            bytes[pos++] = (byte) (bits >>> 8);
+            bytes[pos++] = (byte) bits;
+        }
+    }
+
+    /**
+     * Textformat wie pgvector es schreibt. StringBuilder.append(float) schreibt seit JDK 19 direkt in den Puffer.
+     */
+    public static String format(float[] vector) {
+        StringBuilder sb = new StringBuilder(2 + vector.length * 12);
+        sb.append('[');
+        for (int i = 0; i < vector.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(vector[i]);
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * Parst "[1.0, 2.0, 3.0]" (mit oder ohne Leerzeichen, mit oder ohne Klammern).
+     *
+     * @throws NumberFormatException bei ungültigem Inhalt
+     */
+    public static float[] parse(String text) {
+        int start = 0;
+        int end = text.length();
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        if (start < end && text.charAt(start) == '[') {
+            start++;
+        }
+        if (end > start && text.charAt(end - 1) == ']') {
+            end--;
+        }
+        if (isBlank(text, start, end)) {
+            return new float[0];
+        }
+
+        int dimensions = 1;
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) == ',') {
+                dimensions++;
+            }
+        }
+
+        float[] vector = new float[dimensions];
+        int tokenStart = start;
+        int index = 0;
+        for (int i = start; i <= end; i++) {
+            if (i == end || text.charAt(i) == ',') {
+                vector[index++] = parseFloat(text, tokenStart, i);
+                tokenStart = i + 1;
+            }
+        }
+        return vector;
+    }
+
+    static float parseFloat(String text, int start, int end) {
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        if (start == end) {
+            throw new NumberFormatException("Leerer Wert im Vektor");
+        }
+
+        int pos = start;
+        boolean negative = false;
+        char c = text.charAt(pos);
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            pos++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean anyDigit = false;
+
+        for (; pos < end && isDigit(c = text.charAt(pos)); pos++) {
+            anyDigit = true;
+            if (mantissa != 0 || c != '0') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+            }
+        }
+        if (pos < end && text.charAt(pos) == '.') {
+            pos++;
+            for (; pos < end && isDigit(c = text.charAt(pos)); pos++) {
+                anyDigit = true;
+                if (mantissa != 0 || c != '0') {
+                    mantissa = mantissa * 10 + (c - '0');
+                    digits++;
+                }
+                exponent--;
+            }
+        }
+        if (pos < end && (text.charAt(pos) == 'e' || text.charAt(pos) == 'E')) {
+            pos++;
+            boolean negativeExponent = false;
+            if (pos < end && (text.charAt(pos) == '-' || text.charAt(pos) == '+')) {
+                negativeExponent = text.charAt(pos) == '-';
+                pos++;
+            }
+            int exp = 0;
+            boolean anyExponentDigit = false;
+            for (; pos < end && isDigit(c = text.charAt(pos)); pos++) {
+                anyExponentDigit = true;
+                exp = Math.min(exp * 10 + (c - '0'), 10_000);
+            }
+            if (!anyExponentDigit) {
+                return slowPath(text, start, end);
+            }
+            exponent += negativeExponent ? -exp : exp;
+        }
+
+        if (!anyDigit || pos != end || digits > MAX_FAST_DIGITS || Math.abs(exponent) >= POWERS_OF_TEN.length) {
+            // NaN, Infinity, sehr viele Ziffern oder große Exponenten: korrekt, aber langsam
+            return slowPath(text, start, end);
+        }
+
+        double value = mantissa;
+        value = exponent >= 0 ? value * POWERS_OF_TEN[exponent] : value / POWERS_OF_TEN[-exponent];
+        float result = (float) value;
+        return negative ? -result : result;
+    }
+
+    private static float slowPath(String text, int start, int end) {
+        return Float.parseFloat(text.substring(start, end));
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isBlank(String text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,123 @@
+package it.gdorsi.repository.model.type;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import org.postgresql.PGConnection;
+import org.postgresql.core.BaseConnection;
+import org.postgresql.util.PGBinaryObject;
+import org.postgresql.util.PGobject;
+
+/**
+ * pgvector-Wert für den JDBC-Treiber, der sowohl Text als auch Binär (vector_send / vector_recv) kann.
+ * <p>
+ * Der Treiber nimmt das Binärformat nur für Typen, deren OID pro Connection als binär angemeldet ist.
+ * Das erledigt {@link #register(Connection)} einmal pro physischer Connection; danach liefert ein
+ * server-prepared Statement den Vektor als 4 + 4 * dim Bytes statt als Text.
+ */
+public class PgVectorObject extends PGobject implements PGBinaryObject {
+
+    public static final String TYPE = "vector";
+
+    // physische Connections, an denen der Typ schon angemeldet ist; weak, damit der Pool sie entsorgen kann
+    private static final Set<BaseConnection> ANGEMELDET = Collections.newSetFromMap(
+            Collections.synchronizedMap(new WeakHashMap<>()));
+
+    private float[] vector;
+
+    public PgVectorObject() {
+        type = TYPE;
+    }
+
+    public PgVectorObject(float[] vector) {
+        this();
+        this.vector = vector;
+    }
+
+    public float[] toArray() {
+        return vector;
+    }
+
+    @Override
+    public void setValue(String value) throws SQLException {
+        try {
+            vector = value == null ? null : PgVectorCodec.parse(value);
+        } catch (NumberFormatException e) {
+            throw new SQLException("Ungültiger Vektor: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String getValue() {
+        return vector == null ? null : PgVectorCodec.format(vector);
+    }
+
+    @Override
+    public void setByteValue(byte[] value, int offset) {
+        vector = PgVectorCodec.decode(value, offset);
+    }
+
+    @Override
+    public int lengthInBytes() {
+        return vector == null ? 0 : PgVectorCodec.binaryLength(vector.length);
+    }
+
+    @Override
+    public void toBytes(byte[] bytes, int offset) {
+        PgVectorCodec.encode(vector, bytes, offset);
+    }
+
+    @Override
+    public boolean isNull() {
+        return vector == null;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof PgVectorObject other && Arrays.equals(vector, other.vector);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(vector);
+    }
+
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+        PgVectorObject copy = (PgVectorObject) super.clone();
+        copy.vector = vector == null ? null : vector.clone();
+        return copy;
+    }
+
+    /**
+     * Meldet den vector-Typ an der Connection an (Klasse + Binär-OIDs), einmal pro physischer Connection.
+     * Wird pro Zeile aufgerufen (NullSafeVectorType) - danach kostet es nur noch unwrap und einen Set-Lookup.
+     *
+     * @return true, wenn die Connection jetzt binär spricht; false z.B. ohne pgvector-Extension (dann Text)
+     */
+    public static boolean register(Connection connection) {
+        try {
+            BaseConnection pg = connection.unwrap(BaseConnection.class);
+            if (ANGEMELDET.contains(pg)) {
+                return true;
+            }
+            int oid = pg.getTypeInfo().getPGType(TYPE);
+            if (oid == 0) {
+                // nicht merken: die Extension kann später noch angelegt werden (Liquibase)
+                return false;
+            }
+            pg.unwrap(PGConnection.class).addDataType(TYPE, PgVectorObject.class);
+            pg.getQueryExecutor().addBinaryReceiveOid(oid);
+            pg.getQueryExecutor().addBinarySendOid(oid);
+            ANGEMELDET.add(pg);
+            return true;
+        } catch (SQLException e) {
+            // Kein pgjdbc (Tests, Proxy ohne unwrap): Textformat funktioniert trotzdem
+            return false;
+        }
+    }
+}
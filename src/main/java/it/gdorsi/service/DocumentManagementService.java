@@ -1,80 +1,85 @@
 package it.gdorsi.service;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
-import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.SearchRequest;
-import org.springframework.ai.vectorstore.VectorStore;
-import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
-import org.springframework.jdbc.core.JdbcTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import it.gdorsi.dao.DocumentOverview;
+import it.gdorsi.dao.DocumentPage;
+import it.gdorsi.repository.DocumentCatalogRepository;
+import it.gdorsi.repository.VectorStoreChunkRepository;
+import it.gdorsi.service.chat.SemanticResponseCache;
 
 @Service
 public class DocumentManagementService {
 
-    private final JdbcTemplate jdbcTemplate;
+    private static final Logger log = LoggerFactory.getLogger(DocumentManagementService.class);
 
-    private final VectorStore vectorStore;
+    /** Dateinamen pro DELETE - hält das ANY(?)-Array und die Sperrdauer klein */
+    static final int DELETE_BATCH_SIZE = 100;
 
-    public DocumentManagementService(JdbcTemplate jdbcTemplate, VectorStore vectorStore) {
-        this.jdbcTemplate = jdbcTemplate;
-        this.vectorStore = vectorStore;
-    }
+    static final int MAX_PAGE_SIZE = 200;
+
+    private final DocumentCatalogRepository catalogRepository;
+
+    private final VectorStoreChunkRepository chunkRepository;
 
-    public List<DocumentOverview> getAllDocuments() {
-        // Wir gruppieren nach dem file_name in den Metadaten
-        String sql = """
-                SELECT metadata->>'file_name' as fileName,
-                       count(*) as chunks,
-                       max(to_timestamp((metadata->>'ingested_at')::double precision / 1000))::date as lastUpdate
-                FROM vector_store
-                GROUP BY metadata->>'file_name'
-                ORDER BY lastUpdate DESC
-                """;
+    private final SemanticResponseCache semanticCache;
 
-        return jdbcTemplate.query(sql, (rs, rowNum) -> new DocumentOverview(
-                rs.getString("fileName"),
-                rs.getLong("chunks"),
-                rs.getObject("lastUpdate", java.time.LocalDate.class)
-        ));
+    public DocumentManagementService(DocumentCatalogRepository catalogRepository, VectorStoreChunkRepository chunkRepository,
+                                     SemanticResponseCache semanticCache) {
+        this.catalogRepository = catalogRepository;
+        this.chunkRepository = chunkRepository;
+        this.semanticCache = semanticCache;
     }
 
     /**
-     * Kein query Deprecation: Wir nutzen den modernen SearchRequest.builder().
-     * Metadaten-Fokus: Wir nutzen die JSONB-Power von Postgres. Die Suche nach file_name in den Metadaten ist extrem schnell.
-     * Vollständigkeit: Ein PDF wird in viele Chunks zerlegt. Dieser Weg findet sie alle, egal wie viele es sind.
+     * Liest aus document_catalog statt vector_store bei jedem Aufruf komplett zu gruppieren.
+     */
+    public DocumentPage getDocuments(int page, int size) {
+        int safePage = Math.max(0, page);
+        int safeSize = Math.clamp(size, 1, MAX_PAGE_SIZE);
+        // eine Zeile mehr lesen, dann wissen wir ohne count(*), ob es eine nächste Seite gibt
+        List<DocumentOverview> docs = catalogRepository.findPage(safePage * safeSize, safeSize + 1);
+        boolean hasNext = docs.size() > safeSize;
+        return new DocumentPage(hasNext ? docs.subList(0, safeSize) : docs, safePage, safeSize, hasNext);
+    }
+
+    /**
+     * Direkter DELETE über den Expression-Index auf metadata->>'file_name' (Liquibase 009).
+     * Früher: similaritySearch mit leerem Query und topK(10000) - das hat "" über Ollama embedded,
+     * Distanzen berechnet und bei mehr als 10.000 Chunks Leichen hinterlassen.
      *
      * @param fileName es wird nach Name gesucht
+     * @return Anzahl gelöschter Chunks
      */
-    public void deleteByFileName(final String fileName) {
-        // 1. Erstelle eine Filter-Expression (keine semantische Suche!)
-        var filterExpression = new FilterExpressionBuilder()
-                .eq("file_name", fileName) // Name muss exakt mit Metadata-Key übereinstimmen
-                .build();
-
-        // 2. Nutze einen SearchRequest NUR mit Filter (TopK sehr hoch ansetzen)
-        SearchRequest searchRequest = SearchRequest.builder()
-                .query("") // Leerer Query, da wir nur filtern wollen
-                .filterExpression(filterExpression)
-                .topK(10000) // Sicherstellen, dass wir alle Chunks erwischen
-                .build();
-
-        List<Document> docsToDelete = vectorStore.similaritySearch(searchRequest);
-
-        // 3. Löschen, falls etwas gefunden wurde
-        if (!docsToDelete.isEmpty()) {
-            List<String> ids
-                    = docsToDelete.stream()
-                    .map(Document::getId)
-                    .toList();
-
-            vectorStore.delete(ids);
-            System.out.println(ids.size() + " Chunks für " + fileName + " gelöscht.");
-
+    public int deleteByFileName(final String fileName) {
+        return deleteByFileNames(List.of(fileName)).getOrDefault(fileName, 0);
+    }
 
+    /**
+     * Löscht mehrere Dateien, jeweils {@value #DELETE_BATCH_SIZE} Dateinamen pro Statement.
+     *
+     * @return gelöschte Chunks pro Datei (0 für Dateien ohne Chunks)
+     */
+    public Map<String, Integer> deleteByFileNames(final Collection<String> fileNames) {
+        List<String> distinct = fileNames.stream().distinct().toList();
+        Map<String, Integer> deleted = new LinkedHashMap<>();
+        for (int from = 0; from < distinct.size(); from += DELETE_BATCH_SIZE) {
+            List<String> batch = distinct.subList(from, Math.min(from + DELETE_BATCH_SIZE, distinct.size()));
+            Map<String, Integer> counts = chunkRepository.deleteByFileNames(batch);
+            batch.forEach(fileName -> deleted.put(fileName, counts.getOrDefault(fileName, 0)));
         }
+        deleted.forEach((fileName, chunks) -> log.info("{} Chunks für {} gelöscht.", chunks, fileName));
+        catalogRepository.deleteByFileNames(distinct);
+
+        // Antworten, die sich auf die PDFs stützen, sind ab jetzt falsch
+        semanticCache.invalidate(distinct.stream().map(SemanticResponseCache::fileSource).toList());
+        return deleted;
     }
 }
-
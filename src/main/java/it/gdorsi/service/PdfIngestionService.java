@@ -1,23 +1,27 @@
 package it.gdorsi.service;
 
-import java.util.ArrayList;
-import java.util.HashSet;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.UUID;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.reader.tika.TikaDocumentReader;
 import org.springframework.ai.transformer.splitter.TokenTextSplitter;
-import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.core.io.Resource;
-import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import it.gdorsi.dao.PdfIngestResult;
+import it.gdorsi.repository.DocumentCatalogRepository;
+import it.gdorsi.repository.VectorStoreChunkRepository;
+import it.gdorsi.service.chat.SemanticResponseCache;
+import it.gdorsi.service.ingest.EmbeddingPipeline;
+import it.gdorsi.service.util.ContentHash;
 import jakarta.annotation.PostConstruct;
 
 /**
@@ -30,15 +34,23 @@ public class PdfIngestionService {
 
     private static final Logger log = LoggerFactory.getLogger(PdfIngestionService.class);
 
-    private final VectorStore vectorStore;
-    private final JdbcTemplate jdbcTemplate;
-
-    public PdfIngestionService(VectorStore vectorStore, JdbcTemplate jdbcTemplate) {
-        this.vectorStore = vectorStore;
-        this.jdbcTemplate = jdbcTemplate;
+    private final EmbeddingPipeline embeddingPipeline;
+    private final VectorStoreChunkRepository chunkRepository;
+    private final DocumentCatalogRepository catalogRepository;
+    private final SemanticResponseCache semanticCache;
+
+    public PdfIngestionService(EmbeddingPipeline embeddingPipeline, VectorStoreChunkRepository chunkRepository,
+                               DocumentCatalogRepository catalogRepository, SemanticResponseCache semanticCache) {
+        this.embeddingPipeline = embeddingPipeline;
+        this.chunkRepository = chunkRepository;
+        this.catalogRepository = catalogRepository;
+        this.semanticCache = semanticCache;
     }
 
-    @Transactional
+    /**
+     * Kein @Transactional mehr: das Embedding dauert, die Pipeline schreibt jeden Batch in einer eigenen
+     * kurzen Transaktion. Die IDs sind deterministisch, ein abgebrochener Lauf wird beim nächsten Mal repariert.
+     */
     public PdfIngestResult loadPdf(Resource pdfResource) {
         long startTime = System.currentTimeMillis();
 
@@ -61,57 +73,58 @@ public class PdfIngestionService {
             if (documents.isEmpty()) {
                 log.warn("Keine Texte im PDF gefunden: {}", fileName);
             }
+            long parseMillis = System.currentTimeMillis() - startTime;
 
-            List<String> currentChunkIds = new ArrayList<>();
-            List<Document> newDocuments = new ArrayList<>();
-            List<Document> updateDocuments = new ArrayList<>();
-
-            Set<String> existingIds = fetchExistingIds(documents);
-
+            // Chunk-ID = SHA-256(Dateiname + Text): gleicher Text in gleicher Datei = gleiche ID.
+            // Gibt es die ID schon (mit Fingerprint), ist der Chunk unverändert und wird komplett übersprungen.
+            Map<String, Document> chunksById = new LinkedHashMap<>();
+            long ingestedAt = System.currentTimeMillis();
             for (Document doc : documents) {
-                doc.getMetadata().put("file_name", fileName);
-                doc.getMetadata().put("ingested_at", System.currentTimeMillis());
-
-                String customId = fileName + (doc.getText() != null ? doc.getText().hashCode() : 0);
-                final UUID deterministicId = UUID.nameUUIDFromBytes(customId.getBytes());
-                String docId = deterministicId.toString();
-
-                currentChunkIds.add(docId);
-
                 if (doc.getText() == null) {
                     continue;
                 }
-
-                Document docWithFixedId = new Document(docId, doc.getText(), doc.getMetadata());
-
-                if (existingIds.contains(docId)) {
-                    updateDocuments.add(docWithFixedId);
-                } else {
-                    newDocuments.add(docWithFixedId);
-                }
+                String docId = ContentHash.uuid(fileName, doc.getText()).toString();
+                Map<String, Object> metadata = new HashMap<>(doc.getMetadata());
+                metadata.put("file_name", fileName);
+                metadata.put("ingested_at", ingestedAt);
+                // doppelte Absätze im selben PDF nur einmal speichern
+                chunksById.putIfAbsent(docId, new Document(docId, doc.getText(), metadata));
             }
 
-            int newCount = newDocuments.size();
-            int updateCount = updateDocuments.size();
+            Set<String> unchangedIds = chunkRepository.findFingerprintedIds(chunksById.keySet());
+            List<Document> changedDocuments = chunksById.values().stream()
+                    .filter(doc -> !unchangedIds.contains(doc.getId()))
+                    .toList();
+
+            // Nur neue oder geänderte Chunks gehen an Ollama
+            EmbeddingPipeline.Result pipelineResult = embeddingPipeline.embedAndStore(changedDocuments);
+            int removedCount = cleanupOrphanedChunks(fileName, chunksById.keySet());
 
-            if (!newDocuments.isEmpty()) {
-                vectorStore.accept(newDocuments);
-                log.info("Ingestion of {} finished. {} new chunks inserted.", fileName, newCount);
+            // Katalog für die Admin-Liste: Stand nach diesem Lauf
+            String contentHash;
+            try (InputStream pdf = pdfResource.getInputStream()) {
+                contentHash = ContentHash.sha256Hex(pdf);
             }
+            catalogRepository.upsert(fileName, chunksById.size(), pdfResource.contentLength(), contentHash);
 
-            if (!updateDocuments.isEmpty()) {
-                vectorStore.accept(updateDocuments);
-                log.info("Ingestion of {} finished. {} chunks updated.", fileName, updateCount);
+            // Inhalt hat sich geändert: gecachte Antworten, die auf dieses PDF verweisen, sind veraltet
+            if (!changedDocuments.isEmpty() || removedCount > 0) {
+                semanticCache.invalidate(List.of(SemanticResponseCache.fileSource(fileName)));
             }
 
-            cleanupOrphanedChunks(fileName, currentChunkIds);
+            log.info("Ingestion of {} finished. {} chunks embedded, {} unchanged skipped, {} removed.",
+                    fileName, changedDocuments.size(), unchangedIds.size(), removedCount);
 
             return new PdfIngestResult(
                     fileName,
                     documents.size(),
-                    newCount,
-                    updateCount,
-                    System.currentTimeMillis() - startTime
+                    changedDocuments.size(),
+                    unchangedIds.size(),
+                    removedCount,
+                    System.currentTimeMillis() - startTime,
+                    parseMillis,
+                    pipelineResult.embedMillis(),
+                    pipelineResult.writeMillis()
             );
 
         } catch (Exception e) {
@@ -120,43 +133,16 @@ public class PdfIngestionService {
         }
     }
 
-    private Set<String> fetchExistingIds(List<Document> documents) {
-        if (documents.isEmpty()) {
-            return new HashSet<>();
-        }
-
-        List<String> potentialIds = new ArrayList<>();
-        for (Document doc : documents) {
-            String fileName = (String) doc.getMetadata().getOrDefault("file_name", "");
-            String customId = fileName + (doc.getText() != null ? doc.getText().hashCode() : 0);
-            potentialIds.add(UUID.nameUUIDFromBytes(customId.getBytes()).toString());
-        }
-
-        String placeholders = String.join(",", java.util.Collections.nCopies(potentialIds.size(), "?"));
-        String sql = "SELECT id FROM vector_store WHERE id IN (" + placeholders + ")";
-
-        String[] idArray = new String[potentialIds.size()];
-        String[] paramArray = potentialIds.toArray(idArray);
-        return new HashSet<>(jdbcTemplate.query(sql, (rs, rowNum) -> rs.getString("id"),
-                (Object) paramArray));
-    }
-
-    private void cleanupOrphanedChunks(String fileName, List<String> currentChunkIds) {
+    private int cleanupOrphanedChunks(String fileName, Collection<String> currentChunkIds) {
         if (currentChunkIds.isEmpty()) {
-            return;
+            return 0;
         }
 
-        String[] idArray = new String[currentChunkIds.size()];
-        String[] paramArray = currentChunkIds.toArray(idArray);
-
-        final String sqlCleanup = """
-                DELETE FROM vector_store WHERE metadata->>'file_name' = ? AND NOT (id = ANY(?::uuid[]))
-                """;
-
-        int deletedLeichen = jdbcTemplate.update(sqlCleanup, fileName, (Object) paramArray);
+        int deletedLeichen = chunkRepository.deleteByFileNameExcept(fileName, currentChunkIds);
         if (deletedLeichen > 0) {
             log.info("Cleanup: {} verwaiste Chunks entfernt.", deletedLeichen);
         }
+        return deletedLeichen;
     }
 
     @PostConstruct
@@ -17,4 +17,10 @@ public interface VertragOperations {
             @ToolParam(description = "Der neue Betrag") Double betrag,
             @ToolParam(description = "Der neue Status (AKTIV, ENTWURF, GEKUENDIGT)") VertragStatus status
     );
+
+    @Tool(description = "Sucht die inhaltlich ähnlichsten Verträge zu einer Beschreibung (Kunde, Vertragstyp, Bemerkung)")
+    String findSimilarContracts(
+            @ToolParam(description = "Beschreibung des gesuchten Vertrags") String beschreibung,
+            @ToolParam(description = "Maximale Anzahl Treffer (1-20)") int limit
+    );
 }
@@ -1,79 +1,228 @@
 package it.gdorsi.service;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import javax.xml.transform.Templates;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.ai.vectorstore.SearchRequest;
-import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import it.gdorsi.dao.AutorUebersicht;
+import it.gdorsi.dao.XmlAnalyse;
+import it.gdorsi.dao.XmlDokumentCursor;
+import it.gdorsi.dao.XmlDokumentSeite;
+import it.gdorsi.dao.XmlDokumentUebersicht;
+import it.gdorsi.dao.XsltStylesheet;
 import it.gdorsi.repository.AuthorRepository;
+import it.gdorsi.repository.VectorStoreChunkRepository;
 import it.gdorsi.repository.XmlDokumentRepository;
+import it.gdorsi.repository.XmlStrukturProfilRepository;
+import it.gdorsi.repository.XsltStylesheetRepository;
 import it.gdorsi.repository.model.Autor;
 import it.gdorsi.repository.model.XmlDokument;
+import it.gdorsi.service.chat.SemanticResponseCache;
 import it.gdorsi.service.response.XmlListResponse;
 import it.gdorsi.service.response.XmlResponse;
+import it.gdorsi.service.xml.XPathEngine;
+import it.gdorsi.service.xml.XmlAnalyzer;
+import it.gdorsi.service.xml.XmlDiff;
+import it.gdorsi.service.xml.XmlKompression;
+import it.gdorsi.service.xml.XmlQuelle;
+import it.gdorsi.service.xml.XmlUploadReader;
+import it.gdorsi.service.xml.XsltEngine;
+import it.gdorsi.service.xml.XmlVectorIndexer;
 
 @Service
 public class XmlDokumentService implements XmlOperations {
 
+    private static final Logger log = LoggerFactory.getLogger(XmlDokumentService.class);
+
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final int STRUCTURE_SUMMARY_PATHS = 10;
+    private static final int MAX_EXTRACTED_ELEMENTS = 50;
+
     private final XmlDokumentRepository xmlDokumentRepository;
     private final AuthorRepository authorRepository;
-    private final EmbeddingModel embeddingModel;
+    private final XmlVectorIndexer xmlIndexer;
+    private final XmlAnalyzer xmlAnalyzer;
+    private final XmlStrukturProfilRepository strukturProfilRepository;
+    private final XPathEngine xPathEngine;
+    private final XsltEngine xsltEngine;
+    private final XsltStylesheetRepository xsltStylesheetRepository;
+    private final XmlUploadReader xmlUploadReader;
+    private final XmlKompression xmlKompression;
+    private final XmlDiff xmlDiff;
     private final VectorStore vectorStore;
-    private final JdbcTemplate jdbcTemplate;
+    private final VectorStoreChunkRepository chunkRepository;
+    private final SemanticResponseCache semanticCache;
+    // Schreibpfade: zerlegt und embedded wird vorher, Ollama-Aufrufe halten so weder Connection noch Zeilensperren
+    private final TransactionTemplate transactionTemplate;
 
     public XmlDokumentService(XmlDokumentRepository xmlDokumentRepository, AuthorRepository authorRepository,
-                              EmbeddingModel embeddingModel, VectorStore vectorStore, JdbcTemplate jdbcTemplate) {
+                              XmlVectorIndexer xmlIndexer, XmlAnalyzer xmlAnalyzer,
+                              XmlStrukturProfilRepository strukturProfilRepository, XPathEngine xPathEngine,
+                              XsltEngine xsltEngine, XsltStylesheetRepository xsltStylesheetRepository,
+                              XmlUploadReader xmlUploadReader, XmlKompression xmlKompression, XmlDiff xmlDiff,
+                              VectorStore vectorStore, VectorStoreChunkRepository chunkRepository,
+                              SemanticResponseCache semanticCache, PlatformTransactionManager transactionManager) {
         this.xmlDokumentRepository = xmlDokumentRepository;
         this.authorRepository = authorRepository;
-        this.embeddingModel = embeddingModel;
+        this.xmlIndexer = xmlIndexer;
+        this.xmlAnalyzer = xmlAnalyzer;
+        this.strukturProfilRepository = strukturProfilRepository;
+        this.xPathEngine = xPathEngine;
+        this.xsltEngine = xsltEngine;
+        this.xsltStylesheetRepository = xsltStylesheetRepository;
+        this.xmlUploadReader = xmlUploadReader;
+        this.xmlKompression = xmlKompression;
+        this.xmlDiff = xmlDiff;
         this.vectorStore = vectorStore;
-        this.jdbcTemplate = jdbcTemplate;
+        this.chunkRepository = chunkRepository;
+        this.semanticCache = semanticCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     public XmlDokument saveXml(Long autorId, String dateiname, String inhalt) {
         Autor autor = authorRepository.findById(autorId).orElseThrow();
-        float[] vector = embeddingModel.embed(inhalt);
-        XmlDokument xmlDokument = new XmlDokument(dateiname, inhalt, vector, autor);
-        xmlDokument = xmlDokumentRepository.save(xmlDokument);
-        
-        // XML-Dokument auch im Vector Store speichern für RAG
-        storeXmlInVectorStore(xmlDokument, autor.getName());
-        
-        return xmlDokument;
+        XmlVectorIndexer.PreparedXml prepared = xmlIndexer.prepare(null, inhalt);
+        XmlAnalyse analyse = xmlAnalyzer.analyze(inhalt);
+
+        return transactionTemplate.execute(status -> {
+            XmlDokument xmlDokument = new XmlDokument(dateiname, inhalt, prepared.embedding(), autor);
+            xmlKompression.anwenden(xmlDokument, analyse);
+            xmlDokument = xmlDokumentRepository.save(xmlDokument);
+            strukturProfilRepository.upsert(xmlDokument.getId(), analyse);
+
+            // XML-Dokument auch im Vector Store speichern für RAG
+            storeXmlInVectorStore(xmlDokument, autor.getName(), prepared);
+
+            return xmlDokument;
+        });
     }
 
     public Optional<XmlDokument> updateXml(Long autorId, Long xmlId, String dateiname, String inhalt) {
-        return xmlDokumentRepository.findById(xmlId)
+        if (!xmlDokumentRepository.existsByIdAndAutorId(xmlId, autorId)) {
+            return Optional.empty();
+        }
+        // unveränderte Chunks behalten ihr Embedding
+        XmlVectorIndexer.PreparedXml prepared = xmlIndexer.prepare(xmlId, inhalt);
+        XmlAnalyse analyse = xmlAnalyzer.analyze(inhalt);
+
+        return transactionTemplate.execute(status -> xmlDokumentRepository.findById(xmlId)
                 .filter(d -> d.getAutor().getId().equals(autorId))
                 .map(xmlDokument -> {
                     xmlDokument.setDateiname(dateiname);
                     xmlDokument.setInhalt(inhalt);
-                    
-                    float[] vector = embeddingModel.embed(inhalt);
-                    xmlDokument.setXmlEmbedding(vector);
+                    xmlDokument.setXmlEmbedding(prepared.embedding());
+                    xmlKompression.anwenden(xmlDokument, analyse);
                     
                     xmlDokument = xmlDokumentRepository.save(xmlDokument);
+                    strukturProfilRepository.upsert(xmlId, analyse);
                     
                     // Aktualisiere auch im Vector Store
-                    storeXmlInVectorStore(xmlDokument, xmlDokument.getAutor().getName());
+                    storeXmlInVectorStore(xmlDokument, xmlDokument.getAutor().getName(), prepared);
                     
                     return xmlDokument;
-                });
+                }));
+    }
+
+    /**
+     * Speichert eine hochgeladene Datei, ohne sie als String aufzubauen: Prüfung, Profil und Chunks entstehen beim
+     * einmaligen Lesen des Streams, der Inhalt geht aus der Spool-Datei direkt in xml_dokument
+     * (mit app.xml-kompression.enabled komprimiert, siehe {@link XmlKompression#schreibeInhalt}).
+     * Im zurückgegebenen Dokument ist inhalt deshalb leer, der Text steht nur in der Datenbank.
+     * Scheitert der Vector Store, fliegt die Exception und Dokument, Inhalt und Profil werden zurückgerollt.
+     *
+     * @throws IllegalArgumentException wenn die Datei kein wohlgeformtes XML ist
+     */
+    public XmlDokument saveXmlUpload(Long autorId, String dateiname, InputStream upload) throws IOException {
+        Autor autor = authorRepository.findById(autorId).orElseThrow();
+        try (XmlUploadReader.Upload gelesen = xmlUploadReader.lese(upload)) {
+            XmlVectorIndexer.PreparedXml prepared = xmlIndexer.prepare(null, gelesen.chunks());
+            return transactionTemplate.execute(status -> {
+                XmlDokument xmlDokument = xmlDokumentRepository.save(
+                        new XmlDokument(dateiname, "", prepared.embedding(), autor));
+                schreibeInhalt(xmlDokument.getId(), gelesen);
+                strukturProfilRepository.upsert(xmlDokument.getId(), gelesen.analyse());
+
+                storeXmlInVectorStore(xmlDokument, autor.getName(), prepared);
+                return xmlDokument;
+            });
+        }
+    }
+
+    /**
+     * Upload-Variante von {@link #updateXml(Long, Long, String, String)}, siehe {@link #saveXmlUpload} - auch hier ist
+     * inhalt im zurückgegebenen Dokument leer, nicht der alte Stand.
+     *
+     * @throws IllegalArgumentException wenn die Datei kein wohlgeformtes XML ist
+     */
+    public Optional<XmlDokument> updateXmlUpload(Long autorId, Long xmlId, String dateiname, InputStream upload)
+            throws IOException {
+        try (XmlUploadReader.Upload gelesen = xmlUploadReader.lese(upload)) {
+            if (!xmlDokumentRepository.existsByIdAndAutorId(xmlId, autorId)) {
+                return Optional.empty();
+            }
+            // unveränderte Chunks behalten ihr Embedding
+            XmlVectorIndexer.PreparedXml prepared = xmlIndexer.prepare(xmlId, gelesen.chunks());
+
+            return transactionTemplate.execute(status -> xmlDokumentRepository.findById(xmlId)
+                    .filter(d -> d.getAutor().getId().equals(autorId))
+                    .map(xmlDokument -> {
+                        xmlDokument.setDateiname(dateiname);
+                        xmlDokument.setXmlEmbedding(prepared.embedding());
+                        // alten Text (auch komprimiert) in der Entity verwerfen, der neue kommt per JDBC
+                        xmlDokument.setInhalt("");
+
+                        // erst flushen, damit Hibernate danach nichts mehr über den gestreamten Inhalt schreibt
+                        xmlDokument = xmlDokumentRepository.saveAndFlush(xmlDokument);
+                        schreibeInhalt(xmlId, gelesen);
+                        strukturProfilRepository.upsert(xmlId, gelesen.analyse());
+
+                        storeXmlInVectorStore(xmlDokument, xmlDokument.getAutor().getName(), prepared);
+                        return xmlDokument;
+                    }));
+        }
+    }
+
+    private void schreibeInhalt(Long xmlId, XmlUploadReader.Upload upload) {
+        try (Reader inhalt = upload.inhalt()) {
+            xmlKompression.schreibeInhalt(xmlId, upload.analyse(), inhalt, upload.zeichen());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     public Optional<XmlDokument> findById(Long id) {
         return xmlDokumentRepository.findById(id);
     }
 
+    @Transactional
     public void deleteXmlById(Long id) {
         xmlDokumentRepository.findById(id).ifPresent(xmlDokument -> {
             // Lösche zuerst aus Vector Store
@@ -83,15 +232,36 @@ public class XmlDokumentService implements XmlOperations {
         });
     }
 
-    public List<Autor> findAllAutoren() {
-        return authorRepository.findAll();
+    // fürs Autoren-Dropdown reichen id + name
+    public List<AutorUebersicht> findAllAutoren() {
+        return authorRepository.findUebersicht(0);
     }
 
-    public List<XmlDokument> findAllXmlDokumente() {
-        List<Autor> autoren = authorRepository.findAll();
-        return autoren.stream()
-                .flatMap(a -> xmlDokumentRepository.findByAutorId(a.getId()).stream())
-                .toList();
+    /**
+     * Eine Seite der XML-Liste, neueste zuerst - genau eine Query, egal wie viele Autoren.
+     *
+     * @param autorId optionaler Filter, null = alle Autoren
+     * @param cursor  {@link XmlDokumentSeite#naechsterCursor()} der Vorseite, null = erste Seite
+     * @throws IllegalArgumentException bei ungültigem Cursor
+     */
+    public XmlDokumentSeite findXmlDokumente(Long autorId, String cursor, int size, int vorschauLaenge) {
+        Pageable limit = PageRequest.of(0, Math.clamp(size, 1, MAX_PAGE_SIZE));
+        XmlDokumentCursor nach = cursor == null || cursor.isBlank() ? null : XmlDokumentCursor.decode(cursor);
+
+        Slice<XmlDokumentUebersicht> slice;
+        if (autorId == null) {
+            slice = nach == null
+                    ? xmlDokumentRepository.findSeite(vorschauLaenge, limit)
+                    : xmlDokumentRepository.findSeiteNach(nach.createdAt(), nach.id(), vorschauLaenge, limit);
+        } else {
+            slice = nach == null
+                    ? xmlDokumentRepository.findSeiteVonAutor(autorId, vorschauLaenge, limit)
+                    : xmlDokumentRepository.findSeiteVonAutorNach(autorId, nach.createdAt(), nach.id(), vorschauLaenge, limit);
+        }
+
+        List<XmlDokumentUebersicht> dokumente = slice.getContent();
+        String naechster = slice.hasNext() ? XmlDokumentCursor.after(dokumente.getLast()).encode() : null;
+        return new XmlDokumentSeite(dokumente, naechster);
     }
 
     public String getAutorNameById(Long autorId) {
@@ -101,20 +271,24 @@ public class XmlDokumentService implements XmlOperations {
     }
 
     @Override
-    @Transactional
     public String saveXml(String autorName, String dateiname, String xmlInhalt) {
         Autor autor = authorRepository.findByName(autorName);
         if (autor == null) {
             return "FEHLER: Autor '" + autorName + "' existiert nicht in der Datenbank.";
         }
 
-        float[] vector = embeddingModel.embed(xmlInhalt);
+        XmlVectorIndexer.PreparedXml prepared = xmlIndexer.prepare(null, xmlInhalt);
+        XmlAnalyse analyse = xmlAnalyzer.analyze(xmlInhalt);
 
-        XmlDokument xmlDokument = new XmlDokument(dateiname, xmlInhalt, vector, autor);
-        XmlDokument savedDokument = xmlDokumentRepository.save(xmlDokument);
+        transactionTemplate.executeWithoutResult(status -> {
+            XmlDokument xmlDokument = new XmlDokument(dateiname, xmlInhalt, prepared.embedding(), autor);
+            xmlKompression.anwenden(xmlDokument, analyse);
+            XmlDokument savedDokument = xmlDokumentRepository.save(xmlDokument);
+            strukturProfilRepository.upsert(savedDokument.getId(), analyse);
 
-        // XML-Dokument auch im Vector Store speichern für RAG
-        storeXmlInVectorStore(savedDokument, autorName);
+            // XML-Dokument auch im Vector Store speichern für RAG
+            storeXmlInVectorStore(savedDokument, autorName, prepared);
+        });
 
         return "XML-Dokument '" + dateiname + "' wurde erfolgreich für Autor '" + autorName + "' gespeichert.";
     }
@@ -142,6 +316,7 @@ public class XmlDokumentService implements XmlOperations {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public XmlListResponse getXmlByAutor(String autorName) {
         Autor autor = authorRepository.findByName(autorName);
         if (autor == null) {
@@ -161,6 +336,7 @@ public class XmlDokumentService implements XmlOperations {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public XmlResponse getXmlById(String autorName, Long xmlId) {
         Autor autor = authorRepository.findByName(autorName);
         if (autor == null) {
@@ -174,30 +350,35 @@ public class XmlDokumentService implements XmlOperations {
     }
 
     @Override
-    @Transactional
     public XmlResponse updateXml(String autorName, Long xmlId, String dateiname, String xmlInhalt) {
         Autor autor = authorRepository.findByName(autorName);
         if (autor == null) {
             return XmlResponse.error(autorName, "Autor existiert nicht in der Datenbank.");
         }
+        if (!xmlDokumentRepository.existsByIdAndAutorId(xmlId, autor.getId())) {
+            return XmlResponse.notFound(autorName, xmlId);
+        }
+        // unveränderte Chunks behalten ihr Embedding
+        XmlVectorIndexer.PreparedXml prepared = xmlIndexer.prepare(xmlId, xmlInhalt);
+        XmlAnalyse analyse = xmlAnalyzer.analyze(xmlInhalt);
 
-        return xmlDokumentRepository.findById(xmlId)
+        return transactionTemplate.execute(status -> xmlDokumentRepository.findById(xmlId)
                 .filter(d -> d.getAutor().getId().equals(autor.getId()))
                 .map(xmlDokument -> {
                     xmlDokument.setDateiname(dateiname);
                     xmlDokument.setInhalt(xmlInhalt);
-                    
-                    float[] vector = embeddingModel.embed(xmlInhalt);
-                    xmlDokument.setXmlEmbedding(vector);
+                    xmlDokument.setXmlEmbedding(prepared.embedding());
+                    xmlKompression.anwenden(xmlDokument, analyse);
                     
                     xmlDokument = xmlDokumentRepository.save(xmlDokument);
+                    strukturProfilRepository.upsert(xmlId, analyse);
                     
                     // Aktualisiere auch im Vector Store
-                    storeXmlInVectorStore(xmlDokument, autorName);
+                    storeXmlInVectorStore(xmlDokument, autorName, prepared);
                     
                     return XmlResponse.success(xmlDokument.getId(), xmlDokument.getDateiname(), xmlDokument.getInhalt(), autorName);
                 })
-                .orElse(XmlResponse.notFound(autorName, xmlId));
+                .orElse(XmlResponse.notFound(autorName, xmlId)));
     }
 
     @Override
@@ -245,108 +426,133 @@ public class XmlDokumentService implements XmlOperations {
                 return XmlListResponse.empty("Keine ähnlichen XML-Dokumente gefunden für: " + query);
             }
 
-            // Konvertiere Search Results zu XML Responses
-            List<XmlResponse> xmlResponses = searchResults.stream()
-                .map(document -> {
-                    // Extrahiere Metadaten
-                    var metadata = document.getMetadata();
-                    Long xmlId = null;
-                    String autorName = "Unbekannt";
-                    String dateiname = "Unbekannt";
-
-                    if (metadata.containsKey("xml_id")) {
-                        try {
-                            xmlId = Long.parseLong(metadata.get("xml_id").toString());
-                        } catch (NumberFormatException e) {
-                            // Ignoriere fehlerhafte ID
-                        }
-                    }
-
-                    if (metadata.containsKey("autor_name")) {
-                        autorName = metadata.get("autor_name").toString();
-                    }
+            return XmlListResponse.searchResults(hydrate(searchResults), query);
+        } catch (Exception e) {
+            return XmlListResponse.error("Fehler bei der semantischen Suche: " + e.getMessage());
+        }
+    }
 
-                    if (metadata.containsKey("dateiname")) {
-                        dateiname = metadata.get("dateiname").toString();
-                    }
+    /**
+     * Macht aus den Vector-Store-Treffern XmlResponses: alle xml_ids in EINER Query (Dateiname, Autor und die ersten
+     * 501 Zeichen per substring in der DB), Reihenfolge nach Score wie vom Store geliefert.
+     * Mehrere Chunks desselben Dokuments ergeben einen Treffer (der beste Score zählt).
+     */
+    private List<XmlResponse> hydrate(List<Document> searchResults) {
+        Map<Long, Document> besteTreffer = new LinkedHashMap<>();
+        for (Document document : searchResults) {
+            Long xmlId = xmlIdOf(document);
+            if (xmlId != null) {
+                besteTreffer.putIfAbsent(xmlId, document);
+            }
+        }
 
-                    // Hole vollständiges XML-Dokument aus der Datenbank
-                    if (xmlId != null) {
-                        return xmlDokumentRepository.findById(xmlId)
-                            .map(xml -> XmlResponse.success(
-                                xml.getId(),
-                                xml.getDateiname(),
-                                xml.getInhalt().length() > 500 
-                                    ? xml.getInhalt().substring(0, 500) + "..." 
-                                    : xml.getInhalt(),
-                                xml.getAutor().getName()
-                            ))
-                            .orElse(XmlResponse.error(autorName, "XML-Dokument nicht mehr verfügbar"));
-                    } else {
-                        // Fallback: Verwende Text aus Vector Store
-                        return XmlResponse.searchResult(
-                            -1L, // Platzhalter ID
-                            dateiname,
-                            document.getText().length() > 500 
-                                ? document.getText().substring(0, 500) + "..." 
-                                : document.getText(),
-                            autorName,
-                            document.getScore() // Similarity Score
-                        );
-                    }
-                })
-                .collect(Collectors.toList());
+        Map<Long, XmlDokumentUebersicht> dokumente = besteTreffer.isEmpty() ? Map.of()
+                : xmlDokumentRepository.findUebersichtByIds(besteTreffer.keySet(), 501).stream()
+                    .collect(Collectors.toMap(XmlDokumentUebersicht::id, Function.identity()));
 
-            return XmlListResponse.searchResults(xmlResponses, query);
-        } catch (Exception e) {
-            return XmlListResponse.error("Fehler bei der semantischen Suche: " + e.getMessage());
+        List<XmlResponse> xmlResponses = new ArrayList<>(searchResults.size());
+        for (Document document : searchResults) {
+            Long xmlId = xmlIdOf(document);
+            if (xmlId == null) {
+                // Fallback: Verwende Text aus Vector Store
+                xmlResponses.add(XmlResponse.searchResult(
+                    -1L, // Platzhalter ID
+                    metadataOr(document, "dateiname"),
+                    vorschau(document.getText()),
+                    metadataOr(document, "autor_name"),
+                    document.getScore() // Similarity Score
+                ));
+            } else if (besteTreffer.get(xmlId) == document) {
+                XmlDokumentUebersicht xml = dokumente.get(xmlId);
+                xmlResponses.add(xml == null
+                    ? XmlResponse.error(metadataOr(document, "autor_name"), "XML-Dokument nicht mehr verfügbar")
+                    : XmlResponse.searchResult(xml.id(), xml.dateiname(), vorschau(xml.vorschau()), xml.autorName(),
+                        document.getScore()));
+            }
         }
+        return xmlResponses;
     }
 
-    private void storeXmlInVectorStore(XmlDokument xmlDokument, String autorName) {
+    private static Long xmlIdOf(Document document) {
+        Object xmlId = document.getMetadata().get("xml_id");
+        if (xmlId == null) {
+            return null;
+        }
         try {
-            // Erstelle Document mit Metadaten für Vector Store
-            Map<String, Object> metadata = Map.of(
-                "document_type", "xml",
-                "xml_id", xmlDokument.getId().toString(),
-                "autor_name", autorName,
-                "dateiname", xmlDokument.getDateiname(),
-                "ingested_at", System.currentTimeMillis()
-            );
+            return Long.parseLong(xmlId.toString());
+        } catch (NumberFormatException e) {
+            return null; // Ignoriere fehlerhafte ID
+        }
+    }
 
-            // Erstelle eindeutige ID basierend auf XML-Inhalt und Autor
-            String customId = "xml_" + autorName + "_" + xmlDokument.getId() + "_" + xmlDokument.getInhalt().hashCode();
-            UUID deterministicId = UUID.nameUUIDFromBytes(customId.getBytes());
-            String docId = deterministicId.toString();
+    private static String metadataOr(Document document, String key) {
+        Object value = document.getMetadata().get(key);
+        return value != null ? value.toString() : "Unbekannt";
+    }
 
-            // Erstelle Document für Vector Store
-            Document document = new Document(
-                docId,
-                xmlDokument.getInhalt(),
-                metadata
-            );
+    private static String vorschau(String text) {
+        return text.length() > 500 ? text.substring(0, 500) + "..." : text;
+    }
 
-            // Speichere im Vector Store
-            vectorStore.accept(List.of(document));
-            
-        } catch (Exception e) {
-            // Logge Fehler aber breche nicht ab, da XML bereits in DB gespeichert ist
-            System.err.println("Warnung: XML konnte nicht im Vector Store gespeichert werden: " + e.getMessage());
-        }
+    /**
+     * Text für XPath/XSLT: unkomprimiert direkt aus der Spalte, sonst entpackt.
+     */
+    private String ladeInhalt(Long xmlId) {
+        return xmlDokumentRepository.findInhaltById(xmlId)
+                .or(() -> xmlKompression.ladeInhalt(xmlId))
+                .orElse(null);
+    }
+
+    /**
+     * Profil aus xml_struktur_profil; nur für Dokumente ohne Profil (vor Liquibase 013 gespeichert und noch nicht
+     * von {@link it.gdorsi.service.xml.XmlStrukturProfilBackfill} erfasst) wird inhalt geladen und geparst.
+     */
+    private XmlAnalyse strukturProfil(XmlDokument xml, Map<Long, XmlAnalyse> profile) {
+        XmlAnalyse profil = profile.get(xml.getId());
+        return profil != null ? profil : xmlAnalyzer.analyze(xml.getInhalt());
+    }
+
+    private XmlAnalyse strukturProfil(XmlDokument xml) {
+        return strukturProfilRepository.findById(xml.getId())
+                .orElseGet(() -> xmlAnalyzer.analyze(xml.getInhalt()));
+    }
+
+    /**
+     * Läuft in der Schreib-Transaktion: ein Fehler hier rollt auch Dokument, Inhalt und Profil zurück. Abfangen geht
+     * nicht - ein fehlgeschlagenes Statement bricht die Postgres-Transaktion ab, der Commit wäre still ein Rollback.
+     */
+    private void storeXmlInVectorStore(XmlDokument xmlDokument, String autorName, XmlVectorIndexer.PreparedXml prepared) {
+        // Ein Document pro Chunk (mit XPath), alte Chunks dieses Dokuments werden entfernt
+        xmlIndexer.index(xmlDokument.getId(), autorName, xmlDokument.getDateiname(), prepared);
+
+        // neuer Inhalt: gecachte Antworten zu diesem XML sind veraltet
+        invalidiereNachCommit(xmlDokument.getId());
     }
 
     private void deleteXmlFromVectorStore(Long xmlId, String autorName) {
-        try {
-            // Lösche alle Einträge mit dieser XML-ID und Autor
-            String sql = "DELETE FROM vector_store WHERE metadata->>'xml_id' = ? AND metadata->>'autor_name' = ?";
-            jdbcTemplate.update(sql, xmlId.toString(), autorName);
-            
-        } catch (Exception e) {
-            System.err.println("Warnung: XML konnte nicht aus Vector Store gelöscht werden: " + e.getMessage());
+        // Lösche alle Einträge mit dieser XML-ID und Autor - Fehler rollen wie beim Speichern alles zurück
+        int removed = chunkRepository.deleteByXmlId(xmlId, autorName);
+        log.debug("XML {} von {}: {} Chunks aus dem Vector Store gelöscht", xmlId, autorName, removed);
+        invalidiereNachCommit(xmlId);
+    }
+
+    // Der Cache fängt eigene Fehler ab - in der Transaktion würde das sie trotzdem abbrechen, also erst danach
+    private void invalidiereNachCommit(Long xmlId) {
+        List<String> quellen = List.of(SemanticResponseCache.xmlSource(xmlId));
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            semanticCache.invalidate(quellen);
+            return;
         }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                semanticCache.invalidate(quellen);
+            }
+        });
     }
 
     @Override
+    @Transactional(readOnly = true)
     public String analyzeXml(String autorName, Long xmlId) {
         try {
             // Finde zuerst den Autor, dann das XML-Dokument
@@ -359,10 +565,7 @@ public class XmlDokumentService implements XmlOperations {
                 .filter(x -> x.getAutor().getId().equals(autor.getId()))
                 .orElseThrow(() -> new IllegalArgumentException("XML-Dokument nicht gefunden für Autor: " + autorName + ", ID: " + xmlId));
             
-            String inhalt = xml.getInhalt();
-            int charCount = inhalt.length();
-            int lineCount = inhalt.split("\n").length;
-            int elementCount = countXmlElements(inhalt);
+            XmlAnalyse analyse = strukturProfil(xml);
             
             return String.format("""
                 📊 XML-Analyse für '%s' (ID: %d):
@@ -370,7 +573,10 @@ public class XmlDokumentService implements XmlOperations {
                 • Dateiname: %s
                 • Autor: %s
                 • Größe: %d Zeichen, %d Zeilen
-                • Geschätzte Elemente: %d
+                • Elemente: %d (maximale Tiefe: %d)
+                • Attribute: %d
+                • Namespaces: %s
+                • Wohlgeformt: %s
                 • Erstellt am: %s
                 
                 Struktur-Übersicht:
@@ -379,16 +585,20 @@ public class XmlDokumentService implements XmlOperations {
                 xml.getDateiname(), xmlId,
                 xml.getDateiname(),
                 autorName,
-                charCount, lineCount,
-                elementCount,
+                analyse.zeichen(), analyse.zeilen(),
+                analyse.elemente(), analyse.maxTiefe(),
+                analyse.attribute(),
+                analyse.namespaces().isEmpty() ? "keine" : analyse.namespaces().toString(),
+                analyse.wohlgeformt() ? "✅" : "❌ " + analyse.fehler(),
                 xml.getCreatedAt() != null ? xml.getCreatedAt().toString() : "Unbekannt",
-                getXmlStructureSummary(inhalt));
+                getXmlStructureSummary(analyse));
         } catch (Exception e) {
             return "❌ Fehler bei der XML-Analyse: " + e.getMessage();
         }
     }
 
     @Override
+    @Transactional(readOnly = true)
     public String compareXml(String autorName, Long xmlId1, Long xmlId2) {
         try {
             // Finde zuerst den Autor
@@ -405,42 +615,54 @@ public class XmlDokumentService implements XmlOperations {
                 .filter(x -> x.getAutor().getId().equals(autor.getId()))
                 .orElseThrow(() -> new IllegalArgumentException("XML-Dokument 2 nicht gefunden"));
             
-            String inhalt1 = xml1.getInhalt();
-            String inhalt2 = xml2.getInhalt();
+            Map<Long, XmlAnalyse> profile = strukturProfilRepository.findByIds(List.of(xmlId1, xmlId2));
+            XmlAnalyse analyse1 = strukturProfil(xml1, profile);
+            XmlAnalyse analyse2 = strukturProfil(xml2, profile);
+            // kanonischer Hash: gleich bis auf Formatierung, Kommentare, Präfixe und Attributreihenfolge;
+            // nur wenn ein Dokument nicht wohlgeformt ist, bleibt der Textvergleich
+            boolean gleich = analyse1.kanonischerHash() != null || analyse2.kanonischerHash() != null
+                ? Objects.equals(analyse1.kanonischerHash(), analyse2.kanonischerHash())
+                : xml1.getInhalt().equals(xml2.getInhalt());
+            // Edit-Script nur, wenn es etwas zu zeigen gibt und beide Dokumente wohlgeformt sind
+            String strukturAenderungen = gleich || analyse1.kanonischerHash() == null
+                || analyse2.kanonischerHash() == null ? "" : strukturAenderungen(xml1, analyse1, xml2, analyse2);
             
             return String.format("""
                 🔍 XML-Vergleich für Autor '%s':
                 
                 Dokument 1: %s (ID: %d)
                 • Größe: %d Zeichen, %d Zeilen
-                • Elemente: %d
+                • Elemente: %d (Root: %s)
                 
                 Dokument 2: %s (ID: %d)
                 • Größe: %d Zeichen, %d Zeilen
-                • Elemente: %d
+                • Elemente: %d (Root: %s)
                 
                 Unterschiede:
                 • Größenunterschied: %d Zeichen
                 • Zeilenunterschied: %d Zeilen
-                • Gleicher Inhalt: %s
-                
+                • Gleicher Inhalt (ohne Formatierung/Kommentare): %s
+                %s%s
                 Empfehlung: %s
                 """,
                 autorName,
                 xml1.getDateiname(), xmlId1,
-                inhalt1.length(), inhalt1.split("\n").length, countXmlElements(inhalt1),
+                analyse1.zeichen(), analyse1.zeilen(), analyse1.elemente(), analyse1.rootElement(),
                 xml2.getDateiname(), xmlId2,
-                inhalt2.length(), inhalt2.split("\n").length, countXmlElements(inhalt2),
-                Math.abs(inhalt1.length() - inhalt2.length()),
-                Math.abs(inhalt1.split("\n").length - inhalt2.split("\n").length),
-                inhalt1.equals(inhalt2) ? "Ja" : "Nein",
-                inhalt1.equals(inhalt2) ? "Dokumente sind identisch" : "Dokumente unterscheiden sich");
+                analyse2.zeichen(), analyse2.zeilen(), analyse2.elemente(), analyse2.rootElement(),
+                Math.abs(analyse1.zeichen() - analyse2.zeichen()),
+                Math.abs(analyse1.zeilen() - analyse2.zeilen()),
+                gleich ? "Ja" : "Nein",
+                getElementDifferences(analyse1, analyse2),
+                strukturAenderungen,
+                gleich ? "Dokumente sind identisch" : "Dokumente unterscheiden sich");
         } catch (Exception e) {
             return "❌ Fehler beim XML-Vergleich: " + e.getMessage();
         }
     }
 
     @Override
+    @Transactional(readOnly = true)
     public String validateXml(String autorName, Long xmlId) {
         try {
             // Finde zuerst den Autor
@@ -454,10 +676,10 @@ public class XmlDokumentService implements XmlOperations {
                 .filter(x -> x.getAutor().getId().equals(autor.getId()))
                 .orElseThrow(() -> new IllegalArgumentException("XML-Dokument nicht gefunden"));
             
-            String inhalt = xml.getInhalt();
-            boolean hasXmlDeclaration = inhalt.trim().startsWith("<?xml");
-            boolean hasRootElement = inhalt.contains("<") && inhalt.contains(">");
-            boolean isWellFormed = checkXmlWellFormed(inhalt);
+            XmlAnalyse analyse = strukturProfil(xml);
+            boolean hasXmlDeclaration = analyse.deklaration();
+            boolean hasRootElement = analyse.hatRootElement();
+            boolean isWellFormed = analyse.wohlgeformt();
             
             return String.format("""
                 ✅ XML-Validierung für '%s' (ID: %d):
@@ -475,8 +697,8 @@ public class XmlDokumentService implements XmlOperations {
                 hasXmlDeclaration ? "✅" : "❌",
                 hasRootElement ? "✅" : "❌",
                 isWellFormed ? "✅" : "❌",
-                inhalt.length(),
-                isWellFormed ? "✅ XML ist gültig" : "❌ XML hat Probleme",
+                analyse.zeichen(),
+                isWellFormed ? "✅ XML ist gültig" : "❌ XML hat Probleme: " + analyse.fehler(),
                 getValidationSuggestions(hasXmlDeclaration, hasRootElement, isWellFormed));
         } catch (Exception e) {
             return "❌ Fehler bei der XML-Validierung: " + e.getMessage();
@@ -484,6 +706,7 @@ public class XmlDokumentService implements XmlOperations {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public String extractXmlElements(String autorName, Long xmlId, String xpath) {
         try {
             // Finde zuerst den Autor
@@ -498,7 +721,13 @@ public class XmlDokumentService implements XmlOperations {
                 .orElseThrow(() -> new IllegalArgumentException("XML-Dokument nicht gefunden"));
             
             String inhalt = xml.getInhalt();
-            String extracted = extractWithSimpleXPath(inhalt, xpath);
+            XmlAnalyzer.Extrakt extrakt = xPathEngine.evaluate(xmlId, inhalt, xpath, MAX_EXTRACTED_ELEMENTS);
+            String extracted = extrakt.elemente().isEmpty()
+                ? "Keine Elemente für '" + xpath + "' gefunden"
+                : String.join("\n", extrakt.elemente());
+            if (extrakt.gesamt() > extrakt.elemente().size()) {
+                extracted += "\n... und " + (extrakt.gesamt() - extrakt.elemente().size()) + " weitere";
+            }
             
             return String.format("""
                 📋 XPath-Extraktion für '%s' (ID: %d):
@@ -512,11 +741,11 @@ public class XmlDokumentService implements XmlOperations {
                 %s
                 ```
                 
-                Hinweis: Dies ist eine einfache XPath-Implementierung. Für komplexe XPath-Ausdrücke verwenden Sie eine dedizierte XML-Bibliothek.
+                Hinweis: XPath 1.0, Namespace-Präfixe wie am Root-Element des Dokuments deklariert.
                 """,
                 xml.getDateiname(), xmlId,
                 xpath,
-                extracted.split("\n").length,
+                extrakt.gesamt(),
                 extracted);
         } catch (Exception e) {
             return "❌ Fehler bei der XPath-Extraktion: " + e.getMessage();
@@ -524,6 +753,58 @@ public class XmlDokumentService implements XmlOperations {
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public String extractXmlElementsByAutor(String autorName, String xpath) {
+        try {
+            Autor autor = authorRepository.findByName(autorName);
+            if (autor == null) {
+                throw new IllegalArgumentException("Autor nicht gefunden: " + autorName);
+            }
+
+            // Entities ohne inhalt (lazy); die Texte lädt jeder Task selbst, parallel
+            List<XmlQuelle> quellen = xmlDokumentRepository.findByAutorId(autor.getId()).stream()
+                .map(d -> new XmlQuelle(d.getId(), d.getDateiname()))
+                .toList();
+            if (quellen.isEmpty()) {
+                return "Keine XML-Dokumente für Autor '" + autorName + "' gefunden.";
+            }
+
+            List<XPathEngine.Treffer> ergebnisse = xPathEngine.evaluateAll(quellen,
+                this::ladeInhalt, xpath, MAX_EXTRACTED_ELEMENTS);
+
+            StringBuilder result = new StringBuilder()
+                .append("📋 XPath-Extraktion über ").append(quellen.size()).append(" XML-Dokument(e) von '")
+                .append(autorName).append("':\n\nXPath: ").append(xpath).append("\n");
+            long gesamt = 0;
+            int ausgegeben = 0;
+            for (XPathEngine.Treffer treffer : ergebnisse) {
+                result.append("\n📄 ").append(treffer.dateiname()).append(" (ID: ").append(treffer.xmlId()).append("): ");
+                if (treffer.fehler() != null) {
+                    result.append("❌ ").append(treffer.fehler()).append("\n");
+                    continue;
+                }
+                XmlAnalyzer.Extrakt extrakt = treffer.extrakt();
+                gesamt += extrakt.gesamt();
+                result.append(extrakt.gesamt()).append(" Treffer\n");
+                // Ausgabe insgesamt begrenzt, gezählt wird trotzdem alles
+                for (String element : extrakt.elemente()) {
+                    if (ausgegeben == MAX_EXTRACTED_ELEMENTS) {
+                        result.append("  ... (Ausgabe gekürzt)\n");
+                        break;
+                    }
+                    result.append("  ").append(element).append("\n");
+                    ausgegeben++;
+                }
+            }
+            result.append("\nGefundene Elemente insgesamt: ").append(gesamt).append("\n");
+            return result.toString();
+        } catch (Exception e) {
+            return "❌ Fehler bei der XPath-Extraktion: " + e.getMessage();
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public String transformXml(String autorName, Long xmlId, String transformationRules) {
         try {
             // Finde zuerst den Autor
@@ -538,7 +819,27 @@ public class XmlDokumentService implements XmlOperations {
                 .orElseThrow(() -> new IllegalArgumentException("XML-Dokument nicht gefunden"));
             
             String inhalt = xml.getInhalt();
-            String transformed = applySimpleTransformation(inhalt, transformationRules);
+            Optional<XsltStylesheet> stylesheet = stylesheetFuer(transformationRules);
+            String regeln;
+            String transformed;
+            long transformedSize;
+            String hinweis;
+            if (stylesheet.isPresent()) {
+                String name = stylesheet.get().name();
+                Templates templates = xsltEngine.compile(name, stylesheet.get().inhalt());
+                XsltEngine.Ergebnis ergebnis = xsltEngine.vorschau(name, templates,
+                    new XmlQuelle(xmlId, xml.getDateiname()), inhalt);
+                regeln = "XSLT '" + name + "'";
+                transformed = ergebnis.gekappt() ? ergebnis.vorschau() + "\n... (gekürzt)" : ergebnis.vorschau();
+                transformedSize = ergebnis.zeichen();
+                hinweis = "XSLT 1.0 - das Stylesheet wird einmal kompiliert und bleibt im Cache.";
+            } else {
+                regeln = transformationRules;
+                transformed = applySimpleTransformation(inhalt, transformationRules);
+                transformedSize = transformed.length();
+                hinweis = "Dies ist eine einfache Transformation. Für XSLT ein Stylesheet mit saveXsltStylesheet "
+                    + "speichern und seinen Namen angeben, oder das Stylesheet direkt übergeben.";
+            }
             
             return String.format("""
                 🔄 XML-Transformation für '%s' (ID: %d):
@@ -553,81 +854,146 @@ public class XmlDokumentService implements XmlOperations {
                 %s
                 ```
                 
-                Hinweis: Dies ist eine einfache Transformation. Für komplexe XSLT-Transformationen verwenden Sie eine dedizierte XML-Bibliothek.
+                Hinweis: %s
                 """,
                 xml.getDateiname(), xmlId,
-                transformationRules,
+                regeln,
                 inhalt.length(),
-                transformed.length(),
-                transformed);
+                transformedSize,
+                transformed,
+                hinweis);
         } catch (Exception e) {
             return "❌ Fehler bei der XML-Transformation: " + e.getMessage();
         }
     }
 
-    private int countXmlElements(String xml) {
-        // Einfache Zählung von XML-Elementen durch Zählen der öffnenden Tags
-        int count = 0;
-        int index = 0;
-        while ((index = xml.indexOf('<', index)) != -1) {
-            if (index + 1 < xml.length() && xml.charAt(index + 1) != '!' && xml.charAt(index + 1) != '?') {
-                count++;
+    @Override
+    public String saveXsltStylesheet(String name, String xslt) {
+        try {
+            if (name == null || name.isBlank() || name.strip().startsWith("<")) {
+                throw new IllegalArgumentException("Ungültiger Name für das Stylesheet: " + name);
             }
-            index++;
+            // erst kompilieren - kaputte Stylesheets landen gar nicht in der Datenbank
+            xsltEngine.compile(name.strip(), xslt);
+            XsltStylesheet gespeichert = xsltStylesheetRepository.upsert(name.strip(), xslt);
+            return "XSLT-Stylesheet '" + gespeichert.name() + "' wurde gespeichert (" + xslt.length() + " Zeichen).";
+        } catch (Exception e) {
+            return "❌ Fehler beim Speichern des XSLT-Stylesheets: " + e.getMessage();
         }
-        return count;
     }
 
-    private String getXmlStructureSummary(String xml) {
-        // Extrahiere erste paar Elemente für Struktur-Übersicht
-        String[] lines = xml.split("\n");
-        StringBuilder summary = new StringBuilder();
-        int elementCount = 0;
-        
-        for (String line : lines) {
-            String trimmed = line.trim();
-            if (trimmed.startsWith("<") && !trimmed.startsWith("<?") && !trimmed.startsWith("<!--")) {
-                if (elementCount < 5) {
-                    summary.append("  • ").append(trimmed.substring(0, Math.min(50, trimmed.length())));
-                    if (trimmed.length() > 50) summary.append("...");
-                    summary.append("\n");
+    @Override
+    @Transactional(readOnly = true)
+    public String transformXmlByAutor(String autorName, String stylesheetName) {
+        try {
+            Autor autor = authorRepository.findByName(autorName);
+            if (autor == null) {
+                throw new IllegalArgumentException("Autor nicht gefunden: " + autorName);
+            }
+            XsltStylesheet stylesheet = stylesheetFuer(stylesheetName)
+                .orElseThrow(() -> new IllegalArgumentException("XSLT-Stylesheet nicht gefunden: " + stylesheetName
+                    + " (gespeichert: " + String.join(", ", xsltStylesheetRepository.findAllNames()) + ")"));
+            Templates templates = xsltEngine.compile(stylesheet.name(), stylesheet.inhalt());
+
+            List<XmlQuelle> quellen = xmlDokumentRepository.findByAutorId(autor.getId()).stream()
+                .map(d -> new XmlQuelle(d.getId(), d.getDateiname()))
+                .toList();
+            if (quellen.isEmpty()) {
+                return "Keine XML-Dokumente für Autor '" + autorName + "' gefunden.";
+            }
+
+            List<XsltEngine.Ergebnis> ergebnisse = xsltEngine.transformAll(stylesheet.name(), templates, quellen,
+                this::ladeInhalt);
+
+            StringBuilder result = new StringBuilder()
+                .append("🔄 XSLT '").append(stylesheet.name()).append("' auf ").append(quellen.size())
+                .append(" XML-Dokument(e) von '").append(autorName).append("':\n");
+            int fehler = 0;
+            for (XsltEngine.Ergebnis ergebnis : ergebnisse) {
+                result.append("\n📄 ").append(ergebnis.dateiname()).append(" (ID: ").append(ergebnis.xmlId()).append("): ");
+                if (ergebnis.fehler() != null) {
+                    fehler++;
+                    result.append("❌ ").append(ergebnis.fehler()).append("\n");
+                    continue;
                 }
-                elementCount++;
+                result.append(ergebnis.zeichen()).append(" Zeichen\n```\n").append(ergebnis.vorschau())
+                    .append(ergebnis.gekappt() ? "\n... (gekürzt)" : "").append("\n```\n");
             }
+            result.append("\nTransformiert: ").append(quellen.size() - fehler).append(", fehlgeschlagen: ").append(fehler).append("\n");
+            return result.toString();
+        } catch (Exception e) {
+            return "❌ Fehler bei der XML-Transformation: " + e.getMessage();
         }
-        
-        if (elementCount > 5) {
-            summary.append("  • ... und ").append(elementCount - 5).append(" weitere Elemente\n");
+    }
+
+    /**
+     * XSLT direkt im Aufruf (beginnt mit '<') oder Name eines gespeicherten Stylesheets; sonst leer (einfache Regeln).
+     */
+    private Optional<XsltStylesheet> stylesheetFuer(String regeln) {
+        if (regeln == null || regeln.isBlank()) {
+            return Optional.empty();
+        }
+        if (regeln.strip().startsWith("<")) {
+            return Optional.of(new XsltStylesheet(null, XsltEngine.INLINE, regeln, null, null));
+        }
+        return xsltStylesheetRepository.findByName(regeln.strip());
+    }
+
+    private String getXmlStructureSummary(XmlAnalyse analyse) {
+        // Die ersten Elementpfade in Dokumentreihenfolge, mit Anzahl
+        StringBuilder summary = new StringBuilder();
+        int shown = 0;
+        for (Map.Entry<String, Long> pfad : analyse.pfade().entrySet()) {
+            if (shown++ == STRUCTURE_SUMMARY_PATHS) {
+                break;
+            }
+            summary.append("  • ").append(pfad.getKey()).append(" (").append(pfad.getValue()).append("x)\n");
+        }
+        if (analyse.pfade().size() > STRUCTURE_SUMMARY_PATHS || analyse.gekappt()) {
+            summary.append("  • ... und weitere Pfade\n");
         }
-        
         return summary.toString();
     }
 
-    private boolean checkXmlWellFormed(String xml) {
-        // Einfache Prüfung auf wohlgeformtes XML
-        try {
-            // Prüfe auf geschlossene Tags (einfache Implementierung)
-            int openTags = 0;
-            int closeTags = 0;
-            String[] lines = xml.split("\n");
-            
-            for (String line : lines) {
-                String trimmed = line.trim();
-                if (trimmed.startsWith("<") && !trimmed.startsWith("<?") && !trimmed.startsWith("<!--")) {
-                    if (!trimmed.contains("/>")) {
-                        if (!trimmed.startsWith("</")) {
-                            openTags++;
-                        } else {
-                            closeTags++;
-                        }
-                    }
-                }
+    private String getElementDifferences(XmlAnalyse analyse1, XmlAnalyse analyse2) {
+        StringBuilder differences = new StringBuilder();
+        Set<String> namen = new LinkedHashSet<>(analyse1.elementNamen().keySet());
+        namen.addAll(analyse2.elementNamen().keySet());
+        int shown = 0;
+        for (String name : namen) {
+            long anzahl1 = analyse1.elementNamen().getOrDefault(name, 0L);
+            long anzahl2 = analyse2.elementNamen().getOrDefault(name, 0L);
+            if (anzahl1 != anzahl2 && shown++ < STRUCTURE_SUMMARY_PATHS) {
+                differences.append("• <").append(name).append(">: ").append(anzahl1).append(" → ").append(anzahl2).append("\n");
             }
-            
-            return openTags == closeTags;
-        } catch (Exception e) {
-            return false;
         }
+        return differences.toString();
+    }
+
+    private String strukturAenderungen(XmlDokument xml1, XmlAnalyse analyse1, XmlDokument xml2, XmlAnalyse analyse2) {
+        XmlDiff.Ergebnis diff = xmlDiff.vergleiche(analyse1.kanonischerHash(), xml1::oeffneInhalt,
+                analyse2.kanonischerHash(), xml2::oeffneInhalt);
+        StringBuilder text = new StringBuilder("\nStrukturelle Änderungen (").append(diff.gesamt()).append("):\n");
+        for (XmlDiff.Aenderung aenderung : diff.aenderungen()) {
+            text.append("• ").append(switch (aenderung.art()) {
+                case EINGEFUEGT -> "+ ";
+                case GELOESCHT -> "- ";
+                case GEAENDERT -> "~ ";
+                case UMSORTIERT -> "↕ ";
+            }).append(aenderung.xpath());
+            if (aenderung.art() == XmlDiff.Art.UMSORTIERT) {
+                text.append(" (Reihenfolge der Kindelemente)");
+            } else if (aenderung.vorher() != null && aenderung.nachher() != null) {
+                text.append(": \"").append(aenderung.vorher()).append("\" → \"").append(aenderung.nachher()).append('"');
+            } else {
+                text.append(": ").append(aenderung.vorher() != null ? aenderung.vorher() : aenderung.nachher());
+            }
+            text.append("\n");
+        }
+        if (diff.gesamt() > diff.aenderungen().size()) {
+            text.append("• … und ").append(diff.gesamt() - diff.aenderungen().size()).append(" weitere\n");
+        }
+        return text.toString();
     }
 
     private String getValidationSuggestions(boolean hasXmlDeclaration, boolean hasRootElement, boolean isWellFormed) {
@@ -650,37 +1016,6 @@ public class XmlDokumentService implements XmlOperations {
         return suggestions.toString();
     }
 
-    private String extractWithSimpleXPath(String xml, String xpath) {
-        // Einfache XPath-Implementierung für grundlegende Pfade
-        if (xpath.equals("/") || xpath.equals("/*")) {
-            return xml;
-        }
-        
-        if (xpath.startsWith("//")) {
-            // Suche nach Elementnamen
-            String elementName = xpath.substring(2);
-            return extractElementsByName(xml, elementName);
-        }
-        
-        return "XPath-Ausdruck wird nicht unterstützt: " + xpath + "\nUnterstützt: '/', '/*', '//elementName'";
-    }
-
-    private String extractElementsByName(String xml, String elementName) {
-        StringBuilder result = new StringBuilder();
-        String[] lines = xml.split("\n");
-        
-        for (String line : lines) {
-            String trimmed = line.trim();
-            if (trimmed.startsWith("<" + elementName + ">") || 
-                trimmed.startsWith("<" + elementName + " ") ||
-                trimmed.contains("</" + elementName + ">")) {
-                result.append(line).append("\n");
-            }
-        }
-        
-        return result.length() > 0 ? result.toString() : "Keine Elemente mit Namen '" + elementName + "' gefunden";
-    }
-
     private String applySimpleTransformation(String xml, String rules) {
         // Einfache Transformationen
         if (rules.contains("toUpperCase")) {
@@ -696,6 +1031,7 @@ public class XmlDokumentService implements XmlOperations {
             return xml.replaceAll("\\s+", " ").trim();
         }
         
-        return "Transformations-Regel nicht erkannt: " + rules + "\nUnterstützt: 'toUpperCase', 'toLowerCase', 'removeComments', 'removeWhitespace'";
+        return "Transformations-Regel nicht erkannt: " + rules + "\nUnterstützt: 'toUpperCase', 'toLowerCase', 'removeComments', 'removeWhitespace',"
+            + " ein XSLT-Stylesheet oder der Name eines gespeicherten Stylesheets";
     }
 }
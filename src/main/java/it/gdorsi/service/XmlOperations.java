@@ -31,7 +31,7 @@ public interface XmlOperations {
     @Tool(description = "Analysiert ein XML-Dokument und gibt strukturierte Informationen zurück")
     String analyzeXml(String autorName, Long xmlId);
     
-    @Tool(description = "Vergleicht zwei XML-Dokumente und zeigt Unterschiede")
+    @Tool(description = "Vergleicht zwei XML-Dokumente strukturell und listet eingefügte, gelöschte und geänderte Elemente mit XPath")
     String compareXml(String autorName, Long xmlId1, Long xmlId2);
     
     @Tool(description = "Validiert XML-Syntax und gibt Fehler zurück")
@@ -40,6 +40,15 @@ public interface XmlOperations {
     @Tool(description = "Extrahiert spezifische Elemente aus XML basierend auf XPath")
     String extractXmlElements(String autorName, Long xmlId, String xpath);
     
-    @Tool(description = "Transformiert XML mit XSLT oder anderen Regeln")
+    @Tool(description = "Extrahiert Elemente per XPath aus allen XML-Dokumenten eines Autors")
+    String extractXmlElementsByAutor(String autorName, String xpath);
+    
+    @Tool(description = "Transformiert XML mit XSLT (Name eines gespeicherten Stylesheets oder das Stylesheet selbst) oder einfachen Regeln")
     String transformXml(String autorName, Long xmlId, String transformationRules);
+    
+    @Tool(description = "Speichert ein XSLT-Stylesheet unter einem Namen für transformXml")
+    String saveXsltStylesheet(String name, String xslt);
+    
+    @Tool(description = "Transformiert alle XML-Dokumente eines Autors mit einem gespeicherten XSLT-Stylesheet")
+    String transformXmlByAutor(String autorName, String stylesheetName);
 }
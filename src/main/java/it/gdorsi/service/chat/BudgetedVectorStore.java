@@ -0,0 +1,57 @@
+package it.gdorsi.service.chat;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+/**
+ * Decorator für den QuestionAnswerAdvisor: der Advisor hängt die Treffer ungekürzt in den Prompt, deshalb läuft
+ * jede similaritySearch hier durch den {@link ContextAssembler} (Sortierung, Duplikate, Token-Budget).
+ * Alles andere geht unverändert durch.
+ */
+public class BudgetedVectorStore implements VectorStore {
+
+    private final VectorStore delegate;
+    private final ContextAssembler contextAssembler;
+    private final String endpoint;
+
+    public BudgetedVectorStore(VectorStore delegate, ContextAssembler contextAssembler, String endpoint) {
+        this.delegate = delegate;
+        this.contextAssembler = contextAssembler;
+        this.endpoint = endpoint;
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        return contextAssembler.baue(endpoint, delegate.similaritySearch(request)).dokumente();
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        delegate.add(documents);
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        delegate.delete(idList);
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        delegate.delete(filterExpression);
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public <T> Optional<T> getNativeClient() {
+        return delegate.getNativeClient();
+    }
+}
@@ -0,0 +1,177 @@
+package it.gdorsi.service.chat;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.util.HtmlUtils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+/**
+ * Brücke ChatClient.stream() -> Server-Sent Events für HTMX (htmx-ext-sse).
+ * <p>
+ * Events:
+ * - "sources": optionales HTML vor der Antwort (z.B. gefundene RAG-Dokumente)
+ * - "token":   ein Stück Antwort, HTML-escaped, Zeilenumbrüche als &lt;br&gt;
+ * - "error":   Fehlermeldung
+ * - "done":    Ende, das Fragment schließt damit die Verbindung (sse-close="done")
+ * <p>
+ * Metriken pro Endpoint: chat.stream.ttft (Zeit bis zum ersten Token), chat.stream.tokens.per.second,
+ * chat.stream.tokens. Ollama liefert pro Chunk ungefähr ein Token, wir zählen die Chunks.
+ * Antworten aus dem semantischen Cache kommen als ein einziges Token und würden TTFT und Durchsatz verzerren -
+ * sie zählen nur in chat.stream.cache.hits.
+ */
+@Service
+public class ChatStreamService {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatStreamService.class);
+
+    /** Lange Antworten von llama3.1 auf CPU dauern - großzügig, aber nicht unendlich */
+    private static final long EMITTER_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final MeterRegistry meterRegistry;
+
+    public ChatStreamService(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public SseEmitter stream(String endpoint, Flux<String> tokens) {
+        return stream(endpoint, null, tokens);
+    }
+
+    public SseEmitter stream(String endpoint, String sourcesHtml, Flux<String> tokens) {
+        return sende(endpoint, sourcesHtml, tokens.map(token -> new Teil(token, false)));
+    }
+
+    /**
+     * Für ChatClient.stream().chatClientResponse(): Treffer des {@link SemanticCacheAdvisor} werden erkannt und
+     * nicht als Modell-Stream gemessen.
+     */
+    public SseEmitter streamResponses(String endpoint, Flux<ChatClientResponse> responses) {
+        return sende(endpoint, null, responses.mapNotNull(ChatStreamService::teil));
+    }
+
+    /**
+     * Antwort aus dem semantischen Cache, als ein Token nach den Quellen.
+     */
+    public SseEmitter streamCached(String endpoint, String sourcesHtml, String answer) {
+        return sende(endpoint, sourcesHtml, Flux.just(new Teil(answer, true)));
+    }
+
+    private record Teil(String text, boolean ausCache) {}
+
+    private static Teil teil(ChatClientResponse response) {
+        if (response.chatResponse() == null || response.chatResponse().getResult() == null) {
+            return null;
+        }
+        String text = response.chatResponse().getResult().getOutput().getText();
+        return text == null ? null : new Teil(text, response.context().containsKey(SemanticCacheAdvisor.HIT));
+    }
+
+    private SseEmitter sende(String endpoint, String sourcesHtml, Flux<Teil> tokens) {
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT_MILLIS);
+        long start = System.nanoTime();
+        AtomicLong firstTokenAt = new AtomicLong();
+        AtomicLong tokenCount = new AtomicLong();
+        AtomicBoolean closed = new AtomicBoolean(false);
+        AtomicBoolean ausCache = new AtomicBoolean(false);
+
+        Timer ttft = Timer.builder("chat.stream.ttft").tag("endpoint", endpoint).register(meterRegistry);
+        DistributionSummary tokensPerSecond = DistributionSummary.builder("chat.stream.tokens.per.second")
+                .tag("endpoint", endpoint).register(meterRegistry);
+        Counter tokenCounter = Counter.builder("chat.stream.tokens").tag("endpoint", endpoint).register(meterRegistry);
+
+        if (sourcesHtml != null) {
+            send(emitter, "sources", sourcesHtml);
+        }
+
+        Disposable subscription = tokens.subscribe(
+                token -> {
+                    if (token.ausCache()) {
+                        if (ausCache.compareAndSet(false, true)) {
+                            Counter.builder("chat.stream.cache.hits").tag("endpoint", endpoint)
+                                    .register(meterRegistry).increment();
+                        }
+                    } else {
+                        if (firstTokenAt.compareAndSet(0, System.nanoTime())) {
+                            ttft.record(firstTokenAt.get() - start, TimeUnit.NANOSECONDS);
+                        }
+                        tokenCount.incrementAndGet();
+                        tokenCounter.increment();
+                    }
+                    send(emitter, "token", HtmlUtils.htmlEscape(token.text()).replace("\n", "<br>"));
+                },
+                error -> {
+                    log.error("Streaming ({}) abgebrochen: {}", endpoint, error.getMessage(), error);
+                    send(emitter, "error", "❌ KI-Fehler: " + HtmlUtils.htmlEscape(String.valueOf(error.getMessage())));
+                    finish(emitter, closed);
+                },
+                () -> {
+                    if (firstTokenAt.get() > 0) {
+                        double seconds = (System.nanoTime() - firstTokenAt.get()) / 1_000_000_000.0;
+                        if (seconds > 0) {
+                            tokensPerSecond.record(tokenCount.get() / seconds);
+                        }
+                    }
+                    finish(emitter, closed);
+                });
+
+        // Browser weg oder Timeout: Ollama-Stream abbrechen, sonst generiert er für niemanden weiter
+        emitter.onCompletion(subscription::dispose);
+        emitter.onTimeout(() -> {
+            subscription.dispose();
+            finish(emitter, closed);
+        });
+        emitter.onError(e -> subscription.dispose());
+        return emitter;
+    }
+
+    /**
+     * Container-Fragment, das sich per SSE mit {@code path} verbindet und die Tokens anhängt.
+     */
+    public static String containerHtml(String path, Map<String, String> params, String tokenCssClass) {
+        String query = params.entrySet().stream()
+                .map(e -> e.getKey() + "=" + URLEncoder.encode(e.getValue(), StandardCharsets.UTF_8))
+                .collect(Collectors.joining("&"));
+        String url = HtmlUtils.htmlEscape(path + "?" + query);
+        return """
+                <div hx-ext="sse" sse-connect="%s" sse-close="done">
+                    <div sse-swap="sources" hx-swap="innerHTML"></div>
+                    <div class="%s" sse-swap="token" hx-swap="beforeend"></div>
+                    <div class="text-red-600" sse-swap="error" hx-swap="innerHTML"></div>
+                </div>
+                """.formatted(url, tokenCssClass);
+    }
+
+    private void finish(SseEmitter emitter, AtomicBoolean closed) {
+        if (closed.compareAndSet(false, true)) {
+            send(emitter, "done", "");
+            emitter.complete();
+        }
+    }
+
+    private static void send(SseEmitter emitter, String event, String data) {
+        try {
+            emitter.send(SseEmitter.event().name(event).data(data));
+        } catch (IOException | IllegalStateException e) {
+            // Client hat die Verbindung schon geschlossen
+            log.debug("SSE-Event {} nicht gesendet: {}", event, e.getMessage());
+        }
+    }
+}
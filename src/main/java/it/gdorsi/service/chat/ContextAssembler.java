@@ -0,0 +1,161 @@
+package it.gdorsi.service.chat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.stereotype.Component;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingResult;
+import com.knuddels.jtokkit.api.EncodingType;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.gdorsi.config.RagContextProperties;
+
+/**
+ * Stellt den Kontext für RAG-Prompts innerhalb eines Token-Budgets zusammen:
+ * <ol>
+ *     <li>nach Score sortieren, bester zuerst</li>
+ *     <li>Duplikate und überlappende Chunks verwerfen (Wort-5-Gramme, die schon im Kontext stehen)</li>
+ *     <li>auffüllen, bis das Budget erreicht ist - der erste Abschnitt, der nicht mehr passt, wird angeschnitten,
+ *     alle schlechteren fallen weg</li>
+ * </ol>
+ * Gezählt wird mit cl100k_base, derselben Kodierung wie TokenTextSplitter und JTokkitTokenCountEstimator. llama3.1
+ * zählt etwas anders, das Budget ist also eine Obergrenze mit Spielraum, kein exakter Wert.
+ * <p>
+ * Pro Aufruf: rag.context.tokens (eingefügt), rag.context.candidate.tokens (gefunden) und
+ * rag.context.chunks.dropped (Grund duplicate/budget), jeweils mit Tag endpoint.
+ */
+@Component
+public class ContextAssembler {
+
+    private static final Logger log = LoggerFactory.getLogger(ContextAssembler.class);
+
+    private static final int SHINGLE_WOERTER = 5;
+
+    // Encodings sind threadsicher
+    private static final Encoding ENCODING = Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+
+    /**
+     * @param dokumente        ausgewählte Abschnitte nach Score, der letzte evtl. gekürzt
+     * @param tokens           Tokens der ausgewählten Abschnitte
+     * @param kandidatenTokens Tokens aller Kandidaten
+     */
+    public record Kontext(List<Document> dokumente, int tokens, int kandidatenTokens, int duplikate,
+                          int verworfen, boolean gekuerzt) {
+
+        public String text(String trenner) {
+            return dokumente.stream().map(Document::getText).collect(Collectors.joining(trenner));
+        }
+    }
+
+    private final RagContextProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    public ContextAssembler(RagContextProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public Kontext baue(String endpoint, List<Document> kandidaten) {
+        return baue(endpoint, kandidaten, properties.maxTokens());
+    }
+
+    /**
+     * @param maxTokens Budget für diesen Aufruf, z.B. wenn der Prompt selbst schon viel mitbringt
+     */
+    public Kontext baue(String endpoint, List<Document> kandidaten, int maxTokens) {
+        List<Document> sortiert = kandidaten.stream()
+                .filter(d -> d.getText() != null && !d.getText().isBlank())
+                .sorted(Comparator.comparingDouble(ContextAssembler::score).reversed())
+                .toList();
+
+        List<Document> ausgewaehlt = new ArrayList<>();
+        Set<String> bekannteShingles = new HashSet<>();
+        int tokens = 0;
+        int kandidatenTokens = 0;
+        int duplikate = 0;
+        int verworfen = 0;
+        boolean gekuerzt = false;
+        for (Document dokument : sortiert) {
+            int dokumentTokens = ENCODING.countTokensOrdinary(dokument.getText());
+            kandidatenTokens += dokumentTokens;
+            Set<String> shingles = shingles(dokument.getText());
+            if (istDuplikat(shingles, bekannteShingles)) {
+                duplikate++;
+                continue;
+            }
+            int rest = maxTokens - tokens;
+            if (dokumentTokens <= rest) {
+                ausgewaehlt.add(dokument);
+                tokens += dokumentTokens;
+            } else if (!gekuerzt && rest >= properties.minTokens()) {
+                // die schlechteren Abschnitte kommen danach ohnehin nicht mehr rein
+                EncodingResult anfang = ENCODING.encodeOrdinary(dokument.getText(), rest);
+                String text = dokument.getText().substring(0, anfang.getLastProcessedCharacterIndex() + 1);
+                ausgewaehlt.add(dokument.mutate().text(text).build());
+                tokens += anfang.getTokens().size();
+                gekuerzt = true;
+            } else {
+                verworfen++;
+                continue;
+            }
+            bekannteShingles.addAll(shingles);
+        }
+
+        DistributionSummary.builder("rag.context.tokens").tag("endpoint", endpoint).register(meterRegistry)
+                .record(tokens);
+        DistributionSummary.builder("rag.context.candidate.tokens").tag("endpoint", endpoint).register(meterRegistry)
+                .record(kandidatenTokens);
+        zaehleVerworfen(endpoint, "duplicate", duplikate);
+        zaehleVerworfen(endpoint, "budget", verworfen);
+        log.debug("RAG-Kontext {}: {} von {} Tokens, {} Abschnitte, {} Duplikate, {} über Budget{}", endpoint, tokens,
+                kandidatenTokens, ausgewaehlt.size(), duplikate, verworfen, gekuerzt ? ", letzter gekürzt" : "");
+        return new Kontext(List.copyOf(ausgewaehlt), tokens, kandidatenTokens, duplikate, verworfen, gekuerzt);
+    }
+
+    private void zaehleVerworfen(String endpoint, String grund, int anzahl) {
+        if (anzahl > 0) {
+            Counter.builder("rag.context.chunks.dropped").tag("endpoint", endpoint).tag("reason", grund)
+                    .register(meterRegistry).increment(anzahl);
+        }
+    }
+
+    private boolean istDuplikat(Set<String> shingles, Set<String> bekannt) {
+        if (shingles.isEmpty() || bekannt.isEmpty()) {
+            return false;
+        }
+        long schonDa = shingles.stream().filter(bekannt::contains).count();
+        return schonDa >= properties.duplikatSchwelle() * shingles.size();
+    }
+
+    // Wort-5-Gramme, Groß-/Kleinschreibung und Whitespace egal; kurze Texte sind ein einziges Shingle
+    private static Set<String> shingles(String text) {
+        List<String> woerter = Arrays.asList(text.toLowerCase(Locale.ROOT).strip().split("\\s+"));
+        Set<String> shingles = new HashSet<>();
+        if (woerter.size() < SHINGLE_WOERTER) {
+            shingles.add(String.join(" ", woerter));
+            return shingles;
+        }
+        for (int i = 0; i + SHINGLE_WOERTER <= woerter.size(); i++) {
+            shingles.add(String.join(" ", woerter.subList(i, i + SHINGLE_WOERTER)));
+        }
+        return shingles;
+    }
+
+    private static double score(Document dokument) {
+        return dokument.getScore() == null ? 0.0 : dokument.getScore();
+    }
+}
@@ -0,0 +1,140 @@
+package it.gdorsi.service.chat;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.springframework.ai.chat.client.ChatClientMessageAggregator;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.client.advisor.vectorstore.QuestionAnswerAdvisor;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.document.Document;
+import org.springframework.stereotype.Component;
+
+import it.gdorsi.dao.CachedAnswer;
+import reactor.core.publisher.Flux;
+
+/**
+ * Advisor vor dem QuestionAnswerAdvisor: bei einem Cache-Treffer wird weder gesucht noch generiert.
+ * <p>
+ * Opt-in pro Request über Advisor-Parameter:
+ * - {@link #QUESTION}: die eigentliche Frage (ohne Sprach-Anweisungen o.ä.), ohne diesen Parameter ist der Advisor inaktiv
+ * - {@link #SCOPE}: trennt Antworten, die nicht austauschbar sind (z.B. Endpoint + Sprache)
+ * - {@link #SOURCES}: optionale Quellen, falls das Retrieval nicht über den QuestionAnswerAdvisor läuft
+ * <p>
+ * Bei einem Treffer liegt die {@link CachedAnswer} (mit Provenienz) unter {@link #HIT} im Response-Kontext.
+ * Achtung bei Chat-Memory: Folgefragen wie "und der zweite?" nur cachen, wenn sie für sich allein verständlich sind.
+ */
+@Component
+public class SemanticCacheAdvisor implements CallAdvisor, StreamAdvisor {
+
+    public static final String QUESTION = "semantic_cache_question";
+    public static final String SCOPE = "semantic_cache_scope";
+    public static final String SOURCES = "semantic_cache_sources";
+    public static final String HIT = "semantic_cache_hit";
+
+    /** Nach dem MessageChatMemoryAdvisor (Verlauf bleibt vollständig), vor dem QuestionAnswerAdvisor (Order 0) */
+    private static final int ORDER = -100;
+
+    private final SemanticResponseCache cache;
+
+    public SemanticCacheAdvisor(SemanticResponseCache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public ChatClientResponse adviseCall(ChatClientRequest request, CallAdvisorChain chain) {
+        String question = question(request);
+        if (question == null) {
+            return chain.nextCall(request);
+        }
+        String scope = scope(request);
+        Optional<CachedAnswer> hit = cache.lookup(scope, question);
+        if (hit.isPresent()) {
+            return fromCache(request, hit.get());
+        }
+        ChatClientResponse response = chain.nextCall(request);
+        store(scope, question, request, response);
+        return response;
+    }
+
+    @Override
+    public Flux<ChatClientResponse> adviseStream(ChatClientRequest request, StreamAdvisorChain chain) {
+        String question = question(request);
+        if (question == null) {
+            return chain.nextStream(request);
+        }
+        String scope = scope(request);
+        // Lookup blockiert (Embedding + SQL) - erst bei Subscription, nicht beim Zusammenbauen
+        return Flux.defer(() -> cache.lookup(scope, question)
+                .map(hit -> Flux.just(fromCache(request, hit)))
+                .orElseGet(() -> new ChatClientMessageAggregator().aggregateChatClientResponse(
+                        chain.nextStream(request), response -> store(scope, question, request, response))));
+    }
+
+    private ChatClientResponse fromCache(ChatClientRequest request, CachedAnswer hit) {
+        ChatResponse chatResponse = ChatResponse.builder()
+                .generations(List.of(new Generation(new AssistantMessage(hit.answer()))))
+                .metadata(HIT, hit)
+                .build();
+        return ChatClientResponse.builder()
+                .chatResponse(chatResponse)
+                .context(request.context())
+                .context(HIT, hit)
+                .build();
+    }
+
+    private void store(String scope, String question, ChatClientRequest request, ChatClientResponse response) {
+        if (response.chatResponse() == null || response.chatResponse().getResult() == null) {
+            return;
+        }
+        String answer = response.chatResponse().getResult().getOutput().getText();
+        cache.store(scope, question, answer, sources(request, response));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Set<String> sources(ChatClientRequest request, ChatClientResponse response) {
+        Set<String> sources = new LinkedHashSet<>();
+        if (request.context().get(SOURCES) instanceof Collection<?> explicit) {
+            explicit.forEach(source -> sources.add(String.valueOf(source)));
+        }
+        // Der QuestionAnswerAdvisor legt die gefundenen Chunks in Kontext bzw. Metadaten ab
+        Object retrieved = response.context().get(QuestionAnswerAdvisor.RETRIEVED_DOCUMENTS);
+        if (retrieved == null && response.chatResponse() != null) {
+            retrieved = response.chatResponse().getMetadata().get(QuestionAnswerAdvisor.RETRIEVED_DOCUMENTS);
+        }
+        if (retrieved instanceof List<?> documents) {
+            sources.addAll(SemanticResponseCache.sourcesOf((List<Document>) documents));
+        }
+        return sources;
+    }
+
+    private static String question(ChatClientRequest request) {
+        Object question = request.context().get(QUESTION);
+        return question != null ? question.toString() : null;
+    }
+
+    private static String scope(ChatClientRequest request) {
+        Object scope = request.context().get(SCOPE);
+        return scope != null ? scope.toString() : "default";
+    }
+
+    @Override
+    public String getName() {
+        return "SemanticCacheAdvisor";
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+}
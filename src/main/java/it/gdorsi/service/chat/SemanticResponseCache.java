@@ -0,0 +1,145 @@
+package it.gdorsi.service.chat;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.gdorsi.config.SemanticCacheProperties;
+import it.gdorsi.dao.CachedAnswer;
+import it.gdorsi.repository.SemanticCacheRepository;
+import it.gdorsi.service.util.ContentHash;
+
+/**
+ * Semantischer Antwort-Cache: gleiche (oder sehr ähnliche) Frage im gleichen Scope -> gespeicherte Antwort,
+ * ohne Retrieval und ohne LLM-Aufruf.
+ * <p>
+ * Jede Antwort merkt sich ihre Quellen (file:&lt;file_name&gt; für PDFs, xml:&lt;xml_id&gt; für XML-Dokumente).
+ * Wird eine Quelle neu eingelesen oder gelöscht, fliegen alle Antworten raus, die sich darauf stützen.
+ * <p>
+ * Wie beim Embedding-Cache gilt: fällt die Tabelle aus, wird nur geloggt - der Cache darf nie eine Antwort verhindern.
+ * Metriken: semantic.cache.hits, semantic.cache.misses, semantic.cache.invalidations.
+ */
+@Service
+public class SemanticResponseCache {
+
+    private static final Logger log = LoggerFactory.getLogger(SemanticResponseCache.class);
+
+    private final SemanticCacheRepository repository;
+    private final EmbeddingModel embeddingModel;
+    private final SemanticCacheProperties properties;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter invalidations;
+
+    public SemanticResponseCache(SemanticCacheRepository repository, EmbeddingModel embeddingModel,
+                                 SemanticCacheProperties properties, MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.embeddingModel = embeddingModel;
+        this.properties = properties;
+        this.hits = Counter.builder("semantic.cache.hits").register(meterRegistry);
+        this.misses = Counter.builder("semantic.cache.misses").register(meterRegistry);
+        this.invalidations = Counter.builder("semantic.cache.invalidations").register(meterRegistry);
+    }
+
+    public Optional<CachedAnswer> lookup(String scope, String question) {
+        if (!properties.enabled() || question == null || question.isBlank()) {
+            return Optional.empty();
+        }
+        try {
+            float[] embedding = embeddingModel.embed(normalize(question));
+            Optional<CachedAnswer> hit = repository.findNearest(scope, embedding, properties.ttl())
+                    .filter(answer -> answer.similarity() >= properties.similarityThreshold());
+            if (hit.isPresent()) {
+                hits.increment();
+                repository.recordHit(hit.get().id());
+                log.debug("Semantic-Cache-Treffer ({}): '{}' ~ '{}' ({})", scope, question, hit.get().question(), hit.get().similarity());
+            } else {
+                misses.increment();
+            }
+            return hit;
+        } catch (RuntimeException e) {
+            // DB weg oder Embedding-Modell ausgelastet: dann eben ohne Cache
+            log.warn("Semantic-Cache nicht lesbar: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Ohne Quellen wird nichts gespeichert: keine Invalidierung könnte die Antwort je verwerfen, sie bliebe bis
+     * zum TTL stehen - auch wenn später genau die passenden Dokumente eingelesen werden.
+     */
+    public void store(String scope, String question, String answer, Collection<String> sources) {
+        if (!properties.enabled() || question == null || question.isBlank() || answer == null || answer.isBlank()
+                || sources == null || sources.isEmpty()) {
+            return;
+        }
+        try {
+            String normalized = normalize(question);
+            // Embedding kommt aus dem Embedding-Cache, der Lookup hat es gerade berechnet
+            repository.save(scope, ContentHash.sha256Hex(normalized), question, answer,
+                    embeddingModel.embed(normalized), sources);
+        } catch (RuntimeException e) {
+            log.warn("Semantic-Cache nicht schreibbar: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Verwirft alle Antworten, die sich auf eine der Quellen stützen.
+     */
+    public void invalidate(Collection<String> sources) {
+        if (sources.isEmpty()) {
+            return;
+        }
+        try {
+            int removed = repository.deleteBySources(sources);
+            if (removed > 0) {
+                invalidations.increment(removed);
+                log.info("Semantic-Cache: {} Antworten für {} verworfen.", removed, sources);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Semantic-Cache nicht invalidierbar: {}", e.getMessage());
+        }
+    }
+
+    public static String fileSource(String fileName) {
+        return "file:" + fileName;
+    }
+
+    public static String xmlSource(Object xmlId) {
+        return "xml:" + xmlId;
+    }
+
+    /**
+     * Quellen aus den Metadaten der abgerufenen Chunks (PDF: file_name, XML: xml_id).
+     */
+    public static Set<String> sourcesOf(List<Document> documents) {
+        Set<String> sources = new LinkedHashSet<>();
+        for (Document document : documents) {
+            Object xmlId = document.getMetadata().get("xml_id");
+            Object fileName = document.getMetadata().get("file_name");
+            if (xmlId != null) {
+                sources.add(xmlSource(xmlId));
+            } else if (fileName != null) {
+                sources.add(fileSource(fileName.toString()));
+            }
+        }
+        return sources;
+    }
+
+    // "Was kostet Vertrag X?" und "was kostet vertrag x" sind dieselbe Frage
+    static String normalize(String question) {
+        return question.strip().replaceAll("\\s+", " ").toLowerCase();
+    }
+}
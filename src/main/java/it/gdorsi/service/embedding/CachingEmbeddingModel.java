@@ -0,0 +1,185 @@
+package it.gdorsi.service.embedding;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.dao.DataAccessException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.gdorsi.repository.EmbeddingCacheRepository;
+import it.gdorsi.service.util.ContentHash;
+
+/**
+ * Decorator um das echte EmbeddingModel (Ollama).
+ * Gleicher Text + gleiches Modell + gleiche Dimension = gleicher Vektor, also fragen wir Ollama nur einmal.
+ * <p>
+ * Zwei Stufen:
+ * 1. In-Memory LRU (begrenzt über maxEntries)
+ * 2. Tabelle embedding_cache in Postgres (überlebt Neustarts, optional)
+ * <p>
+ * Alle Texte eines Requests werden gesammelt nachgeschlagen, nur die Misses gehen als EIN Batch an das Modell.
+ * Fällt die DB-Stufe aus, wird nur geloggt - ein Cache darf das Embedding nie verhindern.
+ */
+public class CachingEmbeddingModel implements EmbeddingModel {
+
+    private static final Logger log = LoggerFactory.getLogger(CachingEmbeddingModel.class);
+
+    private final EmbeddingModel delegate;
+    private final EmbeddingCacheRepository cacheRepository;
+    private final String defaultModelName;
+    private final int dimensions;
+    private final Map<String, float[]> memoryCache;
+
+    private final Counter memoryHits;
+    private final Counter databaseHits;
+    private final Counter misses;
+
+    /**
+     * @param cacheRepository darf null sein, dann gibt es nur die In-Memory Stufe
+     */
+    public CachingEmbeddingModel(EmbeddingModel delegate, EmbeddingCacheRepository cacheRepository,
+                                 String defaultModelName, int dimensions, int maxEntries,
+                                 MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.cacheRepository = cacheRepository;
+        this.defaultModelName = defaultModelName;
+        this.dimensions = dimensions;
+        this.memoryCache = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, float[]> eldest) {
+                return size() > maxEntries;
+            }
+        });
+        this.memoryHits = Counter.builder("embedding.cache.hits").tag("tier", "memory").register(meterRegistry);
+        this.databaseHits = Counter.builder("embedding.cache.hits").tag("tier", "database").register(meterRegistry);
+        this.misses = Counter.builder("embedding.cache.misses").register(meterRegistry);
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<String> texts = request.getInstructions();
+        String modelName = resolveModelName(request.getOptions());
+
+        float[][] vectors = new float[texts.size()][];
+        String[] keys = new String[texts.size()];
+        List<Integer> openIndexes = new ArrayList<>();
+
+        // 1. In-Memory
+        for (int i = 0; i < texts.size(); i++) {
+            keys[i] = cacheKey(modelName, texts.get(i));
+            float[] cached = memoryCache.get(keys[i]);
+            if (cached != null) {
+                vectors[i] = cached;
+                memoryHits.increment();
+            } else {
+                openIndexes.add(i);
+            }
+        }
+
+        // 2. Datenbank
+        if (!openIndexes.isEmpty() && cacheRepository != null) {
+            Map<String, float[]> stored = loadFromDatabase(openIndexes.stream().map(i -> keys[i]).distinct().toList());
+            List<Integer> stillOpen = new ArrayList<>();
+            for (Integer i : openIndexes) {
+                float[] vector = stored.get(keys[i]);
+                if (vector != null) {
+                    vectors[i] = vector;
+                    memoryCache.put(keys[i], vector);
+                    databaseHits.increment();
+                } else {
+                    stillOpen.add(i);
+                }
+            }
+            openIndexes = stillOpen;
+        }
+
+        // 3. Modell - doppelte Texte im selben Request nur einmal schicken
+        if (!openIndexes.isEmpty()) {
+            Map<String, Integer> batchPositionByKey = new LinkedHashMap<>();
+            List<String> batchTexts = new ArrayList<>();
+            for (Integer i : openIndexes) {
+                if (batchPositionByKey.putIfAbsent(keys[i], batchTexts.size()) == null) {
+                    batchTexts.add(texts.get(i));
+                }
+            }
+            misses.increment(batchTexts.size());
+
+            EmbeddingResponse response = delegate.call(new EmbeddingRequest(batchTexts, request.getOptions()));
+            List<Embedding> results = response.getResults();
+
+            Map<String, float[]> fresh = new LinkedHashMap<>();
+            for (Map.Entry<String, Integer> entry : batchPositionByKey.entrySet()) {
+                float[] vector = results.get(entry.getValue()).getOutput();
+                fresh.put(entry.getKey(), vector);
+                memoryCache.put(entry.getKey(), vector);
+            }
+            for (Integer i : openIndexes) {
+                vectors[i] = fresh.get(keys[i]);
+            }
+            saveToDatabase(fresh, modelName);
+        }
+
+        List<Embedding> embeddings = new ArrayList<>(vectors.length);
+        for (int i = 0; i < vectors.length; i++) {
+            embeddings.add(new Embedding(vectors[i], i));
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getText()); // wie OllamaEmbeddingModel: nur der Text, keine Metadaten
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions > 0 ? dimensions : delegate.dimensions();
+    }
+
+    public EmbeddingModel getDelegate() {
+        return delegate;
+    }
+
+    String cacheKey(String modelName, String text) {
+        return ContentHash.sha256Hex(modelName, String.valueOf(dimensions()), text);
+    }
+
+    private String resolveModelName(EmbeddingOptions options) {
+        if (options != null && options.getModel() != null) {
+            return options.getModel();
+        }
+        return defaultModelName;
+    }
+
+    private Map<String, float[]> loadFromDatabase(List<String> cacheKeys) {
+        try {
+            return cacheRepository.findByKeys(cacheKeys);
+        } catch (DataAccessException e) {
+            log.warn("Embedding-Cache (DB) nicht lesbar, frage das Modell: {}", e.getMessage());
+            return Map.of();
+        }
+    }
+
+    private void saveToDatabase(Map<String, float[]> fresh, String modelName) {
+        if (cacheRepository == null) {
+            return;
+        }
+        try {
+            cacheRepository.saveAll(fresh, modelName, dimensions());
+        } catch (DataAccessException e) {
+            log.warn("Embedding-Cache (DB) nicht schreibbar: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package it.gdorsi.service.index;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.dao.DataAccessException;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import it.gdorsi.config.HybridSearchProperties;
+import it.gdorsi.repository.HybridSearchRepository;
+
+/**
+ * Decorator um den (getunten) PgVectorStore: similaritySearch kombiniert KNN über die Embeddings mit der
+ * Postgres-Volltextsuche und führt beide Ranglisten per Reciprocal Rank Fusion zusammen.
+ * <p>
+ * Reine Vektorsuche verliert exakte Begriffe (Vertragsnummern, XML-Elementnamen, Abkürzungen), reine
+ * Volltextsuche Umschreibungen - RRF braucht keine vergleichbaren Scores, nur die Ränge:
+ * score(d) = Σ 1 / (k + rang(d)). Der Score im Ergebnis bleibt die Cosinus-Ähnlichkeit (Anzeige, Schwellen),
+ * RRF-Wert und Ränge stehen in den Metadaten.
+ * <p>
+ * Laufzeit pro Stufe als Timer vector.search.hybrid{stage=embedding|vector|lexical|fusion|total}.
+ */
+public class HybridVectorStore implements VectorStore {
+
+    private static final Logger log = LoggerFactory.getLogger(HybridVectorStore.class);
+
+    public static final String HYBRID_SCORE = "hybrid_score";
+    public static final String VECTOR_RANK = "vector_rank";
+    public static final String LEXICAL_RANK = "lexical_rank";
+
+    private final VectorStore delegate;
+    private final HybridSearchRepository repository;
+    private final EmbeddingModel embeddingModel;
+    private final VectorSearchTuning tuning;
+    private final HybridSearchProperties properties;
+    private final Map<String, Timer> timers = new HashMap<>();
+
+    public HybridVectorStore(VectorStore delegate, HybridSearchRepository repository, EmbeddingModel embeddingModel,
+                             VectorSearchTuning tuning, HybridSearchProperties properties, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.repository = repository;
+        this.embeddingModel = embeddingModel;
+        this.tuning = tuning;
+        this.properties = properties;
+        for (String stage : List.of("embedding", "vector", "lexical", "fusion", "total")) {
+            timers.put(stage, Timer.builder("vector.search.hybrid").tag("stage", stage).register(meterRegistry));
+        }
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        String query = request.getQuery();
+        if (query == null || query.isBlank()) {
+            return delegate.similaritySearch(request);
+        }
+        long start = System.nanoTime();
+        int candidates = properties.candidates(request.getTopK());
+        double threshold = request.getSimilarityThreshold();
+        Filter.Expression filter = request.getFilterExpression();
+
+        float[] embedding = timed("embedding", () -> embeddingModel.embed(query));
+        List<Document> vectorHits = timed("vector",
+                () -> tuning.tuned(candidates, () -> repository.nearest(embedding, candidates, threshold, filter)));
+        List<Document> lexicalHits = timed("lexical", () -> lexical(query, embedding, candidates, threshold, filter));
+        List<Document> result = timed("fusion",
+                () -> fuse(vectorHits, lexicalHits, properties.rrfK(), request.getTopK()));
+
+        timers.get("total").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        log.debug("Hybride Suche: {} Vektor-, {} Volltext-Kandidaten -> {} Treffer",
+                vectorHits.size(), lexicalHits.size(), result.size());
+        return result;
+    }
+
+    private List<Document> lexical(String query, float[] embedding, int candidates, double threshold,
+                                   Filter.Expression filter) {
+        try {
+            return repository.fulltext(query, embedding, candidates, threshold, filter);
+        } catch (DataAccessException e) {
+            // z.B. content_tsv noch nicht migriert: Vektorsuche allein ist besser als gar keine Antwort
+            log.warn("Volltextsuche fehlgeschlagen, nur Vektor-Treffer: {}", e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * Reciprocal Rank Fusion über beide Ranglisten (Rang ab 1). Bei gleichem RRF-Wert gewinnt die höhere
+     * Cosinus-Ähnlichkeit, damit das Ergebnis stabil ist.
+     */
+    static List<Document> fuse(List<Document> vectorHits, List<Document> lexicalHits, int k, int topK) {
+        Map<String, Fused> fused = new LinkedHashMap<>();
+        for (int i = 0; i < vectorHits.size(); i++) {
+            Fused entry = fused.computeIfAbsent(vectorHits.get(i).getId(), id -> new Fused());
+            entry.document = vectorHits.get(i);
+            entry.vectorRank = i + 1;
+            entry.score += 1.0 / (k + i + 1);
+        }
+        for (int i = 0; i < lexicalHits.size(); i++) {
+            Fused entry = fused.computeIfAbsent(lexicalHits.get(i).getId(), id -> new Fused());
+            if (entry.document == null) {
+                entry.document = lexicalHits.get(i);
+            }
+            entry.lexicalRank = i + 1;
+            entry.score += 1.0 / (k + i + 1);
+        }
+
+        List<Fused> ranked = new ArrayList<>(fused.values());
+        ranked.sort(Comparator.comparingDouble((Fused f) -> f.score).reversed()
+                .thenComparing(f -> similarity(f.document), Comparator.reverseOrder()));
+
+        List<Document> result = new ArrayList<>(Math.min(topK, ranked.size()));
+        for (Fused entry : ranked.subList(0, Math.min(topK, ranked.size()))) {
+            Map<String, Object> metadata = new HashMap<>(entry.document.getMetadata());
+            metadata.put(HYBRID_SCORE, entry.score);
+            if (entry.vectorRank > 0) {
+                metadata.put(VECTOR_RANK, entry.vectorRank);
+            }
+            if (entry.lexicalRank > 0) {
+                metadata.put(LEXICAL_RANK, entry.lexicalRank);
+            }
+            result.add(entry.document.mutate().metadata(metadata).build());
+        }
+        return result;
+    }
+
+    private static double similarity(Document document) {
+        return document.getScore() != null ? document.getScore() : 0.0;
+    }
+
+    private <T> T timed(String stage, Supplier<T> step) {
+        long start = System.nanoTime();
+        try {
+            return step.get();
+        } finally {
+            timers.get(stage).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static final class Fused {
+        private Document document;
+        private double score;
+        private int vectorRank;
+        private int lexicalRank;
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        delegate.add(documents);
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        delegate.delete(idList);
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        delegate.delete(filterExpression);
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public <T> Optional<T> getNativeClient() {
+        return delegate.getNativeClient();
+    }
+
+    public VectorStore getDelegate() {
+        return delegate;
+    }
+}
@@ -0,0 +1,76 @@
+package it.gdorsi.service.index;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import it.gdorsi.repository.HybridSearchRepository;
+
+/**
+ * Decorator um den PgVectorStore: jede similaritySearch läuft mit den ef_search/probes aus
+ * {@link VectorSearchTuning}. Alles andere geht unverändert durch.
+ * <p>
+ * Die Query wird vor der Transaktion embedded, darin läuft nur SET LOCAL und die KNN-Abfrage (gleiche Query-Form wie
+ * PgVectorStore, siehe {@link HybridSearchRepository#nearest}) - sonst hielte der Ollama-Aufruf die Connection.
+ * Ohne Index gibt es nichts zu setzen, dann sucht der PgVectorStore selbst.
+ */
+public class TunedVectorStore implements VectorStore {
+
+    private final VectorStore delegate;
+    private final HybridSearchRepository repository;
+    private final EmbeddingModel embeddingModel;
+    private final VectorSearchTuning tuning;
+
+    public TunedVectorStore(VectorStore delegate, HybridSearchRepository repository, EmbeddingModel embeddingModel,
+                            VectorSearchTuning tuning) {
+        this.delegate = delegate;
+        this.repository = repository;
+        this.embeddingModel = embeddingModel;
+        this.tuning = tuning;
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        int topK = request.getTopK();
+        if (!tuning.aktiv(topK)) {
+            return delegate.similaritySearch(request);
+        }
+        float[] embedding = embeddingModel.embed(request.getQuery());
+        return tuning.tuned(topK, () -> repository.nearest(embedding, topK, request.getSimilarityThreshold(),
+                request.getFilterExpression()));
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        delegate.add(documents);
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        delegate.delete(idList);
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        delegate.delete(filterExpression);
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public <T> Optional<T> getNativeClient() {
+        return delegate.getNativeClient();
+    }
+
+    public VectorStore getDelegate() {
+        return delegate;
+    }
+}
@@ -0,0 +1,134 @@
+package it.gdorsi.service.index;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import it.gdorsi.config.VectorIndexProperties;
+
+/**
+ * Legt für jede vector-Spalte einen ANN-Index an (HNSW oder IVFFlat, Cosinus wie der Operator {@code <=>}).
+ * <p>
+ * Die Parameter stehen als Kommentar am Index. Weichen sie von der Konfiguration ab, wird der Index
+ * neu gebaut - CONCURRENTLY, damit Inserts während des Builds weiterlaufen.
+ * Läuft nach dem Start auf einem eigenen virtuellen Thread, ein Build über 1M Zeilen blockiert so nicht den Start.
+ */
+@Component
+public class VectorIndexManager {
+
+    private static final Logger log = LoggerFactory.getLogger(VectorIndexManager.class);
+
+    /** Index, den der PgVectorStore bei initialize-schema=true selbst anlegt - den verwalten jetzt wir. */
+    private static final String LEGACY_SPRING_AI_INDEX = "spring_ai_vector_index";
+
+    public record VectorColumn(String table, String column) {
+        String indexName() {
+            return "idx_" + table + "_" + column + "_ann";
+        }
+    }
+
+    public static final List<VectorColumn> VECTOR_COLUMNS = List.of(
+            new VectorColumn("vector_store", "embedding"),
+            new VectorColumn("authors", "author_embedding"),
+            new VectorColumn("vertrag", "vertrag_embedding"),
+            new VectorColumn("xml_dokument", "xml_embedding"),
+            new VectorColumn("semantic_response_cache", "embedding")
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+    private final VectorIndexProperties properties;
+
+    public VectorIndexManager(JdbcTemplate jdbcTemplate, VectorIndexProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        if (properties.manage()) {
+            Thread.ofVirtual().name("vector-index-manager").start(this::ensureIndexes);
+        }
+    }
+
+    public void ensureIndexes() {
+        for (VectorColumn column : VECTOR_COLUMNS) {
+            try {
+                ensureIndex(column);
+            } catch (DataAccessException e) {
+                log.warn("ANN-Index für {}.{} nicht angelegt: {}", column.table(), column.column(), e.getMessage());
+            }
+        }
+    }
+
+    void ensureIndex(VectorColumn column) {
+        String indexName = column.indexName();
+        String wanted = signature();
+        String current = currentSignature(indexName);
+
+        if (column.table().equals("vector_store")) {
+            jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + LEGACY_SPRING_AI_INDEX);
+        }
+        if (wanted.equals(current)) {
+            return;
+        }
+
+        log.info("ANN-Index {}: '{}' -> '{}'", indexName, current, wanted);
+        jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + indexName);
+        if (properties.type() == VectorIndexProperties.IndexType.NONE) {
+            return;
+        }
+        if (properties.type() == VectorIndexProperties.IndexType.IVFFLAT) {
+            Long rows = jdbcTemplate.queryForObject(
+                    "SELECT count(*) FROM " + column.table() + " WHERE " + column.column() + " IS NOT NULL", Long.class);
+            if (rows != null && rows < properties.ivfflat().lists()) {
+                log.warn("IVFFlat auf {} mit nur {} Zeilen: die Listen werden schlecht trainiert, HNSW wäre hier besser.",
+                        column.table(), rows);
+            }
+        }
+
+        long start = System.currentTimeMillis();
+        jdbcTemplate.execute("CREATE INDEX CONCURRENTLY " + indexName + " ON " + column.table()
+                + " USING " + indexMethod() + " (" + column.column() + " vector_cosine_ops) " + withClause());
+        jdbcTemplate.execute("COMMENT ON INDEX " + indexName + " IS '" + wanted + "'");
+        log.info("ANN-Index {} in {} ms gebaut.", indexName, System.currentTimeMillis() - start);
+    }
+
+    String signature() {
+        return switch (properties.type()) {
+            case HNSW -> "hnsw m=" + properties.hnsw().m() + " ef_construction=" + properties.hnsw().efConstruction();
+            case IVFFLAT -> "ivfflat lists=" + properties.ivfflat().lists();
+            case NONE -> "none";
+        };
+    }
+
+    private String indexMethod() {
+        return properties.type() == VectorIndexProperties.IndexType.HNSW ? "hnsw" : "ivfflat";
+    }
+
+    private String withClause() {
+        return switch (properties.type()) {
+            case HNSW -> "WITH (m = " + properties.hnsw().m() + ", ef_construction = " + properties.hnsw().efConstruction() + ")";
+            case IVFFLAT -> "WITH (lists = " + properties.ivfflat().lists() + ")";
+            case NONE -> "";
+        };
+    }
+
+    /**
+     * Kommentar des Index, "none" wenn es ihn nicht gibt. Ein abgebrochener CONCURRENTLY-Build hinterlässt
+     * einen ungültigen Index - der zählt wie nicht vorhanden.
+     */
+    private String currentSignature(String indexName) {
+        List<String> result = jdbcTemplate.query("""
+                SELECT coalesce(obj_description(c.oid, 'pg_class'), '') AS signature, i.indisvalid AS valid
+                FROM pg_class c JOIN pg_index i ON i.indexrelid = c.oid
+                WHERE c.relname = ? AND c.relkind = 'i'
+                """, (rs, rowNum) -> rs.getBoolean("valid") ? rs.getString("signature") : "invalid", indexName);
+        return result.isEmpty() ? "none" : result.getFirst();
+    }
+}
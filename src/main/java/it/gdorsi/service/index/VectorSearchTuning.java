@@ -0,0 +1,64 @@
+package it.gdorsi.service.index;
+
+import java.util.function.Supplier;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import it.gdorsi.config.VectorIndexProperties;
+
+/**
+ * Setzt ef_search (HNSW) bzw. probes (IVFFlat) pro Query.
+ * SET LOCAL gilt nur in der laufenden Transaktion - deshalb läuft die Suche hier in einer eigenen
+ * (kurzen) Transaktion auf derselben Connection. Der Supplier soll darin nur noch SQL ausführen, das Embedding der
+ * Query entsteht vorher (siehe {@link TunedVectorStore}, {@link HybridVectorStore}).
+ * <p>
+ * Wichtig bei HNSW: es kommen höchstens ef_search Treffer zurück, bei großem topK wird ef_search daher angehoben.
+ */
+@Component
+public class VectorSearchTuning {
+
+    /** Obergrenze von pgvector für hnsw.ef_search */
+    static final int MAX_EF_SEARCH = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final VectorIndexProperties properties;
+
+    public VectorSearchTuning(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                              VectorIndexProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.properties = properties;
+    }
+
+    /**
+     * @return false, wenn für den Index nichts zu setzen ist ({@link #tuned} öffnet dann keine Transaktion)
+     */
+    public boolean aktiv(int topK) {
+        return settingFor(topK) != null;
+    }
+
+    public <T> T tuned(int topK, Supplier<T> search) {
+        String setting = settingFor(topK);
+        if (setting == null) {
+            return search.get();
+        }
+        return transactionTemplate.execute(status -> {
+            jdbcTemplate.execute(setting);
+            return search.get();
+        });
+    }
+
+    String settingFor(int topK) {
+        return switch (properties.type()) {
+            case HNSW -> "SET LOCAL hnsw.ef_search = "
+                    + Math.min(MAX_EF_SEARCH, Math.max(properties.hnsw().efSearch(), topK));
+            case IVFFLAT -> "SET LOCAL ivfflat.probes = " + Math.max(1, properties.ivfflat().probes());
+            case NONE -> null;
+        };
+    }
+}
@@ -0,0 +1,133 @@
+package it.gdorsi.service.ingest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.stereotype.Component;
+
+import it.gdorsi.config.IngestionProperties;
+import it.gdorsi.repository.VectorStoreChunkRepository;
+
+/**
+ * Embedding-Stufe der Ingestion.
+ * <p>
+ * Statt alle Chunks an vectorStore.accept zu geben (Ollama wird dann Chunk für Chunk gefragt,
+ * während die Transaktion offen ist), schneiden wir die Chunks in Batches:
+ * - bis zu maxInFlightBatches Batches werden parallel auf virtuellen Threads embedded
+ * - der aufrufende Thread schreibt fertige Batches sofort nach pgvector
+ * Damit überlappen Embedding (Ollama) und Insert (Postgres). Jeder Batch wird in seiner eigenen
+ * kurzen Transaktion geschrieben; die IDs sind deterministisch, ein Abbruch wird beim nächsten Lauf repariert.
+ */
+@Component
+public class EmbeddingPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingPipeline.class);
+
+    private final EmbeddingModel embeddingModel;
+    private final VectorStoreChunkRepository chunkRepository;
+    private final IngestionProperties properties;
+
+    public EmbeddingPipeline(EmbeddingModel embeddingModel, VectorStoreChunkRepository chunkRepository,
+                             IngestionProperties properties) {
+        this.embeddingModel = embeddingModel;
+        this.chunkRepository = chunkRepository;
+        this.properties = properties;
+    }
+
+    /**
+     * @param embedMillis Summe der Embedding-Zeit aller Batches (läuft parallel, kann > Wandzeit sein)
+     * @param writeMillis Summe der Schreibzeit nach pgvector
+     */
+    public record Result(int writtenChunks, int batches, long embedMillis, long writeMillis) {
+        static final Result EMPTY = new Result(0, 0, 0, 0);
+    }
+
+    private record EmbeddedBatch(List<Document> documents, List<float[]> embeddings, long embedMillis) {}
+
+    public Result embedAndStore(List<Document> documents) {
+        if (documents.isEmpty()) {
+            return Result.EMPTY;
+        }
+        List<List<Document>> batches = partition(documents, Math.max(1, properties.embeddingBatchSize()));
+        int maxInFlight = Math.max(1, properties.maxInFlightBatches());
+
+        int written = 0;
+        long embedMillis = 0;
+        long writeMillis = 0;
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            CompletionService<EmbeddedBatch> completion = new ExecutorCompletionService<>(executor);
+            List<Future<EmbeddedBatch>> futures = new ArrayList<>();
+            int inFlight = 0;
+            try {
+                for (List<Document> batch : batches) {
+                    // Backpressure: erst schreiben, wenn schon genug Batches unterwegs sind
+                    while (inFlight >= maxInFlight) {
+                        EmbeddedBatch done = takeNext(completion);
+                        inFlight--;
+                        embedMillis += done.embedMillis();
+                        writeMillis += write(done);
+                        written += done.documents().size();
+                    }
+                    futures.add(completion.submit(() -> embed(batch)));
+                    inFlight++;
+                }
+                while (inFlight > 0) {
+                    EmbeddedBatch done = takeNext(completion);
+                    inFlight--;
+                    embedMillis += done.embedMillis();
+                    writeMillis += write(done);
+                    written += done.documents().size();
+                }
+            } catch (RuntimeException e) {
+                futures.forEach(f -> f.cancel(true));
+                throw e;
+            }
+        }
+
+        log.info("Embedding-Pipeline: {} Chunks in {} Batches (embed {} ms, write {} ms)",
+                written, batches.size(), embedMillis, writeMillis);
+        return new Result(written, batches.size(), embedMillis, writeMillis);
+    }
+
+    private EmbeddedBatch embed(List<Document> batch) {
+        long start = System.currentTimeMillis();
+        List<float[]> embeddings = embeddingModel.embed(batch.stream().map(Document::getText).toList());
+        return new EmbeddedBatch(batch, embeddings, System.currentTimeMillis() - start);
+    }
+
+    private long write(EmbeddedBatch batch) {
+        long start = System.currentTimeMillis();
+        chunkRepository.upsert(batch.documents(), batch.embeddings());
+        return System.currentTimeMillis() - start;
+    }
+
+    private static EmbeddedBatch takeNext(CompletionService<EmbeddedBatch> completion) {
+        try {
+            return completion.take().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Embedding-Pipeline unterbrochen", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Embedding fehlgeschlagen: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private static <T> List<List<T>> partition(List<T> list, int size) {
+        List<List<T>> parts = new ArrayList<>();
+        for (int i = 0; i < list.size(); i += size) {
+            parts.add(list.subList(i, Math.min(list.size(), i + size)));
+        }
+        return parts;
+    }
+}
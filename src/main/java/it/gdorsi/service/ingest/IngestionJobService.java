@@ -0,0 +1,39 @@
+package it.gdorsi.service.ingest;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import it.gdorsi.config.IngestionJobProperties;
+import it.gdorsi.dao.IngestionJob;
+import it.gdorsi.repository.IngestionJobRepository;
+
+/**
+ * Nimmt Uploads an und legt sie in die Warteschlange - der HTTP-Request ist danach sofort fertig.
+ * Die eigentliche Arbeit macht der {@link IngestionJobWorker}.
+ */
+@Service
+public class IngestionJobService {
+
+    private final IngestionJobRepository jobRepository;
+    private final IngestionJobProperties properties;
+
+    public IngestionJobService(IngestionJobRepository jobRepository, IngestionJobProperties properties) {
+        this.jobRepository = jobRepository;
+        this.properties = properties;
+    }
+
+    public long submit(MultipartFile file) throws IOException {
+        String fileName = file.getOriginalFilename();
+        if (fileName == null || fileName.isBlank()) {
+            throw new IllegalArgumentException("Dateiname darf nicht leer sein.");
+        }
+        return jobRepository.enqueue(fileName, file.getBytes(), Math.max(1, properties.maxAttempts()));
+    }
+
+    public Optional<IngestionJob> getJob(long jobId) {
+        return jobRepository.findById(jobId);
+    }
+}
@@ -0,0 +1,140 @@
+package it.gdorsi.service.ingest;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import it.gdorsi.config.IngestionJobProperties;
+import it.gdorsi.dao.IngestionJob;
+import it.gdorsi.dao.PdfIngestResult;
+import it.gdorsi.repository.IngestionJobRepository;
+import it.gdorsi.service.PdfIngestionService;
+import it.gdorsi.service.llm.LlmPriority;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Holt Jobs aus ingestion_job und verarbeitet sie auf virtuellen Threads.
+ * Die Semaphore begrenzt die Parallelität (app.ingestion.jobs.concurrency) - es werden nur so viele
+ * Jobs geclaimt, wie gerade freie Plätze da sind. Fehlgeschlagene Jobs gehen mit Backoff zurück in die Queue.
+ * <p>
+ * Geclaimte Jobs tragen die Lease dieser Instanz und werden alle app.ingestion.jobs.lease-renewal verlängert.
+ * Abgelaufene Leases (abgestürzte Instanz) reiht jede Instanz beim Start und danach regelmäßig neu ein.
+ */
+@Component
+public class IngestionJobWorker {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestionJobWorker.class);
+
+    private final IngestionJobRepository jobRepository;
+    private final PdfIngestionService ingestionService;
+    private final IngestionJobProperties properties;
+    private final Semaphore slots;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final String owner = UUID.randomUUID().toString();
+
+    private volatile boolean ready = false;
+
+    public IngestionJobWorker(IngestionJobRepository jobRepository, PdfIngestionService ingestionService,
+                              IngestionJobProperties properties) {
+        this.jobRepository = jobRepository;
+        this.ingestionService = ingestionService;
+        this.properties = properties;
+        this.slots = new Semaphore(Math.max(1, properties.concurrency()));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        try {
+            requeueExpired();
+            ready = true;
+        } catch (DataAccessException e) {
+            // z.B. Tests ohne Liquibase - dann gibt es keine Queue
+            log.warn("Ingestion-Queue nicht verfügbar, Worker bleibt aus: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.ingestion.jobs.poll-interval:2s}")
+    public void poll() {
+        int free = slots.availablePermits();
+        if (!ready || free == 0) {
+            return;
+        }
+        List<IngestionJob> jobs;
+        try {
+            jobs = jobRepository.claim(free, owner, properties.lease());
+        } catch (DataAccessException e) {
+            log.warn("Ingestion-Queue nicht lesbar: {}", e.getMessage());
+            return;
+        }
+        for (IngestionJob job : jobs) {
+            slots.acquireUninterruptibly();
+            executor.submit(() -> {
+                try {
+                    process(job);
+                } finally {
+                    slots.release();
+                }
+            });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.ingestion.jobs.lease-renewal:1m}")
+    public void renewLeases() {
+        if (!ready) {
+            return;
+        }
+        try {
+            jobRepository.renewLeases(owner, properties.lease());
+            requeueExpired();
+        } catch (DataAccessException e) {
+            log.warn("Ingestion-Leases nicht verlängert: {}", e.getMessage());
+        }
+    }
+
+    private void requeueExpired() {
+        int requeued = jobRepository.requeueExpired();
+        if (requeued > 0) {
+            log.info("Ingestion: {} unterbrochene Jobs wieder eingereiht.", requeued);
+        }
+    }
+
+    void process(IngestionJob job) {
+        log.info("Ingestion-Job {} ({}) startet, Versuch {}/{}", job.id(), job.fileName(), job.attempts(), job.maxAttempts());
+        try {
+            byte[] content = jobRepository.findContent(job.id());
+            // Hintergrund-Spur: interaktive Chats bekommen freie Ollama-Permits zuerst
+            PdfIngestResult result = LlmPriority.BACKGROUND.call(() -> ingestionService.loadPdf(new ByteArrayResource(content) {
+                @Override
+                public String getFilename() {
+                    return job.fileName();
+                }
+            }));
+            if (!jobRepository.markDone(job.id(), owner, result)) {
+                log.warn("Ingestion-Job {}: Lease verloren, Ergebnis verworfen.", job.id());
+                return;
+            }
+            log.info("Ingestion-Job {} fertig: {} Chunks in {} ms", job.id(), result.totalChunks(), result.durationMillis());
+        } catch (Exception e) {
+            log.error("Ingestion-Job {} fehlgeschlagen: {}", job.id(), e.getMessage(), e);
+            if (!jobRepository.markFailed(job.id(), owner, e.getMessage(), properties.retryBackoff())) {
+                log.warn("Ingestion-Job {}: Lease verloren, Fehler nicht verbucht.", job.id());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
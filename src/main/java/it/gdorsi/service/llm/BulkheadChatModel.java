@@ -0,0 +1,55 @@
+package it.gdorsi.service.llm;
+
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * Decorator um das ChatModel: jeder Aufruf braucht ein Permit aus dem Chat-Bulkhead.
+ * Beim Streaming wird das Permit bis zum Ende (oder Abbruch) des Flux gehalten.
+ */
+public class BulkheadChatModel implements ChatModel {
+
+    private final ChatModel delegate;
+    private final PriorityBulkhead bulkhead;
+
+    public BulkheadChatModel(ChatModel delegate, PriorityBulkhead bulkhead) {
+        this.delegate = delegate;
+        this.bulkhead = bulkhead;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        bulkhead.acquire();
+        try {
+            return delegate.call(prompt);
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        // Priorität beim Aufruf merken, subscribed wird evtl. auf einem anderen Thread
+        LlmPriority lane = LlmPriority.current();
+        return Flux.using(
+                () -> {
+                    bulkhead.acquire(lane);
+                    return bulkhead;
+                },
+                permit -> delegate.stream(prompt),
+                PriorityBulkhead::release);
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return delegate.getDefaultOptions();
+    }
+
+    public ChatModel getDelegate() {
+        return delegate;
+    }
+}
@@ -0,0 +1,50 @@
+package it.gdorsi.service.llm;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+/**
+ * Decorator um das EmbeddingModel: jeder Aufruf an Ollama braucht ein Permit aus dem Embedding-Bulkhead.
+ * Sitzt innerhalb des CachingEmbeddingModel - Cache-Treffer brauchen kein Permit.
+ */
+public class BulkheadEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+    private final PriorityBulkhead bulkhead;
+
+    public BulkheadEmbeddingModel(EmbeddingModel delegate, PriorityBulkhead bulkhead) {
+        this.delegate = delegate;
+        this.bulkhead = bulkhead;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        bulkhead.acquire();
+        try {
+            return delegate.call(request);
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        bulkhead.acquire();
+        try {
+            return delegate.embed(document);
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    public EmbeddingModel getDelegate() {
+        return delegate;
+    }
+}
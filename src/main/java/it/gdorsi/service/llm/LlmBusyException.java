@@ -0,0 +1,16 @@
+package it.gdorsi.service.llm;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Ollama ist ausgelastet: Warteschlange voll oder maxWait abgelaufen.
+ * Lieber sofort 503 als nach 30 Sekunden in den Timeout laufen.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class LlmBusyException extends RuntimeException {
+
+    public LlmBusyException(String message) {
+        super(message);
+    }
+}
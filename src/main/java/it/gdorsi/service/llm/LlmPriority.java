@@ -0,0 +1,37 @@
+package it.gdorsi.service.llm;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Priorität der LLM-Aufrufe des aktuellen Threads.
+ * Standard ist INTERACTIVE (Request-Threads), die Ingestion läuft als BACKGROUND.
+ * <p>
+ * InheritableThreadLocal: virtuelle Threads, die aus einem BACKGROUND-Thread gestartet werden
+ * (z.B. die Embedding-Batches der EmbeddingPipeline), erben die Priorität.
+ */
+public enum LlmPriority {
+
+    INTERACTIVE,
+    BACKGROUND;
+
+    private static final InheritableThreadLocal<LlmPriority> CURRENT = new InheritableThreadLocal<>();
+
+    public static LlmPriority current() {
+        LlmPriority priority = CURRENT.get();
+        return priority != null ? priority : INTERACTIVE;
+    }
+
+    public <T> T call(Callable<T> task) throws Exception {
+        LlmPriority previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return task.call();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
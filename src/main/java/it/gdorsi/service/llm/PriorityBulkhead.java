@@ -0,0 +1,173 @@
+package it.gdorsi.service.llm;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import it.gdorsi.config.LlmBulkheadProperties.Limits;
+
+/**
+ * Semaphore mit begrenzter Warteschlange und zwei Spuren.
+ * <p>
+ * - Freies Permit und niemand wartet: sofort durch
+ * - Warteschlange voll (maxQueue): sofort LlmBusyException statt Timeout bei Ollama
+ * - Wird ein Permit frei, bekommt es zuerst der älteste INTERACTIVE-Wartende, dann BACKGROUND
+ * - Nach maxWait ohne Permit: LlmBusyException
+ * <p>
+ * Metriken (Tag bulkhead=chat|embedding): llm.bulkhead.active, llm.bulkhead.queue.depth{lane},
+ * llm.bulkhead.wait{lane}, llm.bulkhead.rejected{lane,reason}.
+ */
+public class PriorityBulkhead {
+
+    private final String name;
+    private final int maxConcurrent;
+    private final int maxQueue;
+    private final long maxWaitNanos;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Map<LlmPriority, Deque<Waiter>> queues = new EnumMap<>(LlmPriority.class);
+    private int active;
+
+    private final Map<LlmPriority, Timer> waitTimers = new EnumMap<>(LlmPriority.class);
+    private final MeterRegistry meterRegistry;
+
+    public PriorityBulkhead(String name, Limits limits, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.maxConcurrent = Math.max(1, limits.maxConcurrent());
+        this.maxQueue = Math.max(0, limits.maxQueue());
+        this.maxWaitNanos = limits.maxWait().toNanos();
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("llm.bulkhead.active", this, PriorityBulkhead::active)
+                .tag("bulkhead", name).register(meterRegistry);
+        for (LlmPriority lane : LlmPriority.values()) {
+            queues.put(lane, new ArrayDeque<>());
+            Gauge.builder("llm.bulkhead.queue.depth", this, b -> b.queueDepth(lane))
+                    .tag("bulkhead", name).tag("lane", lane.name()).register(meterRegistry);
+            waitTimers.put(lane, Timer.builder("llm.bulkhead.wait")
+                    .tag("bulkhead", name).tag("lane", lane.name()).register(meterRegistry));
+        }
+    }
+
+    /**
+     * Holt ein Permit mit der Priorität des aktuellen Threads. Muss mit {@link #release()} freigegeben werden.
+     */
+    public void acquire() {
+        acquire(LlmPriority.current());
+    }
+
+    public void acquire(LlmPriority lane) {
+        long start = System.nanoTime();
+        Waiter waiter;
+        lock.lock();
+        try {
+            if (active < maxConcurrent && totalQueued() == 0) {
+                active++;
+                waitTimers.get(lane).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return;
+            }
+            if (totalQueued() >= maxQueue) {
+                reject(lane, "queue_full");
+                throw new LlmBusyException("KI ist ausgelastet (" + name + "), bitte später erneut versuchen.");
+            }
+            waiter = new Waiter(lock.newCondition());
+            queues.get(lane).addLast(waiter);
+
+            long remaining = maxWaitNanos;
+            while (!waiter.granted) {
+                if (remaining <= 0) {
+                    queues.get(lane).remove(waiter);
+                    reject(lane, "timeout");
+                    throw new LlmBusyException("Keine freie KI-Kapazität (" + name + ") nach "
+                            + TimeUnit.NANOSECONDS.toSeconds(maxWaitNanos) + "s.");
+                }
+                try {
+                    remaining = waiter.condition.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    if (waiter.granted) {
+                        // Permit kam gleichzeitig an - weiterreichen statt verlieren
+                        handOver();
+                    } else {
+                        queues.get(lane).remove(waiter);
+                    }
+                    Thread.currentThread().interrupt();
+                    throw new LlmBusyException("Warten auf KI-Kapazität (" + name + ") unterbrochen.");
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        waitTimers.get(lane).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    public void release() {
+        lock.lock();
+        try {
+            handOver();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Permit direkt an den nächsten Wartenden geben (active bleibt gleich), sonst zurück in den Pool
+    private void handOver() {
+        for (LlmPriority lane : LlmPriority.values()) {
+            Waiter next = queues.get(lane).pollFirst();
+            if (next != null) {
+                next.granted = true;
+                next.condition.signal();
+                return;
+            }
+        }
+        active--;
+    }
+
+    private void reject(LlmPriority lane, String reason) {
+        Counter.builder("llm.bulkhead.rejected")
+                .tag("bulkhead", name).tag("lane", lane.name()).tag("reason", reason)
+                .register(meterRegistry).increment();
+    }
+
+    private int totalQueued() {
+        int total = 0;
+        for (Deque<Waiter> queue : queues.values()) {
+            total += queue.size();
+        }
+        return total;
+    }
+
+    int active() {
+        lock.lock();
+        try {
+            return active;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int queueDepth(LlmPriority lane) {
+        lock.lock();
+        try {
+            return queues.get(lane).size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class Waiter {
+        private final Condition condition;
+        private boolean granted;
+
+        private Waiter(Condition condition) {
+            this.condition = condition;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package it.gdorsi.service.tool;
 
 import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.stereotype.Component;
@@ -10,6 +12,7 @@ import it.gdorsi.repository.VertragRepository;
 import it.gdorsi.repository.model.Vertrag;
 import it.gdorsi.repository.model.VertragStatus;
 import it.gdorsi.service.VertragOperations;
+import it.gdorsi.service.index.VectorSearchTuning;
 import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
 
@@ -19,10 +22,12 @@ public class VertragTool implements VertragOperations {
 
     private final VertragRepository repository;
     private final EmbeddingModel embeddingModel;
+    private final VectorSearchTuning searchTuning;
 
-    public VertragTool(VertragRepository repository, EmbeddingModel embeddingModel) {
+    public VertragTool(VertragRepository repository, EmbeddingModel embeddingModel, VectorSearchTuning searchTuning) {
         this.repository = repository;
         this.embeddingModel = embeddingModel;
+        this.searchTuning = searchTuning;
     }
 
     @Override
@@ -88,4 +93,28 @@ public class VertragTool implements VertragOperations {
             return "Fehler beim Aktualisieren des Vertrags: " + e.getMessage();
         }
     }
+
+    @Override
+    public String findSimilarContracts(String beschreibung, int limit) {
+        if (beschreibung == null || beschreibung.isBlank()) {
+            return "Fehler: Beschreibung darf nicht leer sein.";
+        }
+        int anzahl = Math.clamp(limit, 1, 20);
+
+        try {
+            // Embedding vor der Such-Transaktion, Ollama hält so keine Connection
+            float[] vector = embeddingModel.embed(beschreibung);
+            List<Vertrag> treffer = searchTuning.tuned(anzahl, () -> repository.findSimilarContracts(vector, anzahl));
+            if (treffer.isEmpty()) {
+                return "Keine Verträge gefunden.";
+            }
+            return treffer.stream()
+                    .map(v -> String.format("%s - %s (%s, %s): %s", v.getVertragsNummer(), v.getKundeName(),
+                            v.getVertragsTyp(), v.getStatus(), v.getBetrag()))
+                    .collect(Collectors.joining("\n"));
+        } catch (Exception e) {
+            log.error("Fehler bei der Vertragssuche: {}", e.getMessage(), e);
+            return "Fehler bei der Vertragssuche: " + e.getMessage();
+        }
+    }
 }
@@ -0,0 +1,73 @@
+package it.gdorsi.service.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * SHA-256 Fingerprints für Inhalte (Embedding-Cache, Chunk-IDs, ...).
+ * Die Teile werden mit einem NUL-Zeichen getrennt, damit "ab"+"c" und "a"+"bc"
+ * nicht denselben Hash ergeben.
+ */
+public final class ContentHash {
+
+    private ContentHash() {
+    }
+
+    public static byte[] sha256(String... parts) {
+        MessageDigest digest = newDigest();
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                digest.update((byte) 0);
+            }
+            if (parts[i] != null) {
+                digest.update(parts[i].getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return digest.digest();
+    }
+
+    public static String sha256Hex(String... parts) {
+        return HexFormat.of().formatHex(sha256(parts));
+    }
+
+    /**
+     * SHA-256 über einen kompletten Stream (z.B. die PDF-Datei), ohne alles in den Speicher zu laden.
+     */
+    public static String sha256Hex(InputStream in) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Deterministische UUID aus den ersten 128 Bit des SHA-256 (Version 8 = "custom", RFC 9562).
+     * Ersatz für UUID.nameUUIDFromBytes(... hashCode()), das bei 32 Bit schnell kollidiert.
+     */
+    public static UUID uuid(String... parts) {
+        ByteBuffer buffer = ByteBuffer.wrap(sha256(parts));
+        long msb = buffer.getLong();
+        long lsb = buffer.getLong();
+        msb = (msb & ~0xF000L) | 0x8000L;                        // Version 8
+        lsb = (lsb & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L; // Variante RFC 4122
+        return new UUID(msb, lsb);
+    }
+
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 ist in jeder JVM vorhanden
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package it.gdorsi.service.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Text als UTF-8 + Raw-Deflate, optional mit vorab gesetztem Wörterbuch (preset dictionary).
+ * <p>
+ * Ein Wörterbuch enthält Zeichenfolgen, die in vielen Dokumenten desselben Schemas vorkommen (Tags, Attribute,
+ * wiederkehrende Werte). Deflate kann dann schon im ersten Block darauf zurückverweisen - gerade kleine Dokumente
+ * schrumpfen damit deutlich stärker als allein. Ohne Wörterbuch (null) ist es normales Deflate.
+ * <p>
+ * Format: ein Versionsbyte, danach der Deflate-Strom ohne zlib-Header. Welches Wörterbuch passt, merkt sich der Aufrufer.
+ */
+public final class DeflateCodec {
+
+    private static final byte VERSION = 1;
+
+    // Zeichenfolgen, die kürzer sind, spart ein Rückverweis (3 Bytes Minimum) kaum etwas
+    private static final int MIN_SEGMENT = 4;
+    private static final int MAX_SEGMENT = 256;
+
+    private DeflateCodec() {
+    }
+
+    /**
+     * Liest den Reader vollständig und liefert den komprimierten Inhalt, schließt ihn aber nicht.
+     */
+    public static byte[] packe(Reader inhalt, byte[] woerterbuch) throws IOException {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        try {
+            if (woerterbuch != null) {
+                deflater.setDictionary(woerterbuch);
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            bytes.write(VERSION);
+            try (Writer out = new OutputStreamWriter(new DeflaterOutputStream(bytes, deflater, 8192),
+                    StandardCharsets.UTF_8)) {
+                inhalt.transferTo(out);
+            }
+            return bytes.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public static byte[] packe(String inhalt, byte[] woerterbuch) {
+        try {
+            return packe(new StringReader(inhalt), woerterbuch);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Entpackt beim Lesen - der Text liegt nie komplett im Speicher. Der Reader muss geschlossen werden.
+     *
+     * @throws IllegalArgumentException bei unbekanntem Format
+     */
+    public static Reader oeffne(byte[] komprimiert, byte[] woerterbuch) {
+        if (komprimiert.length == 0 || komprimiert[0] != VERSION) {
+            throw new IllegalArgumentException("Unbekanntes Kompressionsformat");
+        }
+        Inflater inflater = new Inflater(true);
+        if (woerterbuch != null) {
+            // im Raw-Modus darf das Wörterbuch vor dem ersten inflate() gesetzt werden
+            inflater.setDictionary(woerterbuch);
+        }
+        InputStream daten = new ByteArrayInputStream(komprimiert, 1, komprimiert.length - 1);
+        return new InputStreamReader(new InflaterInputStream(daten, inflater, 8192) {
+            @Override
+            public void close() throws IOException {
+                super.close();
+                inflater.end();
+            }
+        }, StandardCharsets.UTF_8);
+    }
+
+    public static String entpacke(byte[] komprimiert, byte[] woerterbuch) {
+        try (Reader in = oeffne(komprimiert, woerterbuch)) {
+            StringWriter text = new StringWriter();
+            in.transferTo(text);
+            return text.toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Baut ein Wörterbuch aus Beispieldokumenten: Tags und Textstücke, die in mehreren Beispielen vorkommen,
+     * gewichtet nach Häufigkeit mal Länge. Die wertvollsten stehen am Ende - dort sind die Rückverweise
+     * für Deflate am kürzesten.
+     *
+     * @param groesse höchstens so viele Bytes (Deflate nutzt ohnehin nur die letzten 32 KiB)
+     */
+    public static byte[] trainiere(List<String> beispiele, int groesse) {
+        Map<String, Integer> inBeispielen = new HashMap<>();
+        for (String beispiel : beispiele) {
+            for (String segment : segmente(beispiel)) {
+                inBeispielen.merge(segment, 1, Integer::sum);
+            }
+        }
+
+        List<Map.Entry<String, Integer>> kandidaten = new ArrayList<>();
+        for (Map.Entry<String, Integer> eintrag : inBeispielen.entrySet()) {
+            if (eintrag.getValue() > 1 || beispiele.size() == 1) {
+                kandidaten.add(eintrag);
+            }
+        }
+        Comparator<Map.Entry<String, Integer>> wert =
+                Comparator.comparingLong(e -> (long) e.getValue() * e.getKey().length());
+        kandidaten.sort(wert.reversed().thenComparing(Map.Entry::getKey));
+
+        // wertvollste zuerst einsammeln, bis das Budget voll ist, dann umgekehrt ablegen
+        List<byte[]> gewaehlt = new ArrayList<>();
+        int belegt = 0;
+        for (Map.Entry<String, Integer> kandidat : kandidaten) {
+            byte[] bytes = kandidat.getKey().getBytes(StandardCharsets.UTF_8);
+            if (belegt + bytes.length > groesse) {
+                continue;
+            }
+            gewaehlt.add(bytes);
+            belegt += bytes.length;
+        }
+        ByteArrayOutputStream woerterbuch = new ByteArrayOutputStream(belegt);
+        for (int i = gewaehlt.size() - 1; i >= 0; i--) {
+            woerterbuch.writeBytes(gewaehlt.get(i));
+        }
+        return woerterbuch.toByteArray();
+    }
+
+    /** Tags, Tag-Anfänge bis zum ersten Attributwert und Textstücke dazwischen - jedes pro Beispiel einmal */
+    private static Set<String> segmente(String text) {
+        Set<String> segmente = new HashSet<>();
+        int start = 0;
+        while (start < text.length()) {
+            int ende;
+            if (text.charAt(start) == '<') {
+                int schliessen = text.indexOf('>', start);
+                ende = schliessen < 0 ? text.length() : schliessen + 1;
+            } else {
+                int oeffnen = text.indexOf('<', start);
+                ende = oeffnen < 0 ? text.length() : oeffnen;
+            }
+            String segment = text.substring(start, Math.min(ende, start + MAX_SEGMENT));
+            if (segment.length() >= MIN_SEGMENT) {
+                segmente.add(segment);
+            }
+            // Start-Tag mit Attributen: der Teil bis zum ersten Wert wiederholt sich, auch wenn die Werte es nicht tun
+            int wert = segment.indexOf('"');
+            if (segment.startsWith("<") && wert >= MIN_SEGMENT) {
+                segmente.add(segment.substring(0, wert + 1));
+            }
+            start = ende;
+        }
+        return segmente;
+    }
+}
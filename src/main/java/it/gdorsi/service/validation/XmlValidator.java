@@ -2,29 +2,80 @@ package it.gdorsi.service.validation;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import javax.xml.XMLConstants;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.stream.StreamSource;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
-import javax.xml.validation.Validator;
+import javax.xml.validation.ValidatorHandler;
 
 import org.springframework.stereotype.Component;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
 import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
 
 import it.gdorsi.dao.XmlValidationResult;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Wohlgeformtheit und (optional) XSD in einem SAX-Durchlauf: der Parser liefert seine Events direkt an den
+ * ValidatorHandler des Schemas, das Dokument wird weder zweimal geparst noch als DOM aufgebaut.
+ * <p>
+ * Jede XSD wird einmal kompiliert (Schema ist threadsicher) und gecacht - Schlüssel ist der Pfad, ändert sich
+ * das Änderungsdatum der Datei, wird neu kompiliert. Parser und ValidatorHandler sind nicht threadsicher;
+ * sie liegen in Pools, jeder Aufruf leiht sich exklusiv einen und gibt ihn danach zurück.
+ * <p>
+ * Keine DTDs, keine externen Entities (XXE) - wie überall, wo wir XML parsen.
+ */
 @Slf4j
 @Component
 public class XmlValidator {
 
+    private static final int MAX_SCHEMAS = 32;
+    private static final int MAX_POOL = 16;
+
+    private static final SAXParserFactory SAX_PARSER_FACTORY = createSaxParserFactory();
+
+    /** Kompilierte XSD mit Stand der Datei und ihrem Pool an ValidatorHandlern */
+    private record KompiliertesSchema(FileTime geaendert, Schema schema, Queue<ValidatorHandler> handler) {}
+
+    /** Fehler aus dem Schema (nicht aus dem Parser) - damit die Meldung "XSD ..." statt "XML Parse ..." heißt */
+    private static final class SchemaVerletzung extends SAXException {
+        private final SAXParseException ursache;
+
+        SchemaVerletzung(SAXParseException ursache) {
+            super(ursache.getMessage(), ursache);
+            this.ursache = ursache;
+        }
+    }
+
+    private final Map<Path, KompiliertesSchema> schemas = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Path, KompiliertesSchema> eldest) {
+                    return size() > MAX_SCHEMAS;
+                }
+            });
+    private final Queue<SAXParser> parser = new ConcurrentLinkedQueue<>();
+
     public XmlValidationResult validate(File xmlFile) {
         return validate(xmlFile, null);
     }
@@ -33,10 +84,15 @@ public class XmlValidator {
         if (!xmlFile.exists()) {
             return XmlValidationResult.fehler("XML-Datei nicht gefunden: " + xmlFile.getAbsolutePath());
         }
+        if (xmlFile.length() == 0) {
+            return XmlValidationResult.fehler("XML-Inhalt darf nicht leer oder null sein.");
+        }
 
-        try {
-            String xmlContent = Files.readString(Path.of(xmlFile.toURI()));
-            return validateContent(xmlContent, xsdFile);
+        // direkt aus der Datei streamen, der Parser erkennt das Encoding selbst
+        try (InputStream in = Files.newInputStream(xmlFile.toPath())) {
+            InputSource source = new InputSource(in);
+            source.setSystemId(xmlFile.toURI().toString());
+            return validate(source, xsdFile);
         } catch (IOException e) {
             log.error("Fehler beim Lesen der XML-Datei: {}", e.getMessage(), e);
             return XmlValidationResult.fehler("Fehler beim Lesen der XML-Datei: " + e.getMessage());
@@ -51,18 +107,60 @@ public class XmlValidator {
         if (xmlContent == null || xmlContent.isBlank()) {
             return XmlValidationResult.fehler("XML-Inhalt darf nicht leer oder null sein.");
         }
-        
-        try {
-            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-            dbf.setNamespaceAware(true);
-            DocumentBuilder db = dbf.newDocumentBuilder();
-            db.parse(new org.xml.sax.InputSource(new java.io.StringReader(xmlContent)));
+        return validate(new InputSource(new StringReader(xmlContent)), xsdFile);
+    }
+
+    /**
+     * Viele Dokumente gegen dieselbe XSD (oder null), parallel über alle Kerne - die XSD wird dabei nur einmal
+     * kompiliert. Ergebnisse in der Reihenfolge der Eingabe.
+     */
+    public List<XmlValidationResult> validateContents(List<String> xmlContents, File xsdFile) {
+        return xmlContents.parallelStream()
+                .map(xmlContent -> validateContent(xmlContent, xsdFile))
+                .toList();
+    }
 
-            if (xsdFile != null && xsdFile.exists()) {
-                return validateAgainstXsd(xmlContent, xsdFile);
+    private XmlValidationResult validate(InputSource source, File xsdFile) {
+        KompiliertesSchema schema = null;
+        if (xsdFile != null && xsdFile.exists()) {
+            try {
+                schema = schema(xsdFile);
+            } catch (SAXException e) {
+                String fehler = "XSD Validierungsfehler: " + e.getMessage();
+                log.warn("XSD Validierungsfehler: {}", fehler);
+                return XmlValidationResult.fehler(fehler);
+            } catch (IOException e) {
+                String fehler = "IO-Fehler bei XSD Validierung: " + e.getMessage();
+                log.error("IO Fehler: {}", fehler, e);
+                return XmlValidationResult.fehler(fehler);
             }
+        }
 
+        SAXParser saxParser = null;
+        ValidatorHandler handler = null;
+        boolean sauber = false;
+        try {
+            saxParser = leiheParser();
+            XMLReader reader = saxParser.getXMLReader();
+            reader.setErrorHandler(WERFEN);
+            if (schema != null) {
+                handler = schema.handler().poll();
+                if (handler == null) {
+                    handler = schema.schema().newValidatorHandler();
+                }
+                handler.setErrorHandler(SCHEMA_VERLETZUNG);
+                reader.setContentHandler(handler);
+            } else {
+                reader.setContentHandler(new DefaultHandler());
+            }
+            reader.parse(source);
+            sauber = true;
             return XmlValidationResult.erfolgreich();
+        } catch (SchemaVerletzung e) {
+            String fehler = String.format("XSD Validierungsfehler in Zeile %d, Spalte %d: %s",
+                    e.ursache.getLineNumber(), e.ursache.getColumnNumber(), e.ursache.getMessage());
+            log.warn("XSD Validierungsfehler: {}", fehler);
+            return XmlValidationResult.fehler(fehler);
         } catch (SAXParseException e) {
             String fehler = String.format("XML Parse Fehler in Zeile %d, Spalte %d: %s",
                     e.getLineNumber(), e.getColumnNumber(), e.getMessage());
@@ -80,29 +178,106 @@ public class XmlValidator {
             String fehler = "IO-Fehler beim Validieren: " + e.getMessage();
             log.error("IO Fehler: {}", fehler, e);
             return XmlValidationResult.fehler(fehler);
+        } finally {
+            // SAXParser.reset() setzt den Parser auf den Stand nach newSAXParser() zurück, auch nach einem Abbruch
+            // mitten im Dokument. ValidatorHandler kennt kein reset - der geht nur nach sauberem Durchlauf zurück.
+            if (saxParser != null && parser.size() < MAX_POOL) {
+                saxParser.reset();
+                parser.offer(saxParser);
+            }
+            if (sauber && handler != null && schema.handler().size() < MAX_POOL) {
+                schema.handler().offer(handler);
+            }
         }
     }
 
-    private XmlValidationResult validateAgainstXsd(String xmlContent, File xsdFile) {
+    /**
+     * Kompiliert die XSD beim ersten Mal und nach jeder Änderung der Datei. Zwei Threads, die gleichzeitig
+     * eine neue XSD sehen, kompilieren sie eben beide - das ist billiger als alle anderen warten zu lassen.
+     */
+    private KompiliertesSchema schema(File xsdFile) throws SAXException, IOException {
+        Path pfad = xsdFile.toPath().toAbsolutePath().normalize();
+        FileTime geaendert = Files.getLastModifiedTime(pfad);
+        KompiliertesSchema vorhanden = schemas.get(pfad);
+        if (vorhanden != null && vorhanden.geaendert().equals(geaendert)) {
+            return vorhanden;
+        }
+
+        // SchemaFactory ist nicht threadsicher, kompiliert wird selten - also jedes Mal eine neue
+        SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+        setzeWennUnterstuetzt(factory, XMLConstants.ACCESS_EXTERNAL_DTD, "");
+        // xs:include/xs:import von lokalen Dateien bleibt erlaubt
+        setzeWennUnterstuetzt(factory, XMLConstants.ACCESS_EXTERNAL_SCHEMA, "file");
+        KompiliertesSchema kompiliert = new KompiliertesSchema(geaendert, factory.newSchema(pfad.toFile()),
+                new ConcurrentLinkedQueue<>());
+        schemas.put(pfad, kompiliert);
+        log.debug("XSD {} kompiliert (Stand {})", pfad, geaendert);
+        return kompiliert;
+    }
+
+    // ein Xerces auf dem Classpath kennt die JAXP-1.5-Properties nicht - dann bleibt es bei dessen Standard
+    private static void setzeWennUnterstuetzt(SchemaFactory factory, String property, String wert) {
         try {
-            SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-            Schema schema = factory.newSchema(xsdFile);
-            Validator validator = schema.newValidator();
-            validator.validate(new StreamSource(new java.io.StringReader(xmlContent)));
-            return XmlValidationResult.erfolgreich();
-        } catch (SAXParseException e) {
-            String fehler = String.format("XSD Validierungsfehler in Zeile %d, Spalte %d: %s",
-                    e.getLineNumber(), e.getColumnNumber(), e.getMessage());
-            log.warn("XSD Validierungsfehler: {}", fehler);
-            return XmlValidationResult.fehler(fehler);
-        } catch (SAXException e) {
-            String fehler = "XSD Validierungsfehler: " + e.getMessage();
-            log.warn("XSD Validierungsfehler: {}", fehler);
-            return XmlValidationResult.fehler(fehler);
-        } catch (IOException e) {
-            String fehler = "IO-Fehler bei XSD Validierung: " + e.getMessage();
-            log.error("IO Fehler: {}", fehler, e);
-            return XmlValidationResult.fehler(fehler);
+            factory.setProperty(property, wert);
+        } catch (SAXNotRecognizedException | SAXNotSupportedException e) {
+            log.debug("SchemaFactory {} kennt {} nicht", factory.getClass().getName(), property);
         }
     }
+
+    private SAXParser leiheParser() throws ParserConfigurationException, SAXException {
+        SAXParser saxParser = parser.poll();
+        if (saxParser != null) {
+            return saxParser;
+        }
+        synchronized (SAX_PARSER_FACTORY) {
+            return SAX_PARSER_FACTORY.newSAXParser();
+        }
+    }
+
+    private static SAXParserFactory createSaxParserFactory() {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.setXIncludeAware(false);
+        try {
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IllegalStateException("XML-Parser lässt sich nicht absichern", e);
+        }
+        return factory;
+    }
+
+    private static final ErrorHandler WERFEN = new ErrorHandler() {
+        @Override
+        public void warning(SAXParseException e) {
+            // Warnungen machen ein Dokument nicht ungültig
+        }
+
+        @Override
+        public void error(SAXParseException e) throws SAXException {
+            throw e;
+        }
+
+        @Override
+        public void fatalError(SAXParseException e) throws SAXException {
+            throw e;
+        }
+    };
+
+    private static final ErrorHandler SCHEMA_VERLETZUNG = new ErrorHandler() {
+        @Override
+        public void warning(SAXParseException e) {
+            // Warnungen machen ein Dokument nicht ungültig
+        }
+
+        @Override
+        public void error(SAXParseException e) throws SAXException {
+            throw new SchemaVerletzung(e);
+        }
+
+        @Override
+        public void fatalError(SAXParseException e) throws SAXException {
+            throw new SchemaVerletzung(e);
+        }
+    };
 }
@@ -0,0 +1,349 @@
+package it.gdorsi.service.xml;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathEvaluationResult;
+import javax.xml.xpath.XPathException;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import javax.xml.xpath.XPathNodes;
+
+import org.springframework.stereotype.Component;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+import it.gdorsi.config.XPathProperties;
+import it.gdorsi.service.util.ContentHash;
+
+/**
+ * XPath 1.0 für extractXmlElements, mit zwei Caches:
+ * <ul>
+ *     <li>kompilierte Ausdrücke pro (Ausdruck, Namespace-Präfixe des Dokuments) - XPathExpression ist nicht
+ *     threadsicher, deshalb hält jeder Eintrag einen kleinen Pool statt einer Instanz</li>
+ *     <li>geparste DOM-Bäume pro (xml_id, SHA-256 des Inhalts) - eine neue Version bekommt automatisch einen
+ *     neuen Schlüssel, der alte Eintrag fällt per LRU heraus</li>
+ * </ul>
+ * "//name" braucht kein DOM: das läuft als Stream über {@link XmlAnalyzer#extractElements}
+ * (trifft dabei, wie bisher, auch Elemente in einem Default-Namespace).
+ * <p>
+ * Präfixe im Ausdruck werden über die Namespace-Deklarationen am Root-Element des Dokuments aufgelöst.
+ */
+@Component
+public class XPathEngine {
+
+    private static final Pattern NACHFAHREN_NAME =
+            Pattern.compile("//[\\p{L}_][\\p{L}\\p{N}._-]*(:[\\p{L}_][\\p{L}\\p{N}._-]*)?");
+    private static final int MAX_POOL_PRO_AUSDRUCK = 8;
+
+    private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY = createDocumentBuilderFactory();
+    private static final TransformerFactory TRANSFORMER_FACTORY = createTransformerFactory();
+    private static final XPathFactory XPATH_FACTORY = XPathFactory.newInstance();
+
+    /**
+     * @param fehler null, sonst warum dieses Dokument nicht ausgewertet werden konnte (extrakt ist dann null)
+     */
+    public record Treffer(Long xmlId, String dateiname, XmlAnalyzer.Extrakt extrakt, String fehler) {}
+
+    private record Geparst(Document document, Map<String, String> namespaces) {}
+
+    private record AusdruckSchluessel(String xpath, Map<String, String> namespaces) {}
+
+    private final XmlAnalyzer xmlAnalyzer;
+    private final XPathProperties properties;
+    private final Map<AusdruckSchluessel, Queue<XPathExpression>> ausdruecke;
+    private final Map<String, Geparst> dokumente;
+
+    public XPathEngine(XmlAnalyzer xmlAnalyzer, XPathProperties properties) {
+        this.xmlAnalyzer = xmlAnalyzer;
+        this.properties = properties;
+        this.ausdruecke = lru(properties.expressionCacheSize());
+        this.dokumente = lru(properties.documentCacheSize());
+    }
+
+    /**
+     * Wertet den Ausdruck auf einem Dokument aus. Knoten kommen als XML-Fragmente zurück,
+     * Zahlen/Strings/Booleans (count(//buch), string(/a/@id)) als ein einzelner Eintrag.
+     *
+     * @param xmlId Schlüssel für den DOM-Cache, null = nicht cachen
+     * @throws IllegalArgumentException bei ungültigem Ausdruck oder nicht wohlgeformtem XML
+     */
+    public XmlAnalyzer.Extrakt evaluate(Long xmlId, String xml, String xpath, int limit) {
+        String ausdruck = xpath == null ? "" : xpath.strip();
+        if (ausdruck.equals("/")) {
+            return new XmlAnalyzer.Extrakt(List.of(xml), 1);
+        }
+        if (NACHFAHREN_NAME.matcher(ausdruck).matches()) {
+            return xmlAnalyzer.extractElements(xml, ausdruck.substring(2), limit);
+        }
+
+        Geparst geparst = parse(xmlId, xml);
+        AusdruckSchluessel schluessel = new AusdruckSchluessel(ausdruck, geparst.namespaces());
+        Queue<XPathExpression> pool = ausdruecke.computeIfAbsent(schluessel, k -> new ConcurrentLinkedQueue<>());
+        XPathExpression expression = pool.poll();
+        if (expression == null) {
+            expression = compile(schluessel);
+        }
+        try {
+            // auch lesende DOM-Zugriffe sind nicht threadsicher - gleichzeitig wird pro Dokument nur einmal gelesen
+            synchronized (geparst.document()) {
+                return extrakt(expression.evaluateExpression(geparst.document()), limit);
+            }
+        } catch (XPathException e) {
+            throw new IllegalArgumentException("XPath '" + ausdruck + "' nicht auswertbar: " + nachricht(e), e);
+        } finally {
+            if (pool.size() < MAX_POOL_PRO_AUSDRUCK) {
+                pool.offer(expression);
+            }
+        }
+    }
+
+    /**
+     * Derselbe Ausdruck über mehrere Dokumente, höchstens app.xpath.parallelism gleichzeitig (jeder DOM-Baum
+     * kostet Speicher). Inhalte werden erst im jeweiligen Task geladen. Ergebnis in der Reihenfolge der Quellen;
+     * ein kaputtes Dokument bricht die anderen nicht ab.
+     */
+    public List<Treffer> evaluateAll(List<XmlQuelle> quellen, Function<Long, String> inhaltLader, String xpath,
+                                     int limitProDokument) {
+        return XmlBatch.fuerAlle(quellen, properties.parallelism(), quelle -> {
+            String inhalt = inhaltLader.apply(quelle.xmlId());
+            if (inhalt == null) {
+                return new Treffer(quelle.xmlId(), quelle.dateiname(), null, "XML-Dokument nicht mehr vorhanden");
+            }
+            try {
+                return new Treffer(quelle.xmlId(), quelle.dateiname(),
+                        evaluate(quelle.xmlId(), inhalt, xpath, limitProDokument), null);
+            } catch (IllegalArgumentException e) {
+                return new Treffer(quelle.xmlId(), quelle.dateiname(), null, e.getMessage());
+            }
+        });
+    }
+
+    private Geparst parse(Long xmlId, String xml) {
+        boolean cachen = xmlId != null && xml.length() <= properties.maxCachedDocumentChars();
+        if (!cachen) {
+            return parse(xml);
+        }
+        String schluessel = xmlId + ":" + ContentHash.sha256Hex(xml);
+        Geparst geparst = dokumente.get(schluessel);
+        if (geparst == null) {
+            // außerhalb des Map-Locks parsen, sonst warten alle anderen Dokumente mit
+            geparst = parse(xml);
+            dokumente.put(schluessel, geparst);
+        }
+        return geparst;
+    }
+
+    private static Geparst parse(String xml) {
+        try {
+            DocumentBuilder builder;
+            synchronized (DOCUMENT_BUILDER_FACTORY) {
+                builder = DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
+            }
+            builder.setErrorHandler(WERFEN);
+            Document document = builder.parse(new InputSource(new StringReader(xml)));
+            return new Geparst(document, namespaces(document.getDocumentElement()));
+        } catch (SAXParseException e) {
+            throw new IllegalArgumentException("XML nicht wohlgeformt: Zeile " + e.getLineNumber()
+                    + ", Spalte " + e.getColumnNumber() + ": " + e.getMessage(), e);
+        } catch (SAXException | IOException | ParserConfigurationException e) {
+            throw new IllegalArgumentException("XML nicht wohlgeformt: " + e.getMessage(), e);
+        }
+    }
+
+    /** Präfix -> URI der Deklarationen am Root-Element (Default-Namespace gibt es in XPath 1.0 nicht) */
+    private static Map<String, String> namespaces(Element root) {
+        Map<String, String> namespaces = new LinkedHashMap<>();
+        NamedNodeMap attribute = root.getAttributes();
+        for (int i = 0; i < attribute.getLength(); i++) {
+            Node attribut = attribute.item(i);
+            if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attribut.getNamespaceURI())
+                    && XMLConstants.XMLNS_ATTRIBUTE.equals(attribut.getPrefix())) {
+                namespaces.put(attribut.getLocalName(), attribut.getNodeValue());
+            }
+        }
+        return Map.copyOf(namespaces);
+    }
+
+    private static XPathExpression compile(AusdruckSchluessel schluessel) {
+        XPath xpath;
+        synchronized (XPATH_FACTORY) {
+            xpath = XPATH_FACTORY.newXPath();
+        }
+        xpath.setNamespaceContext(new PraefixKontext(schluessel.namespaces()));
+        try {
+            return xpath.compile(schluessel.xpath());
+        } catch (XPathExpressionException e) {
+            throw new IllegalArgumentException("Ungültiger XPath-Ausdruck '" + schluessel.xpath() + "': "
+                    + nachricht(e), e);
+        }
+    }
+
+    private static XmlAnalyzer.Extrakt extrakt(XPathEvaluationResult<?> ergebnis, int limit) throws XPathException {
+        return switch (ergebnis.type()) {
+            case NODESET -> {
+                XPathNodes knoten = (XPathNodes) ergebnis.value();
+                List<String> elemente = new ArrayList<>(Math.min(limit, knoten.size()));
+                Transformer transformer = knoten.size() == 0 ? null : newTransformer();
+                for (int i = 0; i < knoten.size() && elemente.size() < limit; i++) {
+                    elemente.add(serialize(knoten.get(i), transformer));
+                }
+                yield new XmlAnalyzer.Extrakt(elemente, knoten.size());
+            }
+            case NODE -> new XmlAnalyzer.Extrakt(List.of(serialize((Node) ergebnis.value(), newTransformer())), 1);
+            case NUMBER -> new XmlAnalyzer.Extrakt(List.of(zahl((Number) ergebnis.value())), 1);
+            default -> new XmlAnalyzer.Extrakt(List.of(String.valueOf(ergebnis.value())), 1);
+        };
+    }
+
+    private static String serialize(Node node, Transformer transformer) {
+        return switch (node.getNodeType()) {
+            case Node.ELEMENT_NODE, Node.DOCUMENT_NODE -> {
+                StringWriter out = new StringWriter();
+                try {
+                    transformer.transform(new DOMSource(node), new StreamResult(out));
+                } catch (TransformerException e) {
+                    throw new IllegalStateException("Knoten nicht serialisierbar: " + e.getMessage(), e);
+                }
+                yield out.toString();
+            }
+            case Node.ATTRIBUTE_NODE -> {
+                StringBuilder out = new StringBuilder(((Attr) node).getName()).append("=\"");
+                XmlStreams.escape(node.getNodeValue(), true, out);
+                yield out.append('"').toString();
+            }
+            default -> node.getTextContent();
+        };
+    }
+
+    private static String zahl(Number zahl) {
+        double wert = zahl.doubleValue();
+        return wert == Math.rint(wert) && !Double.isInfinite(wert) ? Long.toString((long) wert) : Double.toString(wert);
+    }
+
+    private static Transformer newTransformer() {
+        try {
+            Transformer transformer;
+            synchronized (TRANSFORMER_FACTORY) {
+                transformer = TRANSFORMER_FACTORY.newTransformer();
+            }
+            transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+            return transformer;
+        } catch (TransformerException e) {
+            throw new IllegalStateException("Kein Identity-Transformer verfügbar", e);
+        }
+    }
+
+    private static String nachricht(XPathException e) {
+        Throwable ursache = e.getCause() != null ? e.getCause() : e;
+        return ursache.getMessage() != null ? ursache.getMessage() : ursache.getClass().getSimpleName();
+    }
+
+    private static <K, V> Map<K, V> lru(int maxEntries) {
+        return Collections.synchronizedMap(new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > Math.max(1, maxEntries);
+            }
+        });
+    }
+
+    private static final ErrorHandler WERFEN = new ErrorHandler() {
+        @Override
+        public void warning(SAXParseException e) {
+            // Warnungen sind kein Grund abzubrechen
+        }
+
+        @Override
+        public void error(SAXParseException e) throws SAXException {
+            throw e;
+        }
+
+        @Override
+        public void fatalError(SAXParseException e) throws SAXException {
+            throw e;
+        }
+    };
+
+    private static DocumentBuilderFactory createDocumentBuilderFactory() {
+        // gleiche Regeln wie XmlStreams: keine DTDs, keine externen Entities
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.setExpandEntityReferences(false);
+        factory.setXIncludeAware(false);
+        try {
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            // sonst expandiert Xerces Knoten erst beim Lesen - das wäre ein Schreibzugriff
+            factory.setFeature("http://apache.org/xml/features/dom/defer-node-expansion", false);
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException("XML-Parser lässt sich nicht absichern", e);
+        }
+        return factory;
+    }
+
+    private static TransformerFactory createTransformerFactory() {
+        TransformerFactory factory = TransformerFactory.newInstance();
+        factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+        factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_STYLESHEET, "");
+        return factory;
+    }
+
+    private record PraefixKontext(Map<String, String> namespaces) implements NamespaceContext {
+
+        @Override
+        public String getNamespaceURI(String prefix) {
+            if (XMLConstants.XML_NS_PREFIX.equals(prefix)) {
+                return XMLConstants.XML_NS_URI;
+            }
+            return namespaces.getOrDefault(prefix, XMLConstants.NULL_NS_URI);
+        }
+
+        @Override
+        public String getPrefix(String namespaceURI) {
+            return namespaces.entrySet().stream()
+                    .filter(e -> e.getValue().equals(namespaceURI))
+                    .map(Map.Entry::getKey)
+                    .findFirst().orElse(null);
+        }
+
+        @Override
+        public Iterator<String> getPrefixes(String namespaceURI) {
+            return namespaces.entrySet().stream()
+                    .filter(e -> e.getValue().equals(namespaceURI))
+                    .map(Map.Entry::getKey)
+                    .iterator();
+        }
+    }
+}
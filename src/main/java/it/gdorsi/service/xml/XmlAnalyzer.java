@@ -0,0 +1,365 @@
+package it.gdorsi.service.xml;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.springframework.stereotype.Component;
+
+import it.gdorsi.dao.XmlAnalyse;
+
+/**
+ * Analysiert XML in einem einzigen StAX-Durchlauf: Elemente, Tiefe, Namespaces, Attribute, Struktur
+ * und Wohlgeformtheit. Kein DOM, kein split("\n") - Speicher hängt nur an der Schachtelungstiefe und den
+ * (begrenzten) Namens-Statistiken, nicht an der Dokumentgröße. Minifiziertes XML zählt genauso wie formatiertes.
+ * <p>
+ * Im selben Durchlauf entsteht ein kanonischer Hash: zwei Dokumente mit gleichem Hash unterscheiden sich höchstens
+ * in Formatierung, Kommentaren, Präfixen oder Attributreihenfolge.
+ */
+@Component
+public class XmlAnalyzer {
+
+    /** Obergrenze für verschiedene Element-/Attributnamen, Namespaces und Pfade pro Analyse */
+    static final int MAX_EINTRAEGE = 500;
+
+    /**
+     * @param elemente serialisierte Fragmente (höchstens limit)
+     * @param gesamt   alle Treffer im Dokument
+     */
+    public record Extrakt(List<String> elemente, long gesamt) {}
+
+    public XmlAnalyse analyze(String xml) {
+        return analyze(new StringReader(xml == null ? "" : xml));
+    }
+
+    /**
+     * Liest den Reader vollständig (auch nach einem Parserfehler, damit Größe und Zeilen stimmen), schließt ihn aber nicht.
+     */
+    public XmlAnalyse analyze(Reader source) {
+        return analyze(source, null);
+    }
+
+    /**
+     * Wie {@link #analyze(Reader)}, mitleser bekommt dabei jedes Event desselben Durchlaufs (null = keiner).
+     */
+    XmlAnalyse analyze(Reader source, XmlEreignisse mitleser) {
+        CountingReader in = new CountingReader(source);
+        Zaehler z = new Zaehler();
+        String fehler = null;
+        XMLStreamReader reader = null;
+        try {
+            reader = XmlStreams.inputFactory().createXMLStreamReader(in);
+            z.deklaration = reader.getVersion() != null;
+            z.encoding = reader.getCharacterEncodingScheme();
+            while (reader.hasNext()) {
+                int event = reader.next();
+                switch (event) {
+                    case XMLStreamConstants.START_ELEMENT -> z.start(reader);
+                    case XMLStreamConstants.END_ELEMENT -> z.end();
+                    case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA -> z.text(reader);
+                    case XMLStreamConstants.COMMENT -> z.kommentare++;
+                    default -> {
+                        // Whitespace, Processing Instructions, DTD: nur für die Zeichenzahl relevant
+                    }
+                }
+                if (mitleser != null) {
+                    mitleser.ereignis(event, reader);
+                }
+            }
+        } catch (XMLStreamException e) {
+            fehler = beschreibe(e);
+        } finally {
+            close(reader);
+        }
+        in.drain();
+
+        boolean wohlgeformt = fehler == null && z.rootElement != null;
+        if (fehler == null && z.rootElement == null) {
+            fehler = "Kein Root-Element gefunden";
+        }
+        return new XmlAnalyse(wohlgeformt, fehler, z.deklaration, z.encoding, z.rootElement,
+                in.zeichen, in.zeichen == 0 ? 0 : in.zeilenumbrueche + 1,
+                z.elemente, z.maxTiefe, z.attribute, z.textZeichen, z.kommentare,
+                z.namespaces, z.elementNamen, z.attributNamen, z.pfade, z.gekappt,
+                wohlgeformt ? HexFormat.of().formatHex(z.hash.digest()) : null);
+    }
+
+    /**
+     * Alle Elemente mit diesem Namen (qualifiziert "x:buch" oder lokal "buch") als XML-Fragmente, in einem Durchlauf.
+     * Verschachtelte Treffer stecken im Fragment des äußeren.
+     *
+     * @throws IllegalArgumentException wenn das XML nicht wohlgeformt ist
+     */
+    public Extrakt extractElements(String xml, String elementName, int limit) {
+        List<String> elemente = new ArrayList<>();
+        long gesamt = 0;
+        XMLStreamReader reader = null;
+        try {
+            reader = XmlStreams.inputFactory().createXMLStreamReader(new StringReader(xml));
+            StringBuilder fragment = null;
+            int tiefe = 0;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    if (fragment == null && passt(reader, elementName)) {
+                        gesamt++;
+                        if (elemente.size() < limit) {
+                            fragment = new StringBuilder();
+                            tiefe = 0;
+                        }
+                    }
+                    if (fragment != null) {
+                        XmlStreams.appendStartTag(reader, fragment);
+                        tiefe++;
+                    }
+                } else if (fragment != null && event == XMLStreamConstants.END_ELEMENT) {
+                    fragment.append("</").append(XmlStreams.qualifiedName(reader.getPrefix(), reader.getLocalName()))
+                            .append('>');
+                    if (--tiefe == 0) {
+                        elemente.add(fragment.toString());
+                        fragment = null;
+                    }
+                } else if (fragment != null
+                        && (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                        || event == XMLStreamConstants.SPACE)) {
+                    XmlStreams.escape(reader.getText(), false, fragment);
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new IllegalArgumentException("XML nicht wohlgeformt: " + beschreibe(e), e);
+        } finally {
+            close(reader);
+        }
+        return new Extrakt(elemente, gesamt);
+    }
+
+    private static boolean passt(XMLStreamReader reader, String elementName) {
+        return elementName.equals(reader.getLocalName())
+                || elementName.equals(XmlStreams.qualifiedName(reader.getPrefix(), reader.getLocalName()));
+    }
+
+    static String beschreibe(XMLStreamException e) {
+        String nachricht = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+        // JDK-Parser: "ParseError at [row,col]:[1,5]\nMessage: ..." - Position geben wir selbst aus
+        int message = nachricht.indexOf("Message: ");
+        if (message >= 0) {
+            nachricht = nachricht.substring(message + "Message: ".length());
+        }
+        Location location = e.getLocation();
+        if (location == null || location.getLineNumber() < 0) {
+            return nachricht.strip();
+        }
+        return "Zeile " + location.getLineNumber() + ", Spalte " + location.getColumnNumber() + ": " + nachricht.strip();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 nicht verfügbar", e);
+        }
+    }
+
+    private static void close(XMLStreamReader reader) {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (XMLStreamException e) {
+                // nichts mehr zu retten
+            }
+        }
+    }
+
+    /** Zustand eines Durchlaufs */
+    private static final class Zaehler {
+        boolean deklaration;
+        String encoding;
+        String rootElement;
+        long elemente;
+        int maxTiefe;
+        long attribute;
+        long textZeichen;
+        long kommentare;
+        boolean gekappt;
+        final Deque<String> pfad = new ArrayDeque<>();
+        final Map<String, String> namespaces = new LinkedHashMap<>();
+        final Map<String, Long> elementNamen = new LinkedHashMap<>();
+        final Map<String, Long> attributNamen = new LinkedHashMap<>();
+        final Map<String, Long> pfade = new LinkedHashMap<>();
+        final MessageDigest hash = sha256();
+        // kanonischer Text: Whitespace-Folgen werden ein Leerzeichen, Anfang/Ende entfallen
+        boolean imText;
+        boolean leerzeichenOffen;
+
+        void start(XMLStreamReader reader) {
+            textEnde();
+            hashe('S', reader.getNamespaceURI(), reader.getLocalName());
+            List<String[]> attribute = new ArrayList<>(reader.getAttributeCount());
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                QName name = reader.getAttributeName(i);
+                attribute.add(new String[]{name.getNamespaceURI(), name.getLocalPart(), reader.getAttributeValue(i)});
+            }
+            attribute.sort(Comparator.<String[], String>comparing(a -> a[0]).thenComparing(a -> a[1]));
+            for (String[] attribut : attribute) {
+                hashe('A', attribut[0], attribut[1], attribut[2]);
+            }
+            zaehleStart(reader);
+        }
+
+        void end() {
+            textEnde();
+            hash.update((byte) 'E');
+            pfad.pop();
+        }
+
+        void text(XMLStreamReader reader) {
+            char[] zeichen = reader.getTextCharacters();
+            int start = reader.getTextStart();
+            int ende = start + reader.getTextLength();
+            textZeichen += reader.getTextLength();
+            StringBuilder kanonisch = new StringBuilder();
+            for (int i = start; i < ende; i++) {
+                char c = zeichen[i];
+                if (Character.isWhitespace(c)) {
+                    leerzeichenOffen = imText;
+                } else {
+                    if (!imText) {
+                        kanonisch.append('\u0001');
+                        imText = true;
+                    } else if (leerzeichenOffen) {
+                        kanonisch.append(' ');
+                    }
+                    leerzeichenOffen = false;
+                    kanonisch.append(c);
+                }
+            }
+            hash.update(kanonisch.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        private void textEnde() {
+            imText = false;
+            leerzeichenOffen = false;
+        }
+
+        private void hashe(char art, String... teile) {
+            hash.update((byte) art);
+            for (String teil : teile) {
+                if (teil != null) {
+                    hash.update(teil.getBytes(StandardCharsets.UTF_8));
+                }
+                hash.update((byte) 0);
+            }
+        }
+
+        private void zaehleStart(XMLStreamReader reader) {
+            String name = XmlStreams.qualifiedName(reader.getPrefix(), reader.getLocalName());
+            if (rootElement == null) {
+                rootElement = name;
+            }
+            elemente++;
+            String aktuell = (pfad.isEmpty() ? "" : pfad.peek()) + "/" + name;
+            pfad.push(aktuell);
+            maxTiefe = Math.max(maxTiefe, pfad.size());
+            zaehle(elementNamen, name);
+            zaehle(pfade, aktuell);
+
+            for (int i = 0; i < reader.getNamespaceCount(); i++) {
+                String prefix = reader.getNamespacePrefix(i);
+                String key = prefix == null || prefix.isEmpty() ? "(default)" : prefix;
+                if (!namespaces.containsKey(key)) {
+                    if (namespaces.size() < MAX_EINTRAEGE) {
+                        namespaces.put(key, reader.getNamespaceURI(i));
+                    } else {
+                        gekappt = true;
+                    }
+                }
+            }
+            attribute += reader.getAttributeCount();
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                zaehle(attributNamen, XmlStreams.qualifiedName(reader.getAttributePrefix(i),
+                        reader.getAttributeLocalName(i)));
+            }
+        }
+
+        private void zaehle(Map<String, Long> map, String key) {
+            Long bisher = map.get(key);
+            if (bisher != null) {
+                map.put(key, bisher + 1);
+            } else if (map.size() < MAX_EINTRAEGE) {
+                map.put(key, 1L);
+            } else {
+                gekappt = true;
+            }
+        }
+    }
+
+    /** Zählt Zeichen und Zeilenumbrüche, während der Parser liest */
+    private static final class CountingReader extends FilterReader {
+        long zeichen;
+        long zeilenumbrueche;
+
+        CountingReader(Reader in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int c = super.read();
+            if (c >= 0) {
+                zeichen++;
+                if (c == '\n') {
+                    zeilenumbrueche++;
+                }
+            }
+            return c;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            for (int i = offset; i < offset + read; i++) {
+                if (buffer[i] == '\n') {
+                    zeilenumbrueche++;
+                }
+            }
+            zeichen += Math.max(0, read);
+            return read;
+        }
+
+        @Override
+        public void close() {
+            // den Reader schließt der Aufrufer
+        }
+
+        /** Rest nach einem Parserfehler (oder Whitespace nach dem Root-Element) mitzählen */
+        void drain() {
+            char[] buffer = new char[8192];
+            try {
+                while (read(buffer, 0, buffer.length) >= 0) {
+                    // nur zählen
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package it.gdorsi.service.xml;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+/**
+ * Eine Aufgabe über viele XML-Dokumente: virtuelle Threads, aber höchstens parallelism gleichzeitig
+ * (jedes Dokument liegt währenddessen komplett im Speicher). Ergebnisse in der Reihenfolge der Quellen.
+ */
+final class XmlBatch {
+
+    private XmlBatch() {
+    }
+
+    static <T> List<T> fuerAlle(List<XmlQuelle> quellen, int parallelism, Function<XmlQuelle, T> aufgabe) {
+        Semaphore slots = new Semaphore(Math.max(1, parallelism));
+        List<Future<T>> futures = new ArrayList<>(quellen.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (XmlQuelle quelle : quellen) {
+                futures.add(executor.submit(() -> {
+                    slots.acquire();
+                    try {
+                        return aufgabe.apply(quelle);
+                    } finally {
+                        slots.release();
+                    }
+                }));
+            }
+            List<T> ergebnisse = new ArrayList<>(futures.size());
+            try {
+                for (Future<T> future : futures) {
+                    ergebnisse.add(future.get());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(f -> f.cancel(true));
+                throw new IllegalStateException("Verarbeitung der XML-Dokumente unterbrochen", e);
+            } catch (ExecutionException e) {
+                futures.forEach(f -> f.cancel(true));
+                if (e.getCause() instanceof RuntimeException runtime) {
+                    throw runtime;
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+            return ergebnisse;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package it.gdorsi.service.xml;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.stereotype.Component;
+
+import it.gdorsi.config.XmlChunkingProperties;
+
+/**
+ * Zerlegt ein XML-Dokument entlang der Elementgrenzen in Chunks mit höchstens maxTokens Tokens.
+ * <p>
+ * Ein Durchlauf mit StAX, ohne DOM: jedes offene Element sammelt seine fertig serialisierten Kinder.
+ * Passt ein Element komplett ins Budget, wandert es als Ganzes zum Elternelement (Geschwister werden dort
+ * zusammengefasst, bis das Budget voll ist). Passt es nicht, werden seine Kinder einzeln ausgegeben - große
+ * Elemente werden also so tief wie nötig aufgeteilt, kleine bleiben zusammen. Gepuffert wird nur, was noch
+ * in einen Chunk passen kann.
+ * <p>
+ * Jeder Chunk kennt seinen XPath (/katalog[1]/buch[3]); Text, der allein schon zu groß ist, wird in
+ * Fenster geschnitten. Kein wohlgeformtes XML: Fallback auf reine Text-Fenster.
+ */
+@Component
+public class XmlChunker {
+
+    private static final Logger log = LoggerFactory.getLogger(XmlChunker.class);
+
+    /**
+     * @param xpath  Element (oder Elternelement bei mehreren zusammengefassten Geschwistern)
+     * @param text   serialisiertes XML-Fragment
+     * @param tokens geschätzte Tokens (Summe der Teile, eher etwas zu hoch)
+     */
+    public record Chunk(String xpath, String text, int tokens) {}
+
+    private final XmlChunkingProperties properties;
+    private final TokenCountEstimator tokenCounter = new JTokkitTokenCountEstimator();
+
+    public XmlChunker(XmlChunkingProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * @throws IllegalArgumentException wenn das Dokument mehr als maxChunks Chunks ergibt
+     */
+    public List<Chunk> chunk(String xml) {
+        if (xml == null || xml.isBlank()) {
+            return List.of();
+        }
+        try {
+            return new Zerlegung().chunk(xml);
+        } catch (XMLStreamException e) {
+            log.debug("Kein wohlgeformtes XML, zerlege als Text: {}", e.getMessage());
+            Zerlegung zerlegung = new Zerlegung();
+            zerlegung.emitText("/", xml, count(xml));
+            return zerlegung.chunks;
+        }
+    }
+
+    /**
+     * Zerlegung, die ihre Events aus einem fremden Durchlauf bekommt (siehe {@link XmlAnalyzer#analyze(java.io.Reader,
+     * XmlEreignisse)}); die Chunks liefert {@link Zerlegung#ende()}. Ohne Text-Fallback - nur für wohlgeformtes XML.
+     */
+    Zerlegung zerlegung() {
+        return new Zerlegung();
+    }
+
+    private int count(String text) {
+        return tokenCounter.estimate(text);
+    }
+
+    /** Offenes Element (bzw. das Dokument ganz unten im Stack) */
+    private static final class Frame {
+        final String xpath;
+        final String startTag;
+        final int startTagTokens;
+        final Map<String, Integer> childCounts = new HashMap<>();
+        final StringBuilder pending = new StringBuilder();
+        int pendingTokens;
+        int pendingUnits;
+        String singleUnitXpath;
+        // Teile dieses Elements sind schon als Chunks raus - es kann nicht mehr als Ganzes weitergegeben werden
+        boolean split;
+
+        Frame(String xpath, String startTag, int startTagTokens) {
+            this.xpath = xpath;
+            this.startTag = startTag;
+            this.startTagTokens = startTagTokens;
+        }
+    }
+
+    final class Zerlegung implements XmlEreignisse {
+
+        private final int maxTokens = Math.max(16, properties.maxTokens());
+        private final List<Frame> stack = new ArrayList<>(List.of(new Frame("", "", 0)));
+        private final List<Chunk> chunks = new ArrayList<>();
+
+        List<Chunk> chunk(String xml) throws XMLStreamException {
+            XMLStreamReader reader = XmlStreams.inputFactory().createXMLStreamReader(new StringReader(xml));
+            try {
+                while (reader.hasNext()) {
+                    ereignis(reader.next(), reader);
+                }
+                return ende();
+            } finally {
+                reader.close();
+            }
+        }
+
+        @Override
+        public void ereignis(int event, XMLStreamReader reader) {
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT -> startElement(reader);
+                case XMLStreamConstants.END_ELEMENT -> endElement(reader);
+                case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA -> text(reader.getText());
+                default -> {
+                    // Kommentare, Processing Instructions, Whitespace zwischen Elementen: nicht indexieren
+                }
+            }
+        }
+
+        /** Nach dem letzten Event: Rest ausgeben */
+        List<Chunk> ende() {
+            flush(0);
+            return chunks;
+        }
+
+        private void startElement(XMLStreamReader reader) {
+            Frame parent = stack.getLast();
+            String name = XmlStreams.qualifiedName(reader.getPrefix(), reader.getLocalName());
+            int position = parent.childCounts.merge(name, 1, Integer::sum);
+
+            StringBuilder tag = new StringBuilder();
+            XmlStreams.appendStartTag(reader, tag);
+            String startTag = tag.toString();
+            stack.add(new Frame(parent.xpath + "/" + name + "[" + position + "]", startTag, count(startTag)));
+        }
+
+        private void endElement(XMLStreamReader reader) {
+            Frame frame = stack.removeLast();
+            String endTag = "</" + XmlStreams.qualifiedName(reader.getPrefix(), reader.getLocalName()) + ">";
+            int total = frame.startTagTokens + frame.pendingTokens + count(endTag);
+            if (!frame.split && total <= maxTokens) {
+                addUnit(frame.startTag + frame.pending + endTag, total, frame.xpath);
+            } else {
+                // zu groß oder schon geteilt: Rest des Elements als eigener Chunk
+                stack.add(frame);
+                flush(stack.size() - 1);
+                stack.removeLast();
+            }
+        }
+
+        private void text(String text) {
+            if (text.isBlank()) {
+                return;
+            }
+            StringBuilder escaped = new StringBuilder(text.length() + 16);
+            XmlStreams.escape(text, false, escaped);
+            String value = escaped.toString();
+            int tokens = count(value);
+            if (tokens > maxTokens) {
+                emitText(stack.getLast().xpath, value, tokens);
+            } else {
+                addUnit(value, tokens, stack.getLast().xpath);
+            }
+        }
+
+        /** Fertiges Kind (Element oder Text) an das oberste offene Element hängen */
+        private void addUnit(String text, int tokens, String xpath) {
+            Frame frame = stack.getLast();
+            if (frame.pendingTokens > 0 && frame.pendingTokens + tokens > maxTokens) {
+                flush(stack.size() - 1);
+            }
+            frame.pending.append(text);
+            frame.pendingTokens += tokens;
+            frame.pendingUnits++;
+            frame.singleUnitXpath = xpath;
+        }
+
+        /**
+         * Gibt den Puffer des Frames an Position index als Chunk aus. Vorher leeren sich alle Vorfahren,
+         * damit die Chunks in Dokumentreihenfolge bleiben; alle sind danach "geteilt".
+         */
+        private void flush(int index) {
+            for (int i = 0; i <= index; i++) {
+                Frame frame = stack.get(i);
+                if (frame.pendingTokens > 0) {
+                    String xpath = frame.pendingUnits == 1 ? frame.singleUnitXpath : frame.xpath;
+                    add(new Chunk(xpath.isEmpty() ? "/" : xpath, frame.pending.toString(), frame.pendingTokens));
+                    frame.pending.setLength(0);
+                    frame.pendingTokens = 0;
+                    frame.pendingUnits = 0;
+                    frame.singleUnitXpath = null;
+                }
+                frame.split = true;
+            }
+        }
+
+        /** Text über dem Budget: an Leerzeichen in etwa gleich große Fenster schneiden */
+        void emitText(String xpath, String text, int tokens) {
+            if (!stack.isEmpty()) {
+                flush(stack.size() - 1);
+            }
+            int windows = (tokens + maxTokens - 1) / maxTokens;
+            int start = 0;
+            for (int w = 1; w <= windows && start < text.length(); w++) {
+                int end = w == windows ? text.length() : breakAt(text, (int) ((long) text.length() * w / windows));
+                if (end <= start) {
+                    continue;
+                }
+                String window = text.substring(start, end);
+                if (!window.isBlank()) {
+                    add(new Chunk(xpath, window, count(window)));
+                }
+                start = end;
+            }
+        }
+
+        private void add(Chunk chunk) {
+            if (chunks.size() >= properties.maxChunks()) {
+                throw new IllegalArgumentException("XML-Dokument ergibt mehr als " + properties.maxChunks() + " Chunks");
+            }
+            chunks.add(chunk);
+        }
+    }
+
+    // nächstes Leerzeichen nach der Wunschposition, sonst hart schneiden
+    private static int breakAt(String text, int target) {
+        int limit = Math.min(text.length(), target + 200);
+        for (int i = target; i < limit; i++) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                return i + 1;
+            }
+        }
+        return target;
+    }
+}
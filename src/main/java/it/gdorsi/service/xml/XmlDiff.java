@@ -0,0 +1,459 @@
+package it.gdorsi.service.xml;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.springframework.stereotype.Component;
+
+import it.gdorsi.config.XmlDiffProperties;
+
+/**
+ * Struktureller Vergleich zweier XML-Dokumente für compareXml, als kompaktes Edit-Script mit XPaths.
+ * <p>
+ * Beide Dokumente werden per StAX gelesen und dabei kanonisiert wie in {@link XmlAnalyzer} (Whitespace, Kommentare,
+ * Präfixe und Attributreihenfolge zählen nicht). Jedes Element bekommt einen Merkle-Hash über Name, Attribute, Text
+ * und die Hashes seiner Kinder. Der Vergleich steigt nur in Teilbäume mit unterschiedlichem Hash ab:
+ * gleiche Kinder werden über den Hash gepaart, geänderte über Name und Attribute (bzw. ohne Attribute über die
+ * Position zwischen gepaarten Nachbarn). Jedes Element wird höchstens einmal besucht - die Laufzeit wächst
+ * praktisch linear mit der Dokumentgröße.
+ * <p>
+ * Ergebnisse liegen pro Paar von Dokumentversionen (kanonische Hashes aus dem Strukturprofil) in einem LRU-Cache;
+ * ein Treffer braucht die Inhalte gar nicht erst.
+ */
+@Component
+public class XmlDiff {
+
+    private static final int MAX_WERT_ZEICHEN = 60;
+
+    public enum Art { EINGEFUEGT, GELOESCHT, GEAENDERT, UMSORTIERT }
+
+    /**
+     * @param vorher  alter Wert bzw. Kurzform des gelöschten Elements, sonst null
+     * @param nachher neuer Wert bzw. Kurzform des eingefügten Elements, sonst null
+     */
+    public record Aenderung(Art art, String xpath, String vorher, String nachher) {}
+
+    /**
+     * @param aenderungen höchstens app.xml-diff.max-aenderungen Einträge, in Dokumentreihenfolge
+     * @param gesamt      alle Änderungen
+     */
+    public record Ergebnis(List<Aenderung> aenderungen, long gesamt) {
+        public boolean gleich() {
+            return gesamt == 0;
+        }
+    }
+
+    private record Versionen(String alt, String neu) {}
+
+    private final XmlDiffProperties properties;
+    private final Map<Versionen, Ergebnis> ergebnisse;
+
+    public XmlDiff(XmlDiffProperties properties) {
+        this.properties = properties;
+        this.ergebnisse = Collections.synchronizedMap(new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Versionen, Ergebnis> eldest) {
+                return size() > Math.max(1, properties.cacheSize());
+            }
+        });
+    }
+
+    /**
+     * Vergleich mit Cache. Die Reader werden nur bei einem Cache-Fehlschlag geöffnet und immer geschlossen.
+     *
+     * @param versionAlt kanonischer Hash des alten Dokuments, null = nicht cachen
+     * @param versionNeu kanonischer Hash des neuen Dokuments, null = nicht cachen
+     * @throws IllegalArgumentException wenn eines der Dokumente nicht wohlgeformt ist
+     */
+    public Ergebnis vergleiche(String versionAlt, Supplier<Reader> alt, String versionNeu, Supplier<Reader> neu) {
+        if (versionAlt == null || versionNeu == null) {
+            return vergleiche(alt, neu);
+        }
+        Versionen schluessel = new Versionen(versionAlt, versionNeu);
+        Ergebnis ergebnis = ergebnisse.get(schluessel);
+        if (ergebnis == null) {
+            ergebnis = vergleiche(alt, neu);
+            ergebnisse.put(schluessel, ergebnis);
+        }
+        return ergebnis;
+    }
+
+    public Ergebnis vergleiche(Supplier<Reader> alt, Supplier<Reader> neu) {
+        Knoten wurzelAlt = lese(alt);
+        Knoten wurzelNeu = lese(neu);
+        Script script = new Script(properties.maxAenderungen());
+        if (wurzelAlt.schluessel.equals(wurzelNeu.schluessel)) {
+            vergleiche(wurzelAlt, wurzelNeu, "/" + wurzelAlt.name, "/" + wurzelNeu.name, script);
+        } else {
+            script.add(Art.GELOESCHT, "/" + wurzelAlt.name, wurzelAlt.kurzform(), null);
+            script.add(Art.EINGEFUEGT, "/" + wurzelNeu.name, null, wurzelNeu.kurzform());
+        }
+        return new Ergebnis(List.copyOf(script.aenderungen), script.gesamt);
+    }
+
+    // a und b haben denselben Namen; Pfade getrennt, weil sich die Positionen zwischen den Dokumenten verschieben
+    private void vergleiche(Knoten a, Knoten b, String pfadAlt, String pfadNeu, Script script) {
+        if (a.hash.equals(b.hash)) {
+            return;
+        }
+        for (Map.Entry<String, Attribut> attribut : a.attribute.entrySet()) {
+            Attribut neu = b.attribute.get(attribut.getKey());
+            if (neu == null) {
+                script.add(Art.GELOESCHT, pfadAlt + "/@" + attribut.getValue().name(), attribut.getValue().wert(), null);
+            } else if (!neu.wert().equals(attribut.getValue().wert())) {
+                script.add(Art.GEAENDERT, pfadNeu + "/@" + neu.name(), attribut.getValue().wert(), neu.wert());
+            }
+        }
+        for (Map.Entry<String, Attribut> attribut : b.attribute.entrySet()) {
+            if (!a.attribute.containsKey(attribut.getKey())) {
+                script.add(Art.EINGEFUEGT, pfadNeu + "/@" + attribut.getValue().name(), null, attribut.getValue().wert());
+            }
+        }
+        if (!a.text.equals(b.text)) {
+            script.add(Art.GEAENDERT, pfadNeu + "/text()", a.text, b.text);
+        }
+        vergleicheKinder(a, b, pfadAlt, pfadNeu, script);
+    }
+
+    private void vergleicheKinder(Knoten a, Knoten b, String pfadAlt, String pfadNeu, Script script) {
+        int[] partner = new int[a.kinder.size()];
+        boolean[] vergeben = new boolean[b.kinder.size()];
+
+        // 1. unveränderte Teilbäume über den Hash
+        Map<Hash, Deque<Integer>> nachHash = new HashMap<>();
+        for (int j = 0; j < b.kinder.size(); j++) {
+            nachHash.computeIfAbsent(b.kinder.get(j).hash, h -> new ArrayDeque<>()).add(j);
+        }
+        for (int i = 0; i < partner.length; i++) {
+            Deque<Integer> kandidaten = nachHash.get(a.kinder.get(i).hash);
+            partner[i] = kandidaten == null || kandidaten.isEmpty() ? -1 : kandidaten.poll();
+            if (partner[i] >= 0) {
+                vergeben[partner[i]] = true;
+            }
+        }
+
+        // 2. geänderter Inhalt: gleicher Name und gleiche Attribute (<buch nr="4"> mit neuem Titel)
+        paare(a, b, partner, vergeben, k -> k.attribute.isEmpty() ? null : k.signatur, false);
+        // 3. gleicher Name und gleiches erstes Attribut - meist die ID (<buch nr="3"> mit neuem Preis)
+        paare(a, b, partner, vergeben, k -> k.identitaet, false);
+        // 4. Elemente ohne Attribute: gleicher Name, zwischen denselben schon gepaarten Nachbarn
+        paare(a, b, partner, vergeben, k -> k.attribute.isEmpty() ? k.schluessel : null, true);
+
+        boolean umsortiert = false;
+        int letzter = -1;
+        for (int i = 0; i < partner.length; i++) {
+            Knoten kind = a.kinder.get(i);
+            if (partner[i] < 0) {
+                script.add(Art.GELOESCHT, pfadAlt + "/" + kind.schritt(), kind.kurzform(), null);
+            } else if (!kind.hash.equals(b.kinder.get(partner[i]).hash)) {
+                Knoten gegenueber = b.kinder.get(partner[i]);
+                vergleiche(kind, gegenueber, pfadAlt + "/" + kind.schritt(), pfadNeu + "/" + gegenueber.schritt(),
+                        script);
+            }
+            if (partner[i] >= 0) {
+                umsortiert |= partner[i] < letzter;
+                letzter = partner[i];
+            }
+        }
+        for (int j = 0; j < vergeben.length; j++) {
+            if (!vergeben[j]) {
+                Knoten kind = b.kinder.get(j);
+                script.add(Art.EINGEFUEGT, pfadNeu + "/" + kind.schritt(), null, kind.kurzform());
+            }
+        }
+        if (umsortiert) {
+            script.add(Art.UMSORTIERT, pfadNeu, null, null);
+        }
+    }
+
+    /**
+     * Paart noch freie Kinder mit gleichem Schlüssel (null = hier nicht paaren) in Dokumentreihenfolge.
+     *
+     * @param geordnet nur Partner zwischen den Partnern des vorigen und des nächsten gepaarten Geschwisters
+     */
+    private static void paare(Knoten a, Knoten b, int[] partner, boolean[] vergeben,
+                              Function<Knoten, Object> schluessel, boolean geordnet) {
+        Map<Object, Deque<Integer>> offen = new HashMap<>();
+        for (int j = 0; j < vergeben.length; j++) {
+            Object s = schluessel.apply(b.kinder.get(j));
+            if (!vergeben[j] && s != null) {
+                offen.computeIfAbsent(s, k -> new ArrayDeque<>()).add(j);
+            }
+        }
+        int[] naechster = new int[partner.length];
+        int folgender = vergeben.length;
+        for (int i = partner.length - 1; i >= 0; i--) {
+            naechster[i] = folgender;
+            if (partner[i] >= 0) {
+                folgender = partner[i];
+            }
+        }
+        int voriger = -1;
+        for (int i = 0; i < partner.length; i++) {
+            Object s = partner[i] < 0 ? schluessel.apply(a.kinder.get(i)) : null;
+            Deque<Integer> kandidaten = s == null ? null : offen.get(s);
+            if (kandidaten != null && geordnet) {
+                // was vor dem vorigen Partner liegt, passt auch für spätere Geschwister nicht mehr
+                while (!kandidaten.isEmpty() && kandidaten.peek() < voriger) {
+                    kandidaten.poll();
+                }
+                if (!kandidaten.isEmpty() && kandidaten.peek() > naechster[i]) {
+                    kandidaten = null;
+                }
+            }
+            if (kandidaten != null && !kandidaten.isEmpty()) {
+                partner[i] = kandidaten.poll();
+                vergeben[partner[i]] = true;
+            }
+            if (partner[i] >= 0) {
+                voriger = partner[i];
+            }
+        }
+    }
+
+    private static Knoten lese(Supplier<Reader> quelle) {
+        XMLStreamReader reader = null;
+        try (Reader in = quelle.get()) {
+            reader = XmlStreams.inputFactory().createXMLStreamReader(in);
+            return new Leser().lese(reader);
+        } catch (XMLStreamException e) {
+            throw new IllegalArgumentException("XML nicht wohlgeformt: " + XmlAnalyzer.beschreibe(e), e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    // nichts mehr zu retten
+                }
+            }
+        }
+    }
+
+    /** Baut den Baum in einem Durchlauf; Hashes entstehen beim END_ELEMENT, die Kinder sind dann fertig */
+    private static final class Leser {
+        private final MessageDigest digest = sha256();
+        private final Deque<Knoten> offen = new ArrayDeque<>();
+        // gleiche Namen teilen sich einen String - große Dokumente bestehen aus wenigen verschiedenen Namen
+        private final Map<String, String> namen = new HashMap<>();
+        private final StringBuilder text = new StringBuilder();
+        private boolean leerzeichenOffen;
+
+        Knoten lese(XMLStreamReader reader) throws XMLStreamException {
+            Knoten wurzel = null;
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT -> {
+                        textEnde();
+                        Knoten knoten = start(reader);
+                        if (offen.isEmpty()) {
+                            wurzel = knoten;
+                        } else {
+                            offen.peek().kinder.add(knoten);
+                        }
+                        offen.push(knoten);
+                    }
+                    case XMLStreamConstants.END_ELEMENT -> {
+                        textEnde();
+                        ende(offen.pop());
+                    }
+                    case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA -> text(reader);
+                    default -> {
+                        // Kommentare, Processing Instructions, Whitespace außerhalb: nicht Teil des Vergleichs
+                    }
+                }
+            }
+            if (wurzel == null) {
+                throw new IllegalArgumentException("Kein Root-Element gefunden");
+            }
+            return wurzel;
+        }
+
+        private Knoten start(XMLStreamReader reader) {
+            String namespace = reader.getNamespaceURI();
+            String lokal = reader.getLocalName();
+            Knoten knoten = new Knoten(
+                    name(XmlStreams.qualifiedName(reader.getPrefix(), lokal)),
+                    name(namespace == null || namespace.isEmpty() ? lokal : "{" + namespace + "}" + lokal));
+            if (reader.getAttributeCount() > 0) {
+                knoten.identitaet = knoten.schluessel + "\u0000" + reader.getAttributeLocalName(0) + "\u0000"
+                        + reader.getAttributeValue(0);
+            }
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                String attributNamespace = reader.getAttributeNamespace(i);
+                String attributLokal = reader.getAttributeLocalName(i);
+                String schluessel = attributNamespace == null || attributNamespace.isEmpty()
+                        ? attributLokal : "{" + attributNamespace + "}" + attributLokal;
+                knoten.attribute.put(name(schluessel), new Attribut(
+                        name(XmlStreams.qualifiedName(reader.getAttributePrefix(i), attributLokal)),
+                        reader.getAttributeValue(i)));
+            }
+            return knoten;
+        }
+
+        // Text wie im kanonischen Hash: Whitespace-Folgen werden ein Leerzeichen, Anfang/Ende entfallen
+        private void text(XMLStreamReader reader) {
+            char[] zeichen = reader.getTextCharacters();
+            int ende = reader.getTextStart() + reader.getTextLength();
+            for (int i = reader.getTextStart(); i < ende; i++) {
+                char c = zeichen[i];
+                if (Character.isWhitespace(c)) {
+                    leerzeichenOffen = !text.isEmpty();
+                } else {
+                    if (leerzeichenOffen) {
+                        text.append(' ');
+                        leerzeichenOffen = false;
+                    }
+                    text.append(c);
+                }
+            }
+        }
+
+        private void textEnde() {
+            if (!offen.isEmpty() && !text.isEmpty()) {
+                Knoten knoten = offen.peek();
+                knoten.text = knoten.text.isEmpty() ? text.toString() : knoten.text + " " + text;
+            }
+            text.setLength(0);
+            leerzeichenOffen = false;
+        }
+
+        private void ende(Knoten knoten) {
+            Map<String, Integer> anzahl = new HashMap<>();
+            update(knoten.schluessel);
+            for (Map.Entry<String, Attribut> attribut : knoten.attribute.entrySet()) {
+                update(attribut.getKey());
+                update(attribut.getValue().wert());
+            }
+            knoten.signatur = Hash.von(digest.digest());
+            digest.update(knoten.signatur.bytes());
+            update(knoten.text);
+            for (Knoten kind : knoten.kinder) {
+                digest.update(kind.hash.bytes());
+                knoten.elemente += kind.elemente;
+                kind.nr = anzahl.merge(kind.schluessel, 1, Integer::sum);
+            }
+            for (Knoten kind : knoten.kinder) {
+                kind.eindeutig = anzahl.get(kind.schluessel) == 1;
+            }
+            knoten.hash = Hash.von(digest.digest());
+        }
+
+        private void update(String teil) {
+            digest.update(teil.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+
+        private String name(String name) {
+            return namen.computeIfAbsent(name, n -> n);
+        }
+    }
+
+    private static final class Knoten {
+        final String name;
+        final String schluessel;
+        final TreeMap<String, Attribut> attribute = new TreeMap<>();
+        final List<Knoten> kinder = new ArrayList<>(2);
+        String text = "";
+        // Name und erstes Attribut in Dokumentreihenfolge, null ohne Attribute
+        String identitaet;
+        // Name und Attribute; hash zusätzlich über Text und Kinder
+        Hash signatur;
+        Hash hash;
+        long elemente = 1;
+        // Position unter den Geschwistern gleichen Namens, für den XPath-Schritt
+        int nr = 1;
+        boolean eindeutig = true;
+
+        Knoten(String name, String schluessel) {
+            this.name = name;
+            this.schluessel = schluessel;
+        }
+
+        String schritt() {
+            return eindeutig ? name : name + "[" + nr + "]";
+        }
+
+        String kurzform() {
+            StringBuilder kurz = new StringBuilder("<").append(name);
+            for (Attribut attribut : attribute.values()) {
+                kurz.append(' ').append(attribut.name()).append("=\"").append(kuerze(attribut.wert())).append('"');
+            }
+            kurz.append('>');
+            if (elemente > 1) {
+                kurz.append(" (").append(elemente).append(" Elemente)");
+            } else if (!text.isEmpty()) {
+                kurz.append(kuerze(text));
+            }
+            return kurz.toString();
+        }
+    }
+
+    private record Attribut(String name, String wert) {}
+
+    /** die ersten 128 Bit des SHA-256 - reicht gegen Kollisionen und hält den Baum klein */
+    private record Hash(long hoch, long tief) {
+        static Hash von(byte[] digest) {
+            ByteBuffer bytes = ByteBuffer.wrap(digest);
+            return new Hash(bytes.getLong(), bytes.getLong());
+        }
+
+        byte[] bytes() {
+            return ByteBuffer.allocate(16).putLong(hoch).putLong(tief).array();
+        }
+    }
+
+    private static final class Script {
+        final List<Aenderung> aenderungen = new ArrayList<>();
+        final int max;
+        long gesamt;
+
+        Script(int max) {
+            this.max = max;
+        }
+
+        void add(Art art, String xpath, String vorher, String nachher) {
+            gesamt++;
+            if (aenderungen.size() < max) {
+                aenderungen.add(new Aenderung(art, xpath, kuerzeOderNull(vorher), kuerzeOderNull(nachher)));
+            }
+        }
+    }
+
+    private static String kuerzeOderNull(String wert) {
+        return wert == null ? null : kuerze(wert);
+    }
+
+    private static String kuerze(String wert) {
+        return wert.length() > MAX_WERT_ZEICHEN ? wert.substring(0, MAX_WERT_ZEICHEN) + "…" : wert;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 nicht verfügbar", e);
+        }
+    }
+}
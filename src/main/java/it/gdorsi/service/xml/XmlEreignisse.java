@@ -0,0 +1,16 @@
+package it.gdorsi.service.xml;
+
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Liest bei einem fremden StAX-Durchlauf mit: bekommt jedes Event, nachdem der Besitzer des Readers es verarbeitet hat.
+ * So teilen sich {@link XmlAnalyzer} und {@link XmlChunker} beim Upload einen einzigen Parse.
+ */
+@FunctionalInterface
+interface XmlEreignisse {
+
+    /**
+     * @param event wie von {@link XMLStreamReader#next()} geliefert, der Reader steht noch auf diesem Event
+     */
+    void ereignis(int event, XMLStreamReader reader);
+}
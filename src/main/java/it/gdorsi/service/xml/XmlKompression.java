@@ -0,0 +1,291 @@
+package it.gdorsi.service.xml;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import it.gdorsi.config.XmlKompressionProperties;
+import it.gdorsi.dao.XmlAnalyse;
+import it.gdorsi.repository.XmlStrukturProfilRepository;
+import it.gdorsi.repository.XmlWoerterbuchRepository;
+import it.gdorsi.repository.model.XmlDokument;
+import it.gdorsi.repository.model.XmlWoerterbuch;
+import it.gdorsi.service.util.DeflateCodec;
+
+/**
+ * Komprimierte Ablage von xml_dokument.inhalt (app.xml-kompression.enabled): Deflate mit einem Wörterbuch pro
+ * Schema (Root-Element + Namespace), trainiert aus vorhandenen Dokumenten desselben Schemas.
+ * <p>
+ * Beim Speichern wird nur ein schon vorhandenes Wörterbuch benutzt (sonst ohne gepackt); trainiert wird in
+ * {@link XmlKompressionMigration}, die auch ältere Dokumente nachzieht. Gelesen wird immer transparent -
+ * egal ob die Option gerade an ist: über {@link XmlDokument#getInhalt()} bzw. hier ohne Entity für eigene Threads.
+ * Wörterbücher ändern sich nie und bleiben deshalb im Speicher.
+ */
+@Component
+public class XmlKompression {
+
+    private static final Logger log = LoggerFactory.getLogger(XmlKompression.class);
+
+    private final XmlKompressionProperties properties;
+    private final XmlWoerterbuchRepository woerterbuchRepository;
+    private final XmlStrukturProfilRepository profilRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    // Schema-Schlüssel -> neuestes Wörterbuch; Schemas ohne Wörterbuch stehen nicht drin
+    private final Map<String, XmlWoerterbuch> proSchema = new ConcurrentHashMap<>();
+    private final Map<Long, byte[]> daten = new ConcurrentHashMap<>();
+
+    public XmlKompression(XmlKompressionProperties properties, XmlWoerterbuchRepository woerterbuchRepository,
+                          XmlStrukturProfilRepository profilRepository, JdbcTemplate jdbcTemplate) {
+        this.properties = properties;
+        this.woerterbuchRepository = woerterbuchRepository;
+        this.profilRepository = profilRepository;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public boolean aktiv() {
+        return properties.enabled();
+    }
+
+    /**
+     * Root-Element in Clark-Notation ("{urn:katalog}katalog"), ohne Namespace nur der Name; null für kaputtes XML.
+     */
+    public static String schemaSchluessel(XmlAnalyse analyse) {
+        if (analyse == null || !analyse.wohlgeformt() || analyse.rootElement() == null) {
+            return null;
+        }
+        String root = analyse.rootElement();
+        int doppelpunkt = root.indexOf(':');
+        String prefix = doppelpunkt < 0 ? "(default)" : root.substring(0, doppelpunkt);
+        String namespace = analyse.namespaces().get(prefix);
+        String lokal = doppelpunkt < 0 ? root : root.substring(doppelpunkt + 1);
+        return namespace == null || namespace.isEmpty() ? lokal : "{" + namespace + "}" + lokal;
+    }
+
+    /**
+     * Ersetzt den Text des Dokuments durch die komprimierte Fassung, wenn die Option an ist (vor dem Speichern).
+     */
+    public void anwenden(XmlDokument dokument, XmlAnalyse analyse) {
+        String inhalt = dokument.getInhalt();
+        if (!aktiv() || inhalt == null) {
+            return;
+        }
+        XmlWoerterbuch woerterbuch = vorhandenesWoerterbuch(schemaSchluessel(analyse)).orElse(null);
+        byte[] komprimiert = DeflateCodec.packe(inhalt, woerterbuch == null ? null : woerterbuch.getDaten());
+        dokument.setInhaltKomprimiert(komprimiert, woerterbuch, anfang(inhalt));
+    }
+
+    /**
+     * Schreibt den Inhalt aus dem Reader direkt per JDBC - komprimiert, wenn die Option an ist, sonst als Text
+     * gestreamt. Der Reader wird gelesen, aber nicht geschlossen.
+     *
+     * @param zeichen Länge des Inhalts
+     */
+    public void schreibeInhalt(Long xmlId, XmlAnalyse analyse, Reader inhalt, long zeichen) throws IOException {
+        if (!aktiv()) {
+            jdbcTemplate.update("""
+                    UPDATE xml_dokument
+                    SET inhalt = ?, inhalt_komprimiert = NULL, woerterbuch_id = NULL, inhalt_anfang = NULL
+                    WHERE id = ?
+                    """, ps -> {
+                ps.setCharacterStream(1, inhalt, Math.toIntExact(zeichen));
+                ps.setLong(2, xmlId);
+            });
+            return;
+        }
+        XmlWoerterbuch woerterbuch = vorhandenesWoerterbuch(schemaSchluessel(analyse)).orElse(null);
+        schreibeKomprimiert(xmlId, inhalt, woerterbuch, null);
+    }
+
+    /**
+     * Packt ein gespeichertes Dokument (neu) mit diesem Wörterbuch - für {@link XmlKompressionMigration}.
+     * Ändert jemand das Dokument währenddessen, gewinnt seine Fassung (Vergleich über xmin).
+     *
+     * @return false, wenn das Dokument weg ist oder inzwischen geändert wurde
+     */
+    boolean packeGespeichertes(Long xmlId, XmlWoerterbuch woerterbuch) throws IOException {
+        List<String> version = jdbcTemplate.queryForList(
+                "SELECT xmin::text FROM xml_dokument WHERE id = ?", String.class, xmlId);
+        Optional<Reader> inhalt = oeffneInhalt(xmlId);
+        if (version.isEmpty() || inhalt.isEmpty()) {
+            return false;
+        }
+        try (Reader reader = inhalt.get()) {
+            return schreibeKomprimiert(xmlId, reader, woerterbuch, version.getFirst()) == 1;
+        }
+    }
+
+    private int schreibeKomprimiert(Long xmlId, Reader inhalt, XmlWoerterbuch woerterbuch, String version)
+            throws IOException {
+        AnfangReader mitschnitt = new AnfangReader(inhalt);
+        byte[] komprimiert = DeflateCodec.packe(mitschnitt, woerterbuch == null ? null : woerterbuch.getDaten());
+        Long woerterbuchId = woerterbuch == null ? null : woerterbuch.getId();
+        String sql = """
+                UPDATE xml_dokument
+                SET inhalt = NULL, inhalt_komprimiert = ?, woerterbuch_id = ?, inhalt_anfang = ?
+                WHERE id = ?
+                """;
+        if (version == null) {
+            return jdbcTemplate.update(sql, komprimiert, woerterbuchId, mitschnitt.anfang.toString(), xmlId);
+        }
+        return jdbcTemplate.update(sql + " AND xmin::text = ?",
+                komprimiert, woerterbuchId, mitschnitt.anfang.toString(), xmlId, version);
+    }
+
+    /**
+     * Text eines Dokuments ohne Entity (für eigene Threads), komprimiert oder nicht.
+     */
+    public Optional<String> ladeInhalt(Long xmlId) {
+        return oeffneInhalt(xmlId).map(reader -> {
+            try (reader) {
+                StringWriter text = new StringWriter();
+                reader.transferTo(text);
+                return text.toString();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Inhalt zum Streamen; komprimierte Dokumente werden beim Lesen entpackt. Der Reader muss geschlossen werden.
+     */
+    public Optional<Reader> oeffneInhalt(Long xmlId) {
+        List<Reader> reader = jdbcTemplate.query(
+                "SELECT inhalt, inhalt_komprimiert, woerterbuch_id FROM xml_dokument WHERE id = ?",
+                (rs, rowNum) -> {
+                    String text = rs.getString("inhalt");
+                    byte[] komprimiert = rs.getBytes("inhalt_komprimiert");
+                    if (text != null || komprimiert == null) {
+                        return new StringReader(text == null ? "" : text);
+                    }
+                    long woerterbuchId = rs.getLong("woerterbuch_id");
+                    return DeflateCodec.oeffne(komprimiert, rs.wasNull() ? null : woerterbuchDaten(woerterbuchId));
+                }, xmlId);
+        return reader.stream().findFirst();
+    }
+
+    /**
+     * Neuestes Wörterbuch des Schemas, ohne zu trainieren.
+     */
+    public Optional<XmlWoerterbuch> vorhandenesWoerterbuch(String schluessel) {
+        if (schluessel == null) {
+            return Optional.empty();
+        }
+        XmlWoerterbuch bekannt = proSchema.get(schluessel);
+        if (bekannt != null) {
+            return Optional.of(bekannt);
+        }
+        Optional<XmlWoerterbuch> gefunden = woerterbuchRepository.findFirstBySchemaSchluesselOrderByIdDesc(schluessel);
+        gefunden.ifPresent(woerterbuch -> merke(schluessel, woerterbuch));
+        return gefunden;
+    }
+
+    /**
+     * Trainiert ein Wörterbuch aus den neuesten Dokumenten des Schemas (höchstens trainingsDokumente, von jedem nur
+     * die ersten probeZeichen Zeichen). Leer, wenn es weniger als minDokumente gibt.
+     */
+    public Optional<XmlWoerterbuch> trainiere(String schluessel, String rootElement) {
+        List<String> proben = new ArrayList<>();
+        // über den Root-Namen vorfiltern, den Namespace prüft schemaSchluessel
+        Map<Long, XmlAnalyse> kandidaten = profilRepository.findByRootElement(rootElement,
+                properties.trainingsDokumente() * 2);
+        kandidaten.forEach((xmlId, profil) -> {
+            if (proben.size() < properties.trainingsDokumente() && schluessel.equals(schemaSchluessel(profil))) {
+                oeffneInhalt(xmlId).map(this::probe).ifPresent(proben::add);
+            }
+        });
+        if (proben.size() < Math.max(1, properties.minDokumente())) {
+            return Optional.empty();
+        }
+
+        byte[] woerterbuch = DeflateCodec.trainiere(proben, properties.woerterbuchBytes());
+        XmlWoerterbuch gespeichert = woerterbuchRepository.save(
+                new XmlWoerterbuch(schluessel, woerterbuch, proben.size()));
+        merke(schluessel, gespeichert);
+        log.info("Kompressions-Wörterbuch {} für {} aus {} Dokumenten trainiert ({} Bytes)",
+                gespeichert.getId(), schluessel, proben.size(), woerterbuch.length);
+        return Optional.of(gespeichert);
+    }
+
+    private String probe(Reader reader) {
+        try (reader) {
+            char[] puffer = new char[Math.max(1, properties.probeZeichen())];
+            int gelesen = 0;
+            for (int n; gelesen < puffer.length && (n = reader.read(puffer, gelesen, puffer.length - gelesen)) >= 0; ) {
+                gelesen += n;
+            }
+            return new String(puffer, 0, gelesen);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void merke(String schluessel, XmlWoerterbuch woerterbuch) {
+        proSchema.merge(schluessel, woerterbuch, (alt, neu) -> neu.getId() > alt.getId() ? neu : alt);
+        daten.put(woerterbuch.getId(), woerterbuch.getDaten());
+    }
+
+    private byte[] woerterbuchDaten(Long woerterbuchId) {
+        byte[] bekannt = daten.get(woerterbuchId);
+        if (bekannt != null) {
+            return bekannt;
+        }
+        // nicht in computeIfAbsent: die Query soll keine anderen Leser blockieren
+        byte[] geladen = woerterbuchRepository.findById(woerterbuchId)
+                .map(XmlWoerterbuch::getDaten)
+                .orElseThrow(() -> new IllegalStateException("Kompressions-Wörterbuch " + woerterbuchId + " fehlt"));
+        daten.put(woerterbuchId, geladen);
+        return geladen;
+    }
+
+    static String anfang(String inhalt) {
+        return inhalt.length() <= XmlDokument.ANFANG_ZEICHEN ? inhalt : inhalt.substring(0, XmlDokument.ANFANG_ZEICHEN);
+    }
+
+    /** Merkt sich die ersten Zeichen, während gepackt wird */
+    private static final class AnfangReader extends FilterReader {
+        final StringBuilder anfang = new StringBuilder();
+
+        AnfangReader(Reader in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int c = super.read();
+            if (c >= 0 && anfang.length() < XmlDokument.ANFANG_ZEICHEN) {
+                anfang.append((char) c);
+            }
+            return c;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            int rest = XmlDokument.ANFANG_ZEICHEN - anfang.length();
+            if (read > 0 && rest > 0) {
+                anfang.append(buffer, offset, Math.min(rest, read));
+            }
+            return read;
+        }
+
+        @Override
+        public void close() {
+            // den Reader schließt der Aufrufer
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package it.gdorsi.service.xml;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import it.gdorsi.config.XmlKompressionProperties;
+import it.gdorsi.dao.XmlAnalyse;
+import it.gdorsi.repository.XmlStrukturProfilRepository;
+import it.gdorsi.repository.model.XmlWoerterbuch;
+
+/**
+ * Komprimiert nach dem Start (nur mit app.xml-kompression.enabled) alle Dokumente, die noch als Text vorliegen
+ * oder ohne Wörterbuch gepackt wurden. Fehlt einem Schema das Wörterbuch, wird es hier beim ersten Dokument trainiert.
+ * Läuft wie {@link XmlStrukturProfilBackfill} auf einem virtuellen Thread in Blöcken, ein Dokument nach dem anderen.
+ */
+@Component
+public class XmlKompressionMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(XmlKompressionMigration.class);
+
+    private final XmlKompression kompression;
+    private final XmlKompressionProperties properties;
+    private final XmlStrukturProfilRepository profilRepository;
+    private final XmlAnalyzer xmlAnalyzer;
+    private final JdbcTemplate jdbcTemplate;
+
+    public XmlKompressionMigration(XmlKompression kompression, XmlKompressionProperties properties,
+                                   XmlStrukturProfilRepository profilRepository, XmlAnalyzer xmlAnalyzer,
+                                   JdbcTemplate jdbcTemplate) {
+        this.kompression = kompression;
+        this.properties = properties;
+        this.profilRepository = profilRepository;
+        this.xmlAnalyzer = xmlAnalyzer;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        if (kompression.aktiv()) {
+            Thread.ofVirtual().name("xml-kompression-migration").start(this::migriere);
+        }
+    }
+
+    public int migriere() {
+        // pro Lauf: Schema-Schlüssel -> Wörterbuch (leer = zu wenige Dokumente zum Trainieren)
+        Map<String, Optional<XmlWoerterbuch>> woerterbuecher = new HashMap<>();
+        int gepackt = 0;
+        long letzteId = 0;
+        try {
+            List<Long> ids;
+            while (!(ids = offeneIds(letzteId)).isEmpty()) {
+                for (Long xmlId : ids) {
+                    letzteId = xmlId;
+                    XmlAnalyse profil = profil(xmlId);
+                    XmlWoerterbuch woerterbuch = woerterbuch(woerterbuecher, profil);
+                    if (woerterbuch == null && istGepackt(xmlId)) {
+                        // schon ohne Wörterbuch gepackt und es gibt noch keins - nichts zu gewinnen
+                        continue;
+                    }
+                    if (kompression.packeGespeichertes(xmlId, woerterbuch)) {
+                        gepackt++;
+                    }
+                }
+            }
+        } catch (DataAccessException | IOException | UncheckedIOException e) {
+            log.warn("Kompression nach {} Dokumenten abgebrochen: {}", gepackt, e.getMessage());
+            return gepackt;
+        }
+        if (gepackt > 0) {
+            log.info("{} XML-Dokumente komprimiert.", gepackt);
+        }
+        return gepackt;
+    }
+
+    private XmlWoerterbuch woerterbuch(Map<String, Optional<XmlWoerterbuch>> woerterbuecher, XmlAnalyse profil) {
+        String schluessel = XmlKompression.schemaSchluessel(profil);
+        if (schluessel == null) {
+            return null;
+        }
+        return woerterbuecher.computeIfAbsent(schluessel, s -> kompression.vorhandenesWoerterbuch(s)
+                .or(() -> kompression.trainiere(s, profil.rootElement()))).orElse(null);
+    }
+
+    // noch als Text oder ohne Wörterbuch gepackt
+    private List<Long> offeneIds(long nachId) {
+        return jdbcTemplate.queryForList("""
+                SELECT id FROM xml_dokument
+                WHERE id > ? AND (inhalt IS NOT NULL OR (inhalt_komprimiert IS NOT NULL AND woerterbuch_id IS NULL))
+                ORDER BY id
+                LIMIT ?
+                """, Long.class, nachId, Math.max(1, properties.migrationBlock()));
+    }
+
+    private boolean istGepackt(Long xmlId) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT inhalt IS NULL FROM xml_dokument WHERE id = ?", Boolean.class, xmlId));
+    }
+
+    // Profil fehlt nur, wenn der Backfill noch nicht so weit ist - dann selbst berechnen
+    private XmlAnalyse profil(Long xmlId) throws IOException {
+        Optional<XmlAnalyse> profil = profilRepository.findById(xmlId);
+        if (profil.isPresent()) {
+            return profil.get();
+        }
+        Optional<Reader> inhalt = kompression.oeffneInhalt(xmlId);
+        if (inhalt.isEmpty()) {
+            return null;
+        }
+        try (Reader reader = inhalt.get()) {
+            XmlAnalyse analyse = xmlAnalyzer.analyze(reader);
+            profilRepository.upsert(xmlId, analyse);
+            return analyse;
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package it.gdorsi.service.xml;
+
+/**
+ * Ein XML-Dokument für Auswertungen über mehrere Dokumente (XPath, XSLT) - der Inhalt wird erst im Task geladen.
+ */
+public record XmlQuelle(Long xmlId, String dateiname) {}
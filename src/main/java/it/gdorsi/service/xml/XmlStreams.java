@@ -0,0 +1,70 @@
+package it.gdorsi.service.xml;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Gemeinsame StAX-Einstellungen für alle Stellen, die XML-Inhalte aus der Datenbank oder von Nutzern streamen.
+ * Keine DTDs und keine externen Entities (XXE), Namespaces an.
+ */
+public final class XmlStreams {
+
+    // Nach der Konfiguration nur noch lesend benutzt, createXMLStreamReader ist dann threadsicher
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+    private XmlStreams() {
+    }
+
+    public static XMLInputFactory inputFactory() {
+        return INPUT_FACTORY;
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    /**
+     * Start-Tag des aktuellen START_ELEMENT mit Namespace-Deklarationen und Attributen.
+     */
+    public static void appendStartTag(XMLStreamReader reader, StringBuilder out) {
+        out.append('<').append(qualifiedName(reader.getPrefix(), reader.getLocalName()));
+        for (int i = 0; i < reader.getNamespaceCount(); i++) {
+            String prefix = reader.getNamespacePrefix(i);
+            out.append(prefix == null || prefix.isEmpty() ? " xmlns" : " xmlns:" + prefix).append("=\"");
+            escape(reader.getNamespaceURI(i), true, out);
+            out.append('"');
+        }
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            out.append(' ').append(qualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)))
+                    .append("=\"");
+            escape(reader.getAttributeValue(i), true, out);
+            out.append('"');
+        }
+        out.append('>');
+    }
+
+    public static String qualifiedName(String prefix, String localName) {
+        return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+    }
+
+    /**
+     * Text für Elementinhalt bzw. (mit attribute = true) für Attributwerte in doppelten Anführungszeichen escapen.
+     */
+    public static void escape(CharSequence text, boolean attribute, StringBuilder out) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&' -> out.append("&amp;");
+                case '<' -> out.append("&lt;");
+                case '>' -> out.append("&gt;");
+                case '"' -> out.append(attribute ? "&quot;" : "\"");
+                default -> out.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package it.gdorsi.service.xml;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import it.gdorsi.repository.XmlStrukturProfilRepository;
+
+/**
+ * Berechnet nach dem Start die Strukturprofile für XML-Dokumente, die vor Liquibase 013 gespeichert wurden.
+ * Neue und geänderte Dokumente bekommen ihr Profil direkt beim Speichern (XmlDokumentService).
+ * Läuft auf einem eigenen virtuellen Thread in Blöcken - es liegt immer nur ein Dokument im Speicher.
+ */
+@Component
+public class XmlStrukturProfilBackfill {
+
+    private static final Logger log = LoggerFactory.getLogger(XmlStrukturProfilBackfill.class);
+
+    static final int BLOCK = 100;
+
+    private final XmlStrukturProfilRepository profilRepository;
+    private final XmlAnalyzer xmlAnalyzer;
+    private final XmlKompression kompression;
+
+    public XmlStrukturProfilBackfill(XmlStrukturProfilRepository profilRepository, XmlAnalyzer xmlAnalyzer,
+                                     XmlKompression kompression) {
+        this.profilRepository = profilRepository;
+        this.xmlAnalyzer = xmlAnalyzer;
+        this.kompression = kompression;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        Thread.ofVirtual().name("xml-struktur-profil-backfill").start(this::backfill);
+    }
+
+    public int backfill() {
+        int profiliert = 0;
+        long letzteId = 0;
+        try {
+            List<Long> ids;
+            while (!(ids = profilRepository.findXmlIdsOhneProfil(letzteId, BLOCK)).isEmpty()) {
+                for (Long xmlId : ids) {
+                    // inhalt einzeln lesen, nicht den ganzen Block - komprimierte Dokumente entpackt beim Lesen
+                    Optional<Reader> inhalt = kompression.oeffneInhalt(xmlId);
+                    if (inhalt.isPresent()) {
+                        try (Reader reader = inhalt.get()) {
+                            profilRepository.upsert(xmlId, xmlAnalyzer.analyze(reader));
+                        }
+                        profiliert++;
+                    }
+                    letzteId = xmlId;
+                }
+            }
+        } catch (DataAccessException | IOException | UncheckedIOException e) {
+            log.warn("Strukturprofile nach {} Dokumenten abgebrochen: {}", profiliert, e.getMessage());
+            return profiliert;
+        }
+        if (profiliert > 0) {
+            log.info("Strukturprofile für {} ältere XML-Dokumente berechnet.", profiliert);
+        }
+        return profiliert;
+    }
+}
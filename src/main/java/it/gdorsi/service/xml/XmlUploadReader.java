@@ -0,0 +1,199 @@
+package it.gdorsi.service.xml;
+
+import java.io.BufferedInputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import it.gdorsi.dao.XmlAnalyse;
+
+/**
+ * Liest hochgeladenes XML genau einmal vom InputStream: Encoding aus BOM bzw. XML-Deklaration, dann ein StAX-Durchlauf,
+ * in dem {@link XmlAnalyzer} prüft und profiliert und {@link XmlChunker} zerlegt. Die dekodierten Zeichen landen
+ * nebenbei als UTF-8 in einer temporären Datei, aus der der Inhalt später in die Datenbank gestreamt wird -
+ * der Upload existiert nie als byte[] oder String.
+ */
+@Component
+public class XmlUploadReader {
+
+    private static final Logger log = LoggerFactory.getLogger(XmlUploadReader.class);
+
+    // reicht für jede vernünftige XML-Deklaration
+    private static final int PROLOG_BYTES = 1024;
+    private static final Pattern ENCODING = Pattern.compile("\\sencoding\\s*=\\s*[\"']([A-Za-z][A-Za-z0-9._-]*)[\"']");
+
+    /**
+     * Gelesener Upload; close() löscht die temporäre Datei.
+     *
+     * @param datei    dekodierter Inhalt als UTF-8
+     * @param encoding erkanntes Encoding der hochgeladenen Bytes
+     */
+    public record Upload(Path datei, Charset encoding, XmlAnalyse analyse, List<XmlChunker.Chunk> chunks)
+            implements AutoCloseable {
+
+        /** Anzahl Zeichen des Inhalts */
+        public long zeichen() {
+            return analyse.zeichen();
+        }
+
+        public Reader inhalt() throws IOException {
+            return Files.newBufferedReader(datei, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() {
+            try {
+                Files.deleteIfExists(datei);
+            } catch (IOException e) {
+                log.warn("Temporäre Upload-Datei {} nicht gelöscht: {}", datei, e.getMessage());
+            }
+        }
+    }
+
+    private final XmlAnalyzer analyzer;
+    private final XmlChunker chunker;
+
+    public XmlUploadReader(XmlAnalyzer analyzer, XmlChunker chunker) {
+        this.analyzer = analyzer;
+        this.chunker = chunker;
+    }
+
+    /**
+     * Liest den Stream vollständig, schließt ihn aber nicht.
+     *
+     * @throws IllegalArgumentException wenn das XML nicht wohlgeformt ist, nicht zum Encoding passt oder zu viele Chunks ergibt
+     */
+    public Upload lese(InputStream upload) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(upload);
+        Charset encoding = erkenneEncoding(in);
+        // falsche Bytes sind ein Fehler, kein stilles U+FFFD im gespeicherten Text
+        CharsetDecoder decoder = encoding.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+
+        Path datei = Files.createTempFile("xml-upload-", ".xml");
+        try {
+            XmlAnalyse analyse;
+            XmlChunker.Zerlegung zerlegung = chunker.zerlegung();
+            try (Writer spool = Files.newBufferedWriter(datei, StandardCharsets.UTF_8)) {
+                analyse = analyzer.analyze(new SpoolReader(new InputStreamReader(in, decoder), spool), zerlegung);
+            } catch (UncheckedIOException e) {
+                if (e.getCause() instanceof CharacterCodingException) {
+                    throw new IllegalArgumentException("Datei ist kein gültiges " + encoding.name(), e);
+                }
+                throw e.getCause();
+            }
+            if (!analyse.wohlgeformt()) {
+                throw new IllegalArgumentException("XML nicht wohlgeformt: " + analyse.fehler());
+            }
+            return new Upload(datei, encoding, analyse, zerlegung.ende());
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(datei);
+            throw e;
+        }
+    }
+
+    /**
+     * BOM (wird übersprungen), sonst UTF-16 am "&lt;?" erkennen, sonst encoding="..." aus der Deklaration, sonst UTF-8.
+     */
+    static Charset erkenneEncoding(BufferedInputStream in) throws IOException {
+        in.mark(PROLOG_BYTES);
+        byte[] kopf = in.readNBytes(PROLOG_BYTES);
+        in.reset();
+
+        if (beginntMit(kopf, 0xEF, 0xBB, 0xBF)) {
+            in.skipNBytes(3);
+            return StandardCharsets.UTF_8;
+        }
+        if (beginntMit(kopf, 0xFE, 0xFF)) {
+            in.skipNBytes(2);
+            return StandardCharsets.UTF_16BE;
+        }
+        if (beginntMit(kopf, 0xFF, 0xFE)) {
+            in.skipNBytes(2);
+            return StandardCharsets.UTF_16LE;
+        }
+        if (beginntMit(kopf, 0x00, 0x3C, 0x00, 0x3F)) {
+            return StandardCharsets.UTF_16BE;
+        }
+        if (beginntMit(kopf, 0x3C, 0x00, 0x3F, 0x00)) {
+            return StandardCharsets.UTF_16LE;
+        }
+
+        // ab hier ASCII-kompatibel, die Deklaration lässt sich also byteweise lesen
+        String prolog = new String(kopf, StandardCharsets.ISO_8859_1);
+        int ende = prolog.indexOf("?>");
+        if (!prolog.startsWith("<?xml") || ende < 0) {
+            return StandardCharsets.UTF_8;
+        }
+        Matcher matcher = ENCODING.matcher(prolog.substring(0, ende));
+        if (!matcher.find()) {
+            return StandardCharsets.UTF_8;
+        }
+        try {
+            return Charset.forName(matcher.group(1));
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+            throw new IllegalArgumentException("Unbekanntes Encoding in der XML-Deklaration: " + matcher.group(1));
+        }
+    }
+
+    private static boolean beginntMit(byte[] bytes, int... erwartet) {
+        if (bytes.length < erwartet.length) {
+            return false;
+        }
+        for (int i = 0; i < erwartet.length; i++) {
+            if ((bytes[i] & 0xFF) != erwartet[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Schreibt alles, was der Parser liest, in die Spool-Datei mit */
+    private static final class SpoolReader extends FilterReader {
+        private final Writer spool;
+
+        SpoolReader(Reader in, Writer spool) {
+            super(in);
+            this.spool = spool;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int c = super.read();
+            if (c >= 0) {
+                spool.write(c);
+            }
+            return c;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                spool.write(buffer, offset, read);
+            }
+            return read;
+        }
+    }
+}
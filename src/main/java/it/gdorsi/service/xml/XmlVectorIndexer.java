@@ -0,0 +1,175 @@
+package it.gdorsi.service.xml;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.stereotype.Component;
+
+import it.gdorsi.config.IngestionProperties;
+import it.gdorsi.repository.VectorStoreChunkRepository;
+import it.gdorsi.service.util.ContentHash;
+
+/**
+ * Indexiert XML-Dokumente chunkweise statt als ein riesiges Document: {@link XmlChunker} zerlegt nach Elementen,
+ * jeder Chunk bekommt sein eigenes Embedding und landet mit XPath im vector_store.
+ * <p>
+ * Das Embedding des Dokuments selbst (xml_dokument.xml_embedding) ist der Mittelwert der Chunk-Embeddings,
+ * gewichtet mit der Tokenzahl und auf Länge 1 normiert - damit deckt es das ganze Dokument ab und nicht nur das,
+ * was vorne ins Kontextfenster des Embedding-Modells passt.
+ * <p>
+ * Bei Änderungen werden nur neue Chunks embedded (Chunk-ID = Hash aus xml_id, XPath und Text), vorhandene
+ * Embeddings kommen aus dem vector_store, weggefallene Chunks werden gelöscht.
+ */
+@Component
+public class XmlVectorIndexer {
+
+    private static final Logger log = LoggerFactory.getLogger(XmlVectorIndexer.class);
+
+    /**
+     * Zerlegtes und embeddetes Dokument, bereit für {@link #index}.
+     *
+     * @param embedding      gepoolt, für xml_dokument.xml_embedding
+     * @param embeddedChunks wie viele Chunks neu an das Embedding-Modell gingen
+     */
+    public record PreparedXml(List<XmlChunker.Chunk> chunks, List<float[]> embeddings, float[] embedding,
+                              int embeddedChunks) {}
+
+    /**
+     * @param chunks  Chunks im Index nach diesem Lauf
+     * @param removed gelöschte alte Chunks
+     */
+    public record IndexResult(int chunks, int removed) {}
+
+    private final XmlChunker chunker;
+    private final EmbeddingModel embeddingModel;
+    private final VectorStoreChunkRepository chunkRepository;
+    private final IngestionProperties ingestionProperties;
+
+    public XmlVectorIndexer(XmlChunker chunker, EmbeddingModel embeddingModel,
+                            VectorStoreChunkRepository chunkRepository, IngestionProperties ingestionProperties) {
+        this.chunker = chunker;
+        this.embeddingModel = embeddingModel;
+        this.chunkRepository = chunkRepository;
+        this.ingestionProperties = ingestionProperties;
+    }
+
+    /**
+     * Zerlegt und embeddet den Inhalt.
+     *
+     * @param xmlId bestehendes Dokument (Embeddings unveränderter Chunks werden wiederverwendet), null bei neuen
+     */
+    public PreparedXml prepare(Long xmlId, String inhalt) {
+        List<XmlChunker.Chunk> chunks = chunker.chunk(inhalt);
+        if (chunks.isEmpty()) {
+            // leerer Inhalt: Modell entscheidet wie bisher selbst
+            return new PreparedXml(chunks, List.of(), embeddingModel.embed(inhalt == null ? "" : inhalt), 1);
+        }
+        return prepare(xmlId, chunks);
+    }
+
+    /**
+     * Embeddet schon zerlegte Chunks (z.B. aus {@link XmlUploadReader}), ohne den Inhalt erneut zu parsen.
+     */
+    public PreparedXml prepare(Long xmlId, List<XmlChunker.Chunk> chunks) {
+        if (chunks.isEmpty()) {
+            return new PreparedXml(chunks, List.of(), embeddingModel.embed(""), 1);
+        }
+
+        Map<String, float[]> existing = xmlId == null ? Map.of()
+                : chunkRepository.findEmbeddings(chunks.stream().map(chunk -> chunkId(xmlId, chunk)).toList());
+
+        List<float[]> embeddings = new ArrayList<>(chunks.size());
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            float[] known = xmlId == null ? null : existing.get(chunkId(xmlId, chunks.get(i)));
+            embeddings.add(known);
+            if (known == null) {
+                missing.add(i);
+            }
+        }
+
+        int batchSize = Math.max(1, ingestionProperties.embeddingBatchSize());
+        for (int from = 0; from < missing.size(); from += batchSize) {
+            List<Integer> batch = missing.subList(from, Math.min(missing.size(), from + batchSize));
+            List<float[]> vectors = embeddingModel.embed(batch.stream().map(i -> chunks.get(i).text()).toList());
+            if (vectors.size() != batch.size()) {
+                throw new IllegalStateException("Embedding-Modell lieferte " + vectors.size() + " statt "
+                        + batch.size() + " Vektoren");
+            }
+            for (int j = 0; j < batch.size(); j++) {
+                embeddings.set(batch.get(j), vectors.get(j));
+            }
+        }
+
+        return new PreparedXml(chunks, embeddings, pool(chunks, embeddings), missing.size());
+    }
+
+    /**
+     * Schreibt die Chunks eines gespeicherten Dokuments und entfernt alte. Alle Zeilen werden geschrieben
+     * (Metadaten wie der Dateiname bleiben aktuell), embedded wurde in {@link #prepare} nur das Nötige.
+     */
+    public IndexResult index(Long xmlId, String autorName, String dateiname, PreparedXml prepared) {
+        long ingestedAt = System.currentTimeMillis();
+        List<Document> documents = new ArrayList<>(prepared.chunks().size());
+        List<String> ids = new ArrayList<>(prepared.chunks().size());
+        for (XmlChunker.Chunk chunk : prepared.chunks()) {
+            String id = chunkId(xmlId, chunk);
+            Map<String, Object> metadata = new HashMap<>();
+            metadata.put("document_type", "xml");
+            metadata.put("xml_id", xmlId.toString());
+            metadata.put("autor_name", autorName);
+            metadata.put("dateiname", dateiname);
+            metadata.put("xpath", chunk.xpath());
+            metadata.put("ingested_at", ingestedAt);
+            documents.add(new Document(id, chunk.text(), metadata));
+            ids.add(id);
+        }
+
+        if (!documents.isEmpty()) {
+            chunkRepository.upsert(documents, prepared.embeddings());
+        }
+        // leere Liste: = ANY('{}') trifft nichts, NOT(...) also alles - genau richtig
+        int removed = chunkRepository.deleteByXmlIdExcept(xmlId, autorName, ids);
+        log.debug("XML {} indexiert: {} Chunks ({} neu embedded), {} alte entfernt",
+                xmlId, documents.size(), prepared.embeddedChunks(), removed);
+        return new IndexResult(documents.size(), removed);
+    }
+
+    static String chunkId(Long xmlId, XmlChunker.Chunk chunk) {
+        return ContentHash.uuid("xml", xmlId.toString(), chunk.xpath(), chunk.text()).toString();
+    }
+
+    /**
+     * Mittelwert gewichtet nach Tokens, danach L2-normiert (Cosinus-Distanz ist ohnehin längenunabhängig,
+     * so bleiben die Werte aber vergleichbar mit normalen Embeddings).
+     */
+    static float[] pool(List<XmlChunker.Chunk> chunks, List<float[]> embeddings) {
+        if (embeddings.size() == 1) {
+            return embeddings.getFirst();
+        }
+        double[] sum = new double[embeddings.getFirst().length];
+        for (int i = 0; i < embeddings.size(); i++) {
+            float[] vector = embeddings.get(i);
+            double weight = Math.max(1, chunks.get(i).tokens());
+            for (int d = 0; d < sum.length; d++) {
+                sum[d] += weight * vector[d];
+            }
+        }
+        double norm = 0;
+        for (double value : sum) {
+            norm += value * value;
+        }
+        norm = Math.sqrt(norm);
+        float[] pooled = new float[sum.length];
+        for (int d = 0; d < sum.length; d++) {
+            pooled[d] = norm == 0 ? 0f : (float) (sum[d] / norm);
+        }
+        return pooled;
+    }
+}
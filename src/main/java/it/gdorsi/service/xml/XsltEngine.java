@@ -0,0 +1,263 @@
+package it.gdorsi.service.xml;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.ErrorListener;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.springframework.stereotype.Component;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import it.gdorsi.config.XsltProperties;
+import it.gdorsi.service.util.ContentHash;
+
+/**
+ * XSLT für transformXml. Stylesheets werden einmal zu {@link Templates} kompiliert (threadsicher) und in einem
+ * LRU-Cache gehalten - Schlüssel ist der SHA-256 des Stylesheets, eine geänderte Version wird also automatisch
+ * neu kompiliert. Pro Transformation gibt es nur einen frischen Transformer.
+ * <p>
+ * Die Ausgabe geht direkt in einen Writer; für Tool-Antworten behält {@link Vorschau} nur den Anfang und zählt den Rest.
+ * Laufzeiten als Timer xml.xslt.compile und xml.xslt.transform, jeweils mit Tag stylesheet.
+ * <p>
+ * Abgesichert wie XmlStreams: keine DTDs im Eingabe-XML, keine externen Stylesheets/Dokumente, keine Extension-Funktionen.
+ */
+@Component
+public class XsltEngine {
+
+    /** Tag für Stylesheets, die direkt im Tool-Aufruf stehen statt in xslt_stylesheet */
+    public static final String INLINE = "inline";
+
+    private static final SAXParserFactory SAX_PARSER_FACTORY = createSaxParserFactory();
+
+    /**
+     * @param vorschau Anfang der Ausgabe (höchstens das Limit)
+     * @param zeichen  Länge der gesamten Ausgabe
+     * @param fehler   null, sonst warum dieses Dokument nicht transformiert werden konnte
+     */
+    public record Ergebnis(Long xmlId, String dateiname, String vorschau, long zeichen, String fehler) {
+
+        public boolean gekappt() {
+            return vorschau != null && zeichen > vorschau.length();
+        }
+    }
+
+    private final XsltProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Templates> templates;
+
+    public XsltEngine(XsltProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.templates = Collections.synchronizedMap(new LinkedHashMap<>(32, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Templates> eldest) {
+                return size() > Math.max(1, properties.templateCacheSize());
+            }
+        });
+    }
+
+    /**
+     * @param name nur für Metriken und Fehlermeldungen
+     * @throws IllegalArgumentException wenn das Stylesheet nicht kompiliert
+     */
+    public Templates compile(String name, String xslt) {
+        String fingerprint = ContentHash.sha256Hex(xslt);
+        Templates kompiliert = templates.get(fingerprint);
+        if (kompiliert != null) {
+            return kompiliert;
+        }
+        // außerhalb des Map-Locks kompilieren; kompilieren zwei Threads gleichzeitig, gewinnt einfach der letzte
+        FehlerSammler fehler = new FehlerSammler();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            TransformerFactory factory = createTransformerFactory();
+            factory.setErrorListener(fehler);
+            kompiliert = factory.newTemplates(new StreamSource(new StringReader(xslt)));
+        } catch (TransformerConfigurationException e) {
+            throw new IllegalArgumentException("XSLT '" + name + "' nicht kompilierbar: "
+                    + (fehler.erster != null ? fehler.erster : e.getMessageAndLocation()), e);
+        } finally {
+            sample.stop(timer("xml.xslt.compile", name));
+        }
+        templates.put(fingerprint, kompiliert);
+        return kompiliert;
+    }
+
+    /**
+     * Streamt das Ergebnis in out, ohne es als String aufzubauen.
+     *
+     * @throws IllegalArgumentException wenn das XML nicht wohlgeformt ist oder das Stylesheet zur Laufzeit scheitert
+     */
+    public void transform(String name, Templates stylesheet, Reader xml, Writer out) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            var transformer = stylesheet.newTransformer();
+            transformer.setErrorListener(new FehlerSammler());
+            transformer.transform(new SAXSource(xmlReader(), new InputSource(xml)), new StreamResult(out));
+        } catch (TransformerException e) {
+            throw new IllegalArgumentException("XSLT '" + name + "' fehlgeschlagen: " + e.getMessageAndLocation(), e);
+        } finally {
+            sample.stop(timer("xml.xslt.transform", name));
+        }
+    }
+
+    /**
+     * Transformiert ein Dokument und behält höchstens app.xslt.max-output-chars Zeichen der Ausgabe.
+     */
+    public Ergebnis vorschau(String name, Templates stylesheet, XmlQuelle quelle, String xml) {
+        return vorschau(name, stylesheet, quelle, xml, properties.maxOutputChars());
+    }
+
+    /**
+     * Dasselbe Stylesheet über mehrere Dokumente, höchstens app.xslt.parallelism gleichzeitig.
+     * Das Ausgabe-Limit teilt sich auf die Dokumente auf (mindestens 500 Zeichen pro Dokument).
+     */
+    public List<Ergebnis> transformAll(String name, Templates stylesheet, List<XmlQuelle> quellen,
+                                       Function<Long, String> inhaltLader) {
+        int limit = Math.max(500, properties.maxOutputChars() / Math.max(1, quellen.size()));
+        return XmlBatch.fuerAlle(quellen, properties.parallelism(), quelle -> {
+            String inhalt = inhaltLader.apply(quelle.xmlId());
+            if (inhalt == null) {
+                return new Ergebnis(quelle.xmlId(), quelle.dateiname(), null, 0, "XML-Dokument nicht mehr vorhanden");
+            }
+            try {
+                return vorschau(name, stylesheet, quelle, inhalt, limit);
+            } catch (IllegalArgumentException e) {
+                return new Ergebnis(quelle.xmlId(), quelle.dateiname(), null, 0, e.getMessage());
+            }
+        });
+    }
+
+    private Ergebnis vorschau(String name, Templates stylesheet, XmlQuelle quelle, String xml, int limit) {
+        Vorschau out = new Vorschau(limit);
+        transform(name, stylesheet, new StringReader(xml), out);
+        return new Ergebnis(quelle.xmlId(), quelle.dateiname(), out.text(), out.zeichen(), null);
+    }
+
+    private Timer timer(String metrik, String stylesheet) {
+        return Timer.builder(metrik).tag("stylesheet", stylesheet).register(meterRegistry);
+    }
+
+    private static XMLReader xmlReader() {
+        try {
+            synchronized (SAX_PARSER_FACTORY) {
+                return SAX_PARSER_FACTORY.newSAXParser().getXMLReader();
+            }
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IllegalStateException("Kein XML-Parser verfügbar", e);
+        }
+    }
+
+    private static SAXParserFactory createSaxParserFactory() {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.setXIncludeAware(false);
+        try {
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IllegalStateException("XML-Parser lässt sich nicht absichern", e);
+        }
+        return factory;
+    }
+
+    private static TransformerFactory createTransformerFactory() {
+        // pro Kompilierung eine eigene Factory: nicht threadsicher, und newInstance ist billig gegen das Kompilieren
+        TransformerFactory factory = TransformerFactory.newInstance();
+        try {
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        } catch (TransformerConfigurationException e) {
+            throw new IllegalStateException("XSLT-Prozessor lässt sich nicht absichern", e);
+        }
+        factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+        factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_STYLESHEET, "");
+        return factory;
+    }
+
+    /** Merkt sich den ersten Fehler (die Exception von newTemplates sagt nur "Could not compile stylesheet") */
+    private static final class FehlerSammler implements ErrorListener {
+        String erster;
+
+        @Override
+        public void warning(TransformerException e) {
+            // Warnungen (z.B. unbekannte Attribute) brechen nicht ab
+        }
+
+        @Override
+        public void error(TransformerException e) throws TransformerException {
+            merke(e);
+            throw e;
+        }
+
+        @Override
+        public void fatalError(TransformerException e) throws TransformerException {
+            merke(e);
+            throw e;
+        }
+
+        private void merke(TransformerException e) {
+            if (erster == null) {
+                erster = e.getMessageAndLocation();
+            }
+        }
+    }
+
+    /**
+     * Writer, der nur die ersten limit Zeichen behält und den Rest zählt.
+     */
+    public static final class Vorschau extends Writer {
+
+        private final StringBuilder text = new StringBuilder();
+        private final int limit;
+        private long zeichen;
+
+        public Vorschau(int limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            zeichen += len;
+            int rest = limit - text.length();
+            if (rest > 0) {
+                text.append(cbuf, off, Math.min(rest, len));
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        public String text() {
+            return text.toString();
+        }
+
+        public long zeichen() {
+            return zeichen;
+        }
+    }
+}
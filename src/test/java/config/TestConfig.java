@@ -1,9 +1,12 @@
 package config;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.when;
 
+import java.util.List;
+
 import org.mockito.Mockito;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.embedding.EmbeddingModel;
@@ -35,6 +38,11 @@ public class TestConfig {
         // Falls dein VectorStore auch Dokumente batch-verarbeitet:
         // embed(Document) gibt float[] zurück
         when(mockModel.embed(any(Document.class))).thenReturn(dummyVector);
+        // Batches (z.B. XML-Chunks): ein Vektor pro Text
+        when(mockModel.embed(anyList())).thenAnswer(inv -> {
+            List<?> texts = inv.getArgument(0);
+            return texts.stream().map(text -> dummyVector).toList();
+        });
 
         return mockModel;
     }
@@ -0,0 +1,128 @@
+package it.gdorsi.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import it.gdorsi.repository.model.type.PgVectorCodec;
+
+/**
+ * JMH-Benchmark für die Vektor-Konvertierung in NullSafeVectorType: alter Text-Pfad (split + parseFloat,
+ * StringBuilder mit ", ") gegen den neuen Text-Parser und das Binärformat.
+ * <p>
+ * Kein Unit-Test (läuft nicht mit surefire), braucht keine Datenbank:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=it.gdorsi.benchmark.VectorCodecBenchmark
+ * </pre>
+ * Für die Allokationsrate -Dbench.gc=true setzen (JMH-GC-Profiler, gc.alloc.rate.norm = Bytes pro Aufruf).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VectorCodecBenchmark {
+
+    @Param({"1024"})
+    public int dimensions;
+
+    private float[] vector;
+    private String legacyText;
+    private String text;
+    private byte[] binary;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        vector = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = (float) random.nextGaussian() * 0.05f;
+        }
+        legacyText = legacyFormat(vector);
+        text = PgVectorCodec.format(vector);
+        binary = new byte[PgVectorCodec.binaryLength(dimensions)];
+        PgVectorCodec.encode(vector, binary, 0);
+    }
+
+    @Benchmark
+    public float[] parseLegacy() {
+        return legacyParse(legacyText);
+    }
+
+    @Benchmark
+    public float[] parseText() {
+        return PgVectorCodec.parse(text);
+    }
+
+    @Benchmark
+    public float[] decodeBinary() {
+        return PgVectorCodec.decode(binary, 0);
+    }
+
+    @Benchmark
+    public String formatLegacy() {
+        return legacyFormat(vector);
+    }
+
+    @Benchmark
+    public String formatText() {
+        return PgVectorCodec.format(vector);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        byte[] bytes = new byte[PgVectorCodec.binaryLength(vector.length)];
+        PgVectorCodec.encode(vector, bytes, 0);
+        return bytes;
+    }
+
+    // Stand vor dem Umbau (NullSafeVectorType.parseVectorString / toVectorString) als Vergleichswert
+    private static float[] legacyParse(String vectorString) {
+        String clean = vectorString.trim();
+        if (clean.startsWith("[") && clean.endsWith("]")) {
+            clean = clean.substring(1, clean.length() - 1);
+        }
+        if (clean.isEmpty()) {
+            return new float[0];
+        }
+        String[] parts = clean.split(",");
+        float[] result = new float[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            result[i] = Float.parseFloat(parts[i].trim());
+        }
+        return result;
+    }
+
+    private static String legacyFormat(float[] vector) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < vector.length; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(vector[i]);
+        }
+        sb.append("]");
+        return sb.toString();
+    }
+
+    public static void main(String[] args) throws Exception {
+        OptionsBuilder options = new OptionsBuilder();
+        options.include(VectorCodecBenchmark.class.getSimpleName());
+        if (Boolean.getBoolean("bench.gc")) {
+            options.addProfiler("gc");
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,187 @@
+package it.gdorsi.benchmark;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import com.pgvector.PGvector;
+
+/**
+ * Benchmark für die ANN-Indizes: Latenz und Recall@k von HNSW und IVFFlat gegen den exakten Scan.
+ * <p>
+ * Kein Unit-Test (läuft nicht mit surefire), braucht ein Postgres mit pgvector:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=it.gdorsi.benchmark.VectorIndexBenchmark \
+ *     -Dbench.url=jdbc:postgresql://localhost:5432/ai_db -Dbench.user=dev -Dbench.password=pass \
+ *     -Dbench.sizes=10000,100000,1000000 -Dbench.dim=1024
+ * </pre>
+ * Pro Größe wird eine Tabelle bench_vectors_N mit zufälligen Vektoren gefüllt (bleibt für weitere Läufe liegen),
+ * dann werden für jede Index-Variante die gleichen Queries gemessen. Ground-Truth = Query ohne Index.
+ * 1M x 1024 Dimensionen sind ~4 GB - für einen schnellen Lauf -Dbench.dim=256 nehmen.
+ */
+public class VectorIndexBenchmark {
+
+    private static final int QUERIES = Integer.getInteger("bench.queries", 100);
+    private static final int TOP_K = Integer.getInteger("bench.topK", 10);
+    private static final int DIM = Integer.getInteger("bench.dim", 1024);
+
+    private record Variante(String name, String createIndex, String searchSetting) {}
+
+    public static void main(String[] args) throws Exception {
+        String url = System.getProperty("bench.url", "jdbc:postgresql://localhost:5432/ai_db");
+        String user = System.getProperty("bench.user", "dev");
+        String password = System.getProperty("bench.password", "pass");
+        int[] sizes = Arrays.stream(System.getProperty("bench.sizes", "10000,100000,1000000").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+
+        try (Connection con = DriverManager.getConnection(url, user, password)) {
+            PGvector.addVectorType(con);
+            System.out.printf("%-10s %-32s %12s %12s %12s %10s%n", "Zeilen", "Variante", "Build ms", "p50 ms", "p95 ms", "Recall@" + TOP_K);
+            for (int size : sizes) {
+                runSize(con, size);
+            }
+        }
+    }
+
+    private static void runSize(Connection con, int size) throws SQLException {
+        String table = "bench_vectors_" + size;
+        fill(con, table, size);
+
+        Random random = new Random(42);
+        List<float[]> queries = new ArrayList<>();
+        for (int i = 0; i < QUERIES; i++) {
+            queries.add(randomVector(random));
+        }
+
+        // Ground-Truth: exakt, ohne Index
+        dropIndex(con, table);
+        List<Set<Long>> truth = new ArrayList<>();
+        long[] exactLatencies = new long[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            long start = System.nanoTime();
+            truth.add(search(con, table, queries.get(i)));
+            exactLatencies[i] = System.nanoTime() - start;
+        }
+        print(size, "exakt (seq scan)", 0, exactLatencies, 1.0);
+
+        int lists = Math.max(10, size / 1000);
+        List<Variante> varianten = List.of(
+                new Variante("hnsw m=16 efc=64 ef=40", "USING hnsw (embedding vector_cosine_ops) WITH (m = 16, ef_construction = 64)", "SET hnsw.ef_search = 40"),
+                new Variante("hnsw m=16 efc=64 ef=100", null, "SET hnsw.ef_search = 100"),
+                new Variante("hnsw m=32 efc=128 ef=100", "USING hnsw (embedding vector_cosine_ops) WITH (m = 32, ef_construction = 128)", "SET hnsw.ef_search = 100"),
+                new Variante("ivfflat lists=" + lists + " probes=10", "USING ivfflat (embedding vector_cosine_ops) WITH (lists = " + lists + ")", "SET ivfflat.probes = 10"),
+                new Variante("ivfflat lists=" + lists + " probes=" + (int) Math.sqrt(lists), null, "SET ivfflat.probes = " + (int) Math.sqrt(lists))
+        );
+
+        for (Variante variante : varianten) {
+            long buildMillis = 0;
+            if (variante.createIndex() != null) {
+                dropIndex(con, table);
+                long start = System.currentTimeMillis();
+                execute(con, "CREATE INDEX " + table + "_ann ON " + table + " " + variante.createIndex());
+                buildMillis = System.currentTimeMillis() - start;
+            }
+            execute(con, variante.searchSetting());
+
+            long[] latencies = new long[QUERIES];
+            double recallSum = 0;
+            for (int i = 0; i < QUERIES; i++) {
+                long start = System.nanoTime();
+                Set<Long> found = search(con, table, queries.get(i));
+                latencies[i] = System.nanoTime() - start;
+                Set<Long> hits = new HashSet<>(found);
+                hits.retainAll(truth.get(i));
+                recallSum += (double) hits.size() / TOP_K;
+            }
+            print(size, variante.name(), buildMillis, latencies, recallSum / QUERIES);
+        }
+        dropIndex(con, table);
+    }
+
+    private static void fill(Connection con, String table, int size) throws SQLException {
+        execute(con, "CREATE EXTENSION IF NOT EXISTS vector");
+        execute(con, "CREATE TABLE IF NOT EXISTS " + table + " (id bigint PRIMARY KEY, embedding vector(" + DIM + "))");
+        long existing;
+        try (Statement st = con.createStatement(); ResultSet rs = st.executeQuery("SELECT count(*) FROM " + table)) {
+            rs.next();
+            existing = rs.getLong(1);
+        }
+        if (existing >= size) {
+            return;
+        }
+        Random random = new Random(size);
+        boolean autoCommit = con.getAutoCommit();
+        con.setAutoCommit(false);
+        try (PreparedStatement ps = con.prepareStatement("INSERT INTO " + table + " (id, embedding) VALUES (?, ?) ON CONFLICT DO NOTHING")) {
+            for (long id = existing; id < size; id++) {
+                ps.setLong(1, id);
+                ps.setObject(2, new PGvector(randomVector(random)));
+                ps.addBatch();
+                if (id % 1000 == 999) {
+                    ps.executeBatch();
+                    con.commit();
+                }
+            }
+            ps.executeBatch();
+            con.commit();
+        } finally {
+            con.setAutoCommit(autoCommit);
+        }
+        execute(con, "ANALYZE " + table);
+    }
+
+    private static Set<Long> search(Connection con, String table, float[] query) throws SQLException {
+        Set<Long> ids = new HashSet<>();
+        try (PreparedStatement ps = con.prepareStatement(
+                "SELECT id FROM " + table + " ORDER BY embedding <=> ? LIMIT " + TOP_K)) {
+            ps.setObject(1, new PGvector(query));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getLong(1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIM];
+        double norm = 0;
+        for (int i = 0; i < DIM; i++) {
+            vector[i] = (float) random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        float scale = (float) (1.0 / Math.sqrt(norm));
+        for (int i = 0; i < DIM; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+
+    private static void dropIndex(Connection con, String table) throws SQLException {
+        execute(con, "DROP INDEX IF EXISTS " + table + "_ann");
+    }
+
+    private static void execute(Connection con, String sql) throws SQLException {
+        try (Statement st = con.createStatement()) {
+            st.execute(sql);
+        }
+    }
+
+    private static void print(int size, String variante, long buildMillis, long[] latenciesNanos, double recall) {
+        long[] sorted = latenciesNanos.clone();
+        Arrays.sort(sorted);
+        double p50 = sorted[sorted.length / 2] / 1_000_000.0;
+        double p95 = sorted[(int) (sorted.length * 0.95)] / 1_000_000.0;
+        System.out.printf("%-10d %-32s %12d %12.2f %12.2f %10.3f%n", size, variante, buildMillis, p50, p95, recall);
+    }
+}
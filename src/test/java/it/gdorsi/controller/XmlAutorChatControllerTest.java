@@ -1,6 +1,9 @@
 package it.gdorsi.controller;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
@@ -11,6 +14,7 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -31,6 +35,9 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import it.gdorsi.dao.XmlDokumentCursor;
+import it.gdorsi.dao.XmlDokumentSeite;
+import it.gdorsi.dao.XmlDokumentUebersicht;
 import it.gdorsi.repository.AuthorRepository;
 import it.gdorsi.repository.model.Autor;
 import it.gdorsi.repository.model.XmlDokument;
@@ -96,12 +103,23 @@ class XmlAutorChatControllerTest {
         @DisplayName("Erstellt XML erfolgreich (old-school)")
         void createXml_success() throws Exception {
             when(xmlDokumentService.getAutorNameById(1L)).thenReturn("Test Autor");
-            when(xmlDokumentService.saveXml(eq(1L), any(), any())).thenReturn(xmlDokument);
+            when(xmlDokumentService.saveXmlUpload(eq(1L), any(), any())).thenReturn(xmlDokument);
 
             mockMvc.perform(multipart("/api/autoren/1/xml")
                             .file(xmlFile))
                     .andExpect(status().isCreated());
         }
+
+        @Test
+        @DisplayName("Gibt 400 bei nicht wohlgeformtem XML")
+        void createXml_nichtWohlgeformt() throws Exception {
+            when(xmlDokumentService.saveXmlUpload(eq(1L), any(), any()))
+                    .thenThrow(new IllegalArgumentException("XML nicht wohlgeformt: ..."));
+
+            mockMvc.perform(multipart("/api/autoren/1/xml")
+                            .file(xmlFile))
+                    .andExpect(status().isBadRequest());
+        }
     }
 
     @Nested
@@ -116,6 +134,43 @@ class XmlAutorChatControllerTest {
             mockMvc.perform(get("/api/autoren/999/xml"))
                     .andExpect(status().isNotFound());
         }
+
+        @Test
+        @DisplayName("Liefert eine Seite mit Cursor für die Folgeseite")
+        void getAllXml_seiteMitCursor() throws Exception {
+            XmlDokumentUebersicht zeile = new XmlDokumentUebersicht(7L, "test.xml", 1L, "Test Autor", "<test>",
+                    LocalDateTime.of(2025, 1, 2, 3, 4, 5));
+            String cursor = XmlDokumentCursor.after(zeile).encode();
+            when(xmlDokumentService.getAutorNameById(1L)).thenReturn("Test Autor");
+            when(xmlDokumentService.findXmlDokumente(eq(1L), eq(null), eq(2), anyInt()))
+                    .thenReturn(new XmlDokumentSeite(List.of(zeile), cursor));
+
+            mockMvc.perform(get("/api/autoren/1/xml").param("size", "2"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.dokumente[0].id").value(7))
+                    .andExpect(jsonPath("$.dokumente[0].autorName").value("Test Autor"))
+                    .andExpect(jsonPath("$.naechsterCursor").value(cursor));
+        }
+
+        @Test
+        @DisplayName("Gibt 400 bei ungültigem Cursor")
+        void getAllXml_ungueltigerCursor() throws Exception {
+            when(xmlDokumentService.getAutorNameById(1L)).thenReturn("Test Autor");
+            when(xmlDokumentService.findXmlDokumente(eq(1L), eq("kaputt"), anyInt(), anyInt()))
+                    .thenThrow(new IllegalArgumentException("Ungültiger Cursor: kaputt"));
+
+            mockMvc.perform(get("/api/autoren/1/xml").param("cursor", "kaputt"))
+                    .andExpect(status().isBadRequest());
+        }
+
+        @Test
+        @DisplayName("Cursor übersteht encode/decode")
+        void cursor_roundTrip() {
+            XmlDokumentCursor cursor = new XmlDokumentCursor(LocalDateTime.of(2025, 1, 2, 3, 4, 5, 123_456_000), 42L);
+
+            assertEquals(cursor, XmlDokumentCursor.decode(cursor.encode()));
+            assertThrows(IllegalArgumentException.class, () -> XmlDokumentCursor.decode("kein-cursor"));
+        }
     }
 
     @Nested
@@ -21,7 +21,9 @@ import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.http.ResponseEntity;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import it.gdorsi.service.XmlDokumentService;
+import it.gdorsi.service.chat.ChatStreamService;
 import jakarta.servlet.http.HttpSession;
 
 @ExtendWith(MockitoExtension.class)
@@ -56,7 +58,8 @@ class XmlToolChatControllerSimpleTest {
         when(chatClientBuilder.defaultTools(xmlService)).thenReturn(chatClientBuilder);
         when(chatClientBuilder.build()).thenReturn(chatClient);
 
-        controller = new XmlToolChatController(chatClientBuilder, vectorStore, chatMemory, xmlService);
+        controller = new XmlToolChatController(chatClientBuilder, vectorStore, chatMemory, xmlService,
+                new ChatStreamService(new SimpleMeterRegistry()));
     }
 
     @Test
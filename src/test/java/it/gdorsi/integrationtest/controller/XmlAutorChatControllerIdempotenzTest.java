@@ -10,6 +10,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import config.TestConfig;
 import it.gdorsi.repository.AuthorRepository;
@@ -35,6 +36,9 @@ class XmlAutorChatControllerIdempotenzTest {
     @Autowired
     private XmlDokumentRepository xmlDokumentRepository;
 
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     @BeforeEach
     void setUp() {
         xmlDokumentRepository.deleteAll();
@@ -80,9 +84,12 @@ class XmlAutorChatControllerIdempotenzTest {
         Optional<XmlDokument> update = xmlDokumentService.updateXml(autor.getId(), created.getId(), "updated.xml", "<updated>neue daten</updated>");
         assertThat(update).isPresent();
 
-        List<XmlDokument> allXml = xmlDokumentRepository.findAll();
-        assertThat(allXml).hasSize(1);
-        assertThat(allXml.getFirst().getDateiname()).isEqualTo("updated.xml");
-        assertThat(allXml.getFirst().getInhalt()).isEqualTo("<updated>neue daten</updated>");
+        // inhalt ist lazy - Prüfung innerhalb einer Transaktion
+        transactionTemplate.executeWithoutResult(status -> {
+            List<XmlDokument> allXml = xmlDokumentRepository.findAll();
+            assertThat(allXml).hasSize(1);
+            assertThat(allXml.getFirst().getDateiname()).isEqualTo("updated.xml");
+            assertThat(allXml.getFirst().getInhalt()).isEqualTo("<updated>neue daten</updated>");
+        });
     }
 }
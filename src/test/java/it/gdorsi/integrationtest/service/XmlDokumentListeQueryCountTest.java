@@ -0,0 +1,119 @@
+package it.gdorsi.integrationtest.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import config.TestConfig;
+import it.gdorsi.dao.XmlDokumentSeite;
+import it.gdorsi.dao.XmlDokumentUebersicht;
+import it.gdorsi.repository.AuthorRepository;
+import it.gdorsi.repository.XmlDokumentRepository;
+import it.gdorsi.repository.model.Autor;
+import it.gdorsi.repository.model.XmlDokument;
+import it.gdorsi.service.XmlDokumentService;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Regressionstest gegen N+1: jede Seite der XML-Liste ist genau eine SQL-Query, unabhängig von der Anzahl Autoren.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import(TestConfig.class)
+@ActiveProfiles("test")
+class XmlDokumentListeQueryCountTest {
+
+    private static final int AUTOREN = 3;
+    private static final int DOKUMENTE_PRO_AUTOR = 4;
+
+    @Autowired
+    private XmlDokumentService xmlDokumentService;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private XmlDokumentRepository xmlDokumentRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Long ersterAutorId;
+
+    @BeforeEach
+    void setUp() {
+        xmlDokumentRepository.deleteAll();
+        authorRepository.deleteAll();
+
+        for (int a = 0; a < AUTOREN; a++) {
+            Autor autor = new Autor();
+            autor.setName("Autor " + a);
+            autor.setAuthorEmbedding(new float[1024]);
+            autor = authorRepository.save(autor);
+            if (ersterAutorId == null) {
+                ersterAutorId = autor.getId();
+            }
+            for (int d = 0; d < DOKUMENTE_PRO_AUTOR; d++) {
+                xmlDokumentRepository.save(new XmlDokument("doc-" + a + "-" + d + ".xml", "<doc>" + d + "</doc>", new float[1024], autor));
+            }
+        }
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        xmlDokumentRepository.deleteAll();
+        authorRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Jede Seite ist eine Query, alle Dokumente kommen genau einmal, neueste zuerst")
+    void seitenweiseEineQueryProSeite() {
+        List<XmlDokumentUebersicht> alle = new ArrayList<>();
+        String cursor = null;
+        int seiten = 0;
+        do {
+            long vorher = statistics.getPrepareStatementCount();
+            XmlDokumentSeite seite = xmlDokumentService.findXmlDokumente(null, cursor, 5, 80);
+            assertThat(statistics.getPrepareStatementCount() - vorher).isEqualTo(1);
+
+            alle.addAll(seite.dokumente());
+            cursor = seite.naechsterCursor();
+            seiten++;
+        } while (cursor != null);
+
+        assertThat(seiten).isEqualTo(3);
+        assertThat(alle).hasSize(AUTOREN * DOKUMENTE_PRO_AUTOR);
+        assertThat(alle).extracting(XmlDokumentUebersicht::id).doesNotHaveDuplicates();
+        assertThat(alle).extracting(XmlDokumentUebersicht::autorName).doesNotContainNull();
+        assertThat(alle).extracting(XmlDokumentUebersicht::id)
+                .isSortedAccordingTo((x, y) -> Long.compare(y, x));
+        // kein Autor und kein XmlDokument als Entity geladen
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Autor-Filter bleibt bei einer Query")
+    void autorFilterEineQuery() {
+        XmlDokumentSeite seite = xmlDokumentService.findXmlDokumente(ersterAutorId, null, 50, 80);
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(seite.dokumente()).hasSize(DOKUMENTE_PRO_AUTOR)
+                .allSatisfy(doc -> assertThat(doc.autorId()).isEqualTo(ersterAutorId));
+        assertThat(seite.hasNext()).isFalse();
+    }
+}
@@ -0,0 +1,32 @@
+package it.gdorsi.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+class HybridSearchRepositoryTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final HybridSearchRepository repository = new HybridSearchRepository(jdbcTemplate);
+
+    @Test
+    void nurBezeichnerartigeBegriffe() {
+        assertEquals(List.of("V-4711"), HybridSearchRepository.suchbegriffe("Was steht im Vertrag V-4711 zur Kündigung?"));
+        assertEquals(List.of("xs:element", "lieferAdresse", "IBAN", "vertrags_nr", "2024"),
+                HybridSearchRepository.suchbegriffe("Wo sind xs:element, lieferAdresse, IBAN und vertrags_nr aus 2024?"));
+    }
+
+    @Test
+    void frageOhneBezeichnerBrauchtKeineVolltextsuche() {
+        // "der", "ist", "im" ... würden mit 'simple' fast jeden Chunk treffen
+        assertTrue(repository.fulltext("Was ist die Kündigungsfrist im Vertrag?", new float[]{0.1f}, 20, 0.5, null)
+                .isEmpty());
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
@@ -0,0 +1,51 @@
+package it.gdorsi.repository;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import it.gdorsi.dao.PdfIngestResult;
+
+class IngestionJobRepositoryTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final IngestionJobRepository repository = new IngestionJobRepository(jdbcTemplate);
+
+    @Test
+    void abschliessenNurMitEigenerLease() {
+        PdfIngestResult result = new PdfIngestResult("vertrag.pdf", 3, 3, 0, 0, 100, 10, 60, 30);
+        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenReturn(0);
+
+        assertFalse(repository.markDone(7L, "worker-a", result));
+        assertFalse(repository.markFailed(7L, "worker-a", "Ollama nicht erreichbar", Duration.ofSeconds(5)));
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate).update(sql.capture(), eq(3), eq(3), eq(0), eq(0), eq(100L), eq(10L), eq(60L), eq(30L),
+                eq(7L), eq("worker-a"));
+        assertTrue(sql.getValue().contains("AND locked_by = ? AND status = 'RUNNING'"));
+        verify(jdbcTemplate).update(sql.capture(), eq("Ollama nicht erreichbar"), eq(5000L), eq(7L), eq("worker-a"));
+        assertTrue(sql.getValue().contains("AND locked_by = ? AND status = 'RUNNING'"));
+    }
+
+    @Test
+    void abgelaufeneLeaseOhneVersucheWirdFailed() {
+        repository.requeueExpired();
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate).update(sql.capture());
+        // sonst läuft ein Job, der den Worker jedes Mal abstürzen lässt, ohne Ende
+        assertTrue(sql.getValue().contains("status = CASE WHEN attempts < max_attempts THEN 'QUEUED' ELSE 'FAILED' END"));
+        assertTrue(sql.getValue().contains("finished_at = CASE WHEN attempts < max_attempts THEN NULL ELSE now() END"));
+    }
+}
@@ -0,0 +1,72 @@
+package it.gdorsi.repository.model.type;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class PgVectorCodecTest {
+
+    @Test
+    void textRoundTripIstBitgenau() {
+        Random random = new Random(42);
+        float[] vector = new float[4096];
+        for (int i = 0; i < vector.length; i++) {
+            // Embeddings liegen um 0, aber auch große/kleine Beträge müssen stimmen
+            vector[i] = (float) (random.nextGaussian() * Math.pow(10, random.nextInt(13) - 8));
+        }
+
+        float[] parsed = PgVectorCodec.parse(PgVectorCodec.format(vector));
+
+        assertArrayEquals(vector, parsed);
+    }
+
+    @Test
+    void parserStimmtMitFloatParseFloatUeberein() {
+        String[] werte = {"0", "-0.0", "1", "+2.5", "0.000123", "3.4028235E38", "1.4E-45", "-1.0e-5", "123456789012345678",
+                "0.1234567890123456789", "NaN", "-Infinity", "7E+2"};
+        for (String wert : werte) {
+            assertEquals(Float.floatToIntBits(Float.parseFloat(wert)),
+                    Float.floatToIntBits(PgVectorCodec.parse("[" + wert + "]")[0]), wert);
+        }
+    }
+
+    @Test
+    void leerzeichenUndKlammernSindOptional() {
+        assertArrayEquals(new float[]{1f, 2.5f, -3f}, PgVectorCodec.parse(" [1.0, 2.5 ,-3] "));
+        assertArrayEquals(new float[]{1f, 2f}, PgVectorCodec.parse("1,2"));
+        assertArrayEquals(new float[0], PgVectorCodec.parse("[]"));
+        assertArrayEquals(new float[0], PgVectorCodec.parse("  "));
+    }
+
+    @Test
+    void ungueltigeWerteWerfenNumberFormatException() {
+        assertThrows(NumberFormatException.class, () -> PgVectorCodec.parse("[1,,2]"));
+        assertThrows(NumberFormatException.class, () -> PgVectorCodec.parse("[1,abc]"));
+        assertThrows(NumberFormatException.class, () -> PgVectorCodec.parse("[1.2.3]"));
+    }
+
+    @Test
+    void binaerRoundTrip() {
+        float[] vector = {0f, -1.5f, Float.MIN_VALUE, Float.MAX_VALUE, 0.123456f};
+        byte[] bytes = new byte[PgVectorCodec.binaryLength(vector.length) + 3];
+
+        PgVectorCodec.encode(vector, bytes, 3);
+
+        assertEquals(4 + 4 * vector.length, PgVectorCodec.binaryLength(vector.length));
+        assertArrayEquals(vector, PgVectorCodec.decode(bytes, 3));
+    }
+
+    @Test
+    void binaerformatEntsprichtVectorSend() {
+        // dim=2 (int16), unused=0 (int16), 1.0f = 0x3F800000, -2.0f = 0xC0000000
+        byte[] bytes = new byte[PgVectorCodec.binaryLength(2)];
+
+        PgVectorCodec.encode(new float[]{1f, -2f}, bytes, 0);
+
+        assertArrayEquals(new byte[]{0, 2, 0, 0, 0x3F, (byte) 0x80, 0, 0, (byte) 0xC0, 0, 0, 0}, bytes);
+    }
+}
@@ -0,0 +1,63 @@
+package it.gdorsi.repository.model.type;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.junit.jupiter.api.Test;
+import org.postgresql.PGConnection;
+import org.postgresql.core.BaseConnection;
+import org.postgresql.core.QueryExecutor;
+import org.postgresql.core.TypeInfo;
+
+class PgVectorObjectTest {
+
+    @Test
+    void meldetEinmalProPhysischerConnectionAn() throws SQLException {
+        BaseConnection pg = pgConnection(4711);
+        // der Pool reicht bei jedem Ausleihen einen neuen Proxy um dieselbe physische Connection heraus
+        Connection proxy1 = proxy(pg);
+        Connection proxy2 = proxy(pg);
+
+        assertTrue(PgVectorObject.register(proxy1));
+        assertTrue(PgVectorObject.register(proxy1));
+        assertTrue(PgVectorObject.register(proxy2));
+
+        verify(pg, times(1)).addDataType(PgVectorObject.TYPE, PgVectorObject.class);
+        verify(pg.getQueryExecutor(), times(1)).addBinaryReceiveOid(4711);
+        verify(pg.getTypeInfo(), times(1)).getPGType(PgVectorObject.TYPE);
+    }
+
+    @Test
+    void ohneExtensionBleibtEsBeiText() throws SQLException {
+        BaseConnection pg = pgConnection(0);
+
+        assertFalse(PgVectorObject.register(proxy(pg)));
+        // nicht gemerkt: nach CREATE EXTENSION klappt es auf derselben Connection
+        assertFalse(PgVectorObject.register(proxy(pg)));
+        verify(pg.getTypeInfo(), times(2)).getPGType(PgVectorObject.TYPE);
+    }
+
+    private static BaseConnection pgConnection(int oid) throws SQLException {
+        BaseConnection pg = mock(BaseConnection.class);
+        TypeInfo typeInfo = mock(TypeInfo.class);
+        QueryExecutor queryExecutor = mock(QueryExecutor.class);
+        when(pg.getTypeInfo()).thenReturn(typeInfo);
+        when(pg.getQueryExecutor()).thenReturn(queryExecutor);
+        when(pg.unwrap(PGConnection.class)).thenReturn(pg);
+        when(typeInfo.getPGType(PgVectorObject.TYPE)).thenReturn(oid);
+        return pg;
+    }
+
+    private static Connection proxy(BaseConnection pg) throws SQLException {
+        Connection proxy = mock(Connection.class);
+        when(proxy.unwrap(BaseConnection.class)).thenReturn(pg);
+        return proxy;
+    }
+}
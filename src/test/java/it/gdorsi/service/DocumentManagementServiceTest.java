@@ -0,0 +1,77 @@
+package it.gdorsi.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import it.gdorsi.dao.DocumentOverview;
+import it.gdorsi.dao.DocumentPage;
+import it.gdorsi.repository.DocumentCatalogRepository;
+import it.gdorsi.repository.VectorStoreChunkRepository;
+import it.gdorsi.service.chat.SemanticResponseCache;
+
+@ExtendWith(MockitoExtension.class)
+class DocumentManagementServiceTest {
+
+    @Mock
+    private DocumentCatalogRepository catalogRepository;
+
+    @Mock
+    private VectorStoreChunkRepository chunkRepository;
+
+    @Mock
+    private SemanticResponseCache semanticCache;
+
+    @InjectMocks
+    private DocumentManagementService documentService;
+
+    @Test
+    void loeschtOhneEmbeddingUndLiefertAnzahl() {
+        when(chunkRepository.deleteByFileNames(List.of("vertrag.pdf"))).thenReturn(Map.of("vertrag.pdf", 12_345));
+
+        assertEquals(12_345, documentService.deleteByFileName("vertrag.pdf"));
+        verify(semanticCache).invalidate(List.of("file:vertrag.pdf"));
+        verify(catalogRepository).deleteByFileNames(List.of("vertrag.pdf"));
+    }
+
+    @Test
+    void seiteLiestEineZeileMehrFuerHasNext() {
+        DocumentOverview doc = new DocumentOverview("a.pdf", 3, 1024L, null, LocalDateTime.now());
+        when(catalogRepository.findPage(20, 3)).thenReturn(List.of(doc, doc, doc));
+
+        DocumentPage page = documentService.getDocuments(10, 2);
+
+        assertEquals(2, page.docs().size());
+        assertTrue(page.hasNext());
+        assertTrue(page.hasPrevious());
+    }
+
+    @Test
+    void mehrereDateienInBatches() {
+        List<String> fileNames = IntStream.range(0, DocumentManagementService.DELETE_BATCH_SIZE * 2 + 1)
+                .mapToObj(i -> "datei-" + i + ".pdf")
+                .toList();
+        when(chunkRepository.deleteByFileNames(anyCollection())).thenReturn(Map.of("datei-0.pdf", 3));
+
+        Map<String, Integer> deleted = documentService.deleteByFileNames(fileNames);
+
+        verify(chunkRepository, times(3)).deleteByFileNames(anyCollection());
+        assertEquals(fileNames.size(), deleted.size());
+        assertEquals(3, deleted.get("datei-0.pdf"));
+        assertEquals(0, deleted.get("datei-1.pdf"));
+    }
+}
@@ -0,0 +1,149 @@
+package it.gdorsi.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import it.gdorsi.config.XmlChunkingProperties;
+import it.gdorsi.repository.AuthorRepository;
+import it.gdorsi.repository.VectorStoreChunkRepository;
+import it.gdorsi.repository.XmlDokumentRepository;
+import it.gdorsi.repository.XmlStrukturProfilRepository;
+import it.gdorsi.repository.model.Autor;
+import it.gdorsi.repository.model.XmlDokument;
+import it.gdorsi.service.chat.SemanticResponseCache;
+import it.gdorsi.service.xml.XmlAnalyzer;
+import it.gdorsi.service.xml.XmlChunker;
+import it.gdorsi.service.xml.XmlKompression;
+import it.gdorsi.service.xml.XmlUploadReader;
+import it.gdorsi.service.xml.XmlVectorIndexer;
+
+/**
+ * Schreibpfade: scheitert der Vector Store, darf nichts committet und kein Erfolg gemeldet werden.
+ */
+class XmlDokumentServiceSchreibTest {
+
+    private static final String XML = "<katalog><buch id=\"1\"><titel>Faust</titel></buch></katalog>";
+
+    private final XmlDokumentRepository xmlDokumentRepository = mock(XmlDokumentRepository.class);
+    private final AuthorRepository authorRepository = mock(AuthorRepository.class);
+    private final XmlVectorIndexer xmlIndexer = mock(XmlVectorIndexer.class);
+    private final XmlStrukturProfilRepository strukturProfilRepository = mock(XmlStrukturProfilRepository.class);
+    private final XmlKompression xmlKompression = mock(XmlKompression.class);
+    private final VectorStoreChunkRepository chunkRepository = mock(VectorStoreChunkRepository.class);
+    private final SemanticResponseCache semanticCache = mock(SemanticResponseCache.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final XmlDokumentService service = new XmlDokumentService(xmlDokumentRepository, authorRepository,
+            xmlIndexer, new XmlAnalyzer(), strukturProfilRepository, null, null, null,
+            new XmlUploadReader(new XmlAnalyzer(), new XmlChunker(new XmlChunkingProperties(30, 100))), xmlKompression, null,
+            null, chunkRepository, semanticCache, transactionManager);
+
+    private final Autor autor = new Autor(1L, "Goethe", "", new float[0]);
+
+    private void indexSchlaegtFehl() {
+        XmlVectorIndexer.PreparedXml prepared = new XmlVectorIndexer.PreparedXml(List.of(), List.of(), new float[0], 0);
+        when(xmlIndexer.prepare(any(), anyString())).thenReturn(prepared);
+        when(xmlIndexer.prepare(any(), anyList())).thenReturn(prepared);
+        when(xmlIndexer.index(any(), any(), any(), eq(prepared)))
+                .thenThrow(new DataAccessResourceFailureException("vector_store nicht erreichbar"));
+        when(xmlDokumentRepository.save(any())).thenAnswer(inv -> {
+            XmlDokument xmlDokument = inv.getArgument(0);
+            xmlDokument.setId(7L);
+            return xmlDokument;
+        });
+    }
+
+    @Test
+    void speichernRolltZurueckWennIndexFehlschlaegt() {
+        indexSchlaegtFehl();
+        when(authorRepository.findById(1L)).thenReturn(Optional.of(autor));
+
+        assertThrows(DataAccessResourceFailureException.class, () -> service.saveXml(1L, "faust.xml", XML));
+
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+        verify(semanticCache, never()).invalidate(any());
+    }
+
+    @Test
+    void toolUpdateMeldetKeinenErfolgWennIndexFehlschlaegt() {
+        indexSchlaegtFehl();
+        when(authorRepository.findByName("Goethe")).thenReturn(autor);
+        when(xmlDokumentRepository.existsByIdAndAutorId(7L, 1L)).thenReturn(true);
+        XmlDokument vorhanden = new XmlDokument("faust.xml", "<alt/>", new float[0], autor);
+        vorhanden.setId(7L);
+        when(xmlDokumentRepository.findById(7L)).thenReturn(Optional.of(vorhanden));
+
+        assertThrows(DataAccessResourceFailureException.class,
+                () -> service.updateXml("Goethe", 7L, "faust.xml", XML));
+
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+    }
+
+    @Test
+    void uploadRolltZurueckWennIndexFehlschlaegt() {
+        indexSchlaegtFehl();
+        when(authorRepository.findById(1L)).thenReturn(Optional.of(autor));
+
+        assertThrows(DataAccessResourceFailureException.class,
+                () -> service.saveXmlUpload(1L, "faust.xml", upload()));
+
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+        verify(semanticCache, never()).invalidate(any());
+    }
+
+    @Test
+    void uploadUpdateRolltZurueckWennIndexFehlschlaegt() {
+        indexSchlaegtFehl();
+        when(xmlDokumentRepository.existsByIdAndAutorId(7L, 1L)).thenReturn(true);
+        XmlDokument vorhanden = new XmlDokument("faust.xml", "<alt/>", new float[0], autor);
+        vorhanden.setId(7L);
+        when(xmlDokumentRepository.findById(7L)).thenReturn(Optional.of(vorhanden));
+        when(xmlDokumentRepository.saveAndFlush(vorhanden)).thenReturn(vorhanden);
+
+        assertThrows(DataAccessResourceFailureException.class,
+                () -> service.updateXmlUpload(1L, 7L, "faust.xml", upload()));
+
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+    }
+
+    @Test
+    void loeschenEntferntChunksUeberDasRepository() {
+        when(authorRepository.findByName("Goethe")).thenReturn(autor);
+        XmlDokument vorhanden = new XmlDokument("faust.xml", XML, new float[0], autor);
+        vorhanden.setId(7L);
+        when(xmlDokumentRepository.findById(7L)).thenReturn(Optional.of(vorhanden));
+        when(chunkRepository.deleteByXmlId(7L, "Goethe")).thenReturn(3);
+
+        assertEquals("XML-Dokument mit ID 7 für Autor 'Goethe' wurde gelöscht.", service.deleteXmlById("Goethe", 7L));
+
+        InOrder reihenfolge = inOrder(chunkRepository, xmlDokumentRepository);
+        reihenfolge.verify(chunkRepository).deleteByXmlId(7L, "Goethe");
+        reihenfolge.verify(xmlDokumentRepository).delete(vorhanden);
+    }
+
+    private static ByteArrayInputStream upload() {
+        return new ByteArrayInputStream(XML.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -4,21 +4,51 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.gdorsi.config.XPathProperties;
+import it.gdorsi.config.XmlDiffProperties;
+import it.gdorsi.config.XsltProperties;
+import it.gdorsi.dao.XmlAnalyse;
+import it.gdorsi.dao.XmlDokumentUebersicht;
+import it.gdorsi.dao.XsltStylesheet;
 import it.gdorsi.repository.AuthorRepository;
 import it.gdorsi.repository.XmlDokumentRepository;
+import it.gdorsi.repository.XmlStrukturProfilRepository;
+import it.gdorsi.repository.XsltStylesheetRepository;
 import it.gdorsi.repository.model.Autor;
 import it.gdorsi.repository.model.XmlDokument;
+import it.gdorsi.service.response.XmlListResponse;
+import it.gdorsi.service.response.XmlResponse;
+import it.gdorsi.service.xml.XPathEngine;
+import it.gdorsi.service.xml.XmlAnalyzer;
+import it.gdorsi.service.xml.XmlDiff;
+import it.gdorsi.service.xml.XmlKompression;
+import it.gdorsi.service.xml.XsltEngine;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -30,6 +60,30 @@ class XmlDokumentServiceToolTest {
     @Mock
     private AuthorRepository authorRepository;
 
+    @Mock
+    private VectorStore vectorStore;
+
+    @Mock
+    private XmlStrukturProfilRepository strukturProfilRepository;
+
+    @Spy
+    private XmlAnalyzer xmlAnalyzer = new XmlAnalyzer();
+
+    @Mock
+    private XsltStylesheetRepository xsltStylesheetRepository;
+
+    @Spy
+    private XsltEngine xsltEngine = new XsltEngine(new XsltProperties(4, 2, 1000), new SimpleMeterRegistry());
+
+    @Spy
+    private XPathEngine xPathEngine = new XPathEngine(new XmlAnalyzer(), new XPathProperties(16, 4, 100_000, 2));
+
+    @Mock
+    private XmlKompression xmlKompression;
+
+    @Spy
+    private XmlDiff xmlDiff = new XmlDiff(new XmlDiffProperties(16, 40));
+
     @InjectMocks
     private XmlDokumentService xmlDokumentService;
 
@@ -203,4 +257,153 @@ class XmlDokumentServiceToolTest {
         assertTrue(result.contains("🔄 XML-Transformation"));
         assertFalse(result.contains("<!-- Comment -->"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testSearchSimilarXml_LaedtTrefferInEinerQueryInScoreReihenfolge() {
+        // Arrange: zwei Chunks von Dokument 7, dazwischen Dokument 3, dann ein gelöschtes Dokument
+        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(List.of(
+                treffer("7", 0.9), treffer("3", 0.8), treffer("7", 0.7), treffer("99", 0.6)));
+        when(xmlDokumentRepository.findUebersichtByIds(anyCollection(), eq(501))).thenReturn(List.of(
+                new XmlDokumentUebersicht(3L, "b.xml", 1L, "Anna", "<b/>", LocalDateTime.now()),
+                new XmlDokumentUebersicht(7L, "a.xml", 1L, "Anna", "<a/>", LocalDateTime.now())));
+
+        // Act
+        XmlListResponse result = xmlDokumentService.searchSimilarXml("vertrag", 5);
+
+        // Assert
+        assertEquals(List.of(7L, 3L), result.dokumente().stream().limit(2).map(XmlResponse::id).toList());
+        assertEquals(0.9, result.dokumente().get(0).similarityScore());
+        assertTrue(result.dokumente().get(2).status().contains("nicht mehr verfügbar"));
+        assertEquals(3, result.count());
+        verify(xmlDokumentRepository, times(1)).findUebersichtByIds(anyCollection(), eq(501));
+        verify(xmlDokumentRepository, never()).findById(anyLong());
+    }
+
+    private static Document treffer(String xmlId, double score) {
+        return Document.builder().text("chunk").metadata(Map.of("xml_id", xmlId, "autor_name", "Anna")).score(score).build();
+    }
+
+    @Test
+    void testAnalyzeXml_NutztGespeichertesProfilOhneInhalt() {
+        Autor autor = new Autor("TestAutor", "TestBiografie", new float[0]);
+        autor.setId(1L);
+
+        // inhalt bleibt null - würde der Service parsen, stünde im Ergebnis "Kein Root-Element"
+        XmlDokument xml = new XmlDokument("gross.xml", null, new float[0], autor);
+        xml.setId(7L);
+        XmlAnalyse profil = new XmlAnalyse(true, null, true, "UTF-8", "katalog", 50_000_000, 1, 400_000, 4, 10,
+                30_000_000, 0, Map.of(), Map.of("katalog", 1L, "buch", 399_999L), Map.of("id", 10L),
+                Map.of("/katalog", 1L, "/katalog/buch", 399_999L), false, "ab".repeat(32));
+
+        when(authorRepository.findByName("TestAutor")).thenReturn(autor);
+        when(xmlDokumentRepository.findById(7L)).thenReturn(Optional.of(xml));
+        when(strukturProfilRepository.findById(7L)).thenReturn(Optional.of(profil));
+
+        String result = xmlDokumentService.analyzeXml("TestAutor", 7L);
+
+        assertTrue(result.contains("Elemente: 400000 (maximale Tiefe: 4)"), result);
+        assertTrue(result.contains("/katalog/buch (399999x)"), result);
+        verify(xmlAnalyzer, never()).analyze(anyString());
+    }
+
+    @Test
+    void testCompareXml_GleicherInhaltUeberKanonischenHash() {
+        Autor autor = new Autor("TestAutor", "TestBiografie", new float[0]);
+        autor.setId(1L);
+
+        XmlDokument xml1 = new XmlDokument("a.xml", "<root><a x=\"1\" y=\"2\">Test</a></root>", new float[0], autor);
+        xml1.setId(1L);
+        XmlDokument xml2 = new XmlDokument("b.xml", "<root>\n  <a y=\"2\" x=\"1\">Test</a>\n</root>\n", new float[0], autor);
+        xml2.setId(2L);
+
+        when(authorRepository.findByName("TestAutor")).thenReturn(autor);
+        when(xmlDokumentRepository.findById(1L)).thenReturn(Optional.of(xml1));
+        when(xmlDokumentRepository.findById(2L)).thenReturn(Optional.of(xml2));
+
+        String result = xmlDokumentService.compareXml("TestAutor", 1L, 2L);
+
+        assertTrue(result.contains("Gleicher Inhalt (ohne Formatierung/Kommentare): Ja"), result);
+        verify(strukturProfilRepository).findByIds(List.of(1L, 2L));
+    }
+
+    @Test
+    void testCompareXml_ListetStrukturelleAenderungenMitXPath() {
+        Autor autor = new Autor("TestAutor", "TestBiografie", new float[0]);
+        autor.setId(1L);
+
+        XmlDokument xml1 = new XmlDokument("a.xml", "<k><buch nr=\"1\">A</buch><buch nr=\"2\">B</buch></k>", new float[0], autor);
+        xml1.setId(1L);
+        XmlDokument xml2 = new XmlDokument("b.xml", "<k><buch nr=\"1\">A2</buch></k>", new float[0], autor);
+        xml2.setId(2L);
+
+        when(authorRepository.findByName("TestAutor")).thenReturn(autor);
+        when(xmlDokumentRepository.findById(1L)).thenReturn(Optional.of(xml1));
+        when(xmlDokumentRepository.findById(2L)).thenReturn(Optional.of(xml2));
+
+        String result = xmlDokumentService.compareXml("TestAutor", 1L, 2L);
+
+        assertTrue(result.contains("Strukturelle Änderungen (2):"), result);
+        assertTrue(result.contains("• ~ /k/buch/text(): \"A\" → \"A2\""), result);
+        assertTrue(result.contains("• - /k/buch[2]: <buch nr=\"2\">B"), result);
+    }
+
+    @Test
+    void testExtractXmlElementsByAutor_WertetAlleDokumenteAus() {
+        Autor autor = new Autor("TestAutor", "TestBiografie", new float[0]);
+        autor.setId(1L);
+
+        XmlDokument xml1 = new XmlDokument("a.xml", null, new float[0], autor);
+        xml1.setId(1L);
+        XmlDokument xml2 = new XmlDokument("b.xml", null, new float[0], autor);
+        xml2.setId(2L);
+        XmlDokument kaputt = new XmlDokument("kaputt.xml", null, new float[0], autor);
+        kaputt.setId(3L);
+
+        when(authorRepository.findByName("TestAutor")).thenReturn(autor);
+        when(xmlDokumentRepository.findByAutorId(1L)).thenReturn(List.of(xml1, xml2, kaputt));
+        when(xmlDokumentRepository.findInhaltById(1L)).thenReturn(Optional.of("<r><item n=\"1\">A</item><item n=\"2\">B</item></r>"));
+        when(xmlDokumentRepository.findInhaltById(2L)).thenReturn(Optional.of("<r><item n=\"2\">C</item></r>"));
+        when(xmlDokumentRepository.findInhaltById(3L)).thenReturn(Optional.of("<r><item>"));
+
+        String result = xmlDokumentService.extractXmlElementsByAutor("TestAutor", "//item[@n='2']");
+
+        assertTrue(result.contains("a.xml (ID: 1): 1 Treffer"), result);
+        assertTrue(result.contains("<item n=\"2\">B</item>"), result);
+        assertTrue(result.contains("b.xml (ID: 2): 1 Treffer"), result);
+        assertTrue(result.contains("kaputt.xml (ID: 3): ❌ XML nicht wohlgeformt"), result);
+        assertTrue(result.contains("Gefundene Elemente insgesamt: 2"), result);
+    }
+
+    @Test
+    void testTransformXml_MitGespeichertemStylesheet() {
+        Autor autor = new Autor("TestAutor", "TestBiografie", new float[0]);
+        autor.setId(1L);
+
+        XmlDokument xml = new XmlDokument("test.xml", "<root><item>One</item><item>Two</item></root>", new float[0], autor);
+        xml.setId(1L);
+        String xslt = """
+            <xsl:stylesheet version="1.0" xmlns:xsl="http://www.w3.org/1999/XSL/Transform">
+              <xsl:output method="xml" omit-xml-declaration="yes"/>
+              <xsl:template match="/root"><liste anzahl="{count(item)}"/></xsl:template>
+            </xsl:stylesheet>
+            """;
+
+        when(authorRepository.findByName("TestAutor")).thenReturn(autor);
+        when(xmlDokumentRepository.findById(1L)).thenReturn(Optional.of(xml));
+        when(xsltStylesheetRepository.findByName("zaehlen"))
+            .thenReturn(Optional.of(new XsltStylesheet(1L, "zaehlen", xslt, "f", LocalDateTime.now())));
+
+        String result = xmlDokumentService.transformXml("TestAutor", 1L, "zaehlen");
+
+        assertTrue(result.contains("Transformations-Regeln: XSLT 'zaehlen'"), result);
+        assertTrue(result.contains("<liste anzahl=\"2\"/>"), result);
+    }
+
+    @Test
+    void testSaveXsltStylesheet_KaputtesStylesheetWirdNichtGespeichert() {
+        String result = xmlDokumentService.saveXsltStylesheet("kaputt", "<xsl:stylesheet");
+
+        assertTrue(result.startsWith("❌ Fehler beim Speichern des XSLT-Stylesheets"), result);
+        verify(xsltStylesheetRepository, never()).upsert(anyString(), anyString());
+    }
+}
@@ -0,0 +1,81 @@
+package it.gdorsi.service.chat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+
+class ChatStreamServiceTest {
+
+    @Test
+    void zaehltTokensUndMisstTtft() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ChatStreamService service = new ChatStreamService(registry);
+
+        service.stream("test", Flux.just("Hallo", " ", "Welt"));
+
+        assertEquals(3.0, registry.get("chat.stream.tokens").tag("endpoint", "test").counter().count());
+        assertEquals(1, registry.get("chat.stream.ttft").tag("endpoint", "test").timer().count());
+    }
+
+    @Test
+    void fehlerImStreamZaehltKeineTokens() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ChatStreamService service = new ChatStreamService(registry);
+
+        service.stream("test", Flux.error(new IllegalStateException("Ollama weg")));
+
+        assertEquals(0.0, registry.get("chat.stream.tokens").tag("endpoint", "test").counter().count());
+        assertEquals(0, registry.get("chat.stream.ttft").tag("endpoint", "test").timer().count());
+    }
+
+    @Test
+    void cacheTrefferVerzerrtKeineStreamMetriken() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ChatStreamService service = new ChatStreamService(registry);
+
+        service.streamCached("test", null, "Die ganze Antwort auf einmal");
+
+        assertEquals(1.0, registry.get("chat.stream.cache.hits").tag("endpoint", "test").counter().count());
+        assertEquals(0.0, registry.get("chat.stream.tokens").tag("endpoint", "test").counter().count());
+        assertEquals(0, registry.get("chat.stream.ttft").tag("endpoint", "test").timer().count());
+    }
+
+    @Test
+    void cacheTrefferDesAdvisorsWirdErkannt() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ChatStreamService service = new ChatStreamService(registry);
+
+        service.streamResponses("test", Flux.just(response("Aus dem Cache", Map.of(SemanticCacheAdvisor.HIT, "x"))));
+        service.streamResponses("test", Flux.just(response("Hallo", Map.of()), response(" Welt", Map.of())));
+
+        assertEquals(1.0, registry.get("chat.stream.cache.hits").tag("endpoint", "test").counter().count());
+        assertEquals(2.0, registry.get("chat.stream.tokens").tag("endpoint", "test").counter().count());
+        assertEquals(1, registry.get("chat.stream.ttft").tag("endpoint", "test").timer().count());
+    }
+
+    private static ChatClientResponse response(String text, Map<String, Object> context) {
+        ChatResponse chatResponse = ChatResponse.builder()
+                .generations(List.of(new Generation(new AssistantMessage(text))))
+                .build();
+        return ChatClientResponse.builder().chatResponse(chatResponse).context(context).build();
+    }
+
+    @Test
+    void containerKodiertParameter() {
+        String html = ChatStreamService.containerHtml("/admin/chat/stream", Map.of("question", "a&b <c>"), "text-gray-800");
+
+        assertTrue(html.contains("sse-connect=\"/admin/chat/stream?question=a%26b+%3Cc%3E\""));
+        assertTrue(html.contains("sse-close=\"done\""));
+    }
+}
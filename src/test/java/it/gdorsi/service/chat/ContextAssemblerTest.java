@@ -0,0 +1,86 @@
+package it.gdorsi.service.chat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.gdorsi.config.RagContextProperties;
+
+class ContextAssemblerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ContextAssembler assembler = new ContextAssembler(new RagContextProperties(100, 10, 0.8), meterRegistry);
+
+    @Test
+    void sortiertNachScore() {
+        ContextAssembler.Kontext kontext = assembler.baue("test", List.of(
+                dokument("Mittel relevant.", 0.5),
+                dokument("Am relevantesten.", 0.9),
+                dokument("Kaum relevant.", null)));
+
+        assertEquals("Am relevantesten.|Mittel relevant.|Kaum relevant.", kontext.text("|"));
+        assertFalse(kontext.gekuerzt());
+    }
+
+    @Test
+    void ueberlappendeChunksFallenWeg() {
+        String absatz = "Der Mieter zahlt die Miete monatlich im Voraus bis zum dritten Werktag auf das Konto des Vermieters";
+        ContextAssembler.Kontext kontext = assembler.baue("test", List.of(
+                dokument(absatz, 0.9),
+                // Overlap des Splitters: derselbe Text, nur anders umbrochen und mit Großbuchstaben
+                dokument(absatz.toUpperCase().replace(" ", "\n"), 0.8),
+                dokument("Die Kündigungsfrist beträgt drei Monate zum Monatsende.", 0.7)));
+
+        assertEquals(2, kontext.dokumente().size());
+        assertEquals(1, kontext.duplikate());
+        assertEquals(1.0, meterRegistry.counter("rag.context.chunks.dropped", "endpoint", "test", "reason", "duplicate").count());
+    }
+
+    @Test
+    void budgetKuerztDenSchlechtestenZuerst() {
+        String lang = "Wort ".repeat(80).strip();
+        ContextAssembler.Kontext kontext = assembler.baue("test", List.of(
+                dokument("Hoch " + lang, 0.9),
+                dokument("Mittel " + lang, 0.6),
+                dokument("Niedrig " + lang, 0.3)));
+
+        // der beste passt ganz, der zweite wird angeschnitten, der dritte fällt weg
+        assertEquals(2, kontext.dokumente().size());
+        assertEquals("Hoch " + lang, kontext.dokumente().get(0).getText());
+        assertTrue(kontext.dokumente().get(1).getText().startsWith("Mittel"));
+        assertTrue(kontext.gekuerzt());
+        assertEquals(1, kontext.verworfen());
+        assertTrue(kontext.tokens() <= 100, "tokens=" + kontext.tokens());
+        assertTrue(kontext.kandidatenTokens() > 200, "kandidatenTokens=" + kontext.kandidatenTokens());
+    }
+
+    @Test
+    void zuKleinerRestWirdNichtAngeschnitten() {
+        String lang = "Wort ".repeat(95).strip();
+        ContextAssembler.Kontext kontext = assembler.baue("test", List.of(
+                dokument(lang, 0.9),
+                dokument("Noch ein Absatz mit mehr als einer Handvoll Tokens, die nicht mehr passen.", 0.5)));
+
+        assertEquals(1, kontext.dokumente().size());
+        assertFalse(kontext.gekuerzt());
+    }
+
+    @Test
+    void metrikenProAufruf() {
+        assembler.baue("vertrag-chat", List.of(dokument("Ein kurzer Absatz.", 0.5)));
+        assembler.baue("vertrag-chat", List.of(dokument("Noch ein kurzer Absatz.", 0.5)));
+
+        assertEquals(2, meterRegistry.summary("rag.context.tokens", "endpoint", "vertrag-chat").count());
+        assertTrue(meterRegistry.summary("rag.context.candidate.tokens", "endpoint", "vertrag-chat").totalAmount() > 0);
+    }
+
+    private static Document dokument(String text, Double score) {
+        return Document.builder().text(text).score(score).build();
+    }
+}
@@ -0,0 +1,97 @@
+package it.gdorsi.service.chat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.vectorstore.QuestionAnswerAdvisor;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.document.Document;
+
+import it.gdorsi.dao.CachedAnswer;
+
+@ExtendWith(MockitoExtension.class)
+class SemanticCacheAdvisorTest {
+
+    @Mock
+    private SemanticResponseCache cache;
+
+    @Mock
+    private CallAdvisorChain chain;
+
+    private ChatClientRequest request(Map<String, Object> context) {
+        return new ChatClientRequest(new Prompt("Was kostet Vertrag 4711?"), new HashMap<>(context));
+    }
+
+    @Test
+    void ohneFrageParameterInaktiv() {
+        ChatClientRequest request = request(Map.of());
+        ChatClientResponse response = new ChatClientResponse(null, Map.of());
+        when(chain.nextCall(request)).thenReturn(response);
+
+        assertSame(response, new SemanticCacheAdvisor(cache).adviseCall(request, chain));
+        verifyNoInteractions(cache);
+    }
+
+    @Test
+    void trefferUeberspringtRetrievalUndModell() {
+        CachedAnswer hit = new CachedAnswer(1L, "was kostet vertrag 4711", "100 Euro", List.of("file:vertrag.pdf"),
+                0.98, LocalDateTime.now());
+        when(cache.lookup("admin-chat:Deutsch", "Was kostet Vertrag 4711?")).thenReturn(Optional.of(hit));
+
+        ChatClientResponse response = new SemanticCacheAdvisor(cache).adviseCall(request(Map.of(
+                SemanticCacheAdvisor.QUESTION, "Was kostet Vertrag 4711?",
+                SemanticCacheAdvisor.SCOPE, "admin-chat:Deutsch")), chain);
+
+        assertEquals("100 Euro", response.chatResponse().getResult().getOutput().getText());
+        assertSame(hit, response.context().get(SemanticCacheAdvisor.HIT));
+        verify(chain, never()).nextCall(any());
+    }
+
+    @Test
+    void missSpeichertAntwortMitQuellen() {
+        when(cache.lookup(anyString(), anyString())).thenReturn(Optional.empty());
+        ChatResponse chatResponse = new ChatResponse(List.of(new Generation(new AssistantMessage("100 Euro"))));
+        List<Document> retrieved = List.of(
+                new Document("a", "Chunk", Map.of("file_name", "vertrag.pdf")),
+                new Document("b", "<xml/>", Map.of("xml_id", "42")));
+        when(chain.nextCall(any())).thenReturn(
+                new ChatClientResponse(chatResponse, Map.of(QuestionAnswerAdvisor.RETRIEVED_DOCUMENTS, retrieved)));
+
+        new SemanticCacheAdvisor(cache).adviseCall(request(Map.of(
+                SemanticCacheAdvisor.QUESTION, "Was kostet Vertrag 4711?",
+                SemanticCacheAdvisor.SCOPE, "admin-chat:Deutsch")), chain);
+
+        verify(cache).store(eq("admin-chat:Deutsch"), eq("Was kostet Vertrag 4711?"), eq("100 Euro"),
+                eq(Set.of("file:vertrag.pdf", "xml:42")));
+    }
+
+    @Test
+    void normalisierungIgnoriertGrossschreibungUndLeerzeichen() {
+        assertEquals(SemanticResponseCache.normalize("Was  kostet Vertrag X? "),
+                SemanticResponseCache.normalize("was kostet vertrag x?"));
+    }
+}
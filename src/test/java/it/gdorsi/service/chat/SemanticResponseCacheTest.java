@@ -0,0 +1,48 @@
+package it.gdorsi.service.chat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.embedding.EmbeddingModel;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.gdorsi.config.SemanticCacheProperties;
+import it.gdorsi.repository.SemanticCacheRepository;
+
+class SemanticResponseCacheTest {
+
+    private final SemanticCacheRepository repository = mock(SemanticCacheRepository.class);
+    private final EmbeddingModel embeddingModel = mock(EmbeddingModel.class);
+    private final SemanticResponseCache cache = new SemanticResponseCache(repository, embeddingModel,
+            new SemanticCacheProperties(true, 0.95, Duration.ofDays(7)), new SimpleMeterRegistry());
+
+    @Test
+    void antwortOhneQuellenWirdNichtGespeichert() {
+        cache.store("pdf", "Was kostet Vertrag 4711?", "Dazu finde ich nichts.", Set.of());
+
+        // keine Quelle -> keine Invalidierung träfe sie, also gar nicht erst cachen
+        verifyNoInteractions(repository, embeddingModel);
+    }
+
+    @Test
+    void antwortMitQuellenWirdGespeichert() {
+        when(embeddingModel.embed(anyString())).thenReturn(new float[]{1f});
+
+        cache.store("pdf", "Was kostet Vertrag 4711?", "120 Euro.", List.of("file:vertrag.pdf"));
+
+        verify(repository).save(eq("pdf"), anyString(), eq("Was kostet Vertrag 4711?"), eq("120 Euro."), any(),
+                eq(List.of("file:vertrag.pdf")));
+        verify(repository, never()).deleteBySources(any());
+    }
+}
@@ -0,0 +1,100 @@
+package it.gdorsi.service.embedding;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.gdorsi.repository.EmbeddingCacheRepository;
+
+@ExtendWith(MockitoExtension.class)
+class CachingEmbeddingModelTest {
+
+    @Mock
+    private EmbeddingModel delegate;
+
+    @Mock
+    private EmbeddingCacheRepository cacheRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private CachingEmbeddingModel cachingModel;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cachingModel = new CachingEmbeddingModel(delegate, cacheRepository, "mxbai-embed-large", 3, 100, meterRegistry);
+    }
+
+    @Test
+    void zweiterAufrufKommtAusDemSpeicher() {
+        when(cacheRepository.findByKeys(anyList())).thenReturn(Map.of());
+        when(delegate.call(any(EmbeddingRequest.class)))
+                .thenReturn(new EmbeddingResponse(List.of(new Embedding(new float[]{1f, 2f, 3f}, 0))));
+
+        float[] first = cachingModel.embed("Hallo Welt");
+        float[] second = cachingModel.embed("Hallo Welt");
+
+        assertArrayEquals(first, second);
+        verify(delegate, times(1)).call(any(EmbeddingRequest.class));
+        assertEquals(1.0, meterRegistry.get("embedding.cache.misses").counter().count());
+        assertEquals(1.0, meterRegistry.get("embedding.cache.hits").tag("tier", "memory").counter().count());
+    }
+
+    @Test
+    void nurMissesGehenAnDasModellUndReihenfolgeBleibt() {
+        String keyA = cachingModel.cacheKey("mxbai-embed-large", "A");
+        when(cacheRepository.findByKeys(anyList())).thenReturn(Map.of(keyA, new float[]{1f, 1f, 1f}));
+        when(delegate.call(any(EmbeddingRequest.class)))
+                .thenReturn(new EmbeddingResponse(List.of(new Embedding(new float[]{2f, 2f, 2f}, 0))));
+
+        List<float[]> vectors = cachingModel.embed(List.of("A", "B", "B"));
+
+        assertArrayEquals(new float[]{1f, 1f, 1f}, vectors.get(0));
+        assertArrayEquals(new float[]{2f, 2f, 2f}, vectors.get(1));
+        assertArrayEquals(new float[]{2f, 2f, 2f}, vectors.get(2));
+
+        ArgumentCaptor<EmbeddingRequest> captor = ArgumentCaptor.forClass(EmbeddingRequest.class);
+        verify(delegate).call(captor.capture());
+        assertEquals(List.of("B"), captor.getValue().getInstructions());
+        verify(cacheRepository).saveAll(any(), any(), any(Integer.class));
+        assertEquals(1.0, meterRegistry.get("embedding.cache.hits").tag("tier", "database").counter().count());
+    }
+
+    @Test
+    void ohneRepositoryNurInMemory() {
+        CachingEmbeddingModel memoryOnly = new CachingEmbeddingModel(delegate, null, "mxbai-embed-large", 3, 100, meterRegistry);
+        when(delegate.call(any(EmbeddingRequest.class)))
+                .thenReturn(new EmbeddingResponse(List.of(new Embedding(new float[]{1f, 2f, 3f}, 0))));
+
+        memoryOnly.embed("Text");
+        memoryOnly.embed("Text");
+
+        verify(delegate, times(1)).call(any(EmbeddingRequest.class));
+        verify(cacheRepository, never()).findByKeys(anyList());
+    }
+
+    @Test
+    void keyHaengtVomModellAb() {
+        assertNotEquals(cachingModel.cacheKey("mxbai-embed-large", "Text"), cachingModel.cacheKey("nomic-embed-text", "Text"));
+    }
+}
@@ -0,0 +1,48 @@
+package it.gdorsi.service.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+class HybridVectorStoreTest {
+
+    @Test
+    void trefferInBeidenListenGewinnen() {
+        List<Document> vector = List.of(doc("a", 0.9), doc("b", 0.8), doc("c", 0.7));
+        List<Document> lexical = List.of(doc("c", 0.7), doc("d", 0.5));
+
+        List<Document> result = HybridVectorStore.fuse(vector, lexical, 60, 4);
+
+        assertEquals(List.of("c", "a", "b", "d"), result.stream().map(Document::getId).toList());
+        Document c = result.get(0);
+        assertEquals(1.0 / 63 + 1.0 / 61, (double) c.getMetadata().get(HybridVectorStore.HYBRID_SCORE), 1e-12);
+        assertEquals(3, c.getMetadata().get(HybridVectorStore.VECTOR_RANK));
+        assertEquals(1, c.getMetadata().get(HybridVectorStore.LEXICAL_RANK));
+        // Score bleibt die Cosinus-Ähnlichkeit
+        assertEquals(0.7, c.getScore(), 1e-12);
+    }
+
+    @Test
+    void gleicherRangEntscheidetUeberAehnlichkeit() {
+        List<Document> result = HybridVectorStore.fuse(List.of(doc("a", 0.6)), List.of(doc("b", 0.8)), 60, 2);
+
+        assertEquals(List.of("b", "a"), result.stream().map(Document::getId).toList());
+        assertFalse(result.get(0).getMetadata().containsKey(HybridVectorStore.VECTOR_RANK));
+    }
+
+    @Test
+    void schneidetAufTopK() {
+        List<Document> result = HybridVectorStore.fuse(List.of(doc("a", 0.9), doc("b", 0.8)), List.of(), 60, 1);
+
+        assertEquals(1, result.size());
+        assertEquals("a", result.get(0).getId());
+    }
+
+    private static Document doc(String id, double score) {
+        return Document.builder().id(id).text("Text " + id).score(score).build();
+    }
+}
@@ -0,0 +1,73 @@
+package it.gdorsi.service.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import it.gdorsi.config.VectorIndexProperties;
+import it.gdorsi.config.VectorIndexProperties.Hnsw;
+import it.gdorsi.config.VectorIndexProperties.IndexType;
+import it.gdorsi.config.VectorIndexProperties.Ivfflat;
+import it.gdorsi.repository.HybridSearchRepository;
+
+class TunedVectorStoreTest {
+
+    private final VectorStore delegate = mock(VectorStore.class);
+    private final HybridSearchRepository repository = mock(HybridSearchRepository.class);
+    private final EmbeddingModel embeddingModel = mock(EmbeddingModel.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+    private TunedVectorStore store(IndexType type) {
+        VectorIndexProperties properties = new VectorIndexProperties(true, type, new Hnsw(16, 64, 40), new Ivfflat(100, 10));
+        return new TunedVectorStore(delegate, repository, embeddingModel,
+                new VectorSearchTuning(jdbcTemplate, transactionManager, properties));
+    }
+
+    @Test
+    void embeddetVorDerTransaktion() {
+        float[] embedding = {0.1f, 0.2f};
+        List<Document> treffer = List.of(Document.builder().id("a").text("Text a").score(0.9).build());
+        when(embeddingModel.embed("Kündigungsfrist")).thenReturn(embedding);
+        when(repository.nearest(embedding, 4, 0.5, null)).thenReturn(treffer);
+
+        List<Document> result = store(IndexType.HNSW).similaritySearch(
+                SearchRequest.builder().query("Kündigungsfrist").topK(4).similarityThreshold(0.5).build());
+
+        assertEquals(treffer, result);
+        InOrder reihenfolge = inOrder(embeddingModel, transactionManager, jdbcTemplate, repository);
+        reihenfolge.verify(embeddingModel).embed("Kündigungsfrist");
+        reihenfolge.verify(transactionManager).getTransaction(any());
+        reihenfolge.verify(jdbcTemplate).execute("SET LOCAL hnsw.ef_search = 40");
+        reihenfolge.verify(repository).nearest(eq(embedding), eq(4), eq(0.5), any());
+        verify(delegate, never()).similaritySearch(any(SearchRequest.class));
+    }
+
+    @Test
+    void ohneIndexSuchtDerPgVectorStoreSelbst() {
+        SearchRequest request = SearchRequest.builder().query("Kündigungsfrist").topK(4).build();
+
+        store(IndexType.NONE).similaritySearch(request);
+
+        verify(delegate).similaritySearch(request);
+        verify(embeddingModel, never()).embed(anyString());
+        verify(transactionManager, never()).getTransaction(any());
+    }
+}
@@ -0,0 +1,43 @@
+package it.gdorsi.service.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import it.gdorsi.config.VectorIndexProperties;
+import it.gdorsi.config.VectorIndexProperties.Hnsw;
+import it.gdorsi.config.VectorIndexProperties.IndexType;
+import it.gdorsi.config.VectorIndexProperties.Ivfflat;
+
+class VectorSearchTuningTest {
+
+    private VectorSearchTuning tuning(IndexType type) {
+        VectorIndexProperties properties = new VectorIndexProperties(true, type, new Hnsw(16, 64, 40), new Ivfflat(100, 10));
+        return new VectorSearchTuning(mock(JdbcTemplate.class), mock(PlatformTransactionManager.class), properties);
+    }
+
+    @Test
+    void hnswNutztKonfiguriertesEfSearch() {
+        assertEquals("SET LOCAL hnsw.ef_search = 40", tuning(IndexType.HNSW).settingFor(4));
+    }
+
+    @Test
+    void hnswHebtEfSearchFuerGrossesTopKAn() {
+        assertEquals("SET LOCAL hnsw.ef_search = 200", tuning(IndexType.HNSW).settingFor(200));
+        assertEquals("SET LOCAL hnsw.ef_search = 1000", tuning(IndexType.HNSW).settingFor(10000));
+    }
+
+    @Test
+    void ivfflatSetztProbes() {
+        assertEquals("SET LOCAL ivfflat.probes = 10", tuning(IndexType.IVFFLAT).settingFor(4));
+    }
+
+    @Test
+    void ohneIndexKeinSetting() {
+        assertNull(tuning(IndexType.NONE).settingFor(4));
+    }
+}
@@ -0,0 +1,73 @@
+package it.gdorsi.service.ingest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+
+import it.gdorsi.config.IngestionProperties;
+import it.gdorsi.repository.VectorStoreChunkRepository;
+
+class EmbeddingPipelineTest {
+
+    private final EmbeddingModel embeddingModel = mock(EmbeddingModel.class);
+    private final VectorStoreChunkRepository chunkRepository = mock(VectorStoreChunkRepository.class);
+
+    @Test
+    void schneidetInBatchesUndSchreibtAlles() {
+        AtomicInteger calls = new AtomicInteger();
+        when(embeddingModel.embed(anyList())).thenAnswer(inv -> {
+            calls.incrementAndGet();
+            List<String> texts = inv.getArgument(0);
+            return texts.stream().map(t -> new float[]{t.length()}).toList();
+        });
+        List<List<Document>> written = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(inv -> {
+            written.add(inv.getArgument(0));
+            return null;
+        }).when(chunkRepository).upsert(anyList(), anyList());
+
+        EmbeddingPipeline pipeline = new EmbeddingPipeline(embeddingModel, chunkRepository, new IngestionProperties(3, 2));
+        List<Document> docs = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            docs.add(new Document("Chunk " + i));
+        }
+
+        EmbeddingPipeline.Result result = pipeline.embedAndStore(docs);
+
+        assertEquals(10, result.writtenChunks());
+        assertEquals(4, result.batches());
+        assertEquals(4, calls.get());
+        assertEquals(10, written.stream().mapToInt(List::size).sum());
+    }
+
+    @Test
+    void leereListeMachtNichts() {
+        EmbeddingPipeline pipeline = new EmbeddingPipeline(embeddingModel, chunkRepository, new IngestionProperties(3, 2));
+
+        assertEquals(0, pipeline.embedAndStore(List.of()).writtenChunks());
+    }
+
+    @Test
+    void fehlerImEmbeddingBrichtAb() {
+        when(embeddingModel.embed(anyList())).thenThrow(new IllegalStateException("Ollama weg"));
+        EmbeddingPipeline pipeline = new EmbeddingPipeline(embeddingModel, chunkRepository, new IngestionProperties(2, 2));
+
+        assertThrows(IllegalStateException.class,
+                () -> pipeline.embedAndStore(List.of(new Document("a"), new Document("b"), new Document("c"))));
+        verify(embeddingModel, atLeastOnce()).embed(anyList());
+    }
+}
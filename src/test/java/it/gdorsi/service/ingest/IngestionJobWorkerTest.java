@@ -0,0 +1,85 @@
+package it.gdorsi.service.ingest;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.core.io.Resource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import it.gdorsi.config.IngestionJobProperties;
+import it.gdorsi.dao.IngestionJob;
+import it.gdorsi.dao.PdfIngestResult;
+import it.gdorsi.repository.IngestionJobRepository;
+import it.gdorsi.service.PdfIngestionService;
+
+class IngestionJobWorkerTest {
+
+    private final IngestionJobRepository jobRepository = mock(IngestionJobRepository.class);
+    private final PdfIngestionService ingestionService = mock(PdfIngestionService.class);
+    private final IngestionJobProperties properties = new IngestionJobProperties(1, 3, Duration.ofSeconds(5), Duration.ofSeconds(2),
+            Duration.ofMinutes(5), Duration.ofMinutes(1));
+    private final IngestionJobWorker worker = new IngestionJobWorker(jobRepository, ingestionService, properties);
+
+    private final String owner = (String) ReflectionTestUtils.getField(worker, "owner");
+
+    private final IngestionJob job = new IngestionJob(7L, "vertrag.pdf", IngestionJob.Status.RUNNING, 1, 3, null,
+            null, null, null, null, null, null, null, null, null, null, null);
+
+    @Test
+    void erfolgreicherJobWirdAbgeschlossen() {
+        PdfIngestResult result = new PdfIngestResult("vertrag.pdf", 3, 3, 0, 0, 100, 10, 60, 30);
+        when(jobRepository.findContent(7L)).thenReturn(new byte[]{1, 2, 3});
+        when(ingestionService.loadPdf(any(Resource.class))).thenReturn(result);
+        when(jobRepository.markDone(7L, owner, result)).thenReturn(true);
+
+        worker.process(job);
+
+        verify(jobRepository).markDone(7L, owner, result);
+        verify(jobRepository, never()).markFailed(eq(7L), any(), any(), any());
+    }
+
+    @Test
+    void verloreneLeaseWirdNichtAlsFehlerVerbucht() {
+        PdfIngestResult result = new PdfIngestResult("vertrag.pdf", 3, 3, 0, 0, 100, 10, 60, 30);
+        when(jobRepository.findContent(7L)).thenReturn(new byte[]{1, 2, 3});
+        when(ingestionService.loadPdf(any(Resource.class))).thenReturn(result);
+        // ein anderer Worker hat den Job nach abgelaufener Lease übernommen
+        when(jobRepository.markDone(7L, owner, result)).thenReturn(false);
+
+        worker.process(job);
+
+        verify(jobRepository, never()).markFailed(eq(7L), any(), any(), any());
+    }
+
+    @Test
+    void fehlerGehtMitBackoffZurueck() {
+        when(jobRepository.findContent(7L)).thenReturn(new byte[]{1});
+        when(ingestionService.loadPdf(any(Resource.class))).thenThrow(new RuntimeException("Ollama nicht erreichbar"));
+
+        worker.process(job);
+
+        verify(jobRepository).markFailed(7L, owner, "Ollama nicht erreichbar", Duration.ofSeconds(5));
+    }
+
+    @Test
+    void verlaengertNurEigeneLeases() {
+        worker.onStartup();
+        worker.poll();
+        worker.renewLeases();
+
+        ArgumentCaptor<String> claimOwner = ArgumentCaptor.forClass(String.class);
+        verify(jobRepository).claim(eq(1), claimOwner.capture(), eq(Duration.ofMinutes(5)));
+        verify(jobRepository).renewLeases(claimOwner.getValue(), Duration.ofMinutes(5));
+        // beim Start und bei jeder Verlängerung: nur abgelaufene Leases zurück in die Queue
+        verify(jobRepository, times(2)).requeueExpired();
+    }
+}
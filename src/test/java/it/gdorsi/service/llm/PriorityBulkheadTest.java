@@ -0,0 +1,82 @@
+package it.gdorsi.service.llm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.gdorsi.config.LlmBulkheadProperties.Limits;
+
+class PriorityBulkheadTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void volleWarteschlangeLehntSofortAb() {
+        PriorityBulkhead bulkhead = new PriorityBulkhead("chat", new Limits(1, 0, Duration.ofSeconds(5)), registry);
+        bulkhead.acquire();
+
+        assertThrows(LlmBusyException.class, bulkhead::acquire);
+        assertEquals(1.0, registry.get("llm.bulkhead.rejected").tag("reason", "queue_full").counter().count());
+    }
+
+    @Test
+    void timeoutWennKeinPermitFreiWird() {
+        PriorityBulkhead bulkhead = new PriorityBulkhead("chat", new Limits(1, 5, Duration.ofMillis(50)), registry);
+        bulkhead.acquire();
+
+        assertThrows(LlmBusyException.class, bulkhead::acquire);
+        assertEquals(0, bulkhead.queueDepth(LlmPriority.INTERACTIVE));
+        assertEquals(1.0, registry.get("llm.bulkhead.rejected").tag("reason", "timeout").counter().count());
+    }
+
+    @Test
+    void interaktivVorHintergrund() throws Exception {
+        PriorityBulkhead bulkhead = new PriorityBulkhead("embedding", new Limits(1, 10, Duration.ofSeconds(5)), registry);
+        List<LlmPriority> order = new CopyOnWriteArrayList<>();
+        bulkhead.acquire();
+
+        Thread background = Thread.ofVirtual().start(() -> {
+            bulkhead.acquire(LlmPriority.BACKGROUND);
+            order.add(LlmPriority.BACKGROUND);
+            bulkhead.release();
+        });
+        awaitQueued(bulkhead, LlmPriority.BACKGROUND);
+        Thread interactive = Thread.ofVirtual().start(() -> {
+            bulkhead.acquire(LlmPriority.INTERACTIVE);
+            order.add(LlmPriority.INTERACTIVE);
+            bulkhead.release();
+        });
+        awaitQueued(bulkhead, LlmPriority.INTERACTIVE);
+
+        bulkhead.release();
+        background.join();
+        interactive.join();
+
+        assertEquals(List.of(LlmPriority.INTERACTIVE, LlmPriority.BACKGROUND), order);
+        assertEquals(0, bulkhead.active());
+    }
+
+    @Test
+    void prioritaetWirdVererbt() throws Exception {
+        LlmPriority inherited = LlmPriority.BACKGROUND.call(() -> {
+            LlmPriority[] seen = new LlmPriority[1];
+            Thread.ofVirtual().start(() -> seen[0] = LlmPriority.current()).join();
+            return seen[0];
+        });
+
+        assertEquals(LlmPriority.BACKGROUND, inherited);
+        assertEquals(LlmPriority.INTERACTIVE, LlmPriority.current());
+    }
+
+    private static void awaitQueued(PriorityBulkhead bulkhead, LlmPriority lane) throws InterruptedException {
+        for (int i = 0; i < 200 && bulkhead.queueDepth(lane) == 0; i++) {
+            Thread.sleep(5);
+        }
+    }
+}
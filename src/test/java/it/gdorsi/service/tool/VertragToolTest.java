@@ -0,0 +1,56 @@
+package it.gdorsi.service.tool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import it.gdorsi.config.VectorIndexProperties;
+import it.gdorsi.config.VectorIndexProperties.Hnsw;
+import it.gdorsi.config.VectorIndexProperties.IndexType;
+import it.gdorsi.config.VectorIndexProperties.Ivfflat;
+import it.gdorsi.repository.VertragRepository;
+import it.gdorsi.repository.model.Vertrag;
+import it.gdorsi.repository.model.VertragStatus;
+import it.gdorsi.service.index.VectorSearchTuning;
+
+class VertragToolTest {
+
+    private final VertragRepository repository = mock(VertragRepository.class);
+    private final EmbeddingModel embeddingModel = mock(EmbeddingModel.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final VertragTool tool = new VertragTool(repository, embeddingModel, new VectorSearchTuning(jdbcTemplate,
+            transactionManager, new VectorIndexProperties(true, IndexType.HNSW, new Hnsw(16, 64, 40), new Ivfflat(100, 10))));
+
+    @Test
+    void aehnlicheVertraegeMitGesetztemEfSearch() {
+        float[] embedding = {0.1f, 0.2f};
+        Vertrag vertrag = new Vertrag(1L, "V-4711", "Müller GmbH", LocalDate.of(2026, 1, 1), null,
+                new BigDecimal("120.00"), "Wartung", VertragStatus.AKTIV, null, embedding);
+        when(embeddingModel.embed("Wartungsvertrag Müller")).thenReturn(embedding);
+        when(repository.findSimilarContracts(embedding, 3)).thenReturn(List.of(vertrag));
+
+        String result = tool.findSimilarContracts("Wartungsvertrag Müller", 3);
+
+        assertEquals("V-4711 - Müller GmbH (Wartung, AKTIV): 120.00", result);
+        // erst embedden, dann SET LOCAL und Suche in derselben Transaktion
+        InOrder reihenfolge = inOrder(embeddingModel, transactionManager, jdbcTemplate, repository);
+        reihenfolge.verify(embeddingModel).embed("Wartungsvertrag Müller");
+        reihenfolge.verify(transactionManager).getTransaction(any());
+        reihenfolge.verify(jdbcTemplate).execute("SET LOCAL hnsw.ef_search = 40");
+        reihenfolge.verify(repository).findSimilarContracts(embedding, 3);
+        reihenfolge.verify(transactionManager).commit(any());
+    }
+}
@@ -0,0 +1,36 @@
+package it.gdorsi.service.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+class ContentHashTest {
+
+    @Test
+    void gleicherInhaltGleicheUuid() {
+        assertEquals(ContentHash.uuid("vertrag.pdf", "Absatz 1"), ContentHash.uuid("vertrag.pdf", "Absatz 1"));
+    }
+
+    @Test
+    void teileWerdenGetrennt() {
+        assertNotEquals(ContentHash.sha256Hex("ab", "c"), ContentHash.sha256Hex("a", "bc"));
+    }
+
+    @Test
+    void uuidIstVersion8() {
+        UUID uuid = ContentHash.uuid("vertrag.pdf", "Absatz 1");
+
+        assertEquals(8, uuid.version());
+        assertEquals(2, uuid.variant());
+    }
+
+    @Test
+    void hashCodeKollisionIstKeineUuidKollision() {
+        // "Aa" und "BB" haben denselben String.hashCode
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        assertNotEquals(ContentHash.uuid("x.pdf", "Aa"), ContentHash.uuid("x.pdf", "BB"));
+    }
+}
@@ -0,0 +1,116 @@
+package it.gdorsi.service.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import it.gdorsi.repository.model.XmlDokument;
+import it.gdorsi.repository.model.XmlWoerterbuch;
+
+class DeflateCodecTest {
+
+    @Test
+    void hinUndZurueckOhneWoerterbuch() {
+        String xml = "<autor name=\"Jürgen Größe\">€ und Umlaute</autor>";
+
+        assertEquals(xml, DeflateCodec.entpacke(DeflateCodec.packe(xml, null), null));
+    }
+
+    @Test
+    void hinUndZurueckMitWoerterbuch() {
+        byte[] woerterbuch = DeflateCodec.trainiere(beispiele(20), 4096);
+        String xml = bestellung(99);
+
+        assertEquals(xml, DeflateCodec.entpacke(DeflateCodec.packe(xml, woerterbuch), woerterbuch));
+    }
+
+    @Test
+    void woerterbuchHilftKleinenDokumenten() {
+        byte[] woerterbuch = DeflateCodec.trainiere(beispiele(20), 4096);
+        String xml = bestellung(42);
+
+        int ohne = DeflateCodec.packe(xml, null).length;
+        int mit = DeflateCodec.packe(xml, woerterbuch).length;
+
+        assertTrue(mit < ohne * 0.7, "mit " + mit + " Bytes, ohne " + ohne + " Bytes");
+    }
+
+    @Test
+    void woerterbuchHaeltBudgetEin() {
+        byte[] woerterbuch = DeflateCodec.trainiere(beispiele(50), 200);
+
+        assertTrue(woerterbuch.length <= 200);
+        assertTrue(woerterbuch.length > 0);
+    }
+
+    @Test
+    void streamendEntpacken() throws IOException {
+        StringBuilder xml = new StringBuilder("<katalog>");
+        for (int i = 0; i < 5000; i++) {
+            xml.append(bestellung(i));
+        }
+        xml.append("</katalog>");
+        byte[] komprimiert = DeflateCodec.packe(xml.toString(), null);
+
+        StringWriter text = new StringWriter();
+        try (Reader reader = DeflateCodec.oeffne(komprimiert, null)) {
+            reader.transferTo(text);
+        }
+
+        assertEquals(xml.toString(), text.toString());
+        assertTrue(komprimiert.length < xml.length() / 5);
+    }
+
+    @Test
+    void unbekanntesFormat() {
+        byte[] text = "<a/>".getBytes(StandardCharsets.UTF_8);
+
+        assertThrows(IllegalArgumentException.class, () -> DeflateCodec.oeffne(text, null));
+    }
+
+    @Test
+    void entityEntpacktTransparent() {
+        byte[] daten = DeflateCodec.trainiere(beispiele(10), 4096);
+        XmlWoerterbuch woerterbuch = new XmlWoerterbuch("bestellung", daten, 10);
+        String xml = bestellung(7);
+        XmlDokument dokument = new XmlDokument("b.xml", xml, null, null);
+
+        dokument.setInhaltKomprimiert(DeflateCodec.packe(xml, daten), woerterbuch, xml);
+
+        assertTrue(dokument.isKomprimiert());
+        assertEquals(xml, dokument.getInhalt());
+
+        dokument.setInhalt("<neu/>");
+        assertEquals("<neu/>", dokument.getInhalt());
+        assertFalse(dokument.isKomprimiert());
+    }
+
+    private static List<String> beispiele(int anzahl) {
+        List<String> beispiele = new ArrayList<>();
+        for (int i = 0; i < anzahl; i++) {
+            beispiele.add(bestellung(1000 + i));
+        }
+        return beispiele;
+    }
+
+    private static String bestellung(int nr) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<bestellung xmlns=\"urn:shop:bestellung\" nummer=\"" + nr + "\">"
+                + "<kunde><name>Kunde " + nr + "</name><adresse><strasse>Hauptstraße " + nr % 50
+                + "</strasse><ort>Berlin</ort><land>DE</land></adresse></kunde>"
+                + "<position artikel=\"A-" + nr % 7 + "\" menge=\"" + (nr % 3 + 1) + "\"><preis waehrung=\"EUR\">"
+                + (nr % 100) + ".99</preis></position>"
+                + "<zahlung art=\"Rechnung\"><frist>30 Tage</frist></zahlung>"
+                + "</bestellung>";
+    }
+}
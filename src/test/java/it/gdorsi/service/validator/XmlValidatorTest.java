@@ -9,6 +9,9 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -234,6 +237,72 @@ class XmlValidatorTest {
         }
     }
 
+    @Nested
+    @DisplayName("Schema-Cache und Massenvalidierung")
+    class SchemaCacheTests {
+
+        private static final String SCHEMA = """
+                <xs:schema xmlns:xs="http://www.w3.org/2001/XMLSchema">
+                    <xs:element name="wert" type="xs:%s"/>
+                </xs:schema>
+                """;
+
+        @Test
+        @DisplayName("Geänderte XSD wird neu kompiliert")
+        void geaenderte_xsd_wird_neu_kompiliert() throws Exception {
+            Path xsd = tempDir.resolve("wert.xsd");
+            Files.writeString(xsd, SCHEMA.formatted("int"));
+
+            assertTrue(xmlValidator.validateContent("<wert>42</wert>", xsd.toFile()).gueltig());
+            assertFalse(xmlValidator.validateContent("<wert>abc</wert>", xsd.toFile()).gueltig());
+
+            Files.writeString(xsd, SCHEMA.formatted("string"));
+            Files.setLastModifiedTime(xsd, FileTime.fromMillis(
+                    Files.getLastModifiedTime(xsd).toMillis() + 5_000));
+
+            assertTrue(xmlValidator.validateContent("<wert>abc</wert>", xsd.toFile()).gueltig());
+        }
+
+        @Test
+        @DisplayName("Schema-Fehler und Parse-Fehler werden unterschieden")
+        void schema_und_parse_fehler_unterscheiden() {
+            XmlValidationResult schemaFehler = xmlValidator.validateContent(
+                    "<vertrag><kundeName>Nur Kunde</kundeName></vertrag>", xsdDatei);
+            XmlValidationResult parseFehler = xmlValidator.validateContent("<vertrag <kundeName/>", xsdDatei);
+
+            assertTrue(schemaFehler.fehlermeldung().startsWith("XSD Validierungsfehler in Zeile 1"),
+                    schemaFehler.fehlermeldung());
+            assertTrue(parseFehler.fehlermeldung().startsWith("XML Parse Fehler"), parseFehler.fehlermeldung());
+        }
+
+        @Test
+        @DisplayName("DOCTYPE (XXE) wird abgelehnt")
+        void doctype_wird_abgelehnt() {
+            XmlValidationResult ergebnis = xmlValidator.validateContent(
+                    "<!DOCTYPE r [<!ENTITY x SYSTEM \"file:///etc/passwd\">]><r>&x;</r>");
+
+            assertFalse(ergebnis.gueltig());
+        }
+
+        @Test
+        @DisplayName("Viele Dokumente parallel, Ergebnisse in Eingabereihenfolge")
+        void massenvalidierung_parallel() throws Exception {
+            String gueltig = Files.readString(Path.of(xmlXsdGueltig.toURI()));
+            String ungueltig = Files.readString(Path.of(xmlXsdUngueltig.toURI()));
+            List<String> inhalte = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                inhalte.add(i % 3 == 0 ? ungueltig : gueltig);
+            }
+
+            List<XmlValidationResult> ergebnisse = xmlValidator.validateContents(inhalte, xsdDatei);
+
+            assertEquals(200, ergebnisse.size());
+            for (int i = 0; i < 200; i++) {
+                assertEquals(i % 3 != 0, ergebnisse.get(i).gueltig(), "Dokument " + i);
+            }
+        }
+    }
+
     @Nested
     @DisplayName("XmlValidationResult Tests")
     class XmlValidationResultTests {
@@ -0,0 +1,110 @@
+package it.gdorsi.service.xml;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import it.gdorsi.config.XPathProperties;
+
+class XPathEngineTest {
+
+    private static final String KATALOG = """
+            <k:katalog xmlns:k="urn:katalog">
+              <k:buch id="1" jahr="1808"><k:titel>Faust</k:titel></k:buch>
+              <k:buch id="2" jahr="1774"><k:titel>Werther</k:titel></k:buch>
+              <k:buch id="3" jahr="1795"><k:titel>Wilhelm Meister</k:titel></k:buch>
+            </k:katalog>
+            """;
+
+    private final XPathEngine engine = new XPathEngine(new XmlAnalyzer(), new XPathProperties(8, 4, 100_000, 3));
+
+    @Test
+    void wertetPraedikateMitPraefixenDesDokumentsAus() {
+        XmlAnalyzer.Extrakt extrakt = engine.evaluate(1L, KATALOG, "/k:katalog/k:buch[@jahr > 1790]/k:titel", 10);
+
+        assertEquals(2, extrakt.gesamt());
+        assertEquals(List.of("<k:titel xmlns:k=\"urn:katalog\">Faust</k:titel>",
+                "<k:titel xmlns:k=\"urn:katalog\">Wilhelm Meister</k:titel>"), extrakt.elemente());
+    }
+
+    @Test
+    void zahlenStringsUndAttributeAlsEinzelneEintraege() {
+        assertEquals(List.of("3"), engine.evaluate(1L, KATALOG, "count(//k:buch)", 10).elemente());
+        assertEquals(List.of("Werther"), engine.evaluate(1L, KATALOG, "string(//k:buch[@id='2']/k:titel)", 10).elemente());
+        assertEquals(List.of("id=\"1\"", "id=\"2\""), engine.evaluate(1L, KATALOG, "//k:buch/@id", 2).elemente());
+    }
+
+    @Test
+    void limitBegrenztNurDieAusgabe() {
+        XmlAnalyzer.Extrakt extrakt = engine.evaluate(1L, KATALOG, "//k:buch", 1);
+
+        assertEquals(3, extrakt.gesamt());
+        assertEquals(1, extrakt.elemente().size());
+    }
+
+    @Test
+    void neueVersionDesDokumentsWirdNeuGeparst() {
+        assertEquals(List.of("1"), engine.evaluate(5L, "<r><a/></r>", "count(/r/a)", 10).elemente());
+        // gleiche xml_id, anderer Inhalt: der alte DOM-Baum darf nicht verwendet werden
+        assertEquals(List.of("2"), engine.evaluate(5L, "<r><a/><a/></r>", "count(/r/a)", 10).elemente());
+    }
+
+    @Test
+    void fehlerWerdenAlsIllegalArgumentGemeldet() {
+        IllegalArgumentException ausdruck = assertThrows(IllegalArgumentException.class,
+                () -> engine.evaluate(1L, KATALOG, "//k:buch[", 10));
+        assertTrue(ausdruck.getMessage().startsWith("Ungültiger XPath-Ausdruck"), ausdruck.getMessage());
+
+        IllegalArgumentException xml = assertThrows(IllegalArgumentException.class,
+                () -> engine.evaluate(2L, "<r><a></r>", "/r/a", 10));
+        assertTrue(xml.getMessage().startsWith("XML nicht wohlgeformt: Zeile 1"), xml.getMessage());
+    }
+
+    @Test
+    void doctypeWirdAbgelehnt() {
+        String xxe = "<!DOCTYPE r [<!ENTITY x SYSTEM \"file:///etc/passwd\">]><r>&x;</r>";
+
+        assertThrows(IllegalArgumentException.class, () -> engine.evaluate(3L, xxe, "/r", 10));
+    }
+
+    @Test
+    void nachfahrenNameLaeuftOhneDom() {
+        // "//item" geht über den StAX-Pfad - der findet auch Elemente im Default-Namespace
+        XmlAnalyzer.Extrakt extrakt = engine.evaluate(null, "<r xmlns=\"urn:x\"><item>A</item></r>", "//item", 10);
+
+        assertEquals(1, extrakt.gesamt());
+    }
+
+    @Test
+    void mehrereDokumenteParallelInQuellenreihenfolge() {
+        List<XmlQuelle> quellen = new ArrayList<>();
+        for (long id = 1; id <= 20; id++) {
+            quellen.add(new XmlQuelle(id, "doc-" + id + ".xml"));
+        }
+        Map<Long, String> inhalte = new java.util.HashMap<>();
+        for (long id = 1; id <= 20; id++) {
+            inhalte.put(id, id == 7 ? "<r>" : "<r>" + "<a/>".repeat((int) id) + "</r>");
+        }
+
+        List<XPathEngine.Treffer> treffer = engine.evaluateAll(quellen, inhalte::get, "count(/r/a)", 10);
+
+        assertEquals(20, treffer.size());
+        for (int i = 0; i < 20; i++) {
+            XPathEngine.Treffer t = treffer.get(i);
+            assertEquals(i + 1L, t.xmlId());
+            if (t.xmlId() == 7) {
+                assertNull(t.extrakt());
+                assertTrue(t.fehler().startsWith("XML nicht wohlgeformt"));
+            } else {
+                assertEquals(List.of(Long.toString(t.xmlId())), t.extrakt().elemente());
+            }
+        }
+    }
+}
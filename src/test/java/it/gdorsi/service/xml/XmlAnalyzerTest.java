@@ -0,0 +1,143 @@
+package it.gdorsi.service.xml;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Reader;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import it.gdorsi.dao.XmlAnalyse;
+
+class XmlAnalyzerTest {
+
+    private final XmlAnalyzer analyzer = new XmlAnalyzer();
+
+    @Test
+    void minifiziertesXmlWirdKorrektGezaehlt() {
+        XmlAnalyse analyse = analyzer.analyze(
+                "<?xml version=\"1.0\"?><k:katalog xmlns:k=\"urn:k\"><buch id=\"1\" lang=\"de\"><titel>A</titel></buch>"
+                        + "<buch id=\"2\"><titel>B</titel></buch><!-- Ende --></k:katalog>");
+
+        assertTrue(analyse.wohlgeformt());
+        assertTrue(analyse.deklaration());
+        assertEquals("k:katalog", analyse.rootElement());
+        assertEquals(5, analyse.elemente());
+        assertEquals(3, analyse.maxTiefe());
+        assertEquals(3, analyse.attribute());
+        assertEquals(1, analyse.kommentare());
+        assertEquals(1, analyse.zeilen());
+        assertEquals(Map.of("k", "urn:k"), analyse.namespaces());
+        assertEquals(2L, analyse.elementNamen().get("buch"));
+        assertEquals(2L, analyse.attributNamen().get("id"));
+        assertEquals(List.of("/k:katalog", "/k:katalog/buch", "/k:katalog/buch/titel"),
+                List.copyOf(analyse.pfade().keySet()));
+    }
+
+    @Test
+    void fehlerMitPositionUndVollstaendigerGroesse() {
+        String xml = "<a>\n<b>\n</a>\n" + "x".repeat(100);
+
+        XmlAnalyse analyse = analyzer.analyze(xml);
+
+        assertFalse(analyse.wohlgeformt());
+        assertTrue(analyse.fehler().startsWith("Zeile 3"), analyse.fehler());
+        assertEquals(xml.length(), analyse.zeichen());
+        assertEquals(4, analyse.zeilen());
+        assertFalse(analyse.deklaration());
+    }
+
+    @Test
+    void leererInhaltHatKeinRootElement() {
+        XmlAnalyse analyse = analyzer.analyze("   ");
+
+        assertFalse(analyse.wohlgeformt());
+        assertFalse(analyse.hatRootElement());
+    }
+
+    @Test
+    void grosseDokumenteLaufenOhneDomDurch() {
+        // ~50 MB, wird nur gestreamt
+        int elemente = 1_000_000;
+        Reader reader = new Reader() {
+            private final String item = "<item nr=\"1\">Inhalt mit etwas Text</item>";
+            private int position = -1;
+            private String aktuell = "<liste>";
+            private int offset;
+
+            @Override
+            public int read(char[] buffer, int off, int len) {
+                if (aktuell == null) {
+                    return -1;
+                }
+                int n = Math.min(len, aktuell.length() - offset);
+                aktuell.getChars(offset, offset + n, buffer, off);
+                offset += n;
+                if (offset == aktuell.length()) {
+                    position++;
+                    offset = 0;
+                    aktuell = position < elemente ? item : position == elemente ? "</liste>" : null;
+                }
+                return n;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        XmlAnalyse analyse = analyzer.analyze(reader);
+
+        assertTrue(analyse.wohlgeformt());
+        assertEquals(elemente + 1L, analyse.elemente());
+        assertEquals(elemente, analyse.elementNamen().get("item"));
+    }
+
+    @Test
+    void extrahiertElementeImStream() {
+        XmlAnalyzer.Extrakt extrakt = analyzer.extractElements(
+                "<r><item a=\"1\">One</item><x><item>Two &amp; <b>mehr</b></item></x><item/></r>", "item", 2);
+
+        assertEquals(3, extrakt.gesamt());
+        assertEquals(List.of("<item a=\"1\">One</item>", "<item>Two &amp; <b>mehr</b></item>"), extrakt.elemente());
+    }
+
+    @Test
+    void extraktionVonKaputtemXmlWirft() {
+        assertThrows(IllegalArgumentException.class, () -> analyzer.extractElements("<r><item>", "item", 5));
+    }
+
+    @Test
+    void kanonischerHashIgnoriertFormatierungPraefixeUndAttributreihenfolge() {
+        XmlAnalyse kompakt = analyzer.analyze("<k:katalog xmlns:k=\"urn:k\"><buch id=\"1\" typ=\"a\">Der  Titel</buch></k:katalog>");
+        XmlAnalyse formatiert = analyzer.analyze("""
+                <?xml version="1.0"?>
+                <!-- Kommentar -->
+                <x:katalog xmlns:x="urn:k">
+                    <buch typ="a" id="1">
+                        Der Titel
+                    </buch>
+                </x:katalog>
+                """);
+        XmlAnalyse anderer = analyzer.analyze("<k:katalog xmlns:k=\"urn:k\"><buch id=\"1\" typ=\"a\">Der Titel!</buch></k:katalog>");
+
+        assertEquals(64, kompakt.kanonischerHash().length());
+        assertEquals(kompakt.kanonischerHash(), formatiert.kanonischerHash());
+        assertNotEquals(kompakt.kanonischerHash(), anderer.kanonischerHash());
+        assertNull(analyzer.analyze("<r><a></r>").kanonischerHash());
+    }
+
+    @Test
+    void kanonischerHashTrenntTextUndElementgrenzen() {
+        assertNotEquals(analyzer.analyze("<r><a>xy</a></r>").kanonischerHash(),
+                analyzer.analyze("<r><a>x</a>y</r>").kanonischerHash());
+        assertNotEquals(analyzer.analyze("<r>a b</r>").kanonischerHash(),
+                analyzer.analyze("<r>ab</r>").kanonischerHash());
+    }
+}
@@ -0,0 +1,98 @@
+package it.gdorsi.service.xml;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import it.gdorsi.config.XmlChunkingProperties;
+
+class XmlChunkerTest {
+
+    private final XmlChunker chunker = new XmlChunker(new XmlChunkingProperties(60, 2000));
+
+    @Test
+    void kleinesDokumentIstEinChunk() {
+        List<XmlChunker.Chunk> chunks = chunker.chunk("<katalog><buch id=\"1\">Faust</buch></katalog>");
+
+        assertEquals(1, chunks.size());
+        assertEquals("/katalog[1]", chunks.get(0).xpath());
+        assertEquals("<katalog><buch id=\"1\">Faust</buch></katalog>", chunks.get(0).text());
+    }
+
+    @Test
+    void grossesDokumentWirdAnElementgrenzenGeteilt() {
+        StringBuilder xml = new StringBuilder("<katalog>");
+        for (int i = 1; i <= 30; i++) {
+            xml.append("<buch nr=\"").append(i).append("\"><titel>Titel ").append(i)
+                    .append("</titel><autor>Autor ").append(i).append("</autor></buch>");
+        }
+        xml.append("</katalog>");
+
+        List<XmlChunker.Chunk> chunks = chunker.chunk(xml.toString());
+
+        assertTrue(chunks.size() > 1);
+        String zusammen = String.join("", chunks.stream().map(XmlChunker.Chunk::text).toList());
+        for (int i = 1; i <= 30; i++) {
+            // jedes Buch steht vollständig in genau einem Chunk, Reihenfolge bleibt erhalten
+            String buch = "<buch nr=\"" + i + "\"><titel>Titel " + i + "</titel><autor>Autor " + i + "</autor></buch>";
+            assertEquals(1, chunks.stream().filter(c -> c.text().contains(buch)).count(), buch);
+            assertTrue(zusammen.contains(buch));
+        }
+        chunks.forEach(c -> assertTrue(c.tokens() <= 60, c.toString()));
+        assertTrue(chunks.stream().allMatch(c -> c.xpath().startsWith("/katalog[1]")));
+    }
+
+    @Test
+    void xpathZeigtAufElementOderGemeinsamesElternelement() {
+        String langerText = "wort ".repeat(15);
+        List<XmlChunker.Chunk> chunks = chunker.chunk(
+                "<a><b>" + langerText + "</b><b>" + langerText + "</b><c>kurz</c></a>");
+
+        assertEquals(2, chunks.size());
+        // allein im Chunk: das Element selbst
+        assertEquals("/a[1]/b[1]", chunks.get(0).xpath());
+        // b[2] und c[1] zusammengefasst: das Elternelement
+        assertEquals("/a[1]", chunks.get(1).xpath());
+        assertTrue(chunks.get(1).text().endsWith("</b><c>kurz</c>"));
+    }
+
+    @Test
+    void zuLangerTextWirdInFensterGeschnitten() {
+        String text = "Satz mit einigen Wörtern. ".repeat(200);
+
+        List<XmlChunker.Chunk> chunks = chunker.chunk("<vertrag><text>" + text + "</text></vertrag>");
+
+        assertTrue(chunks.size() > 5);
+        assertTrue(chunks.stream().allMatch(c -> c.xpath().equals("/vertrag[1]/text[1]")));
+        assertEquals(text.strip(), String.join("", chunks.stream().map(XmlChunker.Chunk::text).toList()).strip());
+    }
+
+    @Test
+    void sonderzeichenUndNamespacesBleibenGueltig() {
+        List<XmlChunker.Chunk> chunks = chunker.chunk(
+                "<x:a xmlns:x=\"urn:x\" t=\"&quot;q&quot;\"><![CDATA[1 < 2 & 3]]></x:a>");
+
+        assertEquals("<x:a xmlns:x=\"urn:x\" t=\"&quot;q&quot;\">1 &lt; 2 &amp; 3</x:a>", chunks.get(0).text());
+        assertEquals("/x:a[1]", chunks.get(0).xpath());
+    }
+
+    @Test
+    void keinXmlWirdAlsTextZerlegt() {
+        List<XmlChunker.Chunk> chunks = chunker.chunk("kein <xml");
+
+        assertEquals(1, chunks.size());
+        assertEquals("/", chunks.get(0).xpath());
+    }
+
+    @Test
+    void zuVieleChunksWerdenAbgelehnt() {
+        XmlChunker klein = new XmlChunker(new XmlChunkingProperties(16, 3));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> klein.chunk("<a>" + "<b>eins zwei drei vier fünf sechs sieben acht</b>".repeat(10) + "</a>"));
+    }
+}
@@ -0,0 +1,150 @@
+package it.gdorsi.service.xml;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import it.gdorsi.config.XmlDiffProperties;
+import it.gdorsi.service.xml.XmlDiff.Aenderung;
+import it.gdorsi.service.xml.XmlDiff.Art;
+
+class XmlDiffTest {
+
+    private final XmlDiff diff = new XmlDiff(new XmlDiffProperties(8, 40));
+
+    @Test
+    void gleichBisAufFormatierungUndAttributreihenfolge() {
+        XmlDiff.Ergebnis ergebnis = vergleiche(
+                "<r><a x=\"1\" y=\"2\">Text  mit   Leerzeichen</a><!-- weg --></r>",
+                "<r>\n  <a y=\"2\" x=\"1\">\n    Text mit Leerzeichen\n  </a>\n</r>");
+
+        assertTrue(ergebnis.gleich(), ergebnis.toString());
+    }
+
+    @Test
+    void eingefuegtGeloeschtGeaendert() {
+        XmlDiff.Ergebnis ergebnis = vergleiche("""
+                <katalog>
+                  <buch nr="1"><titel>Alt</titel></buch>
+                  <buch nr="2"><titel>Weg</titel></buch>
+                  <buch nr="3" preis="10"><titel>Bleibt</titel></buch>
+                </katalog>""", """
+                <katalog>
+                  <buch nr="1"><titel>Neu</titel></buch>
+                  <buch nr="3" preis="12"><titel>Bleibt</titel></buch>
+                  <buch nr="4"><titel>Dazu</titel></buch>
+                </katalog>""");
+
+        assertEquals(List.of(
+                new Aenderung(Art.GEAENDERT, "/katalog/buch[1]/titel/text()", "Alt", "Neu"),
+                new Aenderung(Art.GELOESCHT, "/katalog/buch[2]", "<buch nr=\"2\"> (2 Elemente)", null),
+                new Aenderung(Art.GEAENDERT, "/katalog/buch[2]/@preis", "10", "12"),
+                new Aenderung(Art.EINGEFUEGT, "/katalog/buch[3]", null, "<buch nr=\"4\"> (2 Elemente)")),
+                ergebnis.aenderungen());
+        assertEquals(4, ergebnis.gesamt());
+    }
+
+    @Test
+    void unveraenderteGeschwisterWerdenUeberDenHashGepaart() {
+        // buch 2 gelöscht, buch 4 geändert: ohne Hash-Paarung würde buch 2 mit buch 4 verglichen
+        XmlDiff.Ergebnis ergebnis = vergleiche(
+                "<k><buch>A</buch><buch>B</buch><buch>C</buch><buch>D</buch></k>",
+                "<k><buch>A</buch><buch>C</buch><buch>D2</buch></k>");
+
+        assertEquals(List.of(
+                new Aenderung(Art.GELOESCHT, "/k/buch[2]", "<buch>B", null),
+                new Aenderung(Art.GEAENDERT, "/k/buch[3]/text()", "D", "D2")),
+                ergebnis.aenderungen());
+    }
+
+    @Test
+    void umsortierteKinder() {
+        XmlDiff.Ergebnis ergebnis = vergleiche("<r><a/><b/></r>", "<r><b/><a/></r>");
+
+        assertEquals(List.of(new Aenderung(Art.UMSORTIERT, "/r", null, null)), ergebnis.aenderungen());
+    }
+
+    @Test
+    void namespacesUeberUriNichtPraefix() {
+        XmlDiff.Ergebnis ergebnis = vergleiche(
+                "<x:r xmlns:x=\"urn:a\"><x:a>1</x:a></x:r>",
+                "<y:r xmlns:y=\"urn:a\"><y:a>2</y:a></y:r>");
+
+        assertEquals(List.of(new Aenderung(Art.GEAENDERT, "/y:r/y:a/text()", "1", "2")), ergebnis.aenderungen());
+    }
+
+    @Test
+    void anderesRootElement() {
+        XmlDiff.Ergebnis ergebnis = vergleiche("<a/>", "<b/>");
+
+        assertEquals(List.of(Art.GELOESCHT, Art.EINGEFUEGT),
+                ergebnis.aenderungen().stream().map(Aenderung::art).toList());
+    }
+
+    @Test
+    void scriptWirdGekapptAberGezaehlt() {
+        XmlDiff klein = new XmlDiff(new XmlDiffProperties(8, 2));
+        XmlDiff.Ergebnis ergebnis = klein.vergleiche(
+                () -> new StringReader("<r><a>1</a><b>1</b><c>1</c></r>"),
+                () -> new StringReader("<r><a>2</a><b>2</b><c>2</c></r>"));
+
+        assertEquals(2, ergebnis.aenderungen().size());
+        assertEquals(3, ergebnis.gesamt());
+    }
+
+    @Test
+    void cacheProVersionspaar() {
+        AtomicInteger gelesen = new AtomicInteger();
+        XmlDiff.Ergebnis erstes = diff.vergleiche("v1", () -> lies(gelesen, "<r>1</r>"),
+                "v2", () -> lies(gelesen, "<r>2</r>"));
+        XmlDiff.Ergebnis zweites = diff.vergleiche("v1", () -> lies(gelesen, "<r>1</r>"),
+                "v2", () -> lies(gelesen, "<r>2</r>"));
+
+        assertEquals(erstes, zweites);
+        assertEquals(2, gelesen.get());
+
+        diff.vergleiche("v2", () -> lies(gelesen, "<r>2</r>"), "v1", () -> lies(gelesen, "<r>1</r>"));
+        assertEquals(4, gelesen.get());
+    }
+
+    @Test
+    void grosseDokumente() {
+        StringBuilder alt = new StringBuilder("<katalog>");
+        StringBuilder neu = new StringBuilder("<katalog>");
+        for (int i = 1; i <= 50_000; i++) {
+            alt.append("<buch nr=\"").append(i).append("\"><titel>Titel ").append(i).append("</titel></buch>");
+            neu.append("<buch nr=\"").append(i).append("\"><titel>Titel ").append(i == 25_000 ? "X" : i)
+                    .append("</titel></buch>");
+        }
+        alt.append("</katalog>");
+        neu.append("</katalog>");
+
+        XmlDiff.Ergebnis ergebnis = vergleiche(alt.toString(), neu.toString());
+
+        assertEquals(List.of(new Aenderung(Art.GEAENDERT, "/katalog/buch[25000]/titel/text()", "Titel 25000", "Titel X")),
+                ergebnis.aenderungen());
+    }
+
+    @Test
+    void nichtWohlgeformt() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> vergleiche("<a><b></a>", "<a/>"));
+
+        assertTrue(e.getMessage().startsWith("XML nicht wohlgeformt"), e.getMessage());
+    }
+
+    private XmlDiff.Ergebnis vergleiche(String alt, String neu) {
+        return diff.vergleiche(() -> new StringReader(alt), () -> new StringReader(neu));
+    }
+
+    private static StringReader lies(AtomicInteger zaehler, String xml) {
+        zaehler.incrementAndGet();
+        return new StringReader(xml);
+    }
+}
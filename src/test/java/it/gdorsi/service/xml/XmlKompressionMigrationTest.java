@@ -0,0 +1,68 @@
+package it.gdorsi.service.xml;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import it.gdorsi.config.XmlKompressionProperties;
+import it.gdorsi.repository.XmlStrukturProfilRepository;
+import it.gdorsi.repository.model.XmlWoerterbuch;
+
+class XmlKompressionMigrationTest {
+
+    private final XmlAnalyzer analyzer = new XmlAnalyzer();
+    private final XmlKompression kompression = mock(XmlKompression.class);
+    private final XmlStrukturProfilRepository profilRepository = mock(XmlStrukturProfilRepository.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final XmlKompressionMigration migration = new XmlKompressionMigration(kompression,
+            new XmlKompressionProperties(true, 1024, 2, 10, 4096, 100), profilRepository, analyzer, jdbcTemplate);
+
+    @Test
+    void trainiertWoerterbuchUndPacktOhneWoerterbuchGepackteNeu() throws IOException {
+        XmlWoerterbuch woerterbuch = XmlKompressionTest.woerterbuch(3L, "katalog");
+        // 1 liegt noch als Text vor, 2 wurde ohne Wörterbuch gepackt
+        when(jdbcTemplate.queryForList(startsWith("SELECT id"), eq(Long.class), anyLong(), anyInt()))
+                .thenReturn(List.of(1L, 2L), List.of());
+        when(profilRepository.findById(any())).thenReturn(Optional.of(analyzer.analyze("<katalog><buch/></katalog>")));
+        when(kompression.vorhandenesWoerterbuch("katalog")).thenReturn(Optional.empty());
+        when(kompression.trainiere("katalog", "katalog")).thenReturn(Optional.of(woerterbuch));
+        when(kompression.packeGespeichertes(any(), eq(woerterbuch))).thenReturn(true);
+
+        assertEquals(2, migration.migriere());
+
+        // einmal pro Schema und Lauf
+        verify(kompression, times(1)).trainiere("katalog", "katalog");
+        verify(kompression).packeGespeichertes(1L, woerterbuch);
+        verify(kompression).packeGespeichertes(2L, woerterbuch);
+    }
+
+    @Test
+    void ohneWoerterbuchBleibtGepacktesUnberuehrt() throws IOException {
+        when(jdbcTemplate.queryForList(startsWith("SELECT id"), eq(Long.class), anyLong(), anyInt()))
+                .thenReturn(List.of(2L), List.of());
+        when(profilRepository.findById(2L)).thenReturn(Optional.of(analyzer.analyze("<katalog><buch/></katalog>")));
+        when(kompression.vorhandenesWoerterbuch("katalog")).thenReturn(Optional.empty());
+        when(kompression.trainiere("katalog", "katalog")).thenReturn(Optional.empty());
+        when(jdbcTemplate.queryForObject(startsWith("SELECT inhalt IS NULL"), eq(Boolean.class), eq(2L))).thenReturn(true);
+
+        assertEquals(0, migration.migriere());
+
+        verify(kompression, never()).packeGespeichertes(any(), isNull());
+    }
+}
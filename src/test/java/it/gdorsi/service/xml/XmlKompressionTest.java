@@ -0,0 +1,128 @@
+package it.gdorsi.service.xml;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import it.gdorsi.config.XmlKompressionProperties;
+import it.gdorsi.repository.XmlStrukturProfilRepository;
+import it.gdorsi.repository.XmlWoerterbuchRepository;
+import it.gdorsi.repository.model.XmlWoerterbuch;
+import it.gdorsi.service.util.DeflateCodec;
+
+class XmlKompressionTest {
+
+    private static final String XML = "<katalog><buch id=\"1\"><titel>Faust</titel></buch></katalog>";
+
+    private final XmlAnalyzer analyzer = new XmlAnalyzer();
+    private final XmlWoerterbuchRepository woerterbuchRepository = mock(XmlWoerterbuchRepository.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+    private XmlKompression kompression(boolean enabled) {
+        return new XmlKompression(new XmlKompressionProperties(enabled, 1024, 2, 10, 4096, 100),
+                woerterbuchRepository, mock(XmlStrukturProfilRepository.class), jdbcTemplate);
+    }
+
+    @Test
+    void schemaSchluesselMitUndOhneNamespace() {
+        assertEquals("katalog", XmlKompression.schemaSchluessel(analyzer.analyze(XML)));
+        assertEquals("{urn:katalog}katalog", XmlKompression.schemaSchluessel(
+                analyzer.analyze("<katalog xmlns=\"urn:katalog\"><buch/></katalog>")));
+        assertEquals("{urn:katalog}katalog", XmlKompression.schemaSchluessel(
+                analyzer.analyze("<k:katalog xmlns:k=\"urn:katalog\"><k:buch/></k:katalog>")));
+        assertNull(XmlKompression.schemaSchluessel(analyzer.analyze("<katalog><buch></katalog>")));
+    }
+
+    @Test
+    void ohneOptionWirdDerTextGestreamt() throws Exception {
+        Reader inhalt = new StringReader(XML);
+
+        kompression(false).schreibeInhalt(7L, analyzer.analyze(XML), inhalt, XML.length());
+
+        ArgumentCaptor<PreparedStatementSetter> setter = ArgumentCaptor.forClass(PreparedStatementSetter.class);
+        verify(jdbcTemplate).update(contains("inhalt_komprimiert = NULL"), setter.capture());
+        PreparedStatement ps = mock(PreparedStatement.class);
+        setter.getValue().setValues(ps);
+        verify(ps).setCharacterStream(1, inhalt, XML.length());
+        verify(ps).setLong(2, 7L);
+    }
+
+    @Test
+    void mitOptionWirdGepacktMitVorhandenemWoerterbuch() throws IOException {
+        XmlWoerterbuch woerterbuch = woerterbuch(3L, "katalog");
+        when(woerterbuchRepository.findFirstBySchemaSchluesselOrderByIdDesc("katalog")).thenReturn(Optional.of(woerterbuch));
+
+        kompression(true).schreibeInhalt(7L, analyzer.analyze(XML), new StringReader(XML), XML.length());
+
+        ArgumentCaptor<byte[]> komprimiert = ArgumentCaptor.forClass(byte[].class);
+        verify(jdbcTemplate).update(contains("SET inhalt = NULL"), komprimiert.capture(), eq(3L), eq(XML), eq(7L));
+        assertEquals(XML, DeflateCodec.entpacke(komprimiert.getValue(), woerterbuch.getDaten()));
+    }
+
+    @Test
+    void mitOptionOhneWoerterbuchTrotzdemGepackt() throws IOException {
+        when(woerterbuchRepository.findFirstBySchemaSchluesselOrderByIdDesc(anyString())).thenReturn(Optional.empty());
+
+        kompression(true).schreibeInhalt(7L, analyzer.analyze(XML), new StringReader(XML), XML.length());
+
+        ArgumentCaptor<byte[]> komprimiert = ArgumentCaptor.forClass(byte[].class);
+        verify(jdbcTemplate).update(contains("SET inhalt = NULL"), komprimiert.capture(), isNull(), eq(XML), eq(7L));
+        assertEquals(XML, DeflateCodec.entpacke(komprimiert.getValue(), null));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void geaendertesDokumentWirdNichtUeberschrieben() throws IOException {
+        when(jdbcTemplate.queryForList(startsWith("SELECT xmin"), eq(String.class), eq(7L))).thenReturn(List.of("815"));
+        when(jdbcTemplate.query(startsWith("SELECT inhalt,"), any(RowMapper.class), eq(7L)))
+                .thenReturn(List.of(new StringReader(XML)));
+        // die Zeile hat inzwischen ein anderes xmin - das UPDATE trifft nichts
+        when(jdbcTemplate.update(contains("AND xmin::text = ?"), any(), any(), any(), any(), any())).thenReturn(0);
+
+        boolean gepackt = kompression(true).packeGespeichertes(7L, woerterbuch(3L, "katalog"));
+
+        assertFalse(gepackt);
+        verify(jdbcTemplate).update(contains("AND xmin::text = ?"), any(byte[].class), eq(3L), eq(XML), eq(7L), eq("815"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void geloeschtesDokumentWirdUebersprungen() throws IOException {
+        when(jdbcTemplate.queryForList(startsWith("SELECT xmin"), eq(String.class), eq(7L))).thenReturn(List.of());
+        when(jdbcTemplate.query(startsWith("SELECT inhalt,"), any(RowMapper.class), eq(7L))).thenReturn(List.of());
+
+        assertFalse(kompression(true).packeGespeichertes(7L, null));
+        verify(jdbcTemplate, never()).update(anyString(), any(), any(), any(), any(), any());
+    }
+
+    static XmlWoerterbuch woerterbuch(Long id, String schluessel) {
+        byte[] daten = DeflateCodec.trainiere(List.of(XML, XML.replace("Faust", "Nathan")), 256);
+        XmlWoerterbuch woerterbuch = new XmlWoerterbuch(schluessel, daten, 2);
+        ReflectionTestUtils.setField(woerterbuch, "id", id);
+        return woerterbuch;
+    }
+}
@@ -0,0 +1,130 @@
+package it.gdorsi.service.xml;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+
+import it.gdorsi.config.XmlChunkingProperties;
+
+class XmlUploadReaderTest {
+
+    private final XmlChunker chunker = new XmlChunker(new XmlChunkingProperties(60, 2000));
+    private final XmlUploadReader uploadReader = new XmlUploadReader(new XmlAnalyzer(), chunker);
+
+    @Test
+    void encodingAusDeklaration() throws IOException {
+        String xml = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><autor>Jürgen Größe</autor>";
+
+        try (XmlUploadReader.Upload upload = lese(xml.getBytes(StandardCharsets.ISO_8859_1))) {
+            assertEquals(StandardCharsets.ISO_8859_1, upload.encoding());
+            assertEquals(xml, inhalt(upload));
+            assertEquals(xml.length(), upload.zeichen());
+        }
+    }
+
+    @Test
+    void utf16MitBom() throws IOException {
+        String xml = "<autor>Jürgen</autor>";
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(0xFF);
+        bytes.write(0xFE);
+        bytes.write(xml.getBytes(StandardCharsets.UTF_16LE));
+
+        try (XmlUploadReader.Upload upload = lese(bytes.toByteArray())) {
+            assertEquals(StandardCharsets.UTF_16LE, upload.encoding());
+            // BOM gehört nicht zum Inhalt
+            assertEquals(xml, inhalt(upload));
+        }
+    }
+
+    @Test
+    void ohneDeklarationUtf8() throws IOException {
+        try (XmlUploadReader.Upload upload = lese("<a>€</a>".getBytes(StandardCharsets.UTF_8))) {
+            assertEquals(StandardCharsets.UTF_8, upload.encoding());
+            assertEquals("<a>€</a>", inhalt(upload));
+        }
+    }
+
+    @Test
+    void profilUndChunksAusDemselbenDurchlauf() throws IOException {
+        StringBuilder xml = new StringBuilder("<katalog>");
+        for (int i = 1; i <= 30; i++) {
+            xml.append("<buch nr=\"").append(i).append("\"><titel>Titel ").append(i).append("</titel></buch>");
+        }
+        xml.append("</katalog>");
+
+        try (XmlUploadReader.Upload upload = lese(xml.toString().getBytes(StandardCharsets.UTF_8))) {
+            assertTrue(upload.analyse().wohlgeformt());
+            assertEquals(61, upload.analyse().elemente());
+            assertEquals(new XmlAnalyzer().analyze(xml.toString()).kanonischerHash(), upload.analyse().kanonischerHash());
+            assertEquals(chunker.chunk(xml.toString()), upload.chunks());
+        }
+    }
+
+    @Test
+    void nichtWohlgeformtWirdAbgelehntUndAufgeraeumt() throws IOException {
+        long vorher = uploadDateien();
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> lese("<a><b></a>".getBytes(StandardCharsets.UTF_8)));
+
+        assertTrue(e.getMessage().startsWith("XML nicht wohlgeformt"), e.getMessage());
+        assertEquals(vorher, uploadDateien());
+    }
+
+    @Test
+    void bytesPassenNichtZumEncoding() {
+        byte[] latin1 = "<a>Größe</a>".getBytes(StandardCharsets.ISO_8859_1);
+
+        // als UTF-8 deklariert, aber ISO-8859-1: kein stilles Ersatzzeichen
+        assertThrows(IllegalArgumentException.class, () -> lese(latin1));
+    }
+
+    @Test
+    void unbekanntesEncoding() {
+        byte[] xml = "<?xml version=\"1.0\" encoding=\"x-gibts-nicht\"?><a/>".getBytes(StandardCharsets.US_ASCII);
+
+        assertThrows(IllegalArgumentException.class, () -> lese(xml));
+    }
+
+    @Test
+    void closeLoeschtSpoolDatei() throws IOException {
+        XmlUploadReader.Upload upload = lese("<a/>".getBytes(StandardCharsets.UTF_8));
+        Path datei = upload.datei();
+        assertTrue(Files.exists(datei));
+
+        upload.close();
+
+        assertFalse(Files.exists(datei));
+    }
+
+    private XmlUploadReader.Upload lese(byte[] bytes) throws IOException {
+        return uploadReader.lese(new ByteArrayInputStream(bytes));
+    }
+
+    private static String inhalt(XmlUploadReader.Upload upload) throws IOException {
+        try (Reader reader = upload.inhalt()) {
+            StringWriter text = new StringWriter();
+            reader.transferTo(text);
+            return text.toString();
+        }
+    }
+
+    private static long uploadDateien() throws IOException {
+        try (var dateien = Files.list(Path.of(System.getProperty("java.io.tmpdir")))) {
+            return dateien.filter(p -> p.getFileName().toString().startsWith("xml-upload-")).count();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package it.gdorsi.service.xml;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.embedding.EmbeddingModel;
+
+import it.gdorsi.config.IngestionProperties;
+import it.gdorsi.config.XmlChunkingProperties;
+import it.gdorsi.repository.VectorStoreChunkRepository;
+
+class XmlVectorIndexerTest {
+
+    private final XmlChunker chunker = new XmlChunker(new XmlChunkingProperties(30, 100));
+    private final EmbeddingModel embeddingModel = mock(EmbeddingModel.class);
+    private final VectorStoreChunkRepository chunkRepository = mock(VectorStoreChunkRepository.class);
+    private final XmlVectorIndexer indexer = new XmlVectorIndexer(chunker, embeddingModel, chunkRepository,
+            new IngestionProperties(32, 4));
+
+    @Test
+    void poolingGewichtetNachTokensUndNormiert() {
+        List<XmlChunker.Chunk> chunks = List.of(new XmlChunker.Chunk("/a", "x", 3), new XmlChunker.Chunk("/b", "y", 1));
+
+        float[] pooled = XmlVectorIndexer.pool(chunks, List.of(new float[]{1, 0}, new float[]{0, 1}));
+
+        // (3, 1) / sqrt(10)
+        assertArrayEquals(new float[]{(float) (3 / Math.sqrt(10)), (float) (1 / Math.sqrt(10))}, pooled, 1e-6f);
+    }
+
+    @Test
+    void unveraenderteChunksWerdenNichtNeuEmbedded() {
+        String xml = "<a><b>" + "alt ".repeat(20) + "</b><c>" + "neu ".repeat(20) + "</c></a>";
+        List<XmlChunker.Chunk> chunks = chunker.chunk(xml);
+        assertEquals(2, chunks.size());
+        String alteId = XmlVectorIndexer.chunkId(7L, chunks.get(0));
+        when(chunkRepository.findEmbeddings(anyCollection())).thenReturn(Map.of(alteId, new float[]{1, 0}));
+        when(embeddingModel.embed(anyList())).thenReturn(List.of(new float[]{0, 1}));
+
+        XmlVectorIndexer.PreparedXml prepared = indexer.prepare(7L, xml);
+
+        assertEquals(1, prepared.embeddedChunks());
+        verify(embeddingModel).embed(List.of(chunks.get(1).text()));
+        assertArrayEquals(new float[]{1, 0}, prepared.embeddings().get(0));
+
+        indexer.index(7L, "Anna", "a.xml", prepared);
+
+        verify(chunkRepository).deleteByXmlIdExcept(eq(7L), eq("Anna"),
+                eq(List.of(alteId, XmlVectorIndexer.chunkId(7L, chunks.get(1)))));
+    }
+}
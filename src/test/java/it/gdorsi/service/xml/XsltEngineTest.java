@@ -0,0 +1,100 @@
+package it.gdorsi.service.xml;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.transform.Templates;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.gdorsi.config.XsltProperties;
+
+class XsltEngineTest {
+
+    private static final String TITEL = """
+            <xsl:stylesheet version="1.0" xmlns:xsl="http://www.w3.org/1999/XSL/Transform">
+              <xsl:output method="text"/>
+              <xsl:template match="/">
+                <xsl:for-each select="//buch"><xsl:value-of select="titel"/>;</xsl:for-each>
+              </xsl:template>
+            </xsl:stylesheet>
+            """;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final XsltEngine engine = new XsltEngine(new XsltProperties(4, 3, 10), meterRegistry);
+
+    @Test
+    void kompiliertEinmalUndStreamtDieAusgabe() {
+        Templates templates = engine.compile("titel", TITEL);
+        assertSame(templates, engine.compile("titel", TITEL));
+
+        StringWriter out = new StringWriter();
+        engine.transform("titel", templates,
+                new StringReader("<katalog><buch><titel>Faust</titel></buch><buch><titel>Werther</titel></buch></katalog>"), out);
+
+        assertEquals("Faust;Werther;", out.toString());
+        assertEquals(1, meterRegistry.get("xml.xslt.compile").tag("stylesheet", "titel").timer().count());
+        assertEquals(1, meterRegistry.get("xml.xslt.transform").tag("stylesheet", "titel").timer().count());
+    }
+
+    @Test
+    void vorschauKapptDieAusgabeUndZaehltWeiter() {
+        Templates templates = engine.compile("titel", TITEL);
+
+        XsltEngine.Ergebnis ergebnis = engine.vorschau("titel", templates, new XmlQuelle(1L, "a.xml"),
+                "<k><buch><titel>Wilhelm Meisters Lehrjahre</titel></buch></k>");
+
+        assertEquals("Wilhelm Me", ergebnis.vorschau());
+        assertEquals("Wilhelm Meisters Lehrjahre;".length(), ergebnis.zeichen());
+        assertTrue(ergebnis.gekappt());
+    }
+
+    @Test
+    void kaputtesStylesheetMitFehlermeldung() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> engine.compile("kaputt", """
+                <xsl:stylesheet version="1.0" xmlns:xsl="http://www.w3.org/1999/XSL/Transform">
+                  <xsl:template match="/"><xsl:value-of select="///"/></xsl:template>
+                </xsl:stylesheet>
+                """));
+
+        assertTrue(e.getMessage().startsWith("XSLT 'kaputt' nicht kompilierbar: "), e.getMessage());
+    }
+
+    @Test
+    void doctypeImEingabeXmlWirdAbgelehnt() {
+        Templates templates = engine.compile("titel", TITEL);
+        String xxe = "<!DOCTYPE k [<!ENTITY x SYSTEM \"file:///etc/passwd\">]><k><buch><titel>&x;</titel></buch></k>";
+
+        assertThrows(IllegalArgumentException.class,
+                () -> engine.transform("titel", templates, new StringReader(xxe), new StringWriter()));
+    }
+
+    @Test
+    void transformiertMehrereDokumenteUndMeldetKaputteEinzeln() {
+        Templates templates = engine.compile("titel", TITEL);
+        Map<Long, String> inhalte = Map.of(
+                1L, "<k><buch><titel>A</titel></buch></k>",
+                2L, "<k><buch>",
+                3L, "<k><buch><titel>C</titel></buch></k>");
+
+        List<XsltEngine.Ergebnis> ergebnisse = engine.transformAll("titel", templates,
+                List.of(new XmlQuelle(1L, "a.xml"), new XmlQuelle(2L, "b.xml"), new XmlQuelle(3L, "c.xml"),
+                        new XmlQuelle(4L, "weg.xml")),
+                inhalte::get);
+
+        assertEquals("A;", ergebnisse.get(0).vorschau());
+        assertTrue(ergebnisse.get(1).fehler().startsWith("XSLT 'titel' fehlgeschlagen"), ergebnisse.get(1).fehler());
+        assertEquals("C;", ergebnisse.get(2).vorschau());
+        assertNull(ergebnisse.get(3).vorschau());
+        assertEquals("XML-Dokument nicht mehr vorhanden", ergebnisse.get(3).fehler());
+    }
+}